@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.kafka;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import dev.c0ps.franz.Kafka;
+import dev.c0ps.franz.Lane;
+
+/**
+ * Kafka clients must not be used from several threads at once. Worker threads
+ * therefore only queue their messages here and the thread that polls the
+ * consumer publishes them, while it waits for the workers to finish. As an
+ * {@link Executor}, the outbox also runs whole tasks (e.g., a flush followed by
+ * a publish) on that thread.
+ */
+public class KafkaOutbox implements Executor {
+
+    private static final Runnable WAKE_UP = () -> {
+    };
+
+    private final Kafka kafka;
+    private final int heartbeatIntervalMS;
+    private final BlockingQueue<Runnable> pending = new LinkedBlockingQueue<>();
+
+    public KafkaOutbox(Kafka kafka, int heartbeatIntervalMS) {
+        this.kafka = kafka;
+        this.heartbeatIntervalMS = heartbeatIntervalMS;
+    }
+
+    public void publish(Object obj, String topic, Lane lane) {
+        pending.add(() -> kafka.publish(obj, topic, lane));
+    }
+
+    public void publish(String key, Object obj, String topic, Lane lane) {
+        pending.add(() -> kafka.publish(key, obj, topic, lane));
+    }
+
+    @Override
+    public void execute(Runnable r) {
+        pending.add(r);
+    }
+
+    public int getNumPending() {
+        return pending.size();
+    }
+
+    /**
+     * Publishes the queued messages in order on the calling thread until the
+     * given future is done and sends heartbeats in between. All messages that
+     * have been queued before the future completes are published, even if it
+     * completes exceptionally.
+     */
+    public void publishUntilDone(CompletableFuture<?> f) {
+        f.whenComplete((v, t) -> pending.add(WAKE_UP));
+        var lastHeartbeat = System.currentTimeMillis();
+        while (!f.isDone()) {
+            var next = take();
+            if (next != null) {
+                next.run();
+            }
+            var now = System.currentTimeMillis();
+            if (now - lastHeartbeat >= heartbeatIntervalMS) {
+                kafka.sendHeartbeat();
+                lastHeartbeat = now;
+            }
+        }
+        publishPending();
+    }
+
+    /**
+     * Publishes the queued messages in order on the calling thread without
+     * waiting for further ones.
+     */
+    public void publishPending() {
+        Runnable next;
+        while ((next = pending.poll()) != null) {
+            next.run();
+        }
+    }
+
+    private Runnable take() {
+        try {
+            return pending.poll(heartbeatIntervalMS, MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Text file to which lines are appended and that is compacted by its owner,
+ * e.g., to aggregate or deduplicate the lines. The file can be shared by
+ * several processes. Appends and compactions are guarded by an
+ * {@link InterProcessLock} and every append opens the file again, so no line
+ * gets lost in a file that has been replaced by a compaction meanwhile.
+ *
+ * Compactions happen explicitly (e.g., on load) and whenever the file has
+ * grown to twice its size after the last compaction, which keeps the cost of
+ * compacting constant per appended line.
+ */
+public class AppendLog implements Closeable {
+
+    private static final long MIN_COMPACTION_SIZE = 64 * 1024; // bytes
+
+    private final File file;
+    private final Compactor compactor;
+    private final InterProcessLock lock;
+
+    private long sizeAfterCompaction;
+
+    public AppendLog(File file, Compactor compactor) {
+        this.file = file;
+        this.compactor = compactor;
+        this.lock = new InterProcessLock(new File(file.getPath() + ".lock"));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public synchronized void append(String line) {
+        lock.run(() -> {
+            try {
+                Files.writeString(file.toPath(), line + '\n', UTF_8, CREATE, APPEND);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (file.length() > Math.max(MIN_COMPACTION_SIZE, 2 * sizeAfterCompaction)) {
+                compactLocked();
+            }
+        });
+    }
+
+    /**
+     * Passes all lines, including the ones of other processes, to the
+     * {@link Compactor} and replaces the file with its result.
+     */
+    public synchronized void compact() {
+        lock.run(this::compactLocked);
+    }
+
+    @Override
+    public void close() {
+        lock.close();
+    }
+
+    private void compactLocked() {
+        try {
+            var lines = file.exists() //
+                    ? Files.readAllLines(file.toPath(), UTF_8)
+                    : List.<String>of();
+            var compacted = compactor.compact(lines);
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            var tmp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+            try {
+                Files.write(tmp.toPath(), compacted, UTF_8);
+                Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+            sizeAfterCompaction = file.length();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public interface Compactor {
+        /**
+         * @return the lines that replace the given ones, in the order in
+         *         which they should be written
+         */
+        List<String> compact(List<String> lines);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over 64bit hashes (e.g., {@link LongHashTable#hash(String)}).
+ * The bit positions are derived from both halves of the hash (double hashing),
+ * so no further hashing is required.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final long numBits;
+    private final int numHashes;
+    private final long expectedInsertions;
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid configuration of Bloom filter");
+        }
+        var m = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        var numWords = (int) Math.min(Integer.MAX_VALUE, (m + 63) / 64);
+        this.bits = new AtomicLongArray(numWords);
+        this.numBits = numWords * 64L;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public void add(long hash) {
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32);
+        for (var i = 0; i < numHashes; i++) {
+            var bit = index(h1 + i * h2);
+            var word = (int) (bit >>> 6);
+            var mask = 1L << bit;
+            long cur;
+            do {
+                cur = bits.get(word);
+            } while ((cur & mask) == 0 && !bits.compareAndSet(word, cur, cur | mask));
+        }
+    }
+
+    /**
+     * @return false, if the hash has definitely never been added
+     */
+    public boolean mightContain(long hash) {
+        var h1 = (int) hash;
+        var h2 = (int) (hash >>> 32);
+        for (var i = 0; i < numHashes; i++) {
+            var bit = index(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long index(int combined) {
+        return (combined & 0x7FFFFFFFL) % numBits;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Exclusive lock on a file that serializes short operations on data that is
+ * shared between processes, e.g., a memory-mapped table. The lock is only held
+ * for the duration of one operation, so any number of processes can use the
+ * data, and it is released by the OS when a process crashes.
+ *
+ * File locks are held on behalf of the whole JVM, so all instances for the same
+ * file additionally share a monitor.
+ */
+public class InterProcessLock implements Closeable {
+
+    private static final Map<String, Object> MONITORS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Object monitor;
+    private final FileChannel channel;
+
+    public InterProcessLock(File file) {
+        this.file = file;
+        file.getParentFile().mkdirs();
+        try {
+            monitor = MONITORS.computeIfAbsent(file.getCanonicalPath(), p -> new Object());
+            channel = FileChannel.open(file.toPath(), CREATE, WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Blocks until no other process (or instance) runs an operation.
+     */
+    public <T> T call(Supplier<T> operation) {
+        synchronized (monitor) {
+            if (!channel.isOpen()) {
+                throw new IllegalStateException(String.format("Lock %s has been closed", file));
+            }
+            try (var lock = channel.lock()) {
+                return operation.get();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    public void run(Runnable operation) {
+        call(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        // closing can release all locks of the JVM on the file, wait for operations
+        synchronized (monitor) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
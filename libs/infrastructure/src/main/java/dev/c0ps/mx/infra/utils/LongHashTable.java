@@ -0,0 +1,386 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+
+/**
+ * Open-addressing hash table that maps 64bit keys to values of one byte. All
+ * entries are stored in a single buffer (keys first, then values), which is
+ * either allocated on the heap or memory-mapped from a file. Mapped tables
+ * survive restarts without any deserialization and only occupy heap for the
+ * buffer handle.
+ *
+ * Key 0 marks empty slots and cannot be stored, use {@link #hash(String)} to
+ * derive keys from strings. Different strings can result in the same key, with
+ * 64bit keys this is negligible for tables with millions of entries.
+ *
+ * A mapped table can be shared between processes, if its owners open and use
+ * it only while they hold an {@link InterProcessLock} and start every
+ * operation with {@link #refresh()}. The size is kept in the file and growing
+ * replaces the file, which the other processes detect on refresh.
+ */
+public class LongHashTable implements Closeable {
+
+    private static final int MAGIC = 0x4C485432; // LHT2
+    private static final int MAGIC_V1 = 0x4C485431; // LHT1, without size
+    private static final int HEADER_SIZE = 16;
+    private static final int HEADER_SIZE_V1 = 8;
+    private static final int MIN_CAPACITY = 1024;
+    private static final double MAX_LOAD = 0.7;
+
+    private static final long EMPTY = 0;
+    private static final int ABSENT = -1;
+
+    private final File file;
+
+    private ByteBuffer buf;
+    private int capacity;
+    private int size;
+
+    /**
+     * Creates an empty table in memory.
+     */
+    public LongHashTable() {
+        this.file = null;
+        init(allocate(MIN_CAPACITY), MIN_CAPACITY);
+    }
+
+    /**
+     * Opens the table that is stored in the given file or creates a new one.
+     */
+    public LongHashTable(File file) {
+        this(file, MIN_CAPACITY);
+    }
+
+    private LongHashTable(File file, int capacity) {
+        this.file = file;
+        try {
+            if (file.exists() && file.length() > 0) {
+                var mapped = map(file, file.length());
+                if (mapped.getInt(0) == MAGIC_V1) {
+                    mapped = migrateV1(mapped);
+                }
+                if (mapped.getInt(0) != MAGIC) {
+                    var msg = String.format("File %s does not contain a hash table", file);
+                    throw new IllegalStateException(msg);
+                }
+                capacity = mapped.getInt(4);
+                buf = mapped;
+                this.capacity = capacity;
+                // a crash could have left the persisted size inconsistent
+                setSize(countEntries());
+            } else {
+                file.getParentFile().mkdirs();
+                init(map(file, bytes(capacity)), capacity);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static long hash(String s) {
+        // FNV-1a, followed by the finalizer of MurmurHash3 to spread the bits
+        var h = 0xcbf29ce484222325L;
+        for (var b : s.getBytes(UTF_8)) {
+            h ^= b & 0xFF;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1 : h;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Picks up the changes of other processes that share the file, i.e., the
+     * current size and the new file after a growth.
+     */
+    public synchronized void refresh() {
+        if (file == null) {
+            return;
+        }
+        var length = file.length();
+        if (length != buf.capacity()) {
+            try {
+                buf = map(file, length);
+                capacity = buf.getInt(4);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        size = buf.getInt(8);
+    }
+
+    public synchronized boolean contains(long key) {
+        return get(key) != ABSENT;
+    }
+
+    /**
+     * @return the stored value (0-255) or -1, if the key is unknown
+     */
+    public synchronized int get(long key) {
+        assertKey(key);
+        var slot = find(key);
+        return keyAt(slot) == EMPTY //
+                ? ABSENT
+                : Byte.toUnsignedInt(buf.get(valueOffset(slot)));
+    }
+
+    /**
+     * @return the previous value or -1, if the key was unknown
+     */
+    public synchronized int put(long key, int value) {
+        assertKey(key);
+        if (value < 0 || value > 255) {
+            throw new IllegalArgumentException(String.format("Value must be between 0 and 255 (was %d)", value));
+        }
+        var slot = find(key);
+        if (keyAt(slot) != EMPTY) {
+            var old = Byte.toUnsignedInt(buf.get(valueOffset(slot)));
+            buf.put(valueOffset(slot), (byte) value);
+            return old;
+        }
+        if (size + 1 > capacity * MAX_LOAD) {
+            grow();
+            slot = find(key);
+        }
+        // value first, a crash in between must not expose a key without value
+        buf.put(valueOffset(slot), (byte) value);
+        buf.putLong(keyOffset(slot), key);
+        setSize(size + 1);
+        return ABSENT;
+    }
+
+    /**
+     * @return the removed value or -1, if the key was unknown
+     */
+    public synchronized int remove(long key) {
+        assertKey(key);
+        var slot = find(key);
+        if (keyAt(slot) == EMPTY) {
+            return ABSENT;
+        }
+        var old = Byte.toUnsignedInt(buf.get(valueOffset(slot)));
+        // backward-shift deletion keeps probe sequences intact without tombstones
+        var mask = capacity - 1;
+        var hole = slot;
+        var cur = (slot + 1) & mask;
+        while (keyAt(cur) != EMPTY) {
+            var home = home(keyAt(cur));
+            var isMovable = ((cur - home) & mask) >= ((cur - hole) & mask);
+            if (isMovable) {
+                buf.put(valueOffset(hole), buf.get(valueOffset(cur)));
+                buf.putLong(keyOffset(hole), keyAt(cur));
+                hole = cur;
+            }
+            cur = (cur + 1) & mask;
+        }
+        buf.putLong(keyOffset(hole), EMPTY);
+        setSize(size - 1);
+        return old;
+    }
+
+    public synchronized void forEach(EntryVisitor v) {
+        for (var slot = 0; slot < capacity; slot++) {
+            var key = keyAt(slot);
+            if (key != EMPTY) {
+                v.visit(key, Byte.toUnsignedInt(buf.get(valueOffset(slot))));
+            }
+        }
+    }
+
+    /**
+     * Removes all entries. Tables in memory also release the memory of grown
+     * buffers.
+     */
+    public synchronized void clear() {
+        if (file == null) {
+            init(allocate(MIN_CAPACITY), MIN_CAPACITY);
+            return;
+        }
+        for (var slot = 0; slot < capacity; slot++) {
+            buf.putLong(keyOffset(slot), EMPTY);
+        }
+        setSize(0);
+    }
+
+    /**
+     * Writes all changes of a mapped table to disk.
+     */
+    public synchronized void force() {
+        if (buf instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buf).force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    private void grow() {
+        var newCapacity = capacity * 2;
+        if (newCapacity <= 0 || bytes(newCapacity) > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Hash table cannot grow any further");
+        }
+        if (file == null) {
+            var t = new LongHashTable();
+            t.init(allocate(newCapacity), newCapacity);
+            copyTo(t);
+            init(t.buf, newCapacity);
+            // init starts empty, the copied entries are already in the buffer
+            setSize(t.size);
+            return;
+        }
+        try {
+            var tmp = new File(file.getPath() + ".tmp");
+            Files.deleteIfExists(tmp.toPath());
+            var t = new LongHashTable(tmp, newCapacity);
+            copyTo(t);
+            t.force();
+            // other processes notice the new file on refresh, the old mapping is dropped
+            Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            buf = t.buf;
+            capacity = t.capacity;
+            size = t.size;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void copyTo(LongHashTable other) {
+        forEach((key, value) -> {
+            other.put(key, value);
+        });
+    }
+
+    private void init(ByteBuffer b, int cap) {
+        b.putInt(0, MAGIC);
+        b.putInt(4, cap);
+        buf = b;
+        capacity = cap;
+        setSize(0);
+    }
+
+    private void setSize(int n) {
+        size = n;
+        buf.putInt(8, n);
+    }
+
+    /**
+     * Copies a table of the first format, which did not store its size, into a
+     * table of the current format that replaces the file.
+     */
+    private MappedByteBuffer migrateV1(MappedByteBuffer old) throws IOException {
+        var oldCapacity = old.getInt(4);
+        var tmp = new File(file.getPath() + ".tmp");
+        Files.deleteIfExists(tmp.toPath());
+        var t = new LongHashTable(tmp, oldCapacity);
+        for (var slot = 0; slot < oldCapacity; slot++) {
+            var key = old.getLong(HEADER_SIZE_V1 + slot * 8);
+            if (key != EMPTY) {
+                t.put(key, Byte.toUnsignedInt(old.get(HEADER_SIZE_V1 + oldCapacity * 8 + slot)));
+            }
+        }
+        t.force();
+        Files.move(tmp.toPath(), file.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        return (MappedByteBuffer) t.buf;
+    }
+
+    private int countEntries() {
+        var n = 0;
+        for (var slot = 0; slot < capacity; slot++) {
+            if (keyAt(slot) != EMPTY) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private int find(long key) {
+        var mask = capacity - 1;
+        var slot = home(key);
+        while (true) {
+            var k = keyAt(slot);
+            if (k == EMPTY || k == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int home(long key) {
+        return (int) (key ^ (key >>> 32)) & (capacity - 1);
+    }
+
+    private long keyAt(int slot) {
+        return buf.getLong(keyOffset(slot));
+    }
+
+    private static int keyOffset(int slot) {
+        return HEADER_SIZE + slot * 8;
+    }
+
+    private int valueOffset(int slot) {
+        return HEADER_SIZE + capacity * 8 + slot;
+    }
+
+    private static long bytes(int capacity) {
+        return HEADER_SIZE + capacity * 9L;
+    }
+
+    private static void assertKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("Key 0 is reserved for empty slots");
+        }
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate((int) bytes(capacity));
+    }
+
+    private static MappedByteBuffer map(File f, long size) throws IOException {
+        try (var ch = FileChannel.open(f.toPath(), CREATE, READ, WRITE)) {
+            // mapping remains valid after the channel has been closed
+            return ch.map(MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    public interface EntryVisitor {
+        void visit(long key, int value);
+    }
+}
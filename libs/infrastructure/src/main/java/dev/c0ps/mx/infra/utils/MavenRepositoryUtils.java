@@ -16,7 +16,11 @@
 package dev.c0ps.mx.infra.utils;
 
 import static jakarta.ws.rs.core.Response.Status.FOUND;
+import static jakarta.ws.rs.core.Response.Status.GONE;
+import static jakarta.ws.rs.core.Response.Status.METHOD_NOT_ALLOWED;
 import static jakarta.ws.rs.core.Response.Status.MOVED_PERMANENTLY;
+import static jakarta.ws.rs.core.Response.Status.NOT_FOUND;
+import static jakarta.ws.rs.core.Response.Status.NOT_IMPLEMENTED;
 import static jakarta.ws.rs.core.Response.Status.OK;
 import static jakarta.ws.rs.core.Response.Status.PERMANENT_REDIRECT;
 import static jakarta.ws.rs.core.Response.Status.SEE_OTHER;
@@ -25,8 +29,7 @@ import static java.util.Locale.ENGLISH;
 import static org.apache.commons.lang3.builder.ToStringStyle.MULTI_LINE_STYLE;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.IOException;
+import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
@@ -34,6 +37,7 @@ import java.net.UnknownHostException;
 import java.net.http.HttpClient;
 import java.net.http.HttpClient.Redirect;
 import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
 import java.net.http.HttpResponse;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -44,8 +48,13 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
@@ -64,14 +73,35 @@ public class MavenRepositoryUtils {
     private static final int CONNECTION_TIMEOUT_MS = 1000 * 10; // 10s
     private static final int READ_TIMEOUT_MS = 1000 * 60; // 1min
 
+    private static final int MAX_REDIRECTS = 10;
+
     private static final Logger LOG = LoggerFactory.getLogger(MavenRepositoryUtils.class);
     private static final String[] ALLOWED_CLASSIFIERS = new String[] { null, "sources", "javadoc" };
 
+    // shared by all static checks, keeps connections, TLS sessions and HTTP/2 streams alive
+    private static final HttpClient DEFAULT_CLIENT = createHttpClient();
+
     private File dirM2;
+    private HttpClient httpClient;
+    private UrlCheckCache urlChecks;
+
+    public MavenRepositoryUtils(File dirM2) {
+        this(dirM2, DEFAULT_CLIENT, UrlCheckCache.disabled());
+    }
 
     @Inject
-    public MavenRepositoryUtils(@Named("dir.m2") File dirM2) {
+    public MavenRepositoryUtils(@Named("dir.m2") File dirM2, HttpClient httpClient, UrlCheckCache urlChecks) {
         this.dirM2 = dirM2;
+        this.httpClient = httpClient;
+        this.urlChecks = urlChecks;
+    }
+
+    public static HttpClient createHttpClient() {
+        return HttpClient.newBuilder() //
+                .version(HttpClient.Version.HTTP_2) //
+                .connectTimeout(Duration.ofMillis(CONNECTION_TIMEOUT_MS)) //
+                .followRedirects(Redirect.NEVER) // do it manually instead
+                .build();
     }
 
     public File getLocalPomFile(Artifact a) {
@@ -91,7 +121,37 @@ public class MavenRepositoryUtils {
 
     // TODO get rid of static alternative
     public UrlCheck checkGetRequestNonStatic(Artifact a) {
-        return checkGetRequest(a);
+        return await(checkGetRequestAsync(a));
+    }
+
+    public CompletableFuture<UrlCheck> checkGetRequestAsync(Artifact a) {
+        var url = getUrl(a.repository, a.groupId, a.artifactId, a.version, null, a.packaging);
+        return checkGetRequestAsync(url);
+    }
+
+    /**
+     * Cancelling the returned future also cancels the pending exchange, which
+     * the cancellation of a dependent stage alone would not reach.
+     */
+    public CompletableFuture<UrlCheck> checkGetRequestAsync(String url) {
+        var cached = urlChecks.get(url);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        var exchange = new AtomicReference<CompletableFuture<?>>();
+        var f = check(httpClient, url, true, 0, exchange).thenApply(p -> {
+            // transient errors (e.g., 429 or 5xx) must not be remembered as missing
+            if (p.isDefinite()) {
+                urlChecks.put(url, p.check);
+            }
+            return p.check;
+        });
+        f.whenComplete((c, t) -> {
+            if (f.isCancelled()) {
+                exchange.get().cancel(true);
+            }
+        });
+        return f;
     }
 
     @Deprecated
@@ -114,37 +174,106 @@ public class MavenRepositoryUtils {
     }
 
     public static UrlCheck checkGetRequest(String url) {
-        try {
-            var httpClient = HttpClient.newBuilder() //
-                    .version(HttpClient.Version.HTTP_2) //
-                    .connectTimeout(Duration.ofSeconds(10)) //
-                    .followRedirects(Redirect.NEVER) // do it manually instead
-                    .build();
-            var request = HttpRequest.newBuilder().GET().uri(URI.create(url)).build();
-            var response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+        return await(check(DEFAULT_CLIENT, url, true, 0, new AtomicReference<>())).check;
+    }
+
+    /**
+     * Probes with a HEAD request, the body is never needed. Servers that do not
+     * support HEAD are asked again with a GET.
+     *
+     * @param exchange receives the future of the current exchange, so it can
+     *                 be cancelled
+     */
+    private static CompletableFuture<Probe> check(HttpClient client, String url, boolean useHead, int numRedirects, AtomicReference<CompletableFuture<?>> exchange) {
+        var request = HttpRequest.newBuilder() //
+                .method(useHead ? "HEAD" : "GET", BodyPublishers.noBody()) //
+                .uri(URI.create(url)) //
+                .timeout(Duration.ofMillis(READ_TIMEOUT_MS)) //
+                .build();
+        var sent = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        exchange.set(sent);
+        return sent.thenCompose(response -> {
+            var statusCode = response.statusCode();
+
+            if (useHead && (statusCode == METHOD_NOT_ALLOWED.getStatusCode() || statusCode == NOT_IMPLEMENTED.getStatusCode())) {
+                return check(client, url, false, numRedirects, exchange);
+            }
+
+            if (statusCode == OK.getStatusCode()) {
+                var lastModified = getDateOrNull(response, "last-modified", "Last-Modified");
+                return CompletableFuture.completedFuture(new Probe(statusCode, new UrlCheck(url, lastModified)));
+            }
+
+            for (var scMoved : Set.of(MOVED_PERMANENTLY, FOUND, SEE_OTHER, TEMPORARY_REDIRECT, PERMANENT_REDIRECT)) {
+                if (statusCode == scMoved.getStatusCode()) {
+                    var newLocation = getField(response, "Location", "location");
+                    if (newLocation.isPresent() && numRedirects < MAX_REDIRECTS) {
+                        var next = response.uri().resolve(newLocation.get()).toString();
+                        return check(client, next, true, numRedirects + 1, exchange);
+                    }
+                }
+            }
+
+            return CompletableFuture.completedFuture(new Probe(statusCode, new UrlCheck(null, null)));
+        });
+    }
+
+    public static byte[] getContent(String url) {
+        return await(getContent(DEFAULT_CLIENT, url, 0));
+    }
+
+    public byte[] getContentNonStatic(String url) {
+        return await(getContent(httpClient, url, 0));
+    }
+
+    /**
+     * Downloads the body of a url into memory, redirects are followed like in
+     * the checks above.
+     */
+    private static CompletableFuture<byte[]> getContent(HttpClient client, String url, int numRedirects) {
+        var request = HttpRequest.newBuilder() //
+                .GET() //
+                .uri(URI.create(url)) //
+                .timeout(Duration.ofMillis(READ_TIMEOUT_MS)) //
+                .build();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenCompose(response -> {
             var statusCode = response.statusCode();
-            var lastModified = getDateOrNull(response, "last-modified", "Last-Modified");
 
             if (statusCode == OK.getStatusCode()) {
-                return new UrlCheck(url, lastModified);
+                return CompletableFuture.completedFuture(response.body());
             }
 
             for (var scMoved : Set.of(MOVED_PERMANENTLY, FOUND, SEE_OTHER, TEMPORARY_REDIRECT, PERMANENT_REDIRECT)) {
                 if (statusCode == scMoved.getStatusCode()) {
                     var newLocation = getField(response, "Location", "location");
-                    if (newLocation.isPresent()) {
-                        return checkGetRequest(newLocation.get());
+                    if (newLocation.isPresent() && numRedirects < MAX_REDIRECTS) {
+                        var next = response.uri().resolve(newLocation.get()).toString();
+                        return getContent(client, next, numRedirects + 1);
                     }
                 }
             }
 
-            return new UrlCheck(null, null);
-        } catch (IOException | InterruptedException e) {
+            var msg = String.format("Cannot download %s (status code %d)", url, statusCode);
+            return CompletableFuture.failedFuture(new RuntimeException(msg));
+        });
+    }
+
+    private static <T> T await(CompletableFuture<T> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
         }
     }
 
-    private static Optional<String> getField(HttpResponse<Void> response, String... keys) {
+    private static Optional<String> getField(HttpResponse<?> response, String... keys) {
         for (String key : keys) {
             var val = response.headers().firstValue(key);
             if (val.isPresent()) {
@@ -154,7 +283,7 @@ public class MavenRepositoryUtils {
         return Optional.empty();
     }
 
-    private static Date getDateOrNull(HttpResponse<Void> response, String... keys) {
+    private static Date getDateOrNull(HttpResponse<?> response, String... keys) {
         var headers = response.headers();
         for (var key : keys) {
             var val = headers.firstValue(key);
@@ -253,6 +382,32 @@ public class MavenRepositoryUtils {
         return new MavenRepositoryUtils(null).getMavenFilePathNonStatic(baseDir, a, extension);
     }
 
+    /**
+     * Reverses {@link #getMavenFilePath(File, Artifact, String)}.
+     *
+     * @return "g:a:v" or null, if the file does not follow the layout
+     */
+    public static String getGAVFromMavenFilePath(File baseDir, File f) {
+        var rel = baseDir.toPath().relativize(f.toPath());
+        var n = rel.getNameCount();
+        if (n < 4) {
+            return null;
+        }
+        var v = rel.getName(n - 2).toString();
+        var a = rel.getName(n - 3).toString();
+        if (!rel.getName(n - 1).toString().startsWith(a + "-" + v + ".")) {
+            return null;
+        }
+        var g = new StringBuilder();
+        for (var i = 0; i < n - 3; i++) {
+            if (i > 0) {
+                g.append('.');
+            }
+            g.append(rel.getName(i));
+        }
+        return g.append(':').append(a).append(':').append(v).toString();
+    }
+
     @Deprecated
     public static String getMavenRelativeUrlPath(Artifact a) {
         return getMavenUrlPath(a, a.packaging);
@@ -287,6 +442,36 @@ public class MavenRepositoryUtils {
     }
 
     public File downloadToM2WithClassifier(Artifact a, String classifier, String ext) {
+        try {
+            return downloadToM2WithClassifierAsync(a, classifier, ext).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Streams the file through the shared http client, see
+     * {@link VerifiedDownload}.
+     *
+     * @return the downloaded file or null, if it does not exist in the
+     *         repository or cannot be verified
+     */
+    public CompletableFuture<File> downloadToM2WithClassifierAsync(Artifact a, String classifier, String ext) {
+        return downloadToM2WithClassifierAsync(a, classifier, ext, () -> false);
+    }
+
+    /**
+     * @param isCancelled once true, the download stops, removes its partial
+     *                    output, and fails with a {@link CancellationException}
+     */
+    public CompletableFuture<File> downloadToM2WithClassifierAsync(Artifact a, String classifier, String ext, BooleanSupplier isCancelled) {
         var coord = classifier == null //
                 ? a.toString()
                 : String.format("%s (classifier: %s, ext: %s)", a, classifier, ext);
@@ -295,30 +480,73 @@ public class MavenRepositoryUtils {
 
         if (f.exists()) {
             LOG.info("Download of {} skipped: File exists.", coord);
-            return f;
+            return CompletableFuture.completedFuture(f);
         }
 
         LOG.warn("Manual downloads do not update Maven metadata, use with caution!");
         LOG.info("Downloading {} ...", coord);
         var start = System.currentTimeMillis();
+        f.getParentFile().mkdirs();
+
+        return new VerifiedDownload(httpClient, READ_TIMEOUT_MS).download(url.toString(), f, isCancelled).handle((outcome, t) -> {
+            if (t != null) {
+                var cause = t instanceof CompletionException ? t.getCause() : t;
+                if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                    LOG.error("Cannot connect to repository host: {}", a.repository);
+                    return null;
+                }
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            }
+            if (outcome == VerifiedDownload.Outcome.NOT_FOUND) {
+                LOG.error("Artifact not found in repository: {}", a);
+                return null;
+            }
+            if (outcome == VerifiedDownload.Outcome.CHECKSUM_MISMATCH) {
+                LOG.error("Checksum mismatch, download has been discarded: {}", coord);
+                return null;
+            }
+            var end = System.currentTimeMillis();
+            LOG.info("Downloaded {}, took {}ms.", coord, end - start);
+            return f;
+        });
+    }
 
-        try {
-            FileUtils.copyURLToFile(url, f, CONNECTION_TIMEOUT_MS, READ_TIMEOUT_MS);
-        } catch (UnknownHostException e) {
-            LOG.error("Unknown repository host: {}", a.repository);
-            return null;
-        } catch (FileNotFoundException e) {
-            LOG.error("Artifact not found in repository: {}", a);
-            return null;
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * @return true, if a checksum has been verified for the file when it was
+     *         placed in the .m2 folder
+     */
+    public static boolean hasVerifiedChecksum(File f) {
+        return new File(f.getPath() + ".sha1").exists() || new File(f.getPath() + ".md5").exists();
+    }
 
-        var end = System.currentTimeMillis();
-        LOG.info("Downloaded {}, took {}ms.", coord, end - start);
+    /**
+     * Places content that has already been fetched in the local .m2 folder. An
+     * existing file is kept, concurrent stores of the same artifact do not
+     * interfere.
+     */
+    public File storeInM2(Artifact a, byte[] content) {
+        var f = getM2Path(a);
+        WriteOnceFiles.write(f, content);
         return f;
     }
 
+    /**
+     * Outcome of a check together with the status code of the final response.
+     */
+    private static class Probe {
+        private final int statusCode;
+        private final UrlCheck check;
+
+        private Probe(int statusCode, UrlCheck check) {
+            this.statusCode = statusCode;
+            this.check = check;
+        }
+
+        private boolean isDefinite() {
+            return statusCode == OK.getStatusCode() || statusCode == NOT_FOUND.getStatusCode() || statusCode == GONE.getStatusCode();
+        }
+    }
+
     public static class UrlCheck {
         public final String url;
         public final Date lastModified;
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * One stage of a processing pipeline with its own, fixed number of workers.
+ * Tasks wait in a bounded queue, a submission to a full stage blocks until
+ * space becomes available, so a slow stage slows down the stages that feed it
+ * instead of buffering an unlimited amount of work. Every stage counts its
+ * tasks to make its throughput visible.
+ */
+public class PipelineStage implements Closeable {
+
+    private final String name;
+    private final ThreadPoolExecutor pool;
+    private final long startedAt;
+
+    private final AtomicLong numCompleted = new AtomicLong();
+    private final AtomicLong numFailed = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    public PipelineStage(String name, int parallelism, int capacity) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.name = name;
+        var counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(capacity), r -> {
+            var t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, PipelineStage::waitForSpace);
+        this.startedAt = System.nanoTime();
+    }
+
+    private static void waitForSpace(Runnable r, ThreadPoolExecutor pool) {
+        if (pool.isShutdown()) {
+            throw new RejectedExecutionException("Stage has been shut down");
+        }
+        try {
+            pool.getQueue().put(r);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException(e);
+        }
+    }
+
+    /**
+     * Blocks while the queue of this stage is full.
+     */
+    public CompletableFuture<Void> submit(Runnable r) {
+        return supply(() -> {
+            r.run();
+            return null;
+        });
+    }
+
+    /**
+     * Blocks while the queue of this stage is full.
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> s) {
+        return CompletableFuture.supplyAsync(() -> {
+            var start = System.nanoTime();
+            try {
+                var result = s.get();
+                numCompleted.incrementAndGet();
+                return result;
+            } catch (RuntimeException | Error e) {
+                numFailed.incrementAndGet();
+                throw e;
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }, pool);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getNumActive() {
+        return pool.getActiveCount();
+    }
+
+    public int getNumQueued() {
+        return pool.getQueue().size();
+    }
+
+    public long getNumCompleted() {
+        return numCompleted.get();
+    }
+
+    public long getNumFailed() {
+        return numFailed.get();
+    }
+
+    /**
+     * @return finished tasks (completed or failed) per second since creation
+     */
+    public double getThroughput() {
+        var elapsedS = (System.nanoTime() - startedAt) / 1e9;
+        return elapsedS > 0 ? (getNumCompleted() + getNumFailed()) / elapsedS : 0;
+    }
+
+    /**
+     * @return average time that the workers of this stage spent per task (ms)
+     */
+    public double getAvgTaskMS() {
+        var n = getNumCompleted() + getNumFailed();
+        return n > 0 ? busyNanos.get() / 1e6 / n : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d done, %d failed, %.2f/s, %.0fms/task, %d active, %d queued", //
+                name, getNumCompleted(), getNumFailed(), getThroughput(), getAvgTaskMS(), getNumActive(), getNumQueued());
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
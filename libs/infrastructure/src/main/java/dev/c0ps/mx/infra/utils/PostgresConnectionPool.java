@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Small bounded pool on top of a {@link PostgresConnector}. Idle connections
+ * are re-used as long as they remain valid, broken connections are dropped.
+ */
+public class PostgresConnectionPool implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PostgresConnectionPool.class);
+
+    private static final int VALIDATION_TIMEOUT_S = 2;
+
+    private final PostgresConnector connector;
+    private final Semaphore permits;
+    private final ConcurrentLinkedDeque<Connection> idle = new ConcurrentLinkedDeque<>();
+
+    public PostgresConnectionPool(PostgresConnector connector, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.connector = connector;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public <T> T run(SqlFunction<T> f) {
+        permits.acquireUninterruptibly();
+        Connection c = null;
+        var isBroken = false;
+        try {
+            c = borrow();
+            return f.apply(c);
+        } catch (SQLException e) {
+            isBroken = !isValid(c);
+            throw new RuntimeException(e);
+        } finally {
+            if (c != null) {
+                if (isBroken) {
+                    closeQuietly(c);
+                } else {
+                    idle.push(c);
+                }
+            }
+            permits.release();
+        }
+    }
+
+    public int numIdle() {
+        return idle.size();
+    }
+
+    @Override
+    public void close() {
+        Connection c;
+        while ((c = idle.poll()) != null) {
+            closeQuietly(c);
+        }
+    }
+
+    private Connection borrow() {
+        Connection c;
+        while ((c = idle.poll()) != null) {
+            if (isValid(c)) {
+                return c;
+            }
+            closeQuietly(c);
+        }
+        return connector.getNewConnection();
+    }
+
+    private static boolean isValid(Connection c) {
+        try {
+            return c != null && c.isValid(VALIDATION_TIMEOUT_S);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            LOG.warn("Closing Postgres connection failed", e);
+        }
+    }
+
+    public interface SqlFunction<T> {
+        T apply(Connection c) throws SQLException;
+    }
+}
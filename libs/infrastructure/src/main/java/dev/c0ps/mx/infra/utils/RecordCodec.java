@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static com.fasterxml.jackson.core.JsonGenerator.Feature.AUTO_CLOSE_TARGET;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Serializes objects in a configurable format, optionally wrapped in a deflate
+ * frame. The binary formats are written with their magic header, so decoding
+ * detects the format of the input and all formats remain readable after a
+ * store has been switched to another format (including plain JSON files).
+ */
+public class RecordCodec {
+
+    public enum Format {
+        JSON, SMILE, CBOR
+    }
+
+    private static final int HEADER_SIZE = 3;
+    private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+    // self-describe tag 55799
+    private static final byte[] CBOR_HEADER = { (byte) 0xD9, (byte) 0xD9, (byte) 0xF7 };
+    // deflate with a 32K window, never a valid start of a JSON document
+    private static final int ZLIB_CMF = 0x78;
+
+    private final ObjectMapper json;
+    private final ObjectMapper smile;
+    private final ObjectMapper cbor;
+    private final Format format;
+    private final boolean isCompressed;
+
+    public RecordCodec(ObjectMapper om) {
+        this(om, Format.JSON, false);
+    }
+
+    public RecordCodec(ObjectMapper om, Format format, boolean isCompressed) {
+        this.json = om;
+        // copies share the registered modules and configuration
+        this.smile = om.copyWith(new SmileFactory());
+        this.cbor = om.copyWith(CBORFactory.builder().enable(CBORGenerator.Feature.WRITE_TYPE_HEADER).build());
+        this.format = format;
+        this.isCompressed = isCompressed;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public boolean isCompressed() {
+        return isCompressed;
+    }
+
+    public byte[] encode(Object o) {
+        var baos = new ByteArrayOutputStream();
+        try {
+            encode(o, baos);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    public <T> T decode(byte[] bytes, Class<T> type) {
+        return decode(bytes, 0, bytes.length, type);
+    }
+
+    public <T> T decode(byte[] bytes, int offset, int length, Class<T> type) {
+        try {
+            return decode(new ByteArrayInputStream(bytes, offset, length), json.constructType(type));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void write(Object o, File f) {
+        f.getParentFile().mkdirs();
+        try (var out = new BufferedOutputStream(new FileOutputStream(f))) {
+            encode(o, out);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public <T> T read(File f, Class<T> type) {
+        return read(f, json.constructType(type));
+    }
+
+    public <T> T read(File f, TypeReference<T> type) {
+        return read(f, json.constructType(type));
+    }
+
+    private <T> T read(File f, JavaType type) {
+        try (var in = new BufferedInputStream(new FileInputStream(f))) {
+            return decode(in, type);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void encode(Object o, OutputStream out) throws IOException {
+        // the caller owns the stream
+        var writer = mapperFor(format).writer().without(AUTO_CLOSE_TARGET);
+        if (isCompressed) {
+            var dos = new DeflaterOutputStream(out);
+            writer.writeValue(dos, o);
+            dos.finish();
+        } else {
+            writer.writeValue(out, o);
+        }
+    }
+
+    private <T> T decode(InputStream in, JavaType type) throws IOException {
+        var pin = new PushbackInputStream(in, HEADER_SIZE);
+        var header = peek(pin);
+        if (header.length > 0 && (header[0] & 0xFF) == ZLIB_CMF) {
+            pin = new PushbackInputStream(new InflaterInputStream(pin), HEADER_SIZE);
+            header = peek(pin);
+        }
+        return detect(header).readValue(pin, type);
+    }
+
+    private static byte[] peek(PushbackInputStream in) throws IOException {
+        var buf = new byte[HEADER_SIZE];
+        var n = 0;
+        while (n < HEADER_SIZE) {
+            var r = in.read(buf, n, HEADER_SIZE - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        in.unread(buf, 0, n);
+        var header = new byte[n];
+        System.arraycopy(buf, 0, header, 0, n);
+        return header;
+    }
+
+    private ObjectMapper detect(byte[] header) {
+        if (startsWith(header, SMILE_HEADER)) {
+            return smile;
+        }
+        if (startsWith(header, CBOR_HEADER)) {
+            return cbor;
+        }
+        return json;
+    }
+
+    private static boolean startsWith(byte[] header, byte[] magic) {
+        if (header.length < magic.length) {
+            return false;
+        }
+        for (var i = 0; i < magic.length; i++) {
+            if (header[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ObjectMapper mapperFor(Format f) {
+        switch (f) {
+        case SMILE:
+            return smile;
+        case CBOR:
+            return cbor;
+        default:
+            return json;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent computations for the same key. The first request for a
+ * key starts the computation, all requests that arrive before it has finished
+ * receive its outcome instead of repeating the work. Requests after completion
+ * start a new computation, so computations of one key never overlap.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong numShared = new AtomicLong();
+
+    /**
+     * @param computation is only invoked if no computation for the key is in
+     *                    flight
+     * @return a future for the outcome of the (shared) computation
+     */
+    public CompletableFuture<V> get(K key, Supplier<CompletableFuture<V>> computation) {
+        var created = new CompletableFuture<V>();
+        var existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            numShared.incrementAndGet();
+            return existing.copy();
+        }
+        try {
+            computation.get().whenComplete((v, t) -> {
+                // leave the flight before completing, later requests start over
+                inFlight.remove(key, created);
+                if (t != null) {
+                    created.completeExceptionally(t);
+                } else {
+                    created.complete(v);
+                }
+            });
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(e);
+        }
+        return created.copy();
+    }
+
+    /**
+     * Synchronous variant of {@link #get(Object, Supplier)}, the computation is
+     * executed by the calling thread.
+     */
+    public V run(K key, Supplier<V> computation) {
+        var f = get(key, () -> {
+            try {
+                return CompletableFuture.completedFuture(computation.get());
+            } catch (RuntimeException | Error e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
+
+    public int getNumInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return number of requests that have been answered by a computation
+     *         that was already in flight
+     */
+    public long getNumShared() {
+        return numShared.get();
+    }
+}
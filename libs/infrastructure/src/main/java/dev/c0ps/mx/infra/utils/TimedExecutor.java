@@ -17,38 +17,74 @@ package dev.c0ps.mx.infra.utils;
 
 import static java.lang.String.format;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import dev.c0ps.mx.infra.exceptions.ExecutionTimeoutException;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
+/**
+ * Runs tasks on a pool of workers and aborts them after a deadline. Timed-out
+ * tasks are interrupted. Workers that are still running after a short grace
+ * period are considered stuck and are replaced by an additional worker until
+ * they finish, so a single hanging task cannot block all later executions.
+ */
 public class TimedExecutor {
 
-    private static final ExecutorService EXEC = Executors.newSingleThreadExecutor();
+    private static final Logger LOG = LoggerFactory.getLogger(TimedExecutor.class);
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(daemon("TimedExecutor-watchdog"));
+    private static final long KEEP_ALIVE_S = 60;
+    private static final long GRACE_PERIOD_MS = 250;
 
     private final int timeoutMS;
     private final int delayMS;
+    private final int parallelism;
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicLong numTimedOut = new AtomicLong();
+    private int numStuck = 0;
+
+    public TimedExecutor(int timeoutMS, int delayMS) {
+        this(timeoutMS, delayMS, 1);
+    }
 
     @Inject
-    public TimedExecutor(@Named("TimedExecutor.timeoutMS") int timeoutMS, @Named("TimedExecutor.delayMS") int delayMS) {
+    public TimedExecutor(@Named("TimedExecutor.timeoutMS") int timeoutMS, @Named("TimedExecutor.delayMS") int delayMS, //
+            @Named("TimedExecutor.parallelism") int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
         this.timeoutMS = timeoutMS;
         this.delayMS = delayMS;
+        this.parallelism = parallelism;
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemon("TimedExecutor-worker"));
+        pool.allowCoreThreadTimeOut(true);
     }
 
     public void run(Object execId, Runnable r) {
+        run(execId, r, timeoutMS);
+    }
+
+    public void run(Object execId, Runnable r, int deadlineMS) {
 
-        var future = EXEC.submit(r);
+        var future = submit(execId, r, deadlineMS, false);
 
         try {
-            future.get(timeoutMS, TimeUnit.MILLISECONDS);
-        } catch (TimeoutException e) {
-            var msg = "Execution timeout after %dms: %s";
-            throw new ExecutionTimeoutException(format(msg, timeoutMS, execId));
+            future.get();
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         } catch (ExecutionException e) {
@@ -65,6 +101,48 @@ public class TimedExecutor {
         delayExecution();
     }
 
+    /**
+     * Asynchronous variant of {@link #run(Object, Runnable)}, the delay is
+     * added by the worker after the task has finished. The future fails with an
+     * {@link ExecutionTimeoutException} once the timeout has passed.
+     */
+    public CompletableFuture<Void> submit(Object execId, Runnable r) {
+        return submit(execId, r, timeoutMS, true);
+    }
+
+    public CompletableFuture<Void> submit(Object execId, Runnable r, int deadlineMS) {
+        return submit(execId, r, deadlineMS, true);
+    }
+
+    private CompletableFuture<Void> submit(Object execId, Runnable r, int deadlineMS, boolean shouldDelay) {
+        var result = new CompletableFuture<Void>();
+        var task = new Task(() -> {
+            try {
+                r.run();
+                result.complete(null);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+            if (shouldDelay) {
+                delayExecution();
+            }
+        });
+        var future = pool.submit(task);
+
+        var watchdog = WATCHDOG.schedule(() -> {
+            var msg = "Execution timeout after %dms: %s";
+            if (result.completeExceptionally(new ExecutionTimeoutException(format(msg, deadlineMS, execId)))) {
+                numTimedOut.incrementAndGet();
+                abandon(task, future);
+            }
+        }, deadlineMS, TimeUnit.MILLISECONDS);
+        result.whenComplete((v, t) -> {
+            watchdog.cancel(false);
+        });
+
+        return result;
+    }
+
     public void delayExecution() {
         try {
             Thread.sleep(delayMS);
@@ -72,4 +150,91 @@ public class TimedExecutor {
             Thread.currentThread().interrupt();
         }
     }
-}
\ No newline at end of file
+
+    public int getNumActive() {
+        return pool.getActiveCount();
+    }
+
+    public int getNumQueued() {
+        return pool.getQueue().size();
+    }
+
+    public long getNumTimedOut() {
+        return numTimedOut.get();
+    }
+
+    public synchronized int getNumStuck() {
+        return numStuck;
+    }
+
+    private void abandon(Task task, Future<?> future) {
+        future.cancel(true);
+        if (task.state.compareAndSet(Task.QUEUED, Task.ABANDONED)) {
+            // never started, nothing to replace
+            return;
+        }
+        if (task.state.compareAndSet(Task.RUNNING, Task.INTERRUPTED)) {
+            // most tasks only need a moment to clean up after the interrupt
+            WATCHDOG.schedule(() -> {
+                if (task.state.compareAndSet(Task.INTERRUPTED, Task.STUCK)) {
+                    LOG.warn("Worker does not react to interrupt, adding replacement worker");
+                    resize(+1);
+                }
+            }, GRACE_PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void resize(int delta) {
+        numStuck += delta;
+        var size = parallelism + numStuck;
+        // core size must never exceed the max size
+        if (delta > 0) {
+            pool.setMaximumPoolSize(size);
+            pool.setCorePoolSize(size);
+        } else {
+            pool.setCorePoolSize(size);
+            pool.setMaximumPoolSize(size);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        var counter = new AtomicInteger();
+        return r -> {
+            var t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private class Task implements Runnable {
+
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+        private static final int STUCK = 4;
+        private static final int INTERRUPTED = 5;
+
+        private final AtomicInteger state = new AtomicInteger(QUEUED);
+        private final Runnable r;
+
+        private Task(Runnable r) {
+            this.r = r;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return;
+            }
+            try {
+                r.run();
+            } finally {
+                if (state.getAndSet(DONE) == STUCK) {
+                    // the replacement worker is no longer required
+                    resize(-1);
+                }
+            }
+        }
+    }
+}
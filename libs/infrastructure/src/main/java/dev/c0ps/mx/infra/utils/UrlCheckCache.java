@@ -0,0 +1,187 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils.UrlCheck;
+
+/**
+ * Remembers the outcome of repository probes, so the same URL is not checked
+ * over the network again before its entry expires. Found and missing URLs
+ * have separate TTLs. When a file is given, all entries are appended to an
+ * {@link AppendLog} and survive restarts. The log can be shared by several
+ * processes, its compactions also pick up the entries of the others.
+ */
+public class UrlCheckCache implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UrlCheckCache.class);
+
+    private static final String SEP = "\t";
+    private static final String NONE = "-";
+
+    private final AppendLog log;
+    private final long positiveTtlMS;
+    private final long negativeTtlMS;
+    private final LongSupplier clock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public UrlCheckCache(File file, long positiveTtlMS, long negativeTtlMS) {
+        this(file, positiveTtlMS, negativeTtlMS, System::currentTimeMillis);
+    }
+
+    UrlCheckCache(File file, long positiveTtlMS, long negativeTtlMS, LongSupplier clock) {
+        this.positiveTtlMS = positiveTtlMS;
+        this.negativeTtlMS = negativeTtlMS;
+        this.clock = clock;
+        if (file != null) {
+            log = new AppendLog(file, this::compact);
+            log.compact();
+            LOG.info("Loaded {} url checks from {}", entries.size(), file);
+        } else {
+            log = null;
+        }
+    }
+
+    /**
+     * @return a cache that does not remember anything
+     */
+    public static UrlCheckCache disabled() {
+        return new UrlCheckCache(null, 0, 0);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the cached check or null, if the url is unknown or its entry has
+     *         expired
+     */
+    public UrlCheck get(String url) {
+        var e = entries.get(url);
+        if (e == null) {
+            return null;
+        }
+        if (isExpired(e, clock.getAsLong())) {
+            entries.remove(url, e);
+            return null;
+        }
+        return e.check;
+    }
+
+    public void put(String url, UrlCheck check) {
+        var isCacheable = url != null && check != null && getTtl(check) > 0 //
+                && !hasSeparators(url) && !hasSeparators(check.url);
+        if (!isCacheable) {
+            return;
+        }
+        var e = new Entry(clock.getAsLong(), check);
+        entries.put(url, e);
+        if (log != null) {
+            log.append(toLine(url, e));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private long getTtl(UrlCheck check) {
+        return check.url != null ? positiveTtlMS : negativeTtlMS;
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return now - e.checkedAt >= getTtl(e.check);
+    }
+
+    private List<String> compact(List<String> lines) {
+        var now = clock.getAsLong();
+        var loaded = new HashMap<String, Entry>();
+        for (var line : lines) {
+            var parts = line.split(SEP);
+            if (parts.length != 4) {
+                LOG.warn("Skipping malformed line in url-check cache {}: {}", log.getFile(), line);
+                continue;
+            }
+            try {
+                var url = fromField(parts[2]);
+                var lastModified = fromField(parts[3]);
+                var check = new UrlCheck(url, lastModified == null ? null : new Date(Long.parseLong(lastModified)));
+                // later lines override earlier ones
+                loaded.put(parts[1], new Entry(Long.parseLong(parts[0]), check));
+            } catch (NumberFormatException ex) {
+                LOG.warn("Skipping malformed line in url-check cache {}: {}", log.getFile(), line);
+            }
+        }
+        loaded.values().removeIf(e -> isExpired(e, now));
+
+        var compacted = new ArrayList<String>(loaded.size());
+        for (var e : loaded.entrySet()) {
+            // other processes might have checked the same url more recently
+            entries.merge(e.getKey(), e.getValue(), (a, b) -> a.checkedAt >= b.checkedAt ? a : b);
+            compacted.add(toLine(e.getKey(), e.getValue()));
+        }
+        return compacted;
+    }
+
+    private static String toLine(String url, Entry e) {
+        var lastModified = e.check.lastModified == null ? null : Long.toString(e.check.lastModified.getTime());
+        return new StringBuilder() //
+                .append(e.checkedAt).append(SEP) //
+                .append(url).append(SEP) //
+                .append(toField(e.check.url)).append(SEP) //
+                .append(toField(lastModified)) //
+                .toString();
+    }
+
+    private static String toField(String s) {
+        return s == null ? NONE : s;
+    }
+
+    private static String fromField(String s) {
+        return NONE.equals(s) ? null : s;
+    }
+
+    private static boolean hasSeparators(String s) {
+        return s != null && (s.contains(SEP) || s.contains("\n") || NONE.equals(s));
+    }
+
+    private static class Entry {
+        private final long checkedAt;
+        private final UrlCheck check;
+
+        private Entry(long checkedAt, UrlCheck check) {
+            this.checkedAt = checkedAt;
+            this.check = check;
+        }
+    }
+}
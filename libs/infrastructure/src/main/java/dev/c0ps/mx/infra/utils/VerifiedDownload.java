@@ -0,0 +1,483 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow.Subscription;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams a file from a Maven repository into a <code>.part</code> file next
+ * to its target and moves it into place atomically, once it is complete. The
+ * published <code>.sha1</code> (or <code>.md5</code>) is verified while the
+ * data is written and stored next to the target, like Maven does. Incomplete
+ * <code>.part</code> files of earlier attempts are resumed with a range
+ * request. Cancelled downloads delete their part and never move it into place.
+ *
+ * Downloads of the same target in this process wait for the running one.
+ * Across processes (e.g., that share the .m2 folder), the part is locked while
+ * it is written. Only one channel per part is opened in this process, closing
+ * a second one would release the lock of the first. Waiting downloads finish
+ * without a request, once the target exists.
+ */
+public class VerifiedDownload {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VerifiedDownload.class);
+
+    public static final String PART_EXT = ".part";
+
+    private static final int MAX_REDIRECTS = 10;
+    private static final int SC_OK = 200;
+    private static final int SC_PARTIAL_CONTENT = 206;
+    private static final int SC_RANGE_NOT_SATISFIABLE = 416;
+    private static final long LOCK_RETRY_MS = 100;
+
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-.*");
+    private static final Pattern HEX = Pattern.compile("[0-9a-fA-F]+");
+
+    private static final List<Checksum> CHECKSUMS = List.of( //
+            new Checksum("sha1", "SHA-1", 40), //
+            new Checksum("md5", "MD5", 32));
+
+    // marks a response that cannot be appended to the existing part
+    private static final String RESTART = "restart";
+
+    // parts that are downloaded by this process, completed once the channel is closed
+    private static final ConcurrentHashMap<Path, CompletableFuture<Void>> PARTS_IN_PROGRESS = new ConcurrentHashMap<>();
+
+    public enum Outcome {
+        DOWNLOADED, NOT_FOUND, CHECKSUM_MISMATCH
+    }
+
+    private final HttpClient client;
+    private final int timeoutMS;
+
+    public VerifiedDownload(HttpClient client, int timeoutMS) {
+        this.client = client;
+        this.timeoutMS = timeoutMS;
+    }
+
+    /**
+     * @return {@link Outcome#DOWNLOADED}, if the target has been downloaded and
+     *         verified (or has been downloaded concurrently)
+     */
+    public CompletableFuture<Outcome> download(String url, File target) {
+        return download(url, target, () -> false);
+    }
+
+    /**
+     * @param isCancelled is checked before every request, for every received
+     *                    chunk, and before the part is moved into place. Once
+     *                    it is true, the download fails with a
+     *                    {@link CancellationException}.
+     */
+    public CompletableFuture<Outcome> download(String url, File target, BooleanSupplier isCancelled) {
+        var part = new File(target.getPath() + PART_EXT);
+        return lockPart(url, target, part, isCancelled, false).thenCompose(channel -> {
+            if (channel == null) {
+                return CompletableFuture.completedFuture(Outcome.DOWNLOADED);
+            }
+            CompletableFuture<Optional<Checksum>> checksums;
+            try {
+                checksums = fetchChecksum(url, 0);
+            } catch (RuntimeException e) {
+                checksums = CompletableFuture.failedFuture(e);
+            }
+            var result = checksums.thenCompose(checksum -> {
+                var algorithm = checksum.map(c -> c.algorithm).orElse(null);
+                return fetch(url, part, channel, algorithm, 0, true, isCancelled).thenApply(digest -> {
+                    if (isCancelled.getAsBoolean()) {
+                        FileUtils.deleteQuietly(part);
+                        throw new CancellationException(String.format("Download of %s has been cancelled", url));
+                    }
+                    if (digest == null) {
+                        FileUtils.deleteQuietly(part);
+                        return Outcome.NOT_FOUND;
+                    }
+                    if (checksum.isPresent() && !checksum.get().value.equalsIgnoreCase(digest)) {
+                        LOG.error("Checksum mismatch for {}: expected {} {}, but was {}", url, checksum.get().ext, checksum.get().value, digest);
+                        FileUtils.deleteQuietly(part);
+                        return Outcome.CHECKSUM_MISMATCH;
+                    }
+                    if (checksum.isEmpty()) {
+                        LOG.info("No checksum published for {}, download is not verified", url);
+                    }
+                    moveIntoPlace(part, target, checksum);
+                    return Outcome.DOWNLOADED;
+                });
+            });
+            // releases the lock, also when the download failed
+            result.whenComplete((o, t) -> {
+                closeQuietly(channel, part);
+                release(part);
+            });
+            return result;
+        });
+    }
+
+    /**
+     * @return a channel of the part that holds its lock or null, if the target
+     *         exists (e.g., after waiting for a concurrent download)
+     */
+    private static CompletableFuture<FileChannel> lockPart(String url, File target, File part, BooleanSupplier isCancelled, boolean hasWaited) {
+        if (isCancelled.getAsBoolean()) {
+            return CompletableFuture.failedFuture(new CancellationException(String.format("Download of %s has been cancelled", url)));
+        }
+        if (target.exists()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var running = PARTS_IN_PROGRESS.putIfAbsent(key(part), new CompletableFuture<>());
+        if (running != null) {
+            if (!hasWaited) {
+                LOG.info("Waiting for concurrent download of {}", url);
+            }
+            // wakes up regularly to check for cancellation
+            var next = running.copy().completeOnTimeout(null, LOCK_RETRY_MS, TimeUnit.MILLISECONDS);
+            return next.thenCompose(x -> lockPart(url, target, part, isCancelled, true));
+        }
+        FileChannel channel = null;
+        try {
+            part.getParentFile().mkdirs();
+            channel = FileChannel.open(part.toPath(), CREATE, READ, WRITE);
+            if (channel.tryLock() != null) {
+                if (!target.exists()) {
+                    return CompletableFuture.completedFuture(channel);
+                }
+                // finished concurrently, the part has been re-created
+                FileUtils.deleteQuietly(part);
+                closeQuietly(channel, part);
+                release(part);
+                return CompletableFuture.completedFuture(null);
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            // the part is only ever locked through this class, overlaps are bugs
+            closeQuietly(channel, part);
+            release(part);
+            return CompletableFuture.failedFuture(e);
+        }
+        // locked by another process, this is the only channel of this process
+        closeQuietly(channel, part);
+        release(part);
+        if (!hasWaited) {
+            LOG.info("Waiting for concurrent download of {}", url);
+        }
+        var retry = CompletableFuture.delayedExecutor(LOCK_RETRY_MS, TimeUnit.MILLISECONDS);
+        return CompletableFuture.supplyAsync(() -> null, retry).thenCompose(x -> lockPart(url, target, part, isCancelled, true));
+    }
+
+    private static void release(File part) {
+        var running = PARTS_IN_PROGRESS.remove(key(part));
+        if (running != null) {
+            running.complete(null);
+        }
+    }
+
+    private static Path key(File part) {
+        return part.toPath().toAbsolutePath().normalize();
+    }
+
+    private static void closeQuietly(FileChannel channel, File part) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.warn("Cannot close {}", part, e);
+        }
+    }
+
+    /**
+     * The checksum is written after the target, an existing checksum file marks
+     * a verified download.
+     */
+    private static void moveIntoPlace(File part, File target, Optional<Checksum> checksum) {
+        try {
+            Files.move(part.toPath(), target.toPath(), ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // downloaded concurrently
+            FileUtils.deleteQuietly(part);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (checksum.isPresent()) {
+            var c = checksum.get();
+            WriteOnceFiles.write(new File(target.getPath() + "." + c.ext), c.value.getBytes(UTF_8));
+        }
+    }
+
+    private CompletableFuture<Optional<Checksum>> fetchChecksum(String url, int idx) {
+        if (idx >= CHECKSUMS.size()) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        var c = CHECKSUMS.get(idx);
+        var req = request(url + "." + c.ext).GET().build();
+        return followRedirects(req, BodyHandlers.ofString(), 0).thenCompose(res -> {
+            if (res.statusCode() == SC_OK) {
+                // files contain the hash, optionally followed by the file name
+                var value = res.body().trim().split("\\s+")[0];
+                if (value.length() == c.length && HEX.matcher(value).matches()) {
+                    return CompletableFuture.completedFuture(Optional.of(c.withValue(value)));
+                }
+                LOG.warn("Ignoring malformed checksum {}.{}: {}", url, c.ext, value);
+            }
+            return fetchChecksum(url, idx + 1);
+        });
+    }
+
+    /**
+     * @param channel of the locked part
+     * @return hex digest of the complete part ("" if no algorithm is given) or
+     *         null, if the file does not exist
+     */
+    private CompletableFuture<String> fetch(String url, File part, FileChannel channel, String algorithm, int numRedirects, boolean mayResume,
+            BooleanSupplier isCancelled) {
+        if (isCancelled.getAsBoolean()) {
+            FileUtils.deleteQuietly(part);
+            return CompletableFuture.failedFuture(new CancellationException(String.format("Download of %s has been cancelled", url)));
+        }
+        long offset;
+        try {
+            offset = mayResume ? channel.size() : 0;
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        var req = request(url).GET();
+        if (offset > 0) {
+            LOG.info("Resuming download of {} at byte {}", url, offset);
+            req.header("Range", "bytes=" + offset + "-");
+        }
+        BodyHandler<String> handler = info -> subscriberFor(info, part, channel, offset, algorithm, isCancelled);
+        return client.sendAsync(req.build(), handler).thenCompose(res -> {
+            var sc = res.statusCode();
+            if (sc == SC_RANGE_NOT_SATISFIABLE || RESTART.equals(res.body())) {
+                // the part is truncated, deleting it would give up its lock
+                return fetch(url, part, channel, algorithm, numRedirects, false, isCancelled);
+            }
+            if (sc == SC_OK || sc == SC_PARTIAL_CONTENT) {
+                return CompletableFuture.completedFuture(res.body());
+            }
+            var location = res.headers().firstValue("Location");
+            if (sc >= 300 && sc < 400 && location.isPresent() && numRedirects < MAX_REDIRECTS) {
+                var next = res.uri().resolve(location.get()).toString();
+                return fetch(next, part, channel, algorithm, numRedirects + 1, mayResume, isCancelled);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    private static BodySubscriber<String> subscriberFor(ResponseInfo info, File part, FileChannel channel, long offset, String algorithm, BooleanSupplier isCancelled) {
+        if (info.statusCode() == SC_OK) {
+            return new PartWriter(part, channel, 0, algorithm, isCancelled);
+        }
+        if (info.statusCode() == SC_PARTIAL_CONTENT) {
+            var range = info.headers().firstValue("Content-Range").map(CONTENT_RANGE::matcher);
+            var isExpectedRange = range.isPresent() && range.get().matches() && Long.parseLong(range.get().group(1)) == offset;
+            return isExpectedRange //
+                    ? new PartWriter(part, channel, offset, algorithm, isCancelled)
+                    : BodySubscribers.replacing(RESTART);
+        }
+        return BodySubscribers.replacing(null);
+    }
+
+    private <T> CompletableFuture<HttpResponse<T>> followRedirects(HttpRequest req, BodyHandler<T> handler, int numRedirects) {
+        return client.sendAsync(req, handler).thenCompose(res -> {
+            var sc = res.statusCode();
+            var location = res.headers().firstValue("Location");
+            if (sc >= 300 && sc < 400 && location.isPresent() && numRedirects < MAX_REDIRECTS) {
+                var next = request(res.uri().resolve(location.get()).toString()).GET().build();
+                return followRedirects(next, handler, numRedirects + 1);
+            }
+            return CompletableFuture.completedFuture(res);
+        });
+    }
+
+    private HttpRequest.Builder request(String url) {
+        return HttpRequest.newBuilder() //
+                .uri(URI.create(url)) //
+                .timeout(Duration.ofMillis(timeoutMS));
+    }
+
+    /**
+     * Writes the received buffers directly to the file channel and updates the
+     * digest on the way, the body is never copied into an intermediate array.
+     * The channel is owned (and closed) by the download.
+     */
+    private static class PartWriter implements BodySubscriber<String> {
+
+        private final File part;
+        private final FileChannel channel;
+        private final long offset;
+        private final String algorithm;
+        private final BooleanSupplier isCancelled;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private MessageDigest digest;
+        private Subscription subscription;
+
+        private PartWriter(File part, FileChannel channel, long offset, String algorithm, BooleanSupplier isCancelled) {
+            this.part = part;
+            this.channel = channel;
+            this.offset = offset;
+            this.algorithm = algorithm;
+            this.isCancelled = isCancelled;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            try {
+                digest = algorithm == null ? null : MessageDigest.getInstance(algorithm);
+                if (offset > 0) {
+                    seedDigest();
+                } else {
+                    channel.truncate(0);
+                }
+                channel.position(offset);
+            } catch (IOException | NoSuchAlgorithmException e) {
+                fail(e);
+                return;
+            }
+            s.request(1);
+        }
+
+        private void seedDigest() throws IOException {
+            channel.truncate(offset);
+            if (digest == null) {
+                return;
+            }
+            var buf = ByteBuffer.allocate(64 * 1024);
+            channel.position(0);
+            while (channel.read(buf) > 0) {
+                buf.flip();
+                digest.update(buf);
+                buf.clear();
+            }
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (isCancelled.getAsBoolean()) {
+                fail(new CancellationException(String.format("Download into %s has been cancelled", part)));
+                FileUtils.deleteQuietly(part);
+                return;
+            }
+            try {
+                for (var buf : items) {
+                    if (digest != null) {
+                        digest.update(buf.duplicate());
+                    }
+                    while (buf.hasRemaining()) {
+                        channel.write(buf);
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // keep the part to resume later
+            result.completeExceptionally(t);
+        }
+
+        @Override
+        public void onComplete() {
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            result.complete(digest == null ? "" : String.format("%0" + (digest.getDigestLength() * 2) + "x", new BigInteger(1, digest.digest())));
+        }
+
+        private void fail(Exception e) {
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            result.completeExceptionally(e);
+        }
+    }
+
+    private static class Checksum {
+        private final String ext;
+        private final String algorithm;
+        private final int length;
+        private final String value;
+
+        private Checksum(String ext, String algorithm, int length) {
+            this(ext, algorithm, length, null);
+        }
+
+        private Checksum(String ext, String algorithm, int length, String value) {
+            this.ext = ext;
+            this.algorithm = algorithm;
+            this.length = length;
+            this.value = value;
+        }
+
+        private Checksum withValue(String value) {
+            return new Checksum(ext, algorithm, length, value);
+        }
+    }
+}
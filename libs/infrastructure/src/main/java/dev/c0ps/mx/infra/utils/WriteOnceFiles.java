@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+
+/**
+ * Files that are written once and never modified afterwards (e.g., blobs or
+ * cache entries). Content is written to a temporary file in the target folder
+ * first and then moved in place, readers never see a partial file and need no
+ * locking. Concurrent writers of the same file are expected to write
+ * equivalent content, the first one wins.
+ */
+public class WriteOnceFiles {
+
+    private static final String TMP_EXT = ".tmp";
+
+    private WriteOnceFiles() {
+        // static helpers only
+    }
+
+    /**
+     * @return the file of the given hash in a sub folder of the first two
+     *         characters, which avoids huge directories
+     */
+    public static File fanOut(File dir, String hash, String ext) {
+        return new File(new File(dir, hash.substring(0, 2)), hash.substring(2) + ext);
+    }
+
+    /**
+     * Writes the file, unless it already exists.
+     */
+    public static void write(File f, byte[] content) {
+        write(f, tmp -> Files.write(tmp.toPath(), content));
+    }
+
+    /**
+     * Writes the file through the given writer, unless it already exists.
+     */
+    public static void write(File f, ContentWriter writer) {
+        if (f.exists()) {
+            return;
+        }
+        try {
+            var parent = f.getAbsoluteFile().getParentFile();
+            parent.mkdirs();
+            // unique per writer, a shared name would mix concurrent writes
+            var tmp = Files.createTempFile(parent.toPath(), f.getName(), TMP_EXT).toFile();
+            try {
+                writer.write(tmp);
+                Files.move(tmp.toPath(), f.toPath(), ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // written by another worker or process in the meantime
+            } finally {
+                Files.deleteIfExists(tmp.toPath());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public interface ContentWriter {
+        void write(File tmp) throws IOException;
+    }
+}
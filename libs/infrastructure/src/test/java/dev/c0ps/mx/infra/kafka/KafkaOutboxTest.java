@@ -0,0 +1,132 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.franz.Kafka;
+import dev.c0ps.franz.Lane;
+
+public class KafkaOutboxTest {
+
+    private Kafka kafka;
+    private KafkaOutbox sut;
+    private List<Thread> publishers;
+
+    @BeforeEach
+    public void setup() {
+        kafka = mock(Kafka.class);
+        publishers = new ArrayList<>();
+        doAnswer(i -> publishers.add(Thread.currentThread())).when(kafka).publish(anyString(), any(), anyString(), any(Lane.class));
+        sut = new KafkaOutbox(kafka, 10);
+    }
+
+    @Test
+    public void messagesArePublishedOnTheWaitingThread() {
+        var f = CompletableFuture.runAsync(() -> {
+            sut.publish("k1", "m1", "t", Lane.NORMAL);
+            sut.publish("k2", "m2", "t", Lane.PRIORITY);
+        });
+        sut.publishUntilDone(f);
+
+        var o = inOrder(kafka);
+        o.verify(kafka).publish("k1", "m1", "t", Lane.NORMAL);
+        o.verify(kafka).publish("k2", "m2", "t", Lane.PRIORITY);
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), publishers);
+        assertEquals(0, sut.getNumPending());
+    }
+
+    @Test
+    public void tasksRunOnTheWaitingThread() {
+        var f = CompletableFuture.supplyAsync(() -> "m") //
+                .thenAcceptAsync(m -> kafka.publish("k", m, "t", Lane.NORMAL), sut);
+        sut.publishUntilDone(f);
+
+        verify(kafka).publish("k", "m", "t", Lane.NORMAL);
+        assertEquals(List.of(Thread.currentThread()), publishers);
+    }
+
+    @Test
+    public void messagesAreQueuedUntilSomebodyWaits() {
+        sut.publish("m", "t", Lane.ERROR);
+        assertEquals(1, sut.getNumPending());
+        verify(kafka, never()).publish(any(), anyString(), any(Lane.class));
+
+        sut.publishUntilDone(CompletableFuture.completedFuture(null));
+        verify(kafka).publish("m", "t", Lane.ERROR);
+    }
+
+    @Test
+    public void pendingMessagesArePublishedWithoutWaiting() {
+        sut.publish("k1", "m1", "t", Lane.NORMAL);
+        sut.publish("k2", "m2", "t", Lane.NORMAL);
+        sut.publishPending();
+
+        var o = inOrder(kafka);
+        o.verify(kafka).publish("k1", "m1", "t", Lane.NORMAL);
+        o.verify(kafka).publish("k2", "m2", "t", Lane.NORMAL);
+        assertEquals(0, sut.getNumPending());
+        verify(kafka, never()).sendHeartbeat();
+    }
+
+    @Test
+    public void messagesOfFailedWorkAreStillPublished() {
+        var e = new RuntimeException();
+        var f = CompletableFuture.runAsync(() -> {
+            sut.publish("k", "m", "t", Lane.NORMAL);
+            throw e;
+        });
+        sut.publishUntilDone(f);
+
+        verify(kafka).publish("k", "m", "t", Lane.NORMAL);
+        assertSame(e, f.handle((v, t) -> t.getCause()).join());
+    }
+
+    @Test
+    public void heartbeatsAreSentWhileWaiting() {
+        var f = new CompletableFuture<Void>();
+        CompletableFuture.runAsync(() -> {
+            sleep(100);
+            f.complete(null);
+        });
+        sut.publishUntilDone(f);
+        verify(kafka, atLeastOnce()).sendHeartbeat();
+    }
+
+    private static void sleep(int ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class AppendLogTest {
+
+    @TempDir
+    private File tempDir;
+
+    private File file;
+    private AppendLog sut;
+
+    @BeforeEach
+    public void setup() {
+        file = new File(tempDir, "log");
+        sut = new AppendLog(file, AppendLogTest::distinct);
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void compactingMissingFile() throws IOException {
+        sut.compact();
+        assertEquals(List.of(), lines());
+    }
+
+    @Test
+    public void linesAreAppended() throws IOException {
+        sut.append("a");
+        sut.append("b");
+        sut.append("a");
+        assertEquals(List.of("a", "b", "a"), lines());
+    }
+
+    @Test
+    public void compactionReplacesLines() throws IOException {
+        sut.append("a");
+        sut.append("b");
+        sut.append("a");
+        sut.compact();
+        assertEquals(List.of("a", "b"), lines());
+        // no temporary files are left behind
+        assertEquals(List.of("log", "log.lock"), List.of(tempDir.list()).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void appendsOfOtherInstancesSurviveCompactions() throws IOException {
+        try (var other = new AppendLog(file, AppendLogTest::distinct)) {
+            sut.append("a");
+            other.append("b");
+            sut.compact();
+            other.append("c");
+            sut.append("a");
+            other.compact();
+        }
+        assertEquals(List.of("a", "b", "c"), lines());
+    }
+
+    @Test
+    public void growingLogIsCompacted() throws IOException {
+        for (var i = 0; i < 20_000; i++) {
+            sut.append("some line " + (i % 10));
+        }
+        assertTrue(lines().size() < 10_000);
+    }
+
+    private List<String> lines() throws IOException {
+        return file.exists() //
+                ? Files.readAllLines(file.toPath(), UTF_8)
+                : List.of();
+    }
+
+    private static List<String> distinct(List<String> lines) {
+        return lines.stream().distinct().collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void noFalseNegatives() {
+        var sut = new BloomFilter(10_000, 0.01);
+        for (var i = 0; i < 10_000; i++) {
+            sut.add(LongHashTable.hash("a" + i));
+        }
+        for (var i = 0; i < 10_000; i++) {
+            assertTrue(sut.mightContain(LongHashTable.hash("a" + i)));
+        }
+    }
+
+    @Test
+    public void falsePositiveRateIsRespected() {
+        var sut = new BloomFilter(10_000, 0.01);
+        for (var i = 0; i < 10_000; i++) {
+            sut.add(LongHashTable.hash("a" + i));
+        }
+        var numFalsePositives = 0;
+        for (var i = 0; i < 10_000; i++) {
+            if (sut.mightContain(LongHashTable.hash("b" + i))) {
+                numFalsePositives++;
+            }
+        }
+        // generous bound to avoid flakiness
+        assertTrue(numFalsePositives < 300, "too many false positives: " + numFalsePositives);
+    }
+
+    @Test
+    public void invalidConfiguration() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new BloomFilter(0, 0.01);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            new BloomFilter(10, 1);
+        });
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class InterProcessLockTest {
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    public void operationResultIsReturned() {
+        try (var sut = new InterProcessLock(new File(tempDir, "a/b/x.lock"))) {
+            assertEquals("x", sut.call(() -> "x"));
+            assertTrue(sut.getFile().exists());
+        }
+    }
+
+    @Test
+    public void instancesOfTheSameFileCanBeUsedTogether() {
+        var f = new File(tempDir, "x.lock");
+        try (var a = new InterProcessLock(f); var b = new InterProcessLock(f)) {
+            a.run(() -> {
+            });
+            b.run(() -> {
+            });
+            a.run(() -> {
+            });
+        }
+    }
+
+    @Test
+    public void closedLockCannotBeUsed() {
+        var sut = new InterProcessLock(new File(tempDir, "x.lock"));
+        sut.close();
+        assertThrows(IllegalStateException.class, () -> {
+            sut.run(() -> {
+            });
+        });
+    }
+
+    @Test
+    public void otherProcessWaitsForTheOperation() throws Exception {
+        var f = new File(tempDir, "x.lock");
+        var marker = new File(tempDir, "marker");
+        Process p;
+        try (var sut = new InterProcessLock(f)) {
+            p = sut.call(() -> {
+                var other = startOtherProcess(f, marker);
+                sleep(500);
+                assertFalse(marker.exists());
+                return other;
+            });
+        }
+        if (!p.waitFor(1, TimeUnit.MINUTES)) {
+            p.destroyForcibly();
+            throw new IllegalStateException("Other process did not terminate");
+        }
+        assertEquals(0, p.exitValue());
+        assertTrue(marker.exists());
+    }
+
+    private static Process startOtherProcess(File f, File marker) {
+        var java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        try {
+            return new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), OtherProcess.class.getName(), f.getAbsolutePath(), marker.getAbsolutePath()) //
+                    .inheritIO() //
+                    .start();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void sleep(int ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class OtherProcess {
+        public static void main(String[] args) {
+            try (var lock = new InterProcessLock(new File(args[0]))) {
+                lock.run(() -> {
+                    try {
+                        new File(args[1]).createNewFile();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class LongHashTableTest {
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    public void emptyTable() {
+        var sut = new LongHashTable();
+        assertEquals(0, sut.size());
+        assertEquals(-1, sut.get(123));
+        assertFalse(sut.contains(123));
+    }
+
+    @Test
+    public void putAndGet() {
+        var sut = new LongHashTable();
+        assertEquals(-1, sut.put(123, 7));
+        assertEquals(7, sut.get(123));
+        assertEquals(7, sut.put(123, 255));
+        assertEquals(255, sut.get(123));
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    public void reservedKeyAndInvalidValues() {
+        var sut = new LongHashTable();
+        assertThrows(IllegalArgumentException.class, () -> {
+            sut.put(0, 1);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            sut.put(1, 256);
+        });
+    }
+
+    @Test
+    public void hashIsStableAndNonZero() {
+        assertEquals(LongHashTable.hash("g:a:1"), LongHashTable.hash("g:a:1"));
+        assertNotEquals(LongHashTable.hash("g:a:1"), LongHashTable.hash("g:a:2"));
+        assertNotEquals(0, LongHashTable.hash(""));
+    }
+
+    @Test
+    public void randomOperationsMatchHashMap() {
+        var rnd = new Random(1234);
+        var expected = new HashMap<Long, Integer>();
+        var sut = new LongHashTable();
+        for (var i = 0; i < 50_000; i++) {
+            // small key space to provoke collisions, removals and updates
+            var key = 1 + rnd.nextInt(5000);
+            if (rnd.nextInt(3) == 0) {
+                var old = expected.remove((long) key);
+                assertEquals(old == null ? -1 : old, sut.remove(key));
+            } else {
+                var v = rnd.nextInt(256);
+                var old = expected.put((long) key, v);
+                assertEquals(old == null ? -1 : old, sut.put(key, v));
+            }
+        }
+        assertEquals(expected.size(), sut.size());
+        for (long key = 1; key <= 5000; key++) {
+            assertEquals(expected.getOrDefault(key, -1), sut.get(key));
+        }
+    }
+
+    @Test
+    public void forEachVisitsAllEntries() {
+        var sut = new LongHashTable();
+        sut.put(1, 10);
+        sut.put(2, 20);
+        var actual = new HashMap<Long, Integer>();
+        sut.forEach(actual::put);
+        assertEquals(2, actual.size());
+        assertEquals(20, actual.get(2L));
+    }
+
+    @Test
+    public void clear() {
+        var sut = new LongHashTable();
+        for (var i = 1; i < 5000; i++) {
+            sut.put(i, 1);
+        }
+        sut.clear();
+        assertEquals(0, sut.size());
+        assertFalse(sut.contains(1));
+    }
+
+    @Test
+    public void mappedTableSurvivesReopenAndGrowth() {
+        var f = new File(tempDir, "x/table");
+        try (var sut = new LongHashTable(f)) {
+            for (var i = 1; i <= 10_000; i++) {
+                sut.put(i, i % 256);
+            }
+        }
+        try (var sut = new LongHashTable(f)) {
+            assertEquals(10_000, sut.size());
+            for (var i = 1; i <= 10_000; i++) {
+                assertEquals(i % 256, sut.get(i));
+            }
+            assertTrue(sut.contains(1));
+        }
+        assertFalse(new File(tempDir, "x/table.tmp").exists());
+    }
+
+    @Test
+    public void refreshPicksUpChangesOfOtherInstances() {
+        var f = new File(tempDir, "table");
+        try (var a = new LongHashTable(f); var b = new LongHashTable(f)) {
+            a.put(1, 2);
+            b.refresh();
+            assertEquals(1, b.size());
+            assertEquals(2, b.get(1));
+
+            // growing replaces the file
+            for (var i = 2; i <= 10_000; i++) {
+                a.put(i, i % 256);
+            }
+            b.refresh();
+            assertEquals(10_000, b.size());
+            assertEquals(10_000 % 256, b.get(10_000));
+
+            b.put(10_001, 1);
+            a.refresh();
+            assertEquals(10_001, a.size());
+            assertEquals(1, a.get(10_001));
+        }
+    }
+
+    @Test
+    public void invalidFile() throws Exception {
+        var f = new File(tempDir, "x");
+        Files.writeString(f.toPath(), "not a table");
+        assertThrows(IllegalStateException.class, () -> {
+            new LongHashTable(f);
+        });
+    }
+}
@@ -20,16 +20,28 @@ import static jakarta.ws.rs.core.MediaType.TEXT_PLAIN;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.math.BigInteger;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.AfterAll;
@@ -155,6 +167,228 @@ public class MavenRepositoryUtilsTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void checkGetRequest_resolvesRelativeRedirects() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(301, TEXT_PLAIN, SOME_CONTENT).setLocation("/x/a-1.2.3.jar");
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var actual = sut.checkGetRequestNonStatic(a);
+        var expected = new UrlCheck("http://127.0.0.1:" + HTTP_PORT + "/x/a-1.2.3.jar", null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void checkGetRequest_stopsRedirectLoops() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        for (var i = 0; i < 11; i++) {
+            server.addResponse(302, TEXT_PLAIN, SOME_CONTENT).setLocation(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.jar");
+        }
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var actual = sut.checkGetRequestNonStatic(a);
+        var expected = new UrlCheck(null, null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void checkGetRequest_fallsBackToGetWhenHeadIsNotAllowed() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(405, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var actual = sut.checkGetRequestNonStatic(a);
+        var expected = new UrlCheck(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.jar", null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void checkGetRequestAsync_basicExistence() throws Exception {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        var actual = sut.checkGetRequestAsync(a).get();
+        var expected = new UrlCheck(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.jar", null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void checkGetRequestAsync_basicAbsence() throws Exception {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+
+        var actual = sut.checkGetRequestAsync(a).get();
+        var expected = new UrlCheck(null, null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void getContent_basicExistence() {
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var actual = sut.getContentNonStatic(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.pom");
+        assertEquals(SOME_CONTENT, new String(actual, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void getContent_followsRedirects() {
+        server.addResponse(301, TEXT_PLAIN, "").setLocation("/x/a-1.2.3.pom");
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var actual = sut.getContentNonStatic(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.pom");
+        assertEquals(SOME_CONTENT, new String(actual, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void getContent_basicAbsence() {
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+
+        assertThrows(RuntimeException.class, () -> {
+            sut.getContentNonStatic(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.pom");
+        });
+    }
+
+    @Test
+    public void checkGetRequestAsync_cancellationCancelsTheExchange() {
+        var exchange = new CompletableFuture<HttpResponse<Void>>();
+        var client = mock(HttpClient.class);
+        doReturn(exchange).when(client).sendAsync(any(HttpRequest.class), any());
+        var utils = new MavenRepositoryUtils(dirM2, client, UrlCheckCache.disabled());
+
+        var f = utils.checkGetRequestAsync(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.jar");
+        f.cancel(true);
+        assertTrue(exchange.isCancelled());
+    }
+
+    @Test
+    public void checkGetRequest_usesUrlCheckCache() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        var cached = new MavenRepositoryUtils(dirM2, MavenRepositoryUtils.createHttpClient(), //
+                new UrlCheckCache(new File(dirM2, "url-checks"), 60000, 60000));
+
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        assertEquals(new UrlCheck(null, null), cached.checkGetRequestNonStatic(a));
+
+        // would be found now, but the negative result is remembered
+        assertEquals(new UrlCheck(null, null), cached.checkGetRequestNonStatic(a));
+    }
+
+    @Test
+    public void checkGetRequest_transientErrorsAreNotCached() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        var cached = new MavenRepositoryUtils(dirM2, MavenRepositoryUtils.createHttpClient(), //
+                new UrlCheckCache(new File(dirM2, "url-checks"), 60000, 60000));
+
+        server.addResponse(503, TEXT_PLAIN, SOME_CONTENT);
+        assertEquals(new UrlCheck(null, null), cached.checkGetRequestNonStatic(a));
+        server.addResponse(429, TEXT_PLAIN, SOME_CONTENT);
+        assertEquals(new UrlCheck(null, null), cached.checkGetRequestNonStatic(a));
+
+        var expected = new UrlCheck(ARTIFACT_REPO + "/g/a/1.2.3/a-1.2.3.jar", null);
+        assertEquals(expected, cached.checkGetRequestNonStatic(a));
+    }
+
+    @Test
+    public void storeInM2() throws IOException {
+        var a = new Artifact("g.g2", "a", "1.2.3", "pom");
+        var f = sut.storeInM2(a, "<project/>".getBytes(StandardCharsets.UTF_8));
+        assertEquals(sut.getM2Path(a), f);
+        assertEquals("<project/>", FileUtils.readFileToString(f, StandardCharsets.UTF_8));
+        // no temporary files are left behind
+        assertEquals(List.of(f.getName()), List.of(f.getParentFile().list()));
+    }
+
+    @Test
+    public void storeInM2KeepsExistingFiles() throws IOException {
+        var a = new Artifact("g.g2", "a", "1.2.3", "pom");
+        sut.storeInM2(a, "<a/>".getBytes(StandardCharsets.UTF_8));
+        var f = sut.storeInM2(a, "<b/>".getBytes(StandardCharsets.UTF_8));
+        assertEquals("<a/>", FileUtils.readFileToString(f, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void downloadToM2WithClassifier() throws IOException {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(200, TEXT_PLAIN, sha1(SOME_CONTENT));
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var f = sut.downloadToM2WithClassifier(a, "sources", "jar");
+        assertEquals(sut.getM2PathWithClassifier(a, "sources", "jar"), f);
+        assertEquals(SOME_CONTENT, FileUtils.readFileToString(f, StandardCharsets.UTF_8));
+        assertTrue(MavenRepositoryUtils.hasVerifiedChecksum(f));
+        assertEquals(Set.of("a-1.2.3-sources.jar", "a-1.2.3-sources.jar.sha1"), Set.of(f.getParentFile().list()));
+    }
+
+    @Test
+    public void downloadToM2WithClassifier_checksumMismatch() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(200, TEXT_PLAIN, sha1("something else"));
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        assertNull(sut.downloadToM2WithClassifier(a, "sources", "jar"));
+        assertLogsContain(MavenRepositoryUtils.class, "ERROR Checksum mismatch, download has been discarded: %s (classifier: sources, ext: jar)", a);
+        var dir = sut.getM2PathWithClassifier(a, "sources", "jar").getParentFile();
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void downloadToM2WithClassifier_noChecksum() throws IOException {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var f = sut.downloadToM2WithClassifier(a, "sources", "jar");
+        assertEquals(SOME_CONTENT, FileUtils.readFileToString(f, StandardCharsets.UTF_8));
+        assertFalse(MavenRepositoryUtils.hasVerifiedChecksum(f));
+    }
+
+    @Test
+    public void downloadToM2WithClassifier_absence() {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+
+        assertNull(sut.downloadToM2WithClassifier(a, "sources", "jar"));
+        var dir = sut.getM2PathWithClassifier(a, "sources", "jar").getParentFile();
+        assertEquals(0, dir.list().length);
+    }
+
+    @Test
+    public void downloadToM2WithClassifierAsync_followsRedirects() throws Exception {
+        var a = new Artifact("g", "a", "1.2.3", "jar");
+        a.repository = ARTIFACT_REPO;
+
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(404, TEXT_PLAIN, SOME_CONTENT);
+        server.addResponse(302, TEXT_PLAIN, "moved").setLocation(ARTIFACT_REPO + "/x/a-1.2.3-javadoc.jar");
+        server.addResponse(200, TEXT_PLAIN, SOME_CONTENT);
+
+        var f = sut.downloadToM2WithClassifierAsync(a, "javadoc", "jar").get();
+        assertEquals(SOME_CONTENT, FileUtils.readFileToString(f, StandardCharsets.UTF_8));
+    }
+
     @Test
     public void doesNotExist() {
         var res = par("g1.g2:a:pt:1");
@@ -178,6 +412,21 @@ public class MavenRepositoryUtilsTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void getGAVFromMavenFilePath() {
+        var tmp = Paths.get("tmp").toFile();
+        var a = new Artifact("g.g2", "a", "1.2.3", "ext");
+        var f = MavenRepositoryUtils.getMavenFilePath(tmp, a);
+        assertEquals("g.g2:a:1.2.3", MavenRepositoryUtils.getGAVFromMavenFilePath(tmp, f));
+    }
+
+    @Test
+    public void getGAVFromInvalidMavenFilePath() {
+        var tmp = Paths.get("tmp").toFile();
+        assertNull(MavenRepositoryUtils.getGAVFromMavenFilePath(tmp, Paths.get("tmp", "a", "1.2.3", "a-1.2.3.ext").toFile()));
+        assertNull(MavenRepositoryUtils.getGAVFromMavenFilePath(tmp, Paths.get("tmp", "g", "a", "1.2.3", "x.ext").toFile()));
+    }
+
     @Test
     public void getUrl() {
         var a = new Artifact("g.g2", "a", "1.2.3", "ext");
@@ -327,4 +576,13 @@ public class MavenRepositoryUtilsTest {
             throw new RuntimeException(e);
         }
     }
+
+    private static String sha1(String s) {
+        try {
+            var md = MessageDigest.getInstance("SHA-1");
+            return String.format("%040x", new BigInteger(1, md.digest(s.getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
 }
\ No newline at end of file
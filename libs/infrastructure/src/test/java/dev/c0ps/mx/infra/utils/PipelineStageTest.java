@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PipelineStageTest {
+
+    private PipelineStage sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new PipelineStage("test", 2, 1);
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void invalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PipelineStage("test", 0, 1);
+        });
+    }
+
+    @Test
+    public void invalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PipelineStage("test", 1, 0);
+        });
+    }
+
+    @Test
+    public void tasksRunConcurrently() throws Exception {
+        var latch = new CountDownLatch(2);
+        Runnable r = () -> {
+            latch.countDown();
+            await(latch);
+        };
+        CompletableFuture.allOf(sut.submit(r), sut.submit(r)).get(10, TimeUnit.SECONDS);
+        assertEquals(2, sut.getNumCompleted());
+    }
+
+    @Test
+    public void submissionBlocksWhenQueueIsFull() throws Exception {
+        var release = new CountDownLatch(1);
+        // two running, one queued
+        for (var i = 0; i < 3; i++) {
+            sut.submit(() -> await(release));
+        }
+
+        var hasSubmitted = new CountDownLatch(1);
+        var t = new Thread(() -> {
+            sut.submit(() -> {});
+            hasSubmitted.countDown();
+        });
+        t.start();
+        assertFalse(hasSubmitted.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(hasSubmitted.await(10, TimeUnit.SECONDS));
+        t.join();
+    }
+
+    @Test
+    public void failuresAreReportedAndCounted() {
+        var f = sut.submit(() -> {
+            throw new IllegalStateException("x");
+        });
+        var e = assertThrows(ExecutionException.class, () -> f.get());
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        assertEquals(0, sut.getNumCompleted());
+        assertEquals(1, sut.getNumFailed());
+    }
+
+    @Test
+    public void toStringContainsStats() throws Exception {
+        sut.submit(() -> {}).get();
+        var s = sut.toString();
+        assertTrue(s.startsWith("test: 1 done, 0 failed, "), s);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PostgresConnectionPoolTest {
+
+    private PostgresConnector connector;
+    private PostgresConnectionPool sut;
+
+    @BeforeEach
+    public void setup() {
+        connector = mock(PostgresConnector.class);
+        when(connector.getNewConnection()).thenAnswer(i -> validConnection());
+        sut = new PostgresConnectionPool(connector, 2);
+    }
+
+    @Test
+    public void connectionsAreReused() {
+        var c1 = sut.run(c -> c);
+        var c2 = sut.run(c -> c);
+        assertSame(c1, c2);
+        assertEquals(1, sut.numIdle());
+        verify(connector, times(1)).getNewConnection();
+    }
+
+    @Test
+    public void nestedUsageOpensNewConnections() {
+        sut.run(c1 -> sut.run(c2 -> c2));
+        assertEquals(2, sut.numIdle());
+        verify(connector, times(2)).getNewConnection();
+    }
+
+    @Test
+    public void invalidIdleConnectionsAreReplaced() throws SQLException {
+        var c1 = sut.run(c -> c);
+        when(c1.isValid(anyInt())).thenReturn(false);
+        var c2 = sut.run(c -> c);
+        assertNotSame(c1, c2);
+        verify(c1).close();
+    }
+
+    @Test
+    public void brokenConnectionsAreDropped() throws SQLException {
+        var e = assertThrows(RuntimeException.class, () -> {
+            sut.run(c -> {
+                when(c.isValid(anyInt())).thenReturn(false);
+                throw new SQLException("x");
+            });
+        });
+        assertEquals(SQLException.class, e.getCause().getClass());
+        assertEquals(0, sut.numIdle());
+    }
+
+    @Test
+    public void failingStatementsKeepValidConnections() {
+        assertThrows(RuntimeException.class, () -> {
+            sut.run(c -> {
+                throw new SQLException("x");
+            });
+        });
+        assertEquals(1, sut.numIdle());
+    }
+
+    @Test
+    public void closeClosesIdleConnections() throws SQLException {
+        var c1 = sut.run(c -> c);
+        sut.close();
+        verify(c1).close();
+        assertEquals(0, sut.numIdle());
+    }
+
+    @Test
+    public void sizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new PostgresConnectionPool(connector, 0);
+        });
+    }
+
+    private static Connection validConnection() throws SQLException {
+        var c = mock(Connection.class);
+        when(c.isValid(anyInt())).thenReturn(true);
+        return c;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.maveneasyindex.ArtifactModule;
+import dev.c0ps.mx.infra.utils.RecordCodec.Format;
+
+public class RecordCodecTest {
+
+    private static final Map<String, Object> SOME_VALUE = Map.of("a", "b", "c", List.of(1, 2, 3));
+
+    @TempDir
+    private File tempDir;
+
+    private final ObjectMapper om = new ObjectMapper().registerModules(new ArtifactModule());
+
+    @Test
+    public void defaultIsJson() {
+        var sut = new RecordCodec(om);
+        assertEquals(Format.JSON, sut.getFormat());
+        var json = new String(sut.encode(SOME_VALUE), UTF_8);
+        assertTrue(json.startsWith("{"));
+    }
+
+    @Test
+    public void roundtripAllFormats() {
+        for (var f : Format.values()) {
+            for (var isCompressed : new boolean[] { false, true }) {
+                var sut = new RecordCodec(om, f, isCompressed);
+                var bytes = sut.encode(SOME_VALUE);
+                assertEquals(SOME_VALUE, sut.decode(bytes, Map.class));
+            }
+        }
+    }
+
+    @Test
+    public void formatIsDetectedOnRead() {
+        var reader = new RecordCodec(om);
+        for (var f : Format.values()) {
+            for (var isCompressed : new boolean[] { false, true }) {
+                var bytes = new RecordCodec(om, f, isCompressed).encode(SOME_VALUE);
+                assertEquals(SOME_VALUE, reader.decode(bytes, Map.class));
+            }
+        }
+    }
+
+    @Test
+    public void binaryFormatsAreSmallerForRepetitiveData() {
+        var a = new Artifact("g.g.g", "a", "1.0.0", "jar");
+        var as = List.of(a, a, a, a, a, a, a, a, a, a);
+        var json = new RecordCodec(om).encode(as).length;
+        var smile = new RecordCodec(om, Format.SMILE, false).encode(as).length;
+        var deflated = new RecordCodec(om, Format.SMILE, true).encode(as).length;
+        assertTrue(smile < json);
+        assertTrue(deflated < smile);
+    }
+
+    @Test
+    public void decodeSlice() {
+        var sut = new RecordCodec(om, Format.CBOR, true);
+        var bytes = sut.encode(SOME_VALUE);
+        var padded = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, padded, 5, bytes.length);
+        assertEquals(SOME_VALUE, sut.decode(padded, 5, bytes.length, Map.class));
+    }
+
+    @Test
+    public void filesWithTypeReference() {
+        var sut = new RecordCodec(om, Format.SMILE, true);
+        var f = new File(tempDir, "x/y.bin");
+        var in = Set.of(new Artifact("g", "a", "1", "jar"), new Artifact("g", "a", "2", "jar"));
+        sut.write(in, f);
+        assertEquals(in, sut.read(f, new TypeReference<Set<Artifact>>() {}));
+    }
+
+    @Test
+    public void plainJsonFilesRemainReadable() throws Exception {
+        var f = new File(tempDir, "x.json");
+        Files.writeString(f.toPath(), "{\"a\":\"b\",\"c\":[1,2,3]}");
+        var sut = new RecordCodec(om, Format.CBOR, true);
+        assertEquals(SOME_VALUE, sut.read(f, Map.class));
+    }
+}
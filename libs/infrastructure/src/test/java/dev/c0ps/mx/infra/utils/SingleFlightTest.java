@@ -0,0 +1,140 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    private SingleFlight<String, String> sut;
+    private AtomicInteger numCalls;
+
+    @BeforeEach
+    public void setup() {
+        sut = new SingleFlight<>();
+        numCalls = new AtomicInteger();
+    }
+
+    @Test
+    public void concurrentRequestsShareTheComputation() {
+        var cf = new CompletableFuture<String>();
+        var a = sut.get("k", () -> count(cf));
+        var b = sut.get("k", () -> count(cf));
+        assertFalse(a.isDone());
+        assertFalse(b.isDone());
+        assertEquals(1, sut.getNumInFlight());
+
+        cf.complete("v");
+        assertEquals("v", a.join());
+        assertEquals("v", b.join());
+        assertEquals(1, numCalls.get());
+        assertEquals(1, sut.getNumShared());
+        assertEquals(0, sut.getNumInFlight());
+    }
+
+    @Test
+    public void differentKeysAreComputedIndependently() {
+        sut.get("k1", () -> count(new CompletableFuture<>()));
+        sut.get("k2", () -> count(new CompletableFuture<>()));
+        assertEquals(2, numCalls.get());
+        assertEquals(2, sut.getNumInFlight());
+        assertEquals(0, sut.getNumShared());
+    }
+
+    @Test
+    public void requestsAfterCompletionStartOver() {
+        assertEquals("v1", sut.get("k", () -> count(CompletableFuture.completedFuture("v1"))).join());
+        assertEquals("v2", sut.get("k", () -> count(CompletableFuture.completedFuture("v2"))).join());
+        assertEquals(2, numCalls.get());
+        assertEquals(0, sut.getNumShared());
+    }
+
+    @Test
+    public void failuresAreShared() {
+        var cf = new CompletableFuture<String>();
+        var a = sut.get("k", () -> cf);
+        var b = sut.get("k", () -> cf);
+        var e = new IllegalStateException();
+        cf.completeExceptionally(e);
+
+        assertSame(e, assertThrows(CompletionException.class, a::join).getCause());
+        assertSame(e, assertThrows(CompletionException.class, b::join).getCause());
+        assertEquals(0, sut.getNumInFlight());
+    }
+
+    @Test
+    public void failingComputationIsNotKept() {
+        var e = new IllegalStateException();
+        var a = sut.get("k", () -> {
+            throw e;
+        });
+        assertSame(e, assertThrows(CompletionException.class, a::join).getCause());
+        assertEquals(0, sut.getNumInFlight());
+    }
+
+    @Test
+    public void completingAResultDoesNotAffectOthers() {
+        var cf = new CompletableFuture<String>();
+        var a = sut.get("k", () -> cf);
+        var b = sut.get("k", () -> cf);
+        a.complete("x");
+        assertFalse(b.isDone());
+        cf.complete("v");
+        assertEquals("v", b.join());
+    }
+
+    @Test
+    public void runComputesSynchronously() {
+        assertEquals("v", sut.run("k", () -> {
+            numCalls.incrementAndGet();
+            return "v";
+        }));
+        assertEquals(1, numCalls.get());
+    }
+
+    @Test
+    public void runSupportsNull() {
+        assertNull(sut.run("k", () -> null));
+    }
+
+    @Test
+    public void runRethrowsOriginalException() {
+        var e = new IllegalStateException();
+        var actual = assertThrows(IllegalStateException.class, () -> {
+            sut.run("k", () -> {
+                throw e;
+            });
+        });
+        assertSame(e, actual);
+        assertEquals(0, sut.getNumInFlight());
+    }
+
+    private CompletableFuture<String> count(CompletableFuture<String> cf) {
+        numCalls.incrementAndGet();
+        return cf;
+    }
+}
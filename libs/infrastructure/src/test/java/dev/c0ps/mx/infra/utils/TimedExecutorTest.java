@@ -20,6 +20,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+
 import org.apache.commons.lang3.SystemUtils;
 import org.junit.jupiter.api.Test;
 
@@ -105,6 +111,145 @@ public class TimedExecutorTest {
         });
     }
 
+    @Test
+    public void timeoutDoesNotBlockLaterRuns() {
+        var sut = new TimedExecutor(10, 0);
+        assertThrows(ExecutionTimeoutException.class, () -> {
+            sut.run("...", takes(1000));
+        });
+        var max = IS_OS_WINDOWS ? 1000 : 100;
+        assertMaxDuration(max, () -> {
+            sut.run("...", takes(1));
+        });
+        assertEquals(1, sut.getNumTimedOut());
+    }
+
+    @Test
+    public void stuckWorkersAreReplaced() throws Exception {
+        var sut = new TimedExecutor(10, 0);
+        var release = new CountDownLatch(1);
+        assertThrows(ExecutionTimeoutException.class, () -> {
+            sut.run("...", ignoresInterrupts(release));
+        });
+        waitUntil(() -> sut.getNumStuck() == 1);
+        assertEquals(1, sut.getNumStuck());
+
+        // would time out, if the stuck worker was not replaced
+        sut.run("...", takes(1));
+
+        release.countDown();
+        waitUntil(() -> sut.getNumStuck() == 0);
+        assertEquals(0, sut.getNumStuck());
+    }
+
+    @Test
+    public void workersAreNotReplacedDuringGracePeriod() throws Exception {
+        var sut = new TimedExecutor(10, 0);
+        assertThrows(ExecutionTimeoutException.class, () -> {
+            sut.run("...", cleansUpAfterInterrupt(50));
+        });
+        Thread.sleep(20);
+        assertEquals(0, sut.getNumStuck());
+        Thread.sleep(500);
+        assertEquals(0, sut.getNumStuck());
+    }
+
+    @Test
+    public void deadlineCanBeSetPerTask() {
+        var sut = new TimedExecutor(10, 0);
+        sut.run("...", takes(50), 1000);
+        var e = assertThrows(ExecutionTimeoutException.class, () -> {
+            sut.run("XYZ", takes(1000), 20);
+        });
+        assertEquals("Execution timeout after 20ms: XYZ", e.getMessage());
+    }
+
+    @Test
+    public void tasksRunInParallel() {
+        var sut = new TimedExecutor(1000, 0, 4);
+        var max = IS_OS_WINDOWS ? 1000 : 180;
+        assertMaxDuration(max, () -> {
+            var futures = new ArrayList<CompletableFuture<Void>>();
+            for (var i = 0; i < 4; i++) {
+                futures.add(sut.submit(i, takes(100)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        });
+    }
+
+    @Test
+    public void asyncTimeout() {
+        var sut = new TimedExecutor(10, 0, 2);
+        var f = sut.submit("XYZ", takes(1000));
+        var e = assertThrows(CompletionException.class, f::join);
+        assertTrue(e.getCause() instanceof ExecutionTimeoutException);
+        assertEquals(1, sut.getNumTimedOut());
+    }
+
+    @Test
+    public void countersReflectQueue() throws Exception {
+        var sut = new TimedExecutor(1000, 0, 1);
+        var release = new CountDownLatch(1);
+        var f1 = sut.submit("1", awaits(release));
+        var f2 = sut.submit("2", takes(1));
+        waitUntil(() -> sut.getNumActive() == 1);
+        assertEquals(1, sut.getNumActive());
+        assertEquals(1, sut.getNumQueued());
+        release.countDown();
+        f1.join();
+        f2.join();
+        assertEquals(0, sut.getNumQueued());
+    }
+
+    @Test
+    public void invalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new TimedExecutor(10, 0, 0);
+        });
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        var end = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+    }
+
+    private static Runnable awaits(CountDownLatch latch) {
+        return () -> {
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    private static Runnable ignoresInterrupts(CountDownLatch latch) {
+        return () -> {
+            while (latch.getCount() > 0) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    // ignored on purpose
+                }
+            }
+        };
+    }
+
+    private static Runnable cleansUpAfterInterrupt(int cleanupMS) {
+        return () -> {
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                var end = System.currentTimeMillis() + cleanupMS;
+                while (System.currentTimeMillis() < end) {
+                    Thread.onSpinWait();
+                }
+            }
+        };
+    }
+
     private static void assertMaxDuration(int limitMS, Runnable r) {
         assertMinMaxDuration(0, limitMS, r);
     }
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils.UrlCheck;
+
+public class UrlCheckCacheTest {
+
+    private static final long POS_TTL = 1000;
+    private static final long NEG_TTL = 100;
+
+    private static final UrlCheck FOUND = new UrlCheck("http://b/x.jar", new Date(1234));
+    private static final UrlCheck MISSING = new UrlCheck(null, null);
+
+    @TempDir
+    private File tempDir;
+
+    private File file;
+    private long now;
+    private UrlCheckCache sut;
+
+    @BeforeEach
+    public void setup() {
+        file = new File(tempDir, "url-checks");
+        now = 10000;
+        sut = open();
+    }
+
+    @Test
+    public void unknownUrl() {
+        assertNull(sut.get("http://a/x.jar"));
+    }
+
+    @Test
+    public void positiveEntry() {
+        sut.put("http://a/x.jar", FOUND);
+        assertEquals(FOUND, sut.get("http://a/x.jar"));
+    }
+
+    @Test
+    public void negativeEntry() {
+        sut.put("http://a/x.jar", MISSING);
+        assertEquals(MISSING, sut.get("http://a/x.jar"));
+    }
+
+    @Test
+    public void positiveEntryExpires() {
+        sut.put("http://a/x.jar", FOUND);
+        now += POS_TTL - 1;
+        assertEquals(FOUND, sut.get("http://a/x.jar"));
+        now += 1;
+        assertNull(sut.get("http://a/x.jar"));
+    }
+
+    @Test
+    public void negativeEntryExpires() {
+        sut.put("http://a/x.jar", MISSING);
+        now += NEG_TTL - 1;
+        assertEquals(MISSING, sut.get("http://a/x.jar"));
+        now += 1;
+        assertNull(sut.get("http://a/x.jar"));
+    }
+
+    @Test
+    public void disabledCacheDoesNotRemember() {
+        var disabled = UrlCheckCache.disabled();
+        disabled.put("http://a/x.jar", FOUND);
+        assertNull(disabled.get("http://a/x.jar"));
+        assertEquals(0, disabled.size());
+    }
+
+    @Test
+    public void entriesSurviveRestarts() {
+        sut.put("http://a/x.jar", FOUND);
+        sut.put("http://a/y.jar", MISSING);
+        sut.close();
+
+        sut = open();
+        assertEquals(2, sut.size());
+        assertEquals(FOUND, sut.get("http://a/x.jar"));
+        assertEquals(MISSING, sut.get("http://a/y.jar"));
+    }
+
+    @Test
+    public void laterEntriesOverrideEarlierOnes() {
+        sut.put("http://a/x.jar", MISSING);
+        sut.put("http://a/x.jar", FOUND);
+        sut.close();
+
+        sut = open();
+        assertEquals(1, sut.size());
+        assertEquals(FOUND, sut.get("http://a/x.jar"));
+    }
+
+    @Test
+    public void expiredEntriesAreDroppedOnLoad() {
+        sut.put("http://a/x.jar", FOUND);
+        sut.put("http://a/y.jar", MISSING);
+        sut.close();
+
+        now += NEG_TTL;
+        sut = open();
+        assertEquals(1, sut.size());
+        assertEquals(FOUND, sut.get("http://a/x.jar"));
+    }
+
+    private UrlCheckCache open() {
+        return new UrlCheckCache(file, POS_TTL, NEG_TTL, () -> now);
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static dev.c0ps.mx.infra.utils.VerifiedDownload.Outcome.CHECKSUM_MISMATCH;
+import static dev.c0ps.mx.infra.utils.VerifiedDownload.Outcome.DOWNLOADED;
+import static dev.c0ps.mx.infra.utils.VerifiedDownload.Outcome.NOT_FOUND;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+public class VerifiedDownloadTest {
+
+    private static final String CONTENT = "0123456789abcdefghijklmnopqrstuvwxyz";
+
+    @TempDir
+    private File tempDir;
+
+    private HttpServer server;
+    private String baseUrl;
+    private Map<String, byte[]> files;
+    private List<String> ranges;
+    private List<String> served;
+    private boolean supportsRanges;
+    private CountDownLatch isServing;
+
+    private File target;
+    private File part;
+    private VerifiedDownload sut;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        files = new HashMap<>();
+        ranges = new ArrayList<>();
+        served = new CopyOnWriteArrayList<>();
+        supportsRanges = true;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        target = new File(tempDir, "a.jar");
+        part = new File(tempDir, "a.jar" + VerifiedDownload.PART_EXT);
+        sut = new VerifiedDownload(MavenRepositoryUtils.createHttpClient(), 10000);
+    }
+
+    @AfterEach
+    public void teardown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void verifiedWithSha1() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", (hash("SHA-1", CONTENT) + "  a.jar\n").getBytes(UTF_8));
+
+        assertEquals(DOWNLOADED, sut.download(baseUrl + "/a.jar", target).get());
+        assertEquals(CONTENT, Files.readString(target.toPath()));
+        assertEquals(hash("SHA-1", CONTENT), Files.readString(new File(tempDir, "a.jar.sha1").toPath()));
+        assertEquals(Set.of("a.jar", "a.jar.sha1"), Set.of(tempDir.list()));
+    }
+
+    @Test
+    public void verifiedWithMd5() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.md5", hash("MD5", CONTENT).getBytes(UTF_8));
+
+        assertEquals(DOWNLOADED, sut.download(baseUrl + "/a.jar", target).get());
+        assertEquals(CONTENT, Files.readString(target.toPath()));
+        assertTrue(new File(tempDir, "a.jar.md5").exists());
+    }
+
+    @Test
+    public void checksumMismatch() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", hash("SHA-1", "other").getBytes(UTF_8));
+
+        assertEquals(CHECKSUM_MISMATCH, sut.download(baseUrl + "/a.jar", target).get());
+        assertFalse(target.exists());
+        assertFalse(part.exists());
+    }
+
+    @Test
+    public void notFound() throws Exception {
+        assertEquals(NOT_FOUND, sut.download(baseUrl + "/a.jar", target).get());
+        assertFalse(target.exists());
+        assertFalse(part.exists());
+    }
+
+    @Test
+    public void resumesPartialDownload() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", hash("SHA-1", CONTENT).getBytes(UTF_8));
+        Files.writeString(part.toPath(), CONTENT.substring(0, 10));
+
+        assertEquals(DOWNLOADED, sut.download(baseUrl + "/a.jar", target).get());
+        assertEquals(List.of("bytes=10-"), ranges);
+        assertEquals(CONTENT, Files.readString(target.toPath()));
+    }
+
+    @Test
+    public void restartsWhenRangesAreNotSupported() throws Exception {
+        supportsRanges = false;
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", hash("SHA-1", CONTENT).getBytes(UTF_8));
+        Files.writeString(part.toPath(), "garbage");
+
+        assertEquals(DOWNLOADED, sut.download(baseUrl + "/a.jar", target).get());
+        assertEquals(CONTENT, Files.readString(target.toPath()));
+    }
+
+    @Test
+    public void restartsWhenPartIsTooLarge() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", hash("SHA-1", CONTENT).getBytes(UTF_8));
+        Files.writeString(part.toPath(), CONTENT + "garbage");
+
+        assertEquals(DOWNLOADED, sut.download(baseUrl + "/a.jar", target).get());
+        assertEquals(CONTENT, Files.readString(target.toPath()));
+    }
+
+    @Test
+    public void cancellationRemovesThePart() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", hash("SHA-1", CONTENT).getBytes(UTF_8));
+        Files.writeString(part.toPath(), CONTENT.substring(0, 10));
+
+        // cancelled while the checksum is fetched
+        var e = assertThrows(ExecutionException.class, () -> {
+            sut.download(baseUrl + "/a.jar", target, () -> served.contains("/a.jar.sha1")).get();
+        });
+        assertTrue(e.getCause() instanceof CancellationException);
+        assertFalse(served.contains("/a.jar"));
+        assertFalse(target.exists());
+        assertFalse(part.exists());
+        assertFalse(new File(tempDir, "a.jar.sha1").exists());
+    }
+
+    @Test
+    public void waitsForConcurrentDownload() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        files.put("/a.jar.sha1", hash("SHA-1", CONTENT).getBytes(UTF_8));
+        isServing = new CountDownLatch(1);
+        var first = sut.download(baseUrl + "/a.jar", target);
+        awaitRequest("/a.jar");
+
+        var other = new VerifiedDownload(MavenRepositoryUtils.createHttpClient(), 10000);
+        var f = other.download(baseUrl + "/a.jar", target);
+        Thread.sleep(300);
+        assertFalse(f.isDone());
+
+        isServing.countDown();
+        assertEquals(DOWNLOADED, first.get());
+        assertEquals(DOWNLOADED, f.get());
+        assertEquals(List.of("/a.jar.sha1", "/a.jar"), served);
+        assertFalse(part.exists());
+    }
+
+    @Test
+    public void waitingCanBeCancelled() throws Exception {
+        files.put("/a.jar", CONTENT.getBytes(UTF_8));
+        isServing = new CountDownLatch(1);
+        var first = sut.download(baseUrl + "/a.jar", target);
+        awaitRequest("/a.jar");
+
+        var isCancelled = new AtomicBoolean();
+        var f = sut.download(baseUrl + "/a.jar", target, isCancelled::get);
+        Thread.sleep(300);
+        isCancelled.set(true);
+        var e = assertThrows(ExecutionException.class, () -> {
+            f.get();
+        });
+        assertTrue(e.getCause() instanceof CancellationException);
+        assertFalse(first.isDone());
+
+        isServing.countDown();
+        assertEquals(DOWNLOADED, first.get());
+    }
+
+    private void awaitRequest(String path) throws InterruptedException {
+        while (!served.contains(path)) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        var path = ex.getRequestURI().getPath();
+        served.add(path);
+        if (isServing != null && path.endsWith(".jar")) {
+            try {
+                isServing.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        var data = files.get(path);
+        var range = ex.getRequestHeaders().getFirst("Range");
+        if (data == null) {
+            ex.sendResponseHeaders(404, -1);
+        } else if (range != null && supportsRanges && path.endsWith(".jar")) {
+            ranges.add(range);
+            var from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+            if (from >= data.length) {
+                ex.sendResponseHeaders(416, -1);
+            } else {
+                ex.getResponseHeaders().add("Content-Range", String.format("bytes %d-%d/%d", from, data.length - 1, data.length));
+                ex.sendResponseHeaders(206, data.length - from);
+                ex.getResponseBody().write(data, from, data.length - from);
+            }
+        } else {
+            ex.sendResponseHeaders(200, data.length);
+            ex.getResponseBody().write(data);
+        }
+        ex.close();
+    }
+
+    private static String hash(String algorithm, String s) throws Exception {
+        var md = MessageDigest.getInstance(algorithm);
+        var len = md.getDigestLength() * 2;
+        return String.format("%0" + len + "x", new BigInteger(1, md.digest(s.getBytes(UTF_8))));
+    }
+}
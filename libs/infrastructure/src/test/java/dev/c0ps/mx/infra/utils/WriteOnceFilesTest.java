@@ -0,0 +1,67 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.infra.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class WriteOnceFilesTest {
+
+    @TempDir
+    private File tempDir;
+
+    @Test
+    public void fanOut() {
+        var actual = WriteOnceFiles.fanOut(tempDir, "abcdef", ".x");
+        assertEquals(new File(new File(tempDir, "ab"), "cdef.x"), actual);
+    }
+
+    @Test
+    public void fileIsWritten() throws IOException {
+        var f = new File(new File(tempDir, "ab"), "cd");
+        WriteOnceFiles.write(f, "x".getBytes(UTF_8));
+        assertEquals("x", Files.readString(f.toPath()));
+    }
+
+    @Test
+    public void existingFileIsKept() throws IOException {
+        var f = new File(tempDir, "f");
+        WriteOnceFiles.write(f, "x".getBytes(UTF_8));
+        WriteOnceFiles.write(f, "y".getBytes(UTF_8));
+        assertEquals("x", Files.readString(f.toPath()));
+    }
+
+    @Test
+    public void failedWriteLeavesNoFiles() {
+        var f = new File(tempDir, "f");
+        assertThrows(RuntimeException.class, () -> {
+            WriteOnceFiles.write(f, tmp -> {
+                throw new IOException();
+            });
+        });
+        assertFalse(f.exists());
+        assertEquals(0, tempDir.list().length);
+    }
+}
@@ -17,6 +17,8 @@ package dev.c0ps.mx.depgraph;
 
 import com.beust.jcommander.Parameter;
 
+import dev.c0ps.mx.infra.utils.RecordCodec;
+
 public class DepGraphArgs {
 
     @Parameter(names = "--depgraph.minNumExport", arity = 1, description = "Minimum number of new messages before updating disk export")
@@ -24,4 +26,10 @@ public class DepGraphArgs {
 
     @Parameter(names = "--depgraph.minTimeExportMS", arity = 1, description = "Minimum time that needs to pass before updating disk export (ms)")
     public long minTimeExportMS = 20 * 60 * 1000; // 20min
+
+    @Parameter(names = "--depgraph.exportFormat", arity = 1, description = "Serialization of the disk export (JSON keeps the poms.zip of previous versions)")
+    public RecordCodec.Format exportFormat = RecordCodec.Format.JSON;
+
+    @Parameter(names = "--depgraph.exportCompress", arity = 1, description = "Deflate a binary disk export")
+    public boolean exportCompress = true;
 }
\ No newline at end of file
@@ -15,6 +15,7 @@
  */
 package dev.c0ps.mx.depgraph;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Binder;
 import com.google.inject.Provides;
 
@@ -25,6 +26,8 @@ import dev.c0ps.maven.resolution.MavenDependencyResolver;
 import dev.c0ps.maven.resolution.MavenDependentsResolver;
 import dev.c0ps.maven.resolution.MavenResolver;
 import dev.c0ps.maven.resolution.MavenResolverData;
+import dev.c0ps.mx.infra.utils.RecordCodec;
+import jakarta.inject.Named;
 
 @InjectorConfig
 public class DepGraphConfig implements IInjectorConfig {
@@ -42,6 +45,12 @@ public class DepGraphConfig implements IInjectorConfig {
         binder.bind(MavenResolverData.class).toInstance(new MavenResolverData());
     }
 
+    @Provides
+    @Named("depgraph.export")
+    public RecordCodec provideExportCodec(ObjectMapper om) {
+        return new RecordCodec(om, args.exportFormat, args.exportCompress);
+    }
+
     @Provides
     public MavenDependencyResolver provideDependencyResolver(MavenResolverData data) {
         var r = new MavenDependencyResolver();
@@ -25,6 +25,8 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+
 import dev.c0ps.franz.Kafka;
 import dev.c0ps.io.IoUtils;
 import dev.c0ps.io.TRef;
@@ -36,7 +38,9 @@ import dev.c0ps.maven.rest.DependencyGraphResolutionService;
 import dev.c0ps.maveneasyindex.Artifact;
 import dev.c0ps.mx.downloader.utils.ResultsDatabase;
 import dev.c0ps.mx.infra.kafka.DefaultTopics;
+import dev.c0ps.mx.infra.utils.RecordCodec;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 
 public class Main implements Runnable {
 
@@ -49,19 +53,22 @@ public class Main implements Runnable {
     private final MavenResolverData data;
     private final DepGraphArgs args;
     private final ResultsDatabase db;
+    private final RecordCodec codec;
 
     private Set<Pom> poms = new HashSet<>();
     private long lastStoredAt = 0;
     private int numPomsAddedSinceLastStore = 0;
 
     @Inject
-    public Main(HttpServer server, Kafka kafka, IoUtils io, MavenResolverData data, DepGraphArgs args, ResultsDatabase db) {
+    public Main(HttpServer server, Kafka kafka, IoUtils io, MavenResolverData data, DepGraphArgs args, ResultsDatabase db, //
+            @Named("depgraph.export") RecordCodec codec) {
         this.server = server;
         this.kafka = kafka;
         this.io = io;
         this.data = data;
         this.args = args;
         this.db = db;
+        this.codec = codec;
     }
 
     @Override
@@ -69,6 +76,7 @@ public class Main implements Runnable {
         server.register(DependencyGraphResolutionService.class);
         server.register(PomService.class);
         server.register(KafkaStatsService.class);
+        server.register(ResultsStatsService.class);
         server.start();
 
         LOG.info("Storage location for poms: {}", dbFile());
@@ -95,10 +103,12 @@ public class Main implements Runnable {
     }
 
     private void initPomsAndDataContainers() {
-        var f = dbFile();
-        if (f.exists()) {
+        var f = existingDbFile();
+        if (f != null) {
             time("Reading poms from file system", () -> {
-                poms = io.readFromZip(dbFile(), new TRef<HashSet<Pom>>() {});
+                poms = isZip(f) //
+                        ? io.readFromZip(f, new TRef<HashSet<Pom>>() {})
+                        : codec.read(f, new TypeReference<HashSet<Pom>>() {});
             });
 
             LOG.info("Registering {} poms with data containers", poms.size());
@@ -133,9 +143,14 @@ public class Main implements Runnable {
         var tmp = tmpFile();
         time("Storing poms to file system", () -> {
             LOG.info("Storing {} poms in total, {} new", poms.size(), numPomsAddedSinceLastStore);
-            io.writeToZip(poms, tmp);
+            if (isZip(dbFile())) {
+                io.writeToZip(poms, tmp);
+            } else {
+                codec.write(poms, tmp);
+            }
             // reduces likelihood of corruption as rename is MUCH faster than store
             io.move(tmp, dbFile());
+            deleteOutdatedDbFile();
             kafka.commit();
 
             numPomsAddedSinceLastStore = 0;
@@ -152,10 +167,44 @@ public class Main implements Runnable {
     }
 
     private File dbFile() {
-        var f = Paths.get(io.getBaseFolder().getAbsolutePath(), "mvn_depgraph", "poms.zip").toFile();
+        return dbFile(isBinaryExport());
+    }
+
+    private File dbFile(boolean isBinary) {
+        var name = isBinary ? "poms.bin" : "poms.zip";
+        var f = Paths.get(io.getBaseFolder().getAbsolutePath(), "mvn_depgraph", name).toFile();
         return f;
     }
 
+    /**
+     * @return the export of the configured format or, after a format change, the
+     *         export of the other format. Null if nothing has been exported yet.
+     */
+    private File existingDbFile() {
+        var f = dbFile();
+        if (f.exists()) {
+            return f;
+        }
+        var other = dbFile(!isBinaryExport());
+        return other.exists() ? other : null;
+    }
+
+    private void deleteOutdatedDbFile() {
+        var other = dbFile(!isBinaryExport());
+        if (other.exists() && !other.delete()) {
+            LOG.warn("Cannot delete outdated export {}", other);
+        }
+    }
+
+    private boolean isBinaryExport() {
+        // JSON exports remain zipped to stay compatible with earlier versions
+        return codec.getFormat() != RecordCodec.Format.JSON;
+    }
+
+    private static boolean isZip(File f) {
+        return f.getName().endsWith(".zip");
+    }
+
     private void logProgress(Pom pom) {
         LOG.debug("Adding coordinate {} ...", pom.toCoordinate());
         var wasSomethingAdded = numPomsAddedSinceLastStore > 0;
@@ -126,6 +126,7 @@ public class PomService {
         kafka.publish(gav, DefaultTopics.REQUESTED, PRIORITY);
         try {
             db.markRequested(gav);
+            db.flush();
         } catch (IllegalStateException e) {
             // ignore
         }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.depgraph;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.downloader.utils.ResultsDatabase;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+@Path("/results")
+public class ResultsStatsService {
+
+    private final ResultsDatabase db;
+
+    @Inject
+    public ResultsStatsService(ResultsDatabase db) {
+        this.db = db;
+    }
+
+    @GET
+    @Path("/")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<Status, Long> getCounts() {
+        return db.countByStatus();
+    }
+
+    @GET
+    @Path("/{status}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getArtifacts( //
+            @PathParam("status") String status, //
+            @QueryParam("limit") @DefaultValue("1000") int limit) {
+
+        Status s;
+        try {
+            s = Status.valueOf(status.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).build();
+        }
+
+        try (var results = db.streamByStatus(s)) {
+            var gavs = results //
+                    .limit(limit) //
+                    .map(r -> MavenRepositoryUtils.toGAV(r.artifact)) //
+                    .collect(Collectors.toList());
+            return Response.ok(gavs).build();
+        }
+    }
+}
@@ -17,22 +17,152 @@ package dev.c0ps.mx.downloader;
 
 import java.io.File;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Provider;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 
+import dev.c0ps.diapper.AssertArgs;
 import dev.c0ps.diapper.InjectorConfig;
 import dev.c0ps.diapper.InjectorConfigBase;
 import dev.c0ps.io.IoUtils;
+import dev.c0ps.mx.downloader.utils.AbstractResultsDatabase;
+import dev.c0ps.mx.downloader.utils.BlobStore;
+import dev.c0ps.mx.downloader.utils.CachingResultsDatabase;
+import dev.c0ps.mx.downloader.utils.CompletionTracker;
 import dev.c0ps.mx.downloader.utils.FileBasedResultsDatabase;
+import dev.c0ps.mx.downloader.utils.FixStrategyStats;
+import dev.c0ps.mx.downloader.utils.IndexedCompletionTracker;
+import dev.c0ps.mx.downloader.utils.InvokerDependencyGetter;
+import dev.c0ps.mx.downloader.utils.MavenDependencyGetter;
+import dev.c0ps.mx.downloader.utils.PostgresResultsDatabase;
+import dev.c0ps.mx.downloader.utils.ResolverDependencyGetter;
 import dev.c0ps.mx.downloader.utils.ResultsDatabase;
+import dev.c0ps.mx.downloader.utils.SegmentedResultsDatabase;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.PostgresConnectionPool;
+import dev.c0ps.mx.infra.utils.PostgresConnector;
+import dev.c0ps.mx.infra.utils.RecordCodec;
 import dev.c0ps.mx.infra.utils.Version;
 import jakarta.inject.Named;
 
 @InjectorConfig
 public class Config extends InjectorConfigBase {
 
+    private static final String BLOBS_DIR = ".blobs";
+
+    private DownloaderArgs args;
+
+    public Config(DownloaderArgs args) {
+        this.args = args;
+    }
+
+    @Provides
+    public DownloaderArgs provideDownloaderArgs() {
+        return args;
+    }
+
+    @Provides
+    @Singleton
+    public ResultsDatabase provideIngestionDatabase(Version v, IoUtils io, MavenRepositoryUtils mru, ObjectMapper om, Provider<PostgresConnector> pg,
+            @Named("dir.results") File dirResults) {
+        var codec = new RecordCodec(om, args.resultsFormat, args.resultsCompress);
+        var db = createStorage(v, io, mru, om, codec, pg, dirResults);
+        if (args.cacheSize > 0) {
+            db = new CachingResultsDatabase(v, db, args.cacheSize, args.cacheMode);
+        }
+        if (args.useBlobStore) {
+            // payloads are resolved by the outermost database only
+            db.setBlobStore(new BlobStore(new File(dirResults, BLOBS_DIR), codec));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(db::close));
+        return db;
+    }
+
+    @Provides
+    @Singleton
+    public CompletionTracker provideCompletionTracker(MavenRepositoryUtils mru, @Named("dir.completion") File dirCompletion) {
+        if (!args.useCompletionIndex) {
+            return new CompletionTracker(mru, dirCompletion);
+        }
+        var tracker = new IndexedCompletionTracker(mru, dirCompletion);
+        Runtime.getRuntime().addShutdownHook(new Thread(tracker::close));
+        return tracker;
+    }
+
+    @Provides
+    @Singleton
+    public MavenDependencyGetter provideMavenDependencyGetter(Provider<InvokerDependencyGetter> invoker, @Named("dir.m2") File dirM2) {
+        if (args.engine != DownloaderArgs.Engine.RESOLVER) {
+            // resolved lazily, a maven home is only required for forking
+            return invoker.get();
+        }
+        var getter = new ResolverDependencyGetter(dirM2);
+        Runtime.getRuntime().addShutdownHook(new Thread(getter::close));
+        return getter;
+    }
+
+    @Provides
+    @Named("downloader.findThreads")
+    public int provideFindThreads(@Named("TimedExecutor.parallelism") int execParallelism, @Named("kafka.autoCommit") boolean kafkaAutoCommit) {
+        assertStagesFit(execParallelism, kafkaAutoCommit);
+        return args.findThreads;
+    }
+
+    @Provides
+    @Named("downloader.resolveThreads")
+    public int provideResolveThreads(@Named("TimedExecutor.parallelism") int execParallelism, @Named("kafka.autoCommit") boolean kafkaAutoCommit) {
+        assertStagesFit(execParallelism, kafkaAutoCommit);
+        return args.resolveThreads;
+    }
+
+    private void assertStagesFit(int execParallelism, boolean kafkaAutoCommit) {
+        // all stage workers run through the timed executor, which starts the
+        // timeout of an execution already while it is queued
+        AssertArgs.that(args, a -> !isStaged(a) || a.findThreads + a.resolveThreads <= execParallelism,
+                "find and resolve threads together must not exceed the exec parallelism");
+        // polling continues while records are in flight, an auto-commit would
+        // commit the offsets of unfinished records
+        AssertArgs.that(args, a -> !isStaged(a) || !kafkaAutoCommit, "staged processing requires --kafka.autoCommit false");
+    }
+
+    private static boolean isStaged(DownloaderArgs a) {
+        return a.findThreads > 1 || a.resolveThreads > 1;
+    }
+
     @Provides
-    public ResultsDatabase provideIngestionDatabase(Version v, IoUtils io, MavenRepositoryUtils mru, @Named("dir.results") File dirResults) {
-        return new FileBasedResultsDatabase(v, io, mru, dirResults);
+    @Named("downloader.queueCapacity")
+    public int provideQueueCapacity() {
+        return args.queueCapacity;
+    }
+
+    @Provides
+    @Named("ArtifactFinder.parallelProbes")
+    public int provideParallelProbes() {
+        return args.parallelProbes;
+    }
+
+    @Provides
+    @Singleton
+    public FixStrategyStats provideFixStrategyStats() {
+        if (args.strategyStats == null) {
+            return FixStrategyStats.disabled();
+        }
+        var stats = new FixStrategyStats(args.strategyStats);
+        Runtime.getRuntime().addShutdownHook(new Thread(stats::close));
+        return stats;
+    }
+
+    private AbstractResultsDatabase createStorage(Version v, IoUtils io, MavenRepositoryUtils mru, ObjectMapper om, RecordCodec codec, Provider<PostgresConnector> pg,
+            File dirResults) {
+        switch (args.resultsStorage) {
+        case SEGMENTED:
+            var maxSegmentSize = args.segmentSizeMB * 1024L * 1024L;
+            return new SegmentedResultsDatabase(v, codec, dirResults, maxSegmentSize, args.compactionIntervalMS, args.compactionThreshold);
+        case POSTGRES:
+            return new PostgresResultsDatabase(v, om, new PostgresConnectionPool(pg.get(), args.poolSize));
+        default:
+            return new FileBasedResultsDatabase(v, io, mru, codec, dirResults, args.useStatusIndex);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader;
+
+import java.io.File;
+
+import com.beust.jcommander.Parameter;
+
+import dev.c0ps.mx.downloader.utils.CachingResultsDatabase;
+import dev.c0ps.mx.infra.utils.RecordCodec;
+
+public class DownloaderArgs {
+
+    @Parameter(names = "--results.storage", arity = 1, description = "Storage of the (partial) results. SEGMENTED keeps its index in memory, every runnable that shares --dir.results (e.g., downloader, pom-analyzer, depgraph) rebuilds it on startup and after compactions")
+    public ResultsStorage resultsStorage = ResultsStorage.FILE;
+
+    @Parameter(names = "--results.statusIndex", arity = 1, description = "Maintain an index of FILE results per status for status queries (e.g., the /results of depgraph), must be enabled for all runnables that share --dir.results. Queries walk all results otherwise")
+    public boolean useStatusIndex = false;
+
+    @Parameter(names = "--results.segmentSizeMB", arity = 1, description = "Size after which a new results segment is started (MB)")
+    public int segmentSizeMB = 256;
+
+    @Parameter(names = "--results.compactionIntervalMS", arity = 1, description = "Delay between checks whether results segments should be compacted (ms)")
+    public long compactionIntervalMS = 10 * 60 * 1000; // 10min
+
+    @Parameter(names = "--results.compactionThreshold", arity = 1, description = "Share of outdated records that triggers a compaction")
+    public double compactionThreshold = 0.5;
+
+    @Parameter(names = "--results.poolSize", arity = 1, description = "Maximum number of connections to the Postgres results database")
+    public int poolSize = 4;
+
+    @Parameter(names = "--results.cacheSize", arity = 1, description = "Number of results that are cached in memory (0 disables the cache)")
+    public int cacheSize = 0;
+
+    @Parameter(names = "--results.cacheMode", arity = 1, description = "Should cached results be written immediately (WRITE_THROUGH) or on eviction/flush (WRITE_BACK)")
+    public CachingResultsDatabase.Mode cacheMode = CachingResultsDatabase.Mode.WRITE_BACK;
+
+    @Parameter(names = "--results.blobs", arity = 1, description = "Store poms and stacktraces once in a content-addressed blob store and only reference them in results")
+    public boolean useBlobStore = false;
+
+    @Parameter(names = "--results.format", arity = 1, description = "Serialization of FILE and SEGMENTED results and of blobs, existing records remain readable after a change")
+    public RecordCodec.Format resultsFormat = RecordCodec.Format.JSON;
+
+    @Parameter(names = "--results.compress", arity = 1, description = "Deflate serialized FILE and SEGMENTED results and blobs")
+    public boolean resultsCompress = false;
+
+    @Parameter(names = "--completion.index", arity = 1, description = "Track completed artifacts in a memory-mapped index instead of marker files (existing markers are imported, the index can be shared by several processes)")
+    public boolean useCompletionIndex = false;
+
+    @Parameter(names = "--finder.parallelProbes", arity = 1, description = "Number of packaging/protocol variants that are probed concurrently when an artifact is not found as declared")
+    public int parallelProbes = 1;
+
+    @Parameter(names = "--finder.strategyStats", arity = 1, description = "File that records which fix strategy succeeded per groupId and repository host, strategies are then tried in order of success (fixed order if unset)")
+    public File strategyStats;
+
+    @Parameter(names = "--downloader.engine", arity = 1, description = "Fork 'mvn dependency:get' per artifact (INVOKER) or resolve in-process through a long-lived Maven Resolver session (RESOLVER)")
+    public Engine engine = Engine.INVOKER;
+
+    @Parameter(names = "--downloader.findThreads", arity = 1, description = "Threads of the stage that checks the existence of artifacts, more than one thread in any stage enables the staged processing (find and resolve threads together must not exceed --exec.parallelism, timeouts of timed executions would otherwise expire while queued)")
+    public int findThreads = 1;
+
+    @Parameter(names = "--downloader.resolveThreads", arity = 1, description = "Threads of the stage that downloads and resolves found artifacts (the staged processing keeps polling while records are in flight and commits offsets explicitly, it requires --kafka.autoCommit false)")
+    public int resolveThreads = 1;
+
+    @Parameter(names = "--downloader.queueCapacity", arity = 1, description = "Number of artifacts that can wait for a stage before the previous stage blocks")
+    public int queueCapacity = 16;
+
+    public enum ResultsStorage {
+        FILE, SEGMENTED, POSTGRES
+    }
+
+    public enum Engine {
+        INVOKER, RESOLVER
+    }
+}
@@ -16,6 +16,12 @@
 package dev.c0ps.mx.downloader;
 
 import java.lang.module.ResolutionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,15 +37,20 @@ import dev.c0ps.mx.downloader.utils.MavenDownloader;
 import dev.c0ps.mx.downloader.utils.ResultsDatabase;
 import dev.c0ps.mx.infra.exceptions.UnrecoverableError;
 import dev.c0ps.mx.infra.kafka.DefaultTopics;
+import dev.c0ps.mx.infra.kafka.KafkaOutbox;
 import dev.c0ps.mx.infra.kafka.LaneManagement;
 import dev.c0ps.mx.infra.kafka.SimpleErrorMessage;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.PipelineStage;
+import dev.c0ps.mx.infra.utils.SingleFlight;
 import dev.c0ps.mx.infra.utils.TimedExecutor;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 
 public class Main implements Runnable {
 
     private static final int MAX_TRIES_PER_COORD = 3;
+    private static final int HEARTBEAT_INTERVAL_MS = 1000;
 
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
 
@@ -51,10 +62,20 @@ public class Main implements Runnable {
     private final MavenRepositoryUtils utils;
     private final MavenDownloader downloader;
     private final CompletionTracker tracker;
+    private final int findThreads;
+    private final int resolveThreads;
+    private final int queueCapacity;
+    private final KafkaOutbox outbox;
+
+    private final List<CompletableFuture<Void>> inFlight = new ArrayList<>();
+    private final SingleFlight<String, Result> flights = new SingleFlight<>();
+    private PipelineStage finders;
+    private PipelineStage resolvers;
 
     @Inject
     public Main(TimedExecutor exec, Kafka kafka, ResultsDatabase db, LaneManagement lm, ArtifactFinder artifactFinder, MavenRepositoryUtils utils, MavenDownloader downloader,
-            CompletionTracker tracker) {
+            CompletionTracker tracker, @Named("downloader.findThreads") int findThreads, @Named("downloader.resolveThreads") int resolveThreads,
+            @Named("downloader.queueCapacity") int queueCapacity) {
         this.timedExec = exec;
         this.kafka = kafka;
         this.db = db;
@@ -63,11 +84,21 @@ public class Main implements Runnable {
         this.utils = utils;
         this.downloader = downloader;
         this.tracker = tracker;
+        this.findThreads = findThreads;
+        this.resolveThreads = resolveThreads;
+        this.queueCapacity = queueCapacity;
+        this.outbox = new KafkaOutbox(kafka, HEARTBEAT_INTERVAL_MS);
     }
 
     @Override
     public void run() {
 
+        if (findThreads > 1 || resolveThreads > 1) {
+            LOG.info("Processing artifacts in stages with {} find and {} resolve threads", findThreads, resolveThreads);
+            finders = new PipelineStage("find", findThreads, queueCapacity);
+            resolvers = new PipelineStage("resolve", resolveThreads, queueCapacity);
+        }
+
         kafka.subscribe(DefaultTopics.REQUESTED, Artifact.class, (a, lane) -> {
             LOG.info("######################################## Consuming next {} record {} ...", lane, a);
 
@@ -77,32 +108,160 @@ public class Main implements Runnable {
             }
             lm.reportProgress(a, lane);
 
-            if (tracker.shouldSkip(a)) {
-                LOG.info("Skipping {} (has already been processed)", a);
-                return;
+            if (finders != null) {
+                inFlight.add(downloadInStages(a, lane));
+            } else if (!shouldSkipOrStart(a)) {
+                download(a, lane);
             }
-            // ok to "start" tracking (=in-memory), but "done" is set after pom-analyzer
-            tracker.markStarted(a);
-
-            download(a, lane);
         });
 
         while (true) {
             LOG.debug("Polling ...");
             kafka.poll();
+            if (finders != null) {
+                processInFlight();
+            }
+        }
+    }
+
+    private boolean shouldSkipOrStart(Artifact a) {
+        if (tracker.shouldSkip(a)) {
+            LOG.info("Skipping {} (has already been processed)", a);
+            return true;
+        }
+        // ok to "start" tracking (=in-memory), but "done" is set after pom-analyzer
+        tracker.markStarted(a);
+        return false;
+    }
+
+    /**
+     * Existence checks and cached results are handled in the find stage, only
+     * found artifacts are handed off to the (slow) resolve stage. Concurrent
+     * records of the same GAV, the key used for publishing, share the outcome
+     * of the first record, but each one is published on its own lane. The
+     * records join the flight before the tracker is asked, which would
+     * otherwise skip the duplicates as started. Records that arrive after the
+     * flight has landed are skipped by the tracker and get the stored outcome
+     * instead. Outcomes are published from the polling thread, the Kafka client
+     * is not thread-safe.
+     */
+    private CompletableFuture<Void> downloadInStages(Artifact a, Lane lane) {
+        var gav = MavenRepositoryUtils.toGAV(a);
+        return flights.get(gav, () -> {
+            if (shouldSkipOrStart(a)) {
+                return CompletableFuture.completedFuture(getStoredOutcome(a));
+            }
+            return finders.supply(() -> runGuarded(a, () -> find(a))) //
+                    .thenCompose(s -> {
+                        if (s.status != Status.FOUND) {
+                            return CompletableFuture.completedFuture(s);
+                        }
+                        // blocks the find worker while the resolve queue is full
+                        return resolvers.supply(() -> runGuarded(s.artifact, () -> resolve(s.artifact)));
+                    });
+        }).thenAcceptAsync(s -> {
+            // null, if no outcome has been stored for a skipped record
+            if (s != null) {
+                publishOutcome(s, lane);
+            }
+        }, outbox);
+    }
+
+    private Result getStoredOutcome(Artifact a) {
+        var s = db.get(a);
+        if (s == null) {
+            LOG.info("No stored outcome for skipped artifact {}, not publishing it", a);
+            return null;
+        }
+        switch (s.status) {
+        case NOT_FOUND:
+        case CRASHED:
+        case RESOLVED:
+        case DEPS_MISSING:
+        case DONE:
+            return s;
+        default:
+            LOG.info("Stored status {} of skipped artifact {} is no outcome, not publishing it", s.status, a);
+            return null;
+        }
+    }
+
+    /**
+     * Polling continues while records are in flight. The consumer cannot pause
+     * single partitions or commit single offsets, {@link Kafka#commit()} always
+     * commits the position behind all polled records. Polling is therefore
+     * paused while {@code queueCapacity} records are still running (only
+     * heartbeats are sent), and offsets are committed once all polled records
+     * have been processed. To guarantee progress of the committed offsets, no
+     * more records are polled once twice as many records wait for their
+     * commit.
+     */
+    private void processInFlight() {
+        outbox.publishPending();
+        var running = getRunning();
+        while (running.size() >= queueCapacity) {
+            outbox.publishUntilDone(CompletableFuture.anyOf(running.toArray(new CompletableFuture[0])));
+            running = getRunning();
+        }
+        if (!running.isEmpty() && inFlight.size() >= 2 * queueCapacity) {
+            outbox.publishUntilDone(CompletableFuture.allOf(running.toArray(new CompletableFuture[0])));
+            running.clear();
+        }
+        for (var f : inFlight) {
+            if (f.isCompletedExceptionally()) {
+                // other records still finish, then crash (and restart) without committing
+                outbox.publishUntilDone(CompletableFuture.allOf(inFlight.toArray(new CompletableFuture[0])));
+                inFlight.clear();
+                rethrowCause(f);
+            }
+        }
+        if (running.isEmpty() && !inFlight.isEmpty()) {
+            inFlight.clear();
+            kafka.commit();
+            LOG.info("Pipeline stages: [{}] [{}], {} duplicates shared an outcome", finders, resolvers, flights.getNumShared());
+        }
+    }
+
+    private List<CompletableFuture<Void>> getRunning() {
+        var running = new ArrayList<CompletableFuture<Void>>();
+        for (var f : inFlight) {
+            if (!f.isDone()) {
+                running.add(f);
+            }
+        }
+        return running;
+    }
+
+    private static void rethrowCause(CompletableFuture<Void> f) {
+        try {
+            f.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
         }
     }
 
     private void download(Artifact a, Lane lane) {
+        var state = runGuarded(a, () -> {
+            var s = find(a);
+            return s.status == Status.FOUND //
+                    ? resolve(s.artifact)
+                    : s;
+        });
+        publishOutcome(state, lane);
+    }
+
+    private Result runGuarded(Artifact a, Supplier<Result> work) {
+        var result = new AtomicReference<Result>();
         try {
-            timedExec.run(a, () -> {
-                var state = db.get(a);
-                if (state == null || state.status == Status.REQUESTED) {
-                    findAndProcess(a, lane);
-                } else {
-                    process(state, lane);
-                }
-            });
+            timedExec.run(a, () -> result.set(work.get()));
+            return result.get();
         } catch (Exception e) {
             var s = db.recordCrash(a, e);
             if (s.numCrashes < MAX_TRIES_PER_COORD) {
@@ -111,77 +270,78 @@ public class Main implements Runnable {
             }
             // ... or prevent endless crash loop
             LOG.info("Artifact {} has now crashed {} times, giving up.", s.numCrashes, a);
-            var s2 = db.markCrashed(a);
-            publishError(s2);
+            return db.markCrashed(a);
         }
     }
 
-    private void findAndProcess(Artifact a, Lane lane) {
-        var b = artifactFinder.findArtifact(a);
-
-        if (b == null) {
-            var state = db.markNotFound(a);
-            publishError(state);
-        } else {
-            // gav(a) == gav(b), fix only affects file content
-            var state = db.markFound(b);
-            process(state, lane);
+    /**
+     * @return the final state of the artifact or FOUND, if it still needs to be
+     *         resolved
+     */
+    private Result find(Artifact a) {
+        var state = db.get(a);
+        if (state == null || state.status == Status.REQUESTED) {
+            return findAndMark(a);
         }
-    }
-
-    private void process(Result state, Lane lane) {
-        var a = state.artifact;
-
         switch (state.status) {
-        case NOT_FOUND:
-        case CRASHED:
-            // skip
-            publishError(state);
-            break;
-        case FOUND:
-            continueFound(a, lane);
-            break;
         case RESOLVED:
         case DEPS_MISSING:
         case DONE:
-            reusePreviousResult(lane, a, state.status);
-            break;
+            if (utils.getLocalPomFile(a).exists()) {
+                // no processing required, just move on
+                LOG.info("Reusing cached result for artifact {} ...", a);
+                return state;
+            }
+            LOG.error("Unexpected: Status of {} is {}, but local pom is missing. Redownloading ...", a, state.status);
+            db.reset(a);
+            db.markRequested(a);
+            return findAndMark(a);
         default:
-            LOG.error("Skipping {} with unexpected status {} ...", state.artifact, state.status);
-            break;
+            return state;
         }
     }
 
-    private void continueFound(Artifact a, Lane lane) {
+    private Result findAndMark(Artifact a) {
+        var b = artifactFinder.findArtifact(a);
+        // gav(a) == gav(b), fix only affects file content
+        return b == null //
+                ? db.markNotFound(a)
+                : db.markFound(b);
+    }
+
+    private Result resolve(Artifact a) {
         LOG.info("Artifact {} was found, attempting to download/resolve it ...", a);
         try {
             downloader.download(a);
-            db.markResolved(a);
-            publish(a, lane);
+            return db.markResolved(a);
         } catch (ResolutionException e) {
             // this error is common, take a shortcut and prevent re-attempt
             db.recordCrash(a, e);
-            var s = db.markCrashed(a);
-            publishError(s);
+            return db.markCrashed(a);
         }
     }
 
-    private void reusePreviousResult(Lane lane, Artifact a, Status status) {
-        var pom = utils.getLocalPomFile(a);
-        if (pom.exists()) {
-            // no processing required, just move on
-            LOG.info("Reusing cached result for artifact {} ...", a);
-            publish(a, lane);
-        } else {
-            LOG.error("Unexpected: Status of {} is {}, but local pom is missing. Redownloading ...", a, status);
-            db.reset(a);
-            db.markRequested(a);
-            findAndProcess(a, lane);
+    private void publishOutcome(Result state, Lane lane) {
+        switch (state.status) {
+        case NOT_FOUND:
+        case CRASHED:
+            // skip
+            publishError(state);
+            break;
+        case RESOLVED:
+        case DEPS_MISSING:
+        case DONE:
+            publish(state.artifact, lane);
+            break;
+        default:
+            LOG.error("Skipping {} with unexpected status {} ...", state.artifact, state.status);
+            break;
         }
     }
 
     private void publish(Artifact a, Lane lane) {
         LOG.info("Publishing result for artifact {} ... ({})", a, lane);
+        db.flush();
         var gav = MavenRepositoryUtils.toGAV(a);
         // use GAV as key to eliminate parallel/duplicate processing in multiple workers
         kafka.publish(gav, a, DefaultTopics.DOWNLOADED, lane);
@@ -199,6 +359,7 @@ public class Main implements Runnable {
             var msg = String.format("Unexpected status {} for {} to publish an error", s.status, s.artifact);
             throw new IllegalStateException(msg);
         }
+        db.flush();
         var msg = new SimpleErrorMessage<Artifact>(s.artifact, s.stacktrace);
         kafka.publish(msg, DefaultTopics.DOWNLOADED, Lane.ERROR);
     }
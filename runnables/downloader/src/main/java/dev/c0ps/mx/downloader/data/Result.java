@@ -21,6 +21,9 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
 import dev.c0ps.maven.data.Pom;
 import dev.c0ps.maveneasyindex.Artifact;
 
@@ -34,6 +37,12 @@ public class Result {
     public int numCrashes;
     public String stacktrace;
 
+    // hashes of payloads that are kept in a separate blob store
+    @JsonInclude(Include.NON_NULL)
+    public String pomRef;
+    @JsonInclude(Include.NON_NULL)
+    public String stacktraceRef;
+
     @Override
     public boolean equals(Object obj) {
         return EqualsBuilder.reflectionEquals(this, obj);
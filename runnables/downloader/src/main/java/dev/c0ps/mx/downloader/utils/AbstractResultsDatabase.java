@@ -0,0 +1,367 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static dev.c0ps.commons.Asserts.assertNotNull;
+import static dev.c0ps.mx.downloader.data.Status.CRASHED;
+import static dev.c0ps.mx.downloader.data.Status.DEPS_MISSING;
+import static dev.c0ps.mx.downloader.data.Status.DONE;
+import static dev.c0ps.mx.downloader.data.Status.FOUND;
+import static dev.c0ps.mx.downloader.data.Status.NOT_FOUND;
+import static dev.c0ps.mx.downloader.data.Status.REQUESTED;
+import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
+
+import java.io.Closeable;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.maven.artifact.versioning.ComparableVersion;
+
+import dev.c0ps.commons.Asserts;
+import dev.c0ps.maven.data.Pom;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.Version;
+
+/**
+ * Contains the state machine of a {@link ResultsDatabase}. Subclasses only need
+ * to provide the storage of individual {@link Result} records.
+ */
+public abstract class AbstractResultsDatabase implements ResultsDatabase, Closeable {
+
+    private static final Set<String> VALID_TRANSITIONS = new HashSet<>();
+
+    static {
+        // crawler -> downloader
+        VALID_TRANSITIONS.add(transition(null, FOUND));
+        // depgraph -> downloader
+        VALID_TRANSITIONS.add(transition(null, REQUESTED));
+
+        VALID_TRANSITIONS.add(transition(REQUESTED, FOUND));
+        VALID_TRANSITIONS.add(transition(REQUESTED, NOT_FOUND));
+
+        VALID_TRANSITIONS.add(transition(FOUND, FOUND));
+        VALID_TRANSITIONS.add(transition(FOUND, CRASHED));
+        VALID_TRANSITIONS.add(transition(FOUND, RESOLVED));
+
+        VALID_TRANSITIONS.add(transition(RESOLVED, CRASHED));
+        VALID_TRANSITIONS.add(transition(RESOLVED, DEPS_MISSING));
+
+        VALID_TRANSITIONS.add(transition(DEPS_MISSING, CRASHED));
+        VALID_TRANSITIONS.add(transition(DEPS_MISSING, DONE));
+
+        VALID_TRANSITIONS.add(transition(CRASHED, CRASHED));
+        VALID_TRANSITIONS.add(transition(CRASHED, RESOLVED));
+        VALID_TRANSITIONS.add(transition(CRASHED, DEPS_MISSING));
+
+        // finished from cache
+        VALID_TRANSITIONS.add(transition(NOT_FOUND, NOT_FOUND));
+        VALID_TRANSITIONS.add(transition(DONE, DONE));
+    }
+
+    private final Version toolVersion;
+
+    private BlobStore blobs;
+
+    protected AbstractResultsDatabase(Version toolVersion) {
+        this.toolVersion = toolVersion;
+    }
+
+    /**
+     * Enables the storage of poms and stacktraces in a separate
+     * {@link BlobStore}. Stored results then only reference their payloads, so
+     * status transitions rewrite small records. Results with inlined payloads
+     * remain readable and are migrated on their next transition.
+     */
+    public void setBlobStore(BlobStore blobs) {
+        this.blobs = blobs;
+    }
+
+    /**
+     * @return the stored result or null, if the artifact is unknown
+     */
+    protected abstract Result read(Artifact a);
+
+    protected abstract void write(Artifact a, Result r);
+
+    /**
+     * Stores the outcome of a validated transition. Implementations that are
+     * shared between processes can override this to make sure that the stored
+     * status has not been changed in the meantime.
+     */
+    protected void write(Artifact a, Status before, Result r) {
+        write(a, r);
+    }
+
+    /**
+     * Stores results that can combine several validated transitions, e.g., of
+     * a write-back cache. Every result replaces the status that has been read
+     * before. Implementations that are shared between processes can override
+     * this to reject results whose stored status has changed in the meantime.
+     */
+    protected void writeAll(List<PendingWrite> writes) {
+        for (var w : writes) {
+            write(w.artifact, w.before, w.result);
+        }
+    }
+
+    protected abstract void remove(Artifact a);
+
+    /**
+     * @return stored results, payloads have not been resolved yet
+     */
+    protected abstract Stream<Result> readByStatus(Status s);
+
+    @Override
+    public Result get(Artifact a) {
+        return resolvePayloads(read(a));
+    }
+
+    @Override
+    public Result markRequested(Artifact a) {
+        return update(a, true, REQUESTED);
+    }
+
+    @Override
+    public Result markFound(Artifact a) {
+        return update(a, true, FOUND);
+    }
+
+    @Override
+    public Result markNotFound(Artifact a) {
+        return update(a, false, NOT_FOUND);
+    }
+
+    @Override
+    public Result markResolved(Artifact a) {
+        return update(a, false, RESOLVED);
+    }
+
+    @Override
+    public Result recordCrash(Artifact a, Throwable t) {
+        assertNotNull(t);
+        var cause = unwrapOriginalCause(t);
+        return update(a, false, r -> {
+            r.numCrashes += 1;
+            if (t != null) {
+                r.stacktrace = ExceptionUtils.getStackTrace(cause);
+                r.stacktraceRef = null;
+            }
+        });
+    }
+
+    @Override
+    public Result markCrashed(Artifact a) {
+        var old = get(a);
+        if (old.stacktrace == null) {
+            throw new IllegalStateException("Stacktrace is null in result");
+        }
+        if (old.numCrashes < 1) {
+            throw new IllegalStateException("No crash has been recorded in result");
+        }
+        return update(a, false, r -> {
+            r.status = Status.CRASHED;
+            r.numCrashes = old.numCrashes;
+            r.stacktrace = old.stacktrace;
+            r.stacktraceRef = old.stacktraceRef;
+        });
+    }
+
+    private static Throwable unwrapOriginalCause(Throwable t) {
+        boolean isRuntimeExceptionAndNoSubtype = RuntimeException.class.equals(t.getClass());
+        boolean isWrapped = isRuntimeExceptionAndNoSubtype && t.getCause() != null;
+        return isWrapped ? unwrapOriginalCause(t.getCause()) : t;
+    }
+
+    @Override
+    public Result markDepsMissing(Pom p) {
+        var a = MavenRepositoryUtils.toArtifact(p);
+        return update(a, false, d -> {
+            d.status = DEPS_MISSING;
+            d.pom = p;
+            d.pomRef = null;
+            // successful transition resets crash info
+            d.numCrashes = 0;
+            d.stacktrace = null;
+            d.stacktraceRef = null;
+        });
+    }
+
+    @Override
+    public Result markDone(Artifact a) {
+        return update(a, false, DONE);
+    }
+
+    @Override
+    public void reset(Artifact a) {
+        remove(a);
+    }
+
+    @Override
+    public Stream<Result> streamByStatus(Status s) {
+        return readByStatus(s).map(this::resolvePayloads);
+    }
+
+    @Override
+    public void close() {
+        // nothing to release by default
+    }
+
+    private Result update(Artifact a, boolean shouldUpdateArtifact, Status s) {
+        return update(a, shouldUpdateArtifact, r -> {
+            r.status = s;
+            // successful transition resets crash info
+            r.numCrashes = 0;
+            r.stacktrace = null;
+            r.stacktraceRef = null;
+        });
+    }
+
+    private Result update(Artifact a, boolean shouldUpdateArtifact, Consumer<Result> c) {
+        Asserts.assertNotNull(a);
+        var r = readResultOrCreateNew(a);
+
+        var stateBefore = r.status;
+        var numCrashesBefore = r.numCrashes;
+
+        c.accept(r);
+
+        var stateAfter = r.status;
+        var numCrashesAfter = r.numCrashes;
+        var wasCrash = (numCrashesAfter - numCrashesBefore > 0) && stateBefore == stateAfter;
+
+        var hasCrashedWithoutStacktrace = stateAfter == CRASHED && r.stacktrace == null && r.stacktraceRef == null;
+        if (hasCrashedWithoutStacktrace) {
+            throw new IllegalStateException("Result has CRASHED without stacktrace");
+        }
+
+        var triesToMarkKnownPackageAsRequested = stateBefore != null && stateAfter == REQUESTED && !wasCrash;
+        if (triesToMarkKnownPackageAsRequested) {
+            var msg = String.format("Cannot mark package %s as REQUESTED: was known before", a);
+            throw new IllegalStateException(msg);
+        }
+
+        if (shouldUpdateArtifact) {
+            // the artifact might have been altered, e.g., fixed packaging
+            r.artifact = a;
+        }
+
+        var t = transition(stateBefore, stateAfter);
+        boolean isInvalidStateTransition = !VALID_TRANSITIONS.contains(t) && !wasCrash;
+        if (isInvalidStateTransition) {
+            var msg = String.format("Invalid state transition for package %s: %s", a, t);
+            throw new IllegalStateException(msg);
+        }
+
+        // remember smallest version that was involved with creating this result
+        setVersionIfRequired(r);
+
+        write(a, stateBefore, externalizePayloads(r));
+
+        // only payloads that are in memory already, blobs are read in get/streamByStatus
+        return r;
+    }
+
+    private Result readResultOrCreateNew(Artifact a) {
+        var r = read(a);
+        return r != null //
+                ? r
+                : new Result();
+    }
+
+    /**
+     * @return a copy of the result that only references its payloads. Payloads
+     *         that are already stored are not serialized again.
+     */
+    private Result externalizePayloads(Result r) {
+        if (blobs == null) {
+            return r;
+        }
+        if (r.pom != null && r.pomRef == null) {
+            r.pomRef = blobs.put(r.pom);
+        }
+        if (r.stacktrace != null && r.stacktraceRef == null) {
+            r.stacktraceRef = blobs.put(r.stacktrace);
+        }
+        var stored = new Result();
+        stored.createdWith = r.createdWith;
+        stored.status = r.status;
+        stored.artifact = r.artifact;
+        stored.pomRef = r.pomRef;
+        stored.numCrashes = r.numCrashes;
+        stored.stacktraceRef = r.stacktraceRef;
+        return stored;
+    }
+
+    private Result resolvePayloads(Result r) {
+        if (r == null) {
+            return null;
+        }
+        var hasUnresolvedPom = r.pom == null && r.pomRef != null;
+        var hasUnresolvedStacktrace = r.stacktrace == null && r.stacktraceRef != null;
+        if (!hasUnresolvedPom && !hasUnresolvedStacktrace) {
+            return r;
+        }
+        if (blobs == null) {
+            var msg = String.format("Result for %s references external payloads, but no blob store is configured", r.artifact);
+            throw new IllegalStateException(msg);
+        }
+        if (hasUnresolvedPom) {
+            r.pom = blobs.get(r.pomRef, Pom.class);
+        }
+        if (hasUnresolvedStacktrace) {
+            r.stacktrace = blobs.get(r.stacktraceRef, String.class);
+        }
+        return r;
+    }
+
+    private void setVersionIfRequired(Result r) {
+        r.createdWith = r.createdWith == null //
+                ? toolVersion.get()
+                : getSmaller(r.createdWith, toolVersion.get());
+    }
+
+    private static String getSmaller(String v1, String v2) {
+        var cv1 = new ComparableVersion(v1);
+        var cv2 = new ComparableVersion(v2);
+        return cv1.compareTo(cv2) < 1 //
+                ? v1
+                : v2;
+    }
+
+    protected static String transition(Status a, Status b) {
+        return new StringBuilder().append(a).append("»").append(b).toString();
+    }
+
+    protected static class PendingWrite {
+
+        public final Artifact artifact;
+        public final Status before;
+        public final Result result;
+
+        public PendingWrite(Artifact artifact, Status before, Result result) {
+            this.artifact = artifact;
+            this.before = before;
+            this.result = result;
+        }
+    }
+}
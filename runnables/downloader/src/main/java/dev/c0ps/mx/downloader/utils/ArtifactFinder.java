@@ -18,14 +18,17 @@ package dev.c0ps.mx.downloader.utils;
 import static dev.c0ps.mx.infra.utils.MavenRepositoryUtils.toArtifact;
 import static java.lang.String.format;
 
-import java.io.IOException;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
 import java.net.URL;
-import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,7 +36,9 @@ import dev.c0ps.maven.data.Pom;
 import dev.c0ps.maveneasyindex.Artifact;
 import dev.c0ps.mx.downloader.data.Status;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils.UrlCheck;
 import jakarta.inject.Inject;
+import jakarta.inject.Named;
 
 public class ArtifactFinder {
 
@@ -43,21 +48,29 @@ public class ArtifactFinder {
 
     private static final Logger LOG = LoggerFactory.getLogger(ArtifactFinder.class);
 
-    private static final Pattern REGEX_PACKAGING = Pattern.compile(".*<\\s*packaging>\\s*([a-zA-Z0-9]+)\\s*<\\s*\\/packaging\\s*>.*", Pattern.DOTALL);
-
     private static final int ONE_HOUR_MS = 1000 * 60 * 60;
     private static final int ONE_DAY_MS = ONE_HOUR_MS * 24;
 
     private static final String[] PACKAGING_TYPES = new String[] { "jar", "war", "ear", "aar", "ejb" };
 
+    private static final String DECLARED = "declared";
+    private static final String PROTOCOL_HTTP = "protocol:http";
+
     private final ResultsDatabase db;
     private final MavenRepositoryUtils utils;
+    private final int parallelProbes;
+    private final FixStrategyStats stats;
 
-    @Inject
     public ArtifactFinder(ResultsDatabase db, MavenRepositoryUtils utils) {
+        this(db, utils, 1, FixStrategyStats.disabled());
+    }
+
+    @Inject
+    public ArtifactFinder(ResultsDatabase db, MavenRepositoryUtils utils, @Named("ArtifactFinder.parallelProbes") int parallelProbes, FixStrategyStats stats) {
         this.db = db;
         this.utils = utils;
-
+        this.parallelProbes = parallelProbes;
+        this.stats = stats;
     }
 
     public Artifact findArtifact(Pom p) {
@@ -110,25 +123,65 @@ public class ArtifactFinder {
     }
 
     private Artifact findArtifactWithStrategies(Artifact orig) {
-
         var a = cloneWithBasicFixes(orig);
-        Artifact fix;
-
-        if ((fix = exists(a)) != null) {
-            LOG.info("Found: {}", fix);
+        var candidates = getCandidates(a);
+
+        var key = getStatsKey(a);
+        if (stats.isEnabled()) {
+            // most successful fixes first, stable sort keeps the default order otherwise
+            var counts = stats.getCounts(key);
+            candidates.sort(Comparator.comparingInt(ArtifactFinder::getTier) //
+                    .thenComparingInt(c -> -counts.getOrDefault(c.strategy, 0)));
+        }
 
-            if ("pom".equals(fix.packaging)) {
+        var winner = parallelProbes > 1 //
+                ? findInParallel(candidates)
+                : findSequentially(candidates);
+        if (winner == null) {
+            return null;
+        }
+        stats.recordSuccess(key, winner.strategy);
+        return winner.fix;
+    }
 
-            }
+    /**
+     * The declared artifact is always probed first and the downgrade to http
+     * last, learned statistics only reorder the fixes in between.
+     */
+    private static int getTier(Candidate c) {
+        switch (c.strategy) {
+        case DECLARED:
+            return 0;
+        case PROTOCOL_HTTP:
+            return 2;
+        default:
+            return 1;
+        }
+    }
 
-            return fix;
+    private static String getStatsKey(Artifact a) {
+        String host;
+        try {
+            host = URI.create(a.repository).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
         }
+        return a.groupId + "@" + (host != null ? host : a.repository);
+    }
 
-        fix = tryFix(a, "changing packaging to lower case", tmp -> {
-            tmp.packaging = tmp.packaging.toLowerCase();
-        });
-        if (fix != null) {
-            return fix;
+    /**
+     * @return all variants of the artifact that should be probed, ordered by
+     *         priority
+     */
+    private List<Candidate> getCandidates(Artifact a) {
+        var candidates = new ArrayList<Candidate>();
+        candidates.add(new Candidate(a, DECLARED, null));
+
+        var lowerCase = a.packaging.toLowerCase();
+        if (!lowerCase.equals(a.packaging)) {
+            candidates.add(fix(a, "lowerCase", "changing packaging to lower case", tmp -> {
+                tmp.packaging = lowerCase;
+            }));
         }
 
         for (var pt : PACKAGING_TYPES) {
@@ -136,30 +189,84 @@ public class ArtifactFinder {
                 continue;
             }
             var msg = format("fixing packaging from %s to %s", a, pt);
-            fix = tryFix(a, msg, tmp -> {
+            candidates.add(fix(a, "packaging:" + pt, msg, tmp -> {
                 tmp.packaging = pt;
-            });
-            if (fix != null) {
-                return fix;
-            }
+            }));
         }
 
-        fix = tryProtocolReplace(a, "https://", "http://");
-        if (fix != null) {
-            return fix;
+        var from = "https://";
+        var to = "http://";
+        if (a.repository.startsWith(from)) {
+            candidates.add(fix(a, PROTOCOL_HTTP, "changing protocol to " + to, tmp -> {
+                tmp.repository = to + tmp.repository.substring(from.length());
+            }));
         }
+        return candidates;
+    }
 
+    private Winner findSequentially(List<Candidate> candidates) {
+        for (var c : candidates) {
+            var fix = exists(c.artifact, utils.checkGetRequestNonStatic(c.artifact));
+            if (fix != null) {
+                logFound(c, fix);
+                return new Winner(fix, c.strategy);
+            }
+        }
         // not found
         return null;
     }
 
-    private Artifact tryProtocolReplace(Artifact a, String from, String to) {
-        if (a.repository.startsWith(from)) {
-            return tryFix(a, "changing protocol to " + to, tmp -> {
-                tmp.repository = to + tmp.repository.substring(from.length());
-            });
+    /**
+     * Probes up to {@link #parallelProbes} candidates at once. A candidate only
+     * wins once all candidates with a higher priority have been ruled out, the
+     * probes of all lower priority candidates are cancelled.
+     */
+    private Winner findInParallel(List<Candidate> candidates) {
+        var probes = new ArrayList<CompletableFuture<UrlCheck>>(candidates.size());
+        try {
+            for (var i = 0; i < candidates.size(); i++) {
+                if (i % parallelProbes == 0) {
+                    var windowEnd = Math.min(i + parallelProbes, candidates.size());
+                    for (var j = probes.size(); j < windowEnd; j++) {
+                        probes.add(utils.checkGetRequestAsync(candidates.get(j).artifact));
+                    }
+                }
+                var c = candidates.get(i);
+                var fix = exists(c.artifact, await(probes.get(i)));
+                if (fix != null) {
+                    logFound(c, fix);
+                    return new Winner(fix, c.strategy);
+                }
+            }
+            // not found
+            return null;
+        } finally {
+            // also cancels the pending exchanges, not only the stages that depend on them
+            probes.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private static UrlCheck await(CompletableFuture<UrlCheck> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void logFound(Candidate c, Artifact fix) {
+        if (c.msg == null) {
+            LOG.info("Found: {}", fix);
+        } else {
+            LOG.info("Found artifact after: {}", c.msg);
         }
-        return null;
     }
 
     private static Artifact cloneWithBasicFixes(Artifact orig) {
@@ -172,19 +279,13 @@ public class ArtifactFinder {
         return a;
     }
 
-    private Artifact tryFix(Artifact a, String msg, Consumer<Artifact> fixer) {
+    private static Candidate fix(Artifact a, String strategy, String msg, Consumer<Artifact> fixer) {
         var tmp = a.clone();
         fixer.accept(tmp);
-        Artifact fix;
-        if ((fix = exists(tmp)) != null) {
-            LOG.info("Found artifact after: {}", msg);
-            return fix;
-        }
-        return null;
+        return new Candidate(tmp, strategy, msg);
     }
 
-    private Artifact exists(Artifact a) {
-        var res = utils.checkGetRequestNonStatic(a);
+    private Artifact exists(Artifact a, UrlCheck res) {
         if (res.url == null) {
             return null;
         }
@@ -229,7 +330,10 @@ public class ArtifactFinder {
     private Artifact parsePackagingFromUrl(Artifact a) {
 
         var url = utils.getUrl(a);
-        var packaging = parsePackagingFromUrl(url);
+        var content = utils.getContentNonStatic(url.toString());
+        // keep the fetched bytes, so Maven does not download the pom again
+        utils.storeInM2(a, content);
+        var packaging = PackagingSniffer.sniff(new ByteArrayInputStream(content));
 
         if (packaging.equals(a.packaging)) {
             return a;
@@ -241,14 +345,29 @@ public class ArtifactFinder {
     }
 
     public static String parsePackagingFromUrl(URL url) {
-        try {
-            var data = IOUtils.toString(url, StandardCharsets.UTF_8);
-            var matcher = REGEX_PACKAGING.matcher(data);
-            return matcher.matches() //
-                    ? matcher.group(1)
-                    : "jar";
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        var content = MavenRepositoryUtils.getContent(url.toString());
+        return PackagingSniffer.sniff(new ByteArrayInputStream(content));
+    }
+
+    private static class Candidate {
+        private final Artifact artifact;
+        private final String strategy;
+        private final String msg;
+
+        private Candidate(Artifact artifact, String strategy, String msg) {
+            this.artifact = artifact;
+            this.strategy = strategy;
+            this.msg = msg;
+        }
+    }
+
+    private static class Winner {
+        private final Artifact fix;
+        private final String strategy;
+
+        private Winner(Artifact fix, String strategy) {
+            this.fix = fix;
+            this.strategy = strategy;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.mx.infra.utils.RecordCodec;
+import dev.c0ps.mx.infra.utils.WriteOnceFiles;
+
+/**
+ * Content-addressed storage for large payloads that are shared by many results
+ * or that do not change between transitions (e.g., poms or stacktraces). Every
+ * blob is identified by the SHA-256 of its serialized content and is written
+ * only once. Blobs are immutable, so they can be read without any locking.
+ */
+public class BlobStore {
+
+    private final File dir;
+    private final RecordCodec codec;
+
+    public BlobStore(File dir, ObjectMapper om) {
+        this(dir, new RecordCodec(om));
+    }
+
+    public BlobStore(File dir, RecordCodec codec) {
+        this.dir = dir;
+        this.codec = codec;
+        dir.mkdirs();
+    }
+
+    /**
+     * @return the hash under which the serialized object is stored
+     */
+    public String put(Object o) {
+        var bytes = codec.encode(o);
+        var hash = sha256(bytes);
+        // concurrent writers of the same content produce identical files
+        WriteOnceFiles.write(f(hash), bytes);
+        return hash;
+    }
+
+    public <T> T get(String hash, Class<T> type) {
+        var f = f(hash);
+        if (!f.exists()) {
+            var msg = String.format("Blob %s does not exist (%s)", hash, f);
+            throw new IllegalStateException(msg);
+        }
+        return codec.read(f, type);
+    }
+
+    public boolean contains(String hash) {
+        return f(hash).exists();
+    }
+
+    private File f(String hash) {
+        return WriteOnceFiles.fanOut(dir, hash, "");
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            var md = MessageDigest.getInstance("SHA-256");
+            return String.format("%064x", new BigInteger(1, md.digest(bytes)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.Version;
+
+/**
+ * Keeps recently touched results in a bounded LRU cache in front of another
+ * {@link AbstractResultsDatabase}. In {@link Mode#WRITE_BACK}, repeated
+ * transitions of the same artifact are coalesced and only written on eviction
+ * or {@link #flush()}. Crashes are always written through, because they are
+ * often followed by a restart of the process.
+ */
+public class CachingResultsDatabase extends AbstractResultsDatabase {
+
+    public enum Mode {
+        WRITE_THROUGH, WRITE_BACK
+    }
+
+    private final AbstractResultsDatabase delegate;
+    private final Mode mode;
+    private final Map<String, Entry> cache;
+    // pending writes in insertion order, flushing does not need to scan the cache
+    private final Map<String, Entry> dirty = new LinkedHashMap<>();
+
+    public CachingResultsDatabase(Version toolVersion, AbstractResultsDatabase delegate, int maxSize, Mode mode) {
+        super(toolVersion);
+        this.delegate = delegate;
+        this.mode = mode;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= maxSize) {
+                    return false;
+                }
+                writeIfDirty(eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    @Override
+    protected synchronized Result read(Artifact a) {
+        var key = MavenRepositoryUtils.toGAV(a);
+        var e = cache.get(key);
+        if (e == null) {
+            var r = delegate.read(a);
+            if (r == null) {
+                return null;
+            }
+            e = new Entry(a, r, r.status);
+            cache.put(key, e);
+        }
+        // callers modify the result, cached instance must remain untouched
+        return copy(e.result);
+    }
+
+    @Override
+    protected synchronized void write(Artifact a, Result r) {
+        delegate.write(a, r);
+        var key = MavenRepositoryUtils.toGAV(a);
+        dirty.remove(key);
+        cache.put(key, new Entry(a, copy(r), r.status));
+    }
+
+    @Override
+    protected synchronized void write(Artifact a, Status before, Result r) {
+        var key = MavenRepositoryUtils.toGAV(a);
+        var old = cache.get(key);
+        if (mode == Mode.WRITE_BACK) {
+            // remember the stored status, the pending write replaces it
+            var e = new Entry(a, copy(r), old == null ? before : old.stored);
+            dirty.put(key, e);
+            cache.put(key, e);
+        } else {
+            delegate.write(a, before, r);
+            dirty.remove(key);
+            cache.put(key, new Entry(a, copy(r), r.status));
+        }
+    }
+
+    @Override
+    protected synchronized void remove(Artifact a) {
+        var key = MavenRepositoryUtils.toGAV(a);
+        cache.remove(key);
+        dirty.remove(key);
+        delegate.remove(a);
+    }
+
+    @Override
+    public Result recordCrash(Artifact a, Throwable t) {
+        var r = super.recordCrash(a, t);
+        writeThrough(a);
+        return r;
+    }
+
+    @Override
+    public Result markCrashed(Artifact a) {
+        var r = super.markCrashed(a);
+        writeThrough(a);
+        return r;
+    }
+
+    @Override
+    protected Stream<Result> readByStatus(Status s) {
+        flush();
+        return delegate.readByStatus(s);
+    }
+
+    @Override
+    public Map<Status, Long> countByStatus() {
+        flush();
+        return delegate.countByStatus();
+    }
+
+    private synchronized void writeThrough(Artifact a) {
+        writeIfDirty(MavenRepositoryUtils.toGAV(a));
+    }
+
+    /**
+     * Writes all pending changes, the cached results remain valid. Only a failed
+     * write empties the cache, e.g., when another process has changed a stored
+     * result in the meantime.
+     */
+    @Override
+    public synchronized void flush() {
+        if (!dirty.isEmpty()) {
+            var writes = new ArrayList<PendingWrite>();
+            for (var e : dirty.values()) {
+                writes.add(e.toPendingWrite());
+            }
+            try {
+                delegate.writeAll(writes);
+            } catch (RuntimeException e) {
+                // cached results are outdated after a conflict
+                cache.clear();
+                dirty.clear();
+                throw e;
+            }
+            for (var e : dirty.values()) {
+                e.stored = e.result.status;
+            }
+            dirty.clear();
+        }
+        delegate.flush();
+    }
+
+    @Override
+    public void close() {
+        flush();
+        delegate.close();
+    }
+
+    private void writeIfDirty(String key) {
+        var e = dirty.get(key);
+        if (e != null) {
+            delegate.writeAll(List.of(e.toPendingWrite()));
+            e.stored = e.result.status;
+            dirty.remove(key);
+        }
+    }
+
+    private static Result copy(Result r) {
+        var c = new Result();
+        c.createdWith = r.createdWith;
+        c.status = r.status;
+        c.artifact = r.artifact;
+        c.pom = r.pom;
+        c.numCrashes = r.numCrashes;
+        c.stacktrace = r.stacktrace;
+        c.pomRef = r.pomRef;
+        c.stacktraceRef = r.stacktraceRef;
+        return c;
+    }
+
+    private static class Entry {
+        private final Artifact artifact;
+        private final Result result;
+        // status in the delegate
+        private Status stored;
+
+        private Entry(Artifact artifact, Result result, Status stored) {
+            this.artifact = artifact;
+            this.result = result;
+            this.stored = stored;
+        }
+
+        private PendingWrite toPendingWrite() {
+            return new PendingWrite(artifact, stored, result);
+        }
+    }
+}
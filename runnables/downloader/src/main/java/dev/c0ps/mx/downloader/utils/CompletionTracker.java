@@ -32,7 +32,8 @@ public class CompletionTracker {
     private final MavenRepositoryUtils utils;
     private final File baseDir;
 
-    private final Set<Artifact> started = new HashSet<>();
+    // keyed by GAV like the markers, variants of an artifact are tracked together
+    private final Set<String> started = new HashSet<>();
 
     @Inject
     public CompletionTracker(MavenRepositoryUtils utils, @Named("dir.completion") File baseDir) {
@@ -40,34 +41,43 @@ public class CompletionTracker {
         this.baseDir = baseDir;
     }
 
-    public void clearMemory() {
+    public synchronized void clearMemory() {
         started.clear();
     }
 
-    public boolean shouldSkip(Artifact a) {
-        if (started.contains(a)) {
+    public synchronized boolean shouldSkip(Artifact a) {
+        var gav = MavenRepositoryUtils.toGAV(a);
+        if (started.contains(gav)) {
             return true;
         }
         if (exists(a)) {
-            started.add(a);
+            started.add(gav);
             return true;
         }
         return false;
     }
 
-    public void markStarted(Artifact a) {
-        started.add(a);
+    /**
+     * @return true, if the artifact has been completed, no matter whether it
+     *         has been started in memory
+     */
+    public boolean isCompleted(Artifact a) {
+        return exists(a);
     }
 
-    public void markAborted(Artifact a) {
+    public synchronized void markStarted(Artifact a) {
+        started.add(MavenRepositoryUtils.toGAV(a));
+    }
+
+    public synchronized void markAborted(Artifact a) {
         if (f(a).exists()) {
             throw new IllegalStateException(String.format("Cannot abort a completed artifact (%s)", a));
         }
-        started.remove(a);
+        started.remove(MavenRepositoryUtils.toGAV(a));
     }
 
-    public void markCompleted(Artifact a) {
-        started.add(a);
+    public synchronized void markCompleted(Artifact a) {
+        started.add(MavenRepositoryUtils.toGAV(a));
         try {
             var f = f(a);
             f.getParentFile().mkdirs();
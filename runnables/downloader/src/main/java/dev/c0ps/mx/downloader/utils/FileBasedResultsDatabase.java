@@ -15,251 +15,183 @@
  */
 package dev.c0ps.mx.downloader.utils;
 
-import static dev.c0ps.commons.Asserts.assertNotNull;
-import static dev.c0ps.mx.downloader.data.Status.CRASHED;
-import static dev.c0ps.mx.downloader.data.Status.DEPS_MISSING;
-import static dev.c0ps.mx.downloader.data.Status.DONE;
-import static dev.c0ps.mx.downloader.data.Status.FOUND;
-import static dev.c0ps.mx.downloader.data.Status.NOT_FOUND;
-import static dev.c0ps.mx.downloader.data.Status.REQUESTED;
-import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
-
 import java.io.File;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.function.Consumer;
-
-import org.apache.commons.lang3.exception.ExceptionUtils;
-import org.apache.maven.artifact.versioning.ComparableVersion;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.stream.Stream;
 
-import dev.c0ps.commons.Asserts;
 import dev.c0ps.io.IoUtils;
-import dev.c0ps.maven.data.Pom;
 import dev.c0ps.maveneasyindex.Artifact;
 import dev.c0ps.mx.downloader.data.Result;
 import dev.c0ps.mx.downloader.data.Status;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.RecordCodec;
 import dev.c0ps.mx.infra.utils.Version;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
-public class FileBasedResultsDatabase implements ResultsDatabase {
-
-    private static final Set<String> VALID_TRANSITIONS = new HashSet<>();
-
-    {
-        // crawler -> downloader
-        VALID_TRANSITIONS.add(transition(null, FOUND));
-        // depgraph -> downloader
-        VALID_TRANSITIONS.add(transition(null, REQUESTED));
-
-        VALID_TRANSITIONS.add(transition(REQUESTED, FOUND));
-        VALID_TRANSITIONS.add(transition(REQUESTED, NOT_FOUND));
-
-        VALID_TRANSITIONS.add(transition(FOUND, FOUND));
-        VALID_TRANSITIONS.add(transition(FOUND, CRASHED));
-        VALID_TRANSITIONS.add(transition(FOUND, RESOLVED));
-
-        VALID_TRANSITIONS.add(transition(RESOLVED, CRASHED));
-        VALID_TRANSITIONS.add(transition(RESOLVED, DEPS_MISSING));
-
-        VALID_TRANSITIONS.add(transition(DEPS_MISSING, CRASHED));
-        VALID_TRANSITIONS.add(transition(DEPS_MISSING, DONE));
-
-        VALID_TRANSITIONS.add(transition(CRASHED, CRASHED));
-        VALID_TRANSITIONS.add(transition(CRASHED, RESOLVED));
-        VALID_TRANSITIONS.add(transition(CRASHED, DEPS_MISSING));
+/**
+ * Stores every result in its own file. Status queries walk all results, unless
+ * the optional {@link StatusIndex} is maintained, which then has to be enabled
+ * for all processes that share the folder.
+ *
+ * Results are plain JSON, unless a {@link RecordCodec} is provided. Decoding
+ * detects the format, so existing results remain readable after a change.
+ */
+public class FileBasedResultsDatabase extends AbstractResultsDatabase {
 
-        // finished from cache
-        VALID_TRANSITIONS.add(transition(NOT_FOUND, NOT_FOUND));
-        VALID_TRANSITIONS.add(transition(DONE, DONE));
-    }
+    private static final String EXT = "result";
+    private static final String STATUS_INDEX_DIR = ".status-index";
 
-    private final Version toolVersion;
     private final IoUtils io;
     private final MavenRepositoryUtils mru;
+    private final RecordCodec codec;
     private final File baseDir;
+    private final StatusIndex index;
 
     @Inject
     public FileBasedResultsDatabase(Version toolVersion, IoUtils io, MavenRepositoryUtils mru, //
             @Named("IngestionDatabase.baseDir") File baseDir) {
-        this.toolVersion = toolVersion;
+        this(toolVersion, io, mru, null, baseDir, false);
+    }
+
+    public FileBasedResultsDatabase(Version toolVersion, IoUtils io, MavenRepositoryUtils mru, RecordCodec codec, File baseDir, boolean useStatusIndex) {
+        super(toolVersion);
         this.io = io;
         this.mru = mru;
+        this.codec = codec;
         this.baseDir = baseDir;
+        var indexDir = new File(baseDir, STATUS_INDEX_DIR);
+        if (useStatusIndex) {
+            index = new StatusIndex(indexDir);
+        } else {
+            index = null;
+            // changes are not tracked, an existing index must be rebuilt before its next use
+            if (indexDir.exists()) {
+                StatusIndex.invalidate(indexDir);
+            }
+        }
     }
 
     @Override
-    public Result get(Artifact a) {
+    protected Result read(Artifact a) {
         var f = f(a);
         if (!f.exists()) {
             return null;
         }
-        return io.readFromFile(f, Result.class);
+        return readFromFile(f);
     }
 
     @Override
-    public Result markRequested(Artifact a) {
-        return update(a, true, REQUESTED);
+    protected void write(Artifact a, Result r) {
+        var old = read(a);
+        write(a, old == null ? null : old.status, r);
     }
 
     @Override
-    public Result markFound(Artifact a) {
-        return update(a, true, FOUND);
-    }
-
-    @Override
-    public Result markNotFound(Artifact a) {
-        return update(a, false, NOT_FOUND);
-    }
-
-    @Override
-    public Result markResolved(Artifact a) {
-        return update(a, false, RESOLVED);
-    }
-
-    @Override
-    public Result recordCrash(Artifact a, Throwable t) {
-        assertNotNull(t);
-        var cause = unwrapOriginalCause(t);
-        return update(a, false, r -> {
-            r.numCrashes += 1;
-            if (t != null) {
-                r.stacktrace = ExceptionUtils.getStackTrace(cause);
-            }
-        });
-    }
-
-    @Override
-    public Result markCrashed(Artifact a) {
-        var old = get(a);
-        if (old.stacktrace == null) {
-            throw new IllegalStateException("Stacktrace is null in result");
-        }
-        if (old.numCrashes < 1) {
-            throw new IllegalStateException("No crash has been recorded in result");
+    protected void write(Artifact a, Status before, Result r) {
+        if (index == null || before == r.status) {
+            writeToFile(r, f(a));
+            return;
         }
-        return update(a, false, r -> {
-            r.status = Status.CRASHED;
-            r.numCrashes = old.numCrashes;
-            r.stacktrace = old.stacktrace;
-        });
-    }
-
-    private static Throwable unwrapOriginalCause(Throwable t) {
-        boolean isRuntimeExceptionAndNoSubtype = RuntimeException.class.equals(t.getClass());
-        boolean isWrapped = isRuntimeExceptionAndNoSubtype && t.getCause() != null;
-        return isWrapped ? unwrapOriginalCause(t.getCause()) : t;
-    }
-
-    @Override
-    public Result markDepsMissing(Pom p) {
-        var a = MavenRepositoryUtils.toArtifact(p);
-        return update(a, false, d -> {
-            d.status = DEPS_MISSING;
-            d.pom = p;
-            // successful transition resets crash info
-            d.numCrashes = 0;
-            d.stacktrace = null;
-        });
+        // a crash in between leaves the GAV listed twice, queries filter by the stored status
+        var gav = MavenRepositoryUtils.toGAV(a);
+        index.update(gav, null, r.status);
+        writeToFile(r, f(a));
+        index.update(gav, before, null);
     }
 
     @Override
-    public Result markDone(Artifact a) {
-        return update(a, false, DONE);
-    }
-
-    @Override
-    public void reset(Artifact a) {
+    protected void remove(Artifact a) {
         var f = f(a);
         if (f.exists()) {
+            var old = read(a);
             if (!f.delete()) {
                 var msg = String.format("Cannot delete completion marker of %s (%s)", a, f);
                 throw new IllegalStateException(msg);
             }
+            if (index != null) {
+                index.update(MavenRepositoryUtils.toGAV(a), old == null ? null : old.status, null);
+            }
         }
     }
 
-    private Result update(Artifact a, boolean shouldUpdateArtifact, Status s) {
-        return update(a, shouldUpdateArtifact, r -> {
-            r.status = s;
-            // successful transition resets crash info
-            r.numCrashes = 0;
-            r.stacktrace = null;
-        });
+    @Override
+    protected Stream<Result> readByStatus(Status s) {
+        if (index == null) {
+            return walkAllResults().filter(r -> r.status == s);
+        }
+        ensureCompleteIndex();
+        return index.get(s) //
+                .map(gav -> read(toArtifact(gav))) //
+                .filter(r -> r != null && r.status == s);
     }
 
-    private Result update(Artifact a, boolean shouldUpdateArtifact, Consumer<Result> c) {
-        Asserts.assertNotNull(a);
-        var f = f(a);
-        var r = readResultOrCreateNew(f);
-
-        var stateBefore = r.status;
-        var numCrashesBefore = r.numCrashes;
-
-        c.accept(r);
-
-        var stateAfter = r.status;
-        var numCrashesAfter = r.numCrashes;
-        var wasCrash = (numCrashesAfter - numCrashesBefore > 0) && stateBefore == stateAfter;
-
-        var hasCrashedWithoutStacktrace = stateAfter == CRASHED && r.stacktrace == null;
-        if (hasCrashedWithoutStacktrace) {
-            throw new IllegalStateException("Result has CRASHED without stacktrace");
+    @Override
+    public Map<Status, Long> countByStatus() {
+        if (index == null) {
+            var counts = new EnumMap<Status, Long>(Status.class);
+            for (var s : Status.values()) {
+                counts.put(s, 0L);
+            }
+            try (var all = walkAllResults()) {
+                all.filter(r -> r.status != null).forEach(r -> {
+                    counts.merge(r.status, 1L, Long::sum);
+                });
+            }
+            return counts;
         }
+        ensureCompleteIndex();
+        return index.count();
+    }
 
-        var triesToMarkKnownPackageAsRequested = stateBefore != null && stateAfter == REQUESTED && !wasCrash;
-        if (triesToMarkKnownPackageAsRequested) {
-            var msg = String.format("Cannot mark package %s as REQUESTED: was known before", a);
-            throw new IllegalStateException(msg);
+    @Override
+    public void close() {
+        if (index != null) {
+            index.close();
         }
+    }
 
-        if (shouldUpdateArtifact) {
-            // the artifact might have been altered, e.g., fixed packaging
-            r.artifact = a;
+    private void ensureCompleteIndex() {
+        if (!index.isComplete()) {
+            try (var all = walkAllResults()) {
+                index.rebuild(all);
+            }
         }
+    }
 
-        var t = transition(stateBefore, stateAfter);
-        boolean isInvalidStateTransition = !VALID_TRANSITIONS.contains(t) && !wasCrash;
-        if (isInvalidStateTransition) {
-            var msg = String.format("Invalid state transition for package %s: %s", a, t);
-            throw new IllegalStateException(msg);
+    private Stream<Result> walkAllResults() {
+        try {
+            return Files.walk(baseDir.toPath()) //
+                    .filter(p -> p.getFileName().toString().endsWith("." + EXT)) //
+                    .map(p -> readFromFile(p.toFile()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
         }
-
-        // remember smallest version that was involved with creating this result
-        setVersionIfRequired(r);
-
-        io.writeToFile(r, f);
-
-        return r;
     }
 
-    private Result readResultOrCreateNew(File f) {
-        var r = f.exists() //
+    private Result readFromFile(File f) {
+        return codec == null //
                 ? io.readFromFile(f, Result.class)
-                : new Result();
-        return r;
-    }
-
-    private void setVersionIfRequired(Result r) {
-        r.createdWith = r.createdWith == null //
-                ? toolVersion.get()
-                : getSmaller(r.createdWith, toolVersion.get());
+                : codec.read(f, Result.class);
     }
 
-    private File f(Artifact a) {
-        return mru.getMavenFilePathNonStatic(baseDir, a, "result");
+    private void writeToFile(Result r, File f) {
+        if (codec == null) {
+            io.writeToFile(r, f);
+        } else {
+            codec.write(r, f);
+        }
     }
 
-    private static String getSmaller(String v1, String v2) {
-        var cv1 = new ComparableVersion(v1);
-        var cv2 = new ComparableVersion(v2);
-        return cv1.compareTo(cv2) < 1 //
-                ? v1
-                : v2;
+    private static Artifact toArtifact(String gav) {
+        var parts = gav.split(":");
+        return new Artifact(parts[0], parts[1], parts[2]);
     }
 
-    private static String transition(Status a, Status b) {
-        return new StringBuilder().append(a).append("»").append(b).toString();
+    private File f(Artifact a) {
+        return mru.getMavenFilePathNonStatic(baseDir, a, EXT);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.mx.infra.utils.AppendLog;
+
+/**
+ * Counts which fix strategy of the {@link ArtifactFinder} succeeded for a
+ * group of artifacts (e.g., groupId and repository host). Every success is
+ * appended to an {@link AppendLog}, whose compactions aggregate the successes
+ * of all processes that share it.
+ */
+public class FixStrategyStats implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FixStrategyStats.class);
+
+    private static final String SEP = "\t";
+
+    private final boolean isEnabled;
+    private final AppendLog log;
+
+    private Map<String, Map<String, Integer>> counts = new HashMap<>();
+
+    /**
+     * @param file persists the statistics, can be null to keep them in memory
+     */
+    public FixStrategyStats(File file) {
+        this(true, file);
+    }
+
+    private FixStrategyStats(boolean isEnabled, File file) {
+        this.isEnabled = isEnabled;
+        if (file != null) {
+            log = new AppendLog(file, this::compact);
+            log.compact();
+            LOG.info("Loaded fix-strategy stats for {} keys from {}", counts.size(), file);
+        } else {
+            log = null;
+        }
+    }
+
+    /**
+     * @return statistics that do not record anything
+     */
+    public static FixStrategyStats disabled() {
+        return new FixStrategyStats(false, null);
+    }
+
+    public boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * @return number of successes per strategy, empty if nothing is known
+     */
+    public synchronized Map<String, Integer> getCounts(String key) {
+        var c = counts.get(key);
+        return c == null ? Map.of() : Map.copyOf(c);
+    }
+
+    public synchronized void recordSuccess(String key, String strategy) {
+        if (!isEnabled || hasSeparators(key) || hasSeparators(strategy)) {
+            return;
+        }
+        add(counts, key, strategy, 1);
+        if (log != null) {
+            log.append(toLine(key, strategy, 1));
+        }
+    }
+
+    @Override
+    public void close() {
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    private static void add(Map<String, Map<String, Integer>> counts, String key, String strategy, int num) {
+        counts.computeIfAbsent(key, k -> new HashMap<>()).merge(strategy, num, Integer::sum);
+    }
+
+    /**
+     * Aggregates the log, which contains the own successes as well as the ones
+     * of other processes.
+     */
+    private synchronized List<String> compact(List<String> lines) {
+        var aggregated = new HashMap<String, Map<String, Integer>>();
+        for (var line : lines) {
+            var parts = line.split(SEP);
+            if (parts.length != 3) {
+                LOG.warn("Skipping malformed line in fix-strategy stats {}: {}", log.getFile(), line);
+                continue;
+            }
+            try {
+                add(aggregated, parts[0], parts[1], Integer.parseInt(parts[2]));
+            } catch (NumberFormatException e) {
+                LOG.warn("Skipping malformed line in fix-strategy stats {}: {}", log.getFile(), line);
+            }
+        }
+        counts = aggregated;
+
+        var compacted = new ArrayList<String>();
+        for (var e : counts.entrySet()) {
+            for (var e2 : e.getValue().entrySet()) {
+                compacted.add(toLine(e.getKey(), e2.getKey(), e2.getValue()));
+            }
+        }
+        return compacted;
+    }
+
+    private static String toLine(String key, String strategy, int num) {
+        return key + SEP + strategy + SEP + num;
+    }
+
+    private static boolean hasSeparators(String s) {
+        return s == null || s.contains(SEP) || s.contains("\n");
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.BloomFilter;
+import dev.c0ps.mx.infra.utils.InterProcessLock;
+import dev.c0ps.mx.infra.utils.LongHashTable;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+
+/**
+ * {@link CompletionTracker} that keeps completed artifacts in a memory-mapped
+ * {@link LongHashTable} instead of individual marker files. A Bloom filter in
+ * front of the table answers most negative lookups without any locking and
+ * without touching the mapped pages. Started artifacts are only kept as 64bit
+ * hashes.
+ *
+ * Existing marker files are imported once, when the index is created. The
+ * index can be shared by several processes (e.g., downloader and pom-analyzer),
+ * every access of the table is guarded by an {@link InterProcessLock}. New
+ * completions are also appended to a small mapped journal, whose header
+ * (generation and count) is checked before every lookup. The Bloom filter is
+ * extended with the journaled keys of other processes. The journal starts over
+ * in a new generation once it is full, which makes the other processes
+ * rebuild their filter from the table.
+ */
+public class IndexedCompletionTracker extends CompletionTracker implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IndexedCompletionTracker.class);
+
+    public static final String INDEX_FILE = ".completion-index";
+    public static final String JOURNAL_FILE = ".completion-index.journal";
+    public static final String LOCK_FILE = ".completion-index.lock";
+
+    private static final int PRESENT = 1;
+    private static final long MIN_EXPECTED_INSERTIONS = 100_000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    // header of the journal, followed by the keys
+    private static final int GENERATION = 0;
+    private static final int COUNT = 8;
+    private static final int JOURNAL_HEADER_SIZE = 16;
+    private static final int JOURNAL_CAPACITY = 128 * 1024; // keys, 1MB
+
+    private final InterProcessLock lock;
+    private final LongHashTable completed;
+    private final MappedByteBuffer journal;
+    private final LongHashTable started = new LongHashTable();
+
+    private volatile BloomFilter bloom;
+    // position in the journal up to which the filter contains all entries
+    private volatile long seenGeneration;
+    private volatile int seenCount;
+
+    public IndexedCompletionTracker(MavenRepositoryUtils utils, File baseDir) {
+        super(utils, baseDir);
+        lock = new InterProcessLock(new File(baseDir, LOCK_FILE));
+        try {
+            journal = lock.call(() -> mapJournal(new File(baseDir, JOURNAL_FILE)));
+            completed = lock.call(() -> {
+                var f = new File(baseDir, INDEX_FILE);
+                if (!f.exists()) {
+                    importMarkers(baseDir, f);
+                }
+                var table = new LongHashTable(f);
+                rebuildBloomFilter(table);
+                return table;
+            });
+        } catch (RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void clearMemory() {
+        started.clear();
+    }
+
+    @Override
+    public boolean shouldSkip(Artifact a) {
+        var key = key(a);
+        return started.contains(key) || isCompleted(key);
+    }
+
+    @Override
+    public boolean isCompleted(Artifact a) {
+        return isCompleted(key(a));
+    }
+
+    @Override
+    public void markStarted(Artifact a) {
+        started.put(key(a), PRESENT);
+    }
+
+    @Override
+    public synchronized void markAborted(Artifact a) {
+        var key = key(a);
+        if (isCompleted(key)) {
+            throw new IllegalStateException(String.format("Cannot abort a completed artifact (%s)", a));
+        }
+        started.remove(key);
+    }
+
+    @Override
+    public synchronized void markCompleted(Artifact a) {
+        var key = key(a);
+        lock.run(() -> {
+            catchUp();
+            if (completed.contains(key)) {
+                return;
+            }
+            // journal first, a crash in between only causes a false positive of the filters
+            append(key);
+            // like the marker files, changes reach the disk through the page cache
+            completed.put(key, PRESENT);
+            bloom.add(key);
+            seenGeneration = journal.getLong(GENERATION);
+            seenCount = journal.getInt(COUNT);
+        });
+    }
+
+    @Override
+    protected boolean exists(Artifact a) {
+        var key = key(a);
+        return lock.call(() -> {
+            completed.refresh();
+            return completed.contains(key);
+        });
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.run(completed::close);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private boolean isCompleted(long key) {
+        if (hasUnseenCompletions()) {
+            synchronized (this) {
+                lock.run(this::catchUp);
+            }
+        }
+        // most lookups are negative and end here
+        if (!bloom.mightContain(key)) {
+            return false;
+        }
+        return lock.call(() -> {
+            completed.refresh();
+            return completed.contains(key);
+        });
+    }
+
+    private boolean hasUnseenCompletions() {
+        // unguarded read of the header, a torn read only causes an unnecessary catch up
+        return journal.getLong(GENERATION) != seenGeneration || journal.getInt(COUNT) != seenCount;
+    }
+
+    /**
+     * Adds the completions of other processes to the filter, requires the lock.
+     */
+    private void catchUp() {
+        completed.refresh();
+        var generation = journal.getLong(GENERATION);
+        var count = journal.getInt(COUNT);
+        if (generation != seenGeneration || count < seenCount || completed.size() > bloom.getExpectedInsertions()) {
+            rebuildBloomFilter(completed);
+            return;
+        }
+        for (var i = seenCount; i < count; i++) {
+            bloom.add(journal.getLong(keyOffset(i)));
+        }
+        seenCount = count;
+    }
+
+    private void append(long key) {
+        var count = journal.getInt(COUNT);
+        if (count == JOURNAL_CAPACITY) {
+            // the other processes notice the new generation and rebuild their filters
+            journal.putLong(GENERATION, journal.getLong(GENERATION) + 1);
+            count = 0;
+        }
+        journal.putLong(keyOffset(count), key);
+        journal.putInt(COUNT, count + 1);
+    }
+
+    /**
+     * Requires the lock.
+     */
+    private void rebuildBloomFilter(LongHashTable table) {
+        var expected = Math.max(MIN_EXPECTED_INSERTIONS, table.size() * 2L);
+        var b = new BloomFilter(expected, FALSE_POSITIVE_RATE);
+        table.forEach((key, value) -> {
+            b.add(key);
+        });
+        bloom = b;
+        seenGeneration = journal.getLong(GENERATION);
+        seenCount = journal.getInt(COUNT);
+    }
+
+    private static int keyOffset(int idx) {
+        return JOURNAL_HEADER_SIZE + idx * 8;
+    }
+
+    private static MappedByteBuffer mapJournal(File f) {
+        try (var ch = FileChannel.open(f.toPath(), CREATE, READ, WRITE)) {
+            // a new file is extended with zeros, mapping remains valid after closing
+            return ch.map(MapMode.READ_WRITE, 0, keyOffset(JOURNAL_CAPACITY));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long key(Artifact a) {
+        return LongHashTable.hash(MavenRepositoryUtils.toGAV(a));
+    }
+
+    private static void importMarkers(File baseDir, File index) {
+        LOG.info("Importing completion markers from {} ...", baseDir);
+        // import into a temporary file, an interrupted import is restarted
+        var tmp = new File(index.getPath() + ".import");
+        try {
+            Files.deleteIfExists(tmp.toPath());
+            var numImported = 0;
+            try (var table = new LongHashTable(tmp); var files = Files.walk(baseDir.toPath())) {
+                var it = files.filter(p -> p.getFileName().toString().endsWith("." + EXT)).iterator();
+                while (it.hasNext()) {
+                    var gav = MavenRepositoryUtils.getGAVFromMavenFilePath(baseDir, it.next().toFile());
+                    if (gav != null) {
+                        table.put(LongHashTable.hash(gav), PRESENT);
+                        numImported++;
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), index.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            LOG.info("Imported {} completion markers", numImported);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
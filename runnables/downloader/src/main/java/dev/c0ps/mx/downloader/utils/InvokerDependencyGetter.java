@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static java.lang.String.join;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.module.ResolutionException;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.DefaultInvoker;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+import org.apache.maven.shared.invoker.PrintStreamHandler;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+/**
+ * Forks <code>mvn dependency:get</code> for every artifact.
+ */
+public class InvokerDependencyGetter implements MavenDependencyGetter {
+
+    private final File baseDir;
+    private final File dirM2;
+    private final File mavenHome;
+
+    @Inject
+    public InvokerDependencyGetter(@Named("dir.base") File baseDir, //
+            @Named("dir.m2") File dirM2, //
+            @Named("dir.mavenHome") File mavenHome) {
+        this.baseDir = baseDir;
+        this.dirM2 = dirM2;
+        this.mavenHome = mavenHome;
+    }
+
+    @Override
+    public int get(Artifact a, Set<String> repositories, boolean includeTransitiveDeps, OutputStream out) {
+        var coordinate = String.format("%s:%s:%s:%s", a.groupId, a.artifactId, a.version, a.packaging);
+        try {
+
+            var props = new Properties();
+            props.setProperty("artifact", coordinate);
+            props.setProperty("remoteRepositories", join(",", repositories));
+            props.setProperty("transitive", Boolean.toString(includeTransitiveDeps));
+
+            var req = new DefaultInvocationRequest();
+            req.setOutputHandler(new PrintStreamHandler(new PrintStream(out), true));
+            req.setGoals(List.of("dependency:get"));
+            req.setProperties(props);
+            req.setBatchMode(true);
+
+            var invoker = new DefaultInvoker();
+            invoker.setWorkingDirectory(baseDir);
+            invoker.setMavenHome(mavenHome);
+            invoker.setLocalRepositoryDirectory(new File(dirM2, "repository"));
+
+            var res = invoker.execute(req);
+            return res.getExitCode();
+
+        } catch (MavenInvocationException e) {
+            throw new ResolutionException(e);
+        }
+    }
+}
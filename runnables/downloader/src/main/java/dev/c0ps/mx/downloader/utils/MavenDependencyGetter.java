@@ -0,0 +1,33 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.io.OutputStream;
+import java.util.Set;
+
+import dev.c0ps.maveneasyindex.Artifact;
+
+/**
+ * Places an artifact (and optionally its dependencies) in the local .m2
+ * repository, like <code>mvn dependency:get</code> would.
+ */
+public interface MavenDependencyGetter {
+
+    /**
+     * @return exit code of the resolution, 0 on success
+     */
+    int get(Artifact a, Set<String> repositories, boolean includeTransitiveDeps, OutputStream out);
+}
@@ -20,25 +20,23 @@ import static java.lang.String.join;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintStream;
 import java.lang.module.ResolutionException;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipFile;
 
 import dev.c0ps.maveneasyindex.Artifact;
-import org.apache.maven.shared.invoker.DefaultInvocationRequest;
-import org.apache.maven.shared.invoker.DefaultInvoker;
-import org.apache.maven.shared.invoker.MavenInvocationException;
-import org.apache.maven.shared.invoker.PrintStreamHandler;
+import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
 import jakarta.inject.Inject;
-import jakarta.inject.Named;
 
 public class MavenDownloader {
 
@@ -50,41 +48,70 @@ public class MavenDownloader {
 
     private static final Logger LOG = LoggerFactory.getLogger(MavenDownloader.class);
 
-    private final File baseDir;
-    private final File dirM2;
-    private final File mavenHome;
-
     private final MavenRepositoryUtils mru;
+    private final MavenDependencyGetter getter;
 
-    @Inject
-    public MavenDownloader(MavenRepositoryUtils mru, //
-            @Named("dir.base") File baseDir, //
-            @Named("dir.m2") File dirM2, //
-            @Named("dir.mavenHome") File mavenHome) {
+    public MavenDownloader(MavenRepositoryUtils mru, File baseDir, File dirM2, File mavenHome) {
+        this(mru, new InvokerDependencyGetter(baseDir, dirM2, mavenHome));
+    }
 
+    @Inject
+    public MavenDownloader(MavenRepositoryUtils mru, MavenDependencyGetter getter) {
         this.mru = mru;
-        this.baseDir = baseDir;
-        this.dirM2 = dirM2;
-        this.mavenHome = mavenHome;
+        this.getter = getter;
     }
 
     public void download(Artifact a) {
-        var coord = String.format("%s:%s:%s:%s", a.groupId, a.artifactId, a.version, a.packaging);
-        mvnDependencyGet(coord, a.repository, true);
-
+        // classifier jars are fetched concurrently with the main resolution
+        var classifierDownloads = new ArrayList<CompletableFuture<Void>>();
+        var newClassifierJars = new ArrayList<File>();
+        var isCancelled = new AtomicBoolean(false);
         if ("pom".equals(a.packaging)) {
             LOG.info("Skipping download of sources/javadoc for pom.");
         } else {
             for (var classifier : Set.of("sources", "javadoc")) {
-                try {
-                    var f = mru.downloadToM2WithClassifier(a, classifier, "jar");
-                    if (f != null && !isValidZip(f)) {
+                var jar = mru.getM2PathWithClassifier(a, classifier, "jar");
+                if (!jar.exists()) {
+                    newClassifierJars.add(jar);
+                }
+                classifierDownloads.add(mru.downloadToM2WithClassifierAsync(a, classifier, "jar", isCancelled::get).thenAccept(f -> {
+                    // verified downloads do not need to be re-validated
+                    if (f != null && !MavenRepositoryUtils.hasVerifiedChecksum(f) && !isValidZip(f)) {
                         LOG.error("Deleting invalid JAR file ...");
                         f.delete();
                     }
-                } catch (ResolutionException e) {
-                    // ignore exceptions for classifier jars
+                }));
+            }
+        }
+
+        try {
+            mvnDependencyGet(a, true);
+        } catch (RuntimeException e) {
+            // the artifact is not stored, so neither should be its classifier jars
+            isCancelled.set(true);
+            for (var f : classifierDownloads) {
+                try {
+                    f.join();
+                } catch (CompletionException | CancellationException ignored) {
+                    // outcome is irrelevant, the jars get removed anyways
+                }
+            }
+            for (var jar : newClassifierJars) {
+                for (var ext : Set.of("", ".sha1", ".md5")) {
+                    FileUtils.deleteQuietly(new File(jar.getPath() + ext));
+                }
+            }
+            throw e;
+        }
+
+        for (var f : classifierDownloads) {
+            try {
+                f.join();
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof ResolutionException)) {
+                    throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
                 }
+                // ignore exceptions for classifier jars
             }
         }
     }
@@ -104,70 +131,20 @@ public class MavenDownloader {
     }
 
     public int checkDependencies(Artifact a, OutputStream out) {
-        var coord = String.format("%s:%s:%s:%s", a.groupId, a.artifactId, a.version, a.packaging);
-        return mvnDependencyGet(coord, a.repository, true, out);
+        return mvnDependencyGet(a, true, out);
     }
 
-    private int mvnDependencyGet(String coordinate, String repository, boolean includeTransitiveDeps, OutputStream out) {
-        var repositories = unique(CENTRAL, repository);
-        LOG.info("Downloading coordinate '{}' from repositories [{}] ...", coordinate, join(", ", repositories));
-
-        try {
-
-            var props = new Properties();
-            props.setProperty("artifact", coordinate);
-            props.setProperty("remoteRepositories", join(",", repositories));
-            props.setProperty("transitive", Boolean.toString(includeTransitiveDeps));
-
-            var req = new DefaultInvocationRequest();
-
-            req.setOutputHandler(new PrintStreamHandler(new PrintStream(out), true));
-            req.setGoals(List.of("dependency:get"));
-            req.setProperties(props);
-            req.setBatchMode(true);
-
-            var invoker = new DefaultInvoker();
-            invoker.setWorkingDirectory(baseDir);
-            invoker.setMavenHome(mavenHome);
-            invoker.setLocalRepositoryDirectory(new File(dirM2, "repository"));
-            var res = invoker.execute(req);
-            return res.getExitCode();
-
-        } catch (MavenInvocationException e) {
-            throw new ResolutionException(e);
-        }
+    private int mvnDependencyGet(Artifact a, boolean includeTransitiveDeps, OutputStream out) {
+        var repositories = unique(CENTRAL, a.repository);
+        LOG.info("Downloading artifact '{}' from repositories [{}] ...", a, join(", ", repositories));
+        return getter.get(a, repositories, includeTransitiveDeps, out);
     }
 
-    private void mvnDependencyGet(String coordinate, String repository, boolean includeTransitiveDeps) {
-        var repositories = unique(CENTRAL, repository);
-        LOG.info("Downloading coordinate '{}' from repositories [{}] ...", coordinate, join(", ", repositories));
-
-        try {
-
-            var props = new Properties();
-            props.setProperty("artifact", coordinate);
-            props.setProperty("remoteRepositories", join(",", repositories));
-            props.setProperty("transitive", Boolean.toString(includeTransitiveDeps));
-
-            var req = new DefaultInvocationRequest();
-            req.setOutputHandler(new PrintStreamHandler(System.out, true));
-            req.setGoals(List.of("dependency:get"));
-            req.setProperties(props);
-            req.setBatchMode(true);
-
-            var invoker = new DefaultInvoker();
-            invoker.setWorkingDirectory(baseDir);
-            invoker.setMavenHome(mavenHome);
-            invoker.setLocalRepositoryDirectory(new File(dirM2, "repository"));
-
-            var res = invoker.execute(req);
-
-            if (res.getExitCode() != 0) {
-                throw new ResolutionException(res.getExecutionException());
-            }
-
-        } catch (MavenInvocationException e) {
-            throw new ResolutionException(e);
+    private void mvnDependencyGet(Artifact a, boolean includeTransitiveDeps) {
+        var exitCode = mvnDependencyGet(a, includeTransitiveDeps, System.out);
+        if (exitCode != 0) {
+            var msg = String.format("Resolution of %s failed with exit code %d", a, exitCode);
+            throw new ResolutionException(msg);
         }
     }
 
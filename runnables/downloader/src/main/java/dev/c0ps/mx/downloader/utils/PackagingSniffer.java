@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.io.InputStream;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Determines the packaging of a pom without building a model. The parser only
+ * looks at the direct children of the project and stops at its
+ * <code>packaging</code> element, which may appear in any position.
+ */
+public class PackagingSniffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackagingSniffer.class);
+
+    public static final String DEFAULT_PACKAGING = "jar";
+
+    private static final Pattern VALID_PACKAGING = Pattern.compile("[a-zA-Z0-9]+");
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    private PackagingSniffer() {
+        // no instantiation
+    }
+
+    private static XMLInputFactory createFactory() {
+        var f = XMLInputFactory.newInstance();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return f;
+    }
+
+    /**
+     * @return the declared packaging or {@value #DEFAULT_PACKAGING}, if none is
+     *         declared
+     */
+    public static String sniff(InputStream in) {
+        try {
+            var r = FACTORY.createXMLStreamReader(in);
+            try {
+                var depth = 0;
+                while (r.hasNext()) {
+                    switch (r.next()) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        depth++;
+                        if (depth == 2) {
+                            var name = r.getLocalName();
+                            if ("packaging".equals(name)) {
+                                var packaging = r.getElementText().trim();
+                                return VALID_PACKAGING.matcher(packaging).matches() //
+                                        ? packaging
+                                        : DEFAULT_PACKAGING;
+                            }
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        depth--;
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException e) {
+            LOG.warn("Cannot parse pom, assuming packaging '{}': {}", DEFAULT_PACKAGING, e.getMessage());
+        }
+        return DEFAULT_PACKAGING;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.PostgresConnectionPool;
+import dev.c0ps.mx.infra.utils.Version;
+
+/**
+ * Stores all results in a single Postgres table, which allows several
+ * instances on different nodes to share one results store. Transitions are
+ * only written if the stored status is still the one that has been validated
+ * before: new results are inserted if no row exists, existing ones are updated
+ * with a compare-and-set on the status. Concurrent modifications (including
+ * deletions) result in an {@link IllegalStateException}. Batches of coalesced
+ * transitions are handled the same way, their intermediate steps have already
+ * been validated.
+ */
+public class PostgresResultsDatabase extends AbstractResultsDatabase {
+
+    private static final String SQL_CREATE_TABLE = "CREATE TABLE IF NOT EXISTS results (" //
+            + "gav TEXT PRIMARY KEY, " //
+            + "status TEXT, " //
+            + "num_crashes INT NOT NULL, " //
+            + "created_with TEXT, " //
+            + "data JSONB NOT NULL)";
+
+    private static final String SQL_CREATE_INDEX = "CREATE INDEX IF NOT EXISTS results_status ON results (status, gav)";
+
+    private static final String SQL_SELECT = "SELECT data FROM results WHERE gav = ?";
+    private static final String SQL_SELECT_PAGE = "SELECT gav, data FROM results WHERE status = ? AND gav > ? ORDER BY gav LIMIT ?";
+    private static final String SQL_COUNT = "SELECT status, COUNT(*) FROM results WHERE status IS NOT NULL GROUP BY status";
+    private static final String SQL_DELETE = "DELETE FROM results WHERE gav = ?";
+
+    private static final String SQL_INSERT = "INSERT INTO results (gav, status, num_crashes, created_with, data) VALUES (?, ?, ?, ?, ?::jsonb) " //
+            + "ON CONFLICT (gav) DO NOTHING";
+
+    // unlike an upsert, a row that has been deleted in the meantime is not re-inserted
+    private static final String SQL_COMPARE_AND_SET = "UPDATE results SET status = ?, num_crashes = ?, created_with = ?, data = ?::jsonb " //
+            + "WHERE gav = ? AND status IS NOT DISTINCT FROM ?";
+
+    private static final int PAGE_SIZE = 1000;
+
+    private final ObjectMapper om;
+    private final PostgresConnectionPool pool;
+
+    public PostgresResultsDatabase(Version toolVersion, ObjectMapper om, PostgresConnectionPool pool) {
+        super(toolVersion);
+        this.om = om;
+        this.pool = pool;
+
+        pool.run(c -> {
+            try (var s = c.createStatement()) {
+                s.execute(SQL_CREATE_TABLE);
+                s.execute(SQL_CREATE_INDEX);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    protected Result read(Artifact a) {
+        var json = pool.run(c -> {
+            try (var s = c.prepareStatement(SQL_SELECT)) {
+                s.setString(1, MavenRepositoryUtils.toGAV(a));
+                try (var rs = s.executeQuery()) {
+                    return rs.next() ? rs.getString(1) : null;
+                }
+            }
+        });
+        return json == null ? null : fromJson(json);
+    }
+
+    @Override
+    protected void write(Artifact a, Result r) {
+        var old = read(a);
+        writeAll(List.of(new PendingWrite(a, old == null ? null : old.status, r)));
+    }
+
+    @Override
+    protected void write(Artifact a, Status before, Result r) {
+        // the transition has been validated against the status that is compared
+        writeAll(List.of(new PendingWrite(a, before, r)));
+    }
+
+    @Override
+    protected void writeAll(List<PendingWrite> writes) {
+        if (writes.isEmpty()) {
+            return;
+        }
+        var inserts = new ArrayList<PendingWrite>();
+        var updates = new ArrayList<PendingWrite>();
+        for (var w : writes) {
+            (w.before == null ? inserts : updates).add(w);
+        }
+        var conflicts = new ArrayList<String>();
+        pool.run(c -> {
+            if (!inserts.isEmpty()) {
+                int[] numInserts;
+                try (var s = c.prepareStatement(SQL_INSERT)) {
+                    for (var w : inserts) {
+                        setValues(s, w.artifact, w.result, toJson(w.result));
+                        s.addBatch();
+                    }
+                    numInserts = s.executeBatch();
+                }
+                for (var i = 0; i < numInserts.length; i++) {
+                    // rows without status exist, e.g., after a crash of an unknown package
+                    if (numInserts[i] == 0) {
+                        updates.add(inserts.get(i));
+                    }
+                }
+            }
+            if (updates.isEmpty()) {
+                return null;
+            }
+            int[] numUpdates;
+            try (var s = c.prepareStatement(SQL_COMPARE_AND_SET)) {
+                for (var w : updates) {
+                    setStatus(s, 1, w.result.status);
+                    s.setInt(2, w.result.numCrashes);
+                    s.setString(3, w.result.createdWith);
+                    s.setString(4, toJson(w.result));
+                    s.setString(5, MavenRepositoryUtils.toGAV(w.artifact));
+                    setStatus(s, 6, w.before);
+                    s.addBatch();
+                }
+                numUpdates = s.executeBatch();
+            }
+            for (var i = 0; i < numUpdates.length; i++) {
+                // the driver might not report counts (SUCCESS_NO_INFO), only 0 is a conflict
+                if (numUpdates[i] == 0) {
+                    var w = updates.get(i);
+                    conflicts.add(String.format("%s (not %s anymore)", MavenRepositoryUtils.toGAV(w.artifact), w.before));
+                }
+            }
+            return null;
+        });
+        if (!conflicts.isEmpty()) {
+            var msg = String.format("Concurrent modification of %d packages: %s", conflicts.size(), conflicts);
+            throw new IllegalStateException(msg);
+        }
+    }
+
+    @Override
+    protected void remove(Artifact a) {
+        pool.run(c -> {
+            try (var s = c.prepareStatement(SQL_DELETE)) {
+                s.setString(1, MavenRepositoryUtils.toGAV(a));
+                return s.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Results are fetched lazily in pages (keyset pagination on the GAV), so
+     * no connection is held while the stream is consumed.
+     */
+    @Override
+    protected Stream<Result> readByStatus(Status status) {
+        var it = new Iterator<Result>() {
+            private final LinkedList<Result> page = new LinkedList<>();
+            private String lastGav = "";
+            private boolean isExhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                if (page.isEmpty() && !isExhausted) {
+                    fetchPage();
+                }
+                return !page.isEmpty();
+            }
+
+            @Override
+            public Result next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.poll();
+            }
+
+            private void fetchPage() {
+                var numRows = pool.run(c -> {
+                    try (var s = c.prepareStatement(SQL_SELECT_PAGE)) {
+                        s.setString(1, status.name());
+                        s.setString(2, lastGav);
+                        s.setInt(3, PAGE_SIZE);
+                        var n = 0;
+                        try (var rs = s.executeQuery()) {
+                            while (rs.next()) {
+                                lastGav = rs.getString(1);
+                                page.add(fromJson(rs.getString(2)));
+                                n++;
+                            }
+                        }
+                        return n;
+                    }
+                });
+                isExhausted = numRows < PAGE_SIZE;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(it, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public Map<Status, Long> countByStatus() {
+        return pool.run(c -> {
+            var counts = new EnumMap<Status, Long>(Status.class);
+            for (var s : Status.values()) {
+                counts.put(s, 0L);
+            }
+            try (var s = c.createStatement(); var rs = s.executeQuery(SQL_COUNT)) {
+                while (rs.next()) {
+                    counts.put(Status.valueOf(rs.getString(1)), rs.getLong(2));
+                }
+            }
+            return counts;
+        });
+    }
+
+    @Override
+    public void close() {
+        pool.close();
+    }
+
+    private Result fromJson(String json) {
+        try {
+            return om.readValue(json, Result.class);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private String toJson(Result r) {
+        try {
+            return om.writeValueAsString(r);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void setValues(PreparedStatement s, Artifact a, Result r, String json) throws SQLException {
+        s.setString(1, MavenRepositoryUtils.toGAV(a));
+        setStatus(s, 2, r.status);
+        s.setInt(3, r.numCrashes);
+        s.setString(4, r.createdWith);
+        s.setString(5, json);
+    }
+
+    private static void setStatus(PreparedStatement s, int idx, Status status) throws SQLException {
+        if (status == null) {
+            s.setNull(idx, Types.VARCHAR);
+        } else {
+            s.setString(idx, status.name());
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.DependencyRequest;
+import org.eclipse.aether.resolution.DependencyResolutionException;
+import org.eclipse.aether.supplier.RepositorySystemSupplier;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.filter.DependencyFilterUtils;
+import org.eclipse.aether.util.repository.SimpleArtifactDescriptorPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+
+/**
+ * Resolves artifacts through an in-process Maven Resolver. The repository
+ * system and its session are kept for the lifetime of the downloader, so
+ * repeated resolutions share the local repository, the http connection pool,
+ * and do not pay for starting a new JVM. Exit codes follow
+ * <code>mvn dependency:get</code> (0 on success, 1 on failure).
+ */
+public class ResolverDependencyGetter implements MavenDependencyGetter, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResolverDependencyGetter.class);
+
+    private static final int EXIT_SUCCESS = 0;
+    private static final int EXIT_FAILURE = 1;
+
+    private final RepositorySystem system;
+    private final RepositorySystemSession session;
+    private final Map<String, RemoteRepository> remotes = new ConcurrentHashMap<>();
+
+    @Inject
+    public ResolverDependencyGetter(@Named("dir.m2") File dirM2) {
+        system = new RepositorySystemSupplier().get();
+
+        var s = MavenRepositorySystemUtils.newSession();
+        var localRepo = new LocalRepository(new File(dirM2, "repository"));
+        s.setLocalRepositoryManager(system.newLocalRepositoryManager(s, localRepo));
+        // required to activate profiles, e.g., for a jdk version
+        s.setSystemProperties(System.getProperties());
+        // fail on missing or broken poms instead of silently dropping their dependencies
+        s.setArtifactDescriptorPolicy(new SimpleArtifactDescriptorPolicy(ArtifactDescriptorPolicy.STRICT));
+        // no RepositoryCache: it would grow with every artifact of a long-lived session
+        s.setReadOnly();
+        session = s;
+    }
+
+    @Override
+    public int get(Artifact a, Set<String> repositories, boolean includeTransitiveDeps, OutputStream out) {
+        var ps = new PrintStream(out, true);
+        var artifact = toAetherArtifact(a);
+        var repos = toRemoteRepositories(repositories);
+        try {
+            if (includeTransitiveDeps) {
+                var collect = new CollectRequest(new Dependency(artifact, JavaScopes.RUNTIME), repos);
+                var req = new DependencyRequest(collect, DependencyFilterUtils.classpathFilter(JavaScopes.RUNTIME));
+                for (var res : system.resolveDependencies(session, req).getArtifactResults()) {
+                    ps.printf("[INFO] Resolved %s%n", res.getArtifact());
+                }
+            } else {
+                var res = system.resolveArtifact(session, new ArtifactRequest(artifact, repos, null));
+                ps.printf("[INFO] Resolved %s%n", res.getArtifact());
+            }
+            return EXIT_SUCCESS;
+        } catch (DependencyResolutionException | ArtifactResolutionException e) {
+            LOG.info("Resolution of {} failed: {}", a, e.getMessage());
+            ps.printf("[ERROR] %s%n", e.getMessage());
+            return EXIT_FAILURE;
+        }
+    }
+
+    @Override
+    public void close() {
+        system.shutdown();
+    }
+
+    private org.eclipse.aether.artifact.Artifact toAetherArtifact(Artifact a) {
+        // map packaging to file extension (e.g., maven-plugin -> jar), like Maven does for types
+        var type = session.getArtifactTypeRegistry().get(a.packaging);
+        return type != null //
+                ? new DefaultArtifact(a.groupId, a.artifactId, null, type.getExtension(), a.version, type)
+                : new DefaultArtifact(a.groupId, a.artifactId, null, a.packaging, a.version);
+    }
+
+    private List<RemoteRepository> toRemoteRepositories(Set<String> urls) {
+        var repos = new ArrayList<RemoteRepository>(urls.size());
+        for (var url : urls) {
+            repos.add(remotes.computeIfAbsent(url, u -> {
+                var id = MavenDownloader.CENTRAL.equals(u) ? "central" : "repo-" + Integer.toHexString(u.hashCode());
+                return new RemoteRepository.Builder(id, "default", u).build();
+            }));
+        }
+        return system.newResolutionRepositories(session, repos);
+    }
+}
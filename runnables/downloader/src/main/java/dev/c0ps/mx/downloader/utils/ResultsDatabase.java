@@ -15,9 +15,13 @@
  */
 package dev.c0ps.mx.downloader.utils;
 
+import java.util.Map;
+import java.util.stream.Stream;
+
 import dev.c0ps.maven.data.Pom;
 import dev.c0ps.maveneasyindex.Artifact;
 import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
 
 public interface ResultsDatabase {
 
@@ -40,4 +44,19 @@ public interface ResultsDatabase {
     Result markDone(Artifact a);
 
     void reset(Artifact a);
+
+    /**
+     * @return all stored results that are currently in the given status
+     */
+    Stream<Result> streamByStatus(Status s);
+
+    Map<Status, Long> countByStatus();
+
+    /**
+     * Persists all pending changes. Needs to be called before other processes
+     * are notified about a result, e.g., through Kafka.
+     */
+    default void flush() {
+        // nothing to do by default
+    }
 }
\ No newline at end of file
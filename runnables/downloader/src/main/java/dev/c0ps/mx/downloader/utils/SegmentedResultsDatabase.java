@@ -0,0 +1,749 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.infra.utils.InterProcessLock;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.RecordCodec;
+import dev.c0ps.mx.infra.utils.Version;
+
+/**
+ * Log-structured {@link ResultsDatabase}. All state changes are appended to
+ * large segment files, an in-memory index points to the latest record of each
+ * GAV. Sealed segments are compacted in the background once they contain
+ * enough outdated records.
+ *
+ * Records have the layout [crc32][keyLength][valueLength][status][key][value],
+ * a valueLength of -1 marks a deletion. The status is duplicated in the header
+ * to maintain the per-status index without parsing the values. Torn writes at
+ * the end of a segment are detected through the checksum and truncated by the
+ * next writer.
+ *
+ * The directory can be shared by several processes (e.g., downloader,
+ * pom-analyzer and depgraph). Appends and compactions are serialized through an
+ * {@link InterProcessLock}, reads never take it. A small mapped state file
+ * counts appends and compactions, every process compares these counters before
+ * an operation and reads the appended records of the others from the segment
+ * tails. After a compaction of another process, the index is rebuilt once.
+ *
+ * Reads do not block writers, they are validated against the checksum and key
+ * of the record and only fall back to the monitor when a compaction has moved
+ * the record in the meantime.
+ */
+public class SegmentedResultsDatabase extends AbstractResultsDatabase {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SegmentedResultsDatabase.class);
+
+    private static final String SEGMENT_EXT = ".seg";
+    private static final String LOCK_FILE = "LOCK";
+    private static final String STATE_FILE = "STATE";
+    private static final String COMPACTION_FILE = "compaction.tmp";
+    private static final String COMPACTION_MANIFEST = "compaction.manifest";
+
+    private static final int HEADER_SIZE = 13;
+    private static final int TOMBSTONE = -1;
+
+    // offsets of the counters in the state file
+    private static final int GENERATION = 0;
+    private static final int SEQUENCE = 8;
+    private static final int STATE_SIZE = 16;
+
+    private final RecordCodec codec;
+    private final File dir;
+    private final long maxSegmentSize;
+    private final double compactionThreshold;
+
+    private final InterProcessLock lock;
+    private final MappedByteBuffer state;
+    private final ScheduledExecutorService compactor;
+
+    private volatile View view = new View();
+    // counters of the state file that are reflected in the view
+    private volatile long seenGeneration;
+    private volatile long seenSequence;
+    private volatile boolean isClosed = false;
+
+    public SegmentedResultsDatabase(Version toolVersion, ObjectMapper om, File dir, long maxSegmentSize, long compactionIntervalMS, double compactionThreshold) {
+        this(toolVersion, new RecordCodec(om), dir, maxSegmentSize, compactionIntervalMS, compactionThreshold);
+    }
+
+    public SegmentedResultsDatabase(Version toolVersion, RecordCodec codec, File dir, long maxSegmentSize, long compactionIntervalMS, double compactionThreshold) {
+        super(toolVersion);
+        this.codec = codec;
+        this.dir = dir;
+        this.maxSegmentSize = maxSegmentSize;
+        this.compactionThreshold = compactionThreshold;
+
+        dir.mkdirs();
+        lock = new InterProcessLock(new File(dir, LOCK_FILE));
+        try {
+            state = mapState(new File(dir, STATE_FILE));
+            locked(() -> {
+                recoverCompaction();
+                view = load();
+            });
+        } catch (IOException e) {
+            lock.close();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+        LOG.info("Loaded {} results from {} segments in {}", view.index.size(), view.segments.size(), dir);
+
+        if (compactionIntervalMS > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                var t = new Thread(r, SegmentedResultsDatabase.class.getSimpleName() + "-compactor");
+                t.setDaemon(true);
+                return t;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfRequired, compactionIntervalMS, compactionIntervalMS, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
+        }
+    }
+
+    @Override
+    protected Result read(Artifact a) {
+        return read(MavenRepositoryUtils.toGAV(a));
+    }
+
+    private Result read(String key) {
+        refresh();
+        var v = view;
+        var p = v.index.get(key);
+        if (p == null) {
+            return null;
+        }
+        var buf = tryReadRecord(v, key, p);
+        if (buf == null) {
+            // moved by a compaction, index and segments are consistent in the monitor
+            synchronized (this) {
+                assertOpen();
+                v = view;
+                p = v.index.get(key);
+                if (p == null) {
+                    return null;
+                }
+                buf = tryReadRecord(v, key, p);
+                if (buf == null) {
+                    var msg = String.format("Invalid record for %s in segment %s", key, segmentFile(p.segment));
+                    throw new IllegalStateException(msg);
+                }
+            }
+        }
+        var keyLen = buf.getInt(4);
+        var valLen = buf.getInt(8);
+        // format of each value is detected individually, segments can be mixed
+        return codec.decode(buf.array(), HEADER_SIZE + keyLen, valLen, Result.class);
+    }
+
+    /**
+     * @return the record or null, if the position does not point to a record of
+     *         the key (anymore)
+     */
+    private static ByteBuffer tryReadRecord(View v, String key, Position p) {
+        var s = v.segments.get(p.segment);
+        if (s == null) {
+            return null;
+        }
+        var buf = ByteBuffer.allocate(p.length);
+        try {
+            readFully(s.channel, buf, p.offset);
+        } catch (ClosedChannelException | EOFException e) {
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (buf.getInt(0) != checksum(buf.array())) {
+            return null;
+        }
+        var keyLen = buf.getInt(4);
+        var isKey = keyLen > 0 && HEADER_SIZE + keyLen <= p.length //
+                && key.equals(new String(buf.array(), HEADER_SIZE, keyLen, UTF_8));
+        return isKey ? buf : null;
+    }
+
+    @Override
+    protected synchronized void write(Artifact a, Result r) {
+        assertOpen();
+        var key = MavenRepositoryUtils.toGAV(a);
+        var value = codec.encode(r);
+        locked(() -> {
+            sync();
+            append(key, r.status, value);
+        });
+    }
+
+    @Override
+    protected synchronized void remove(Artifact a) {
+        assertOpen();
+        var key = MavenRepositoryUtils.toGAV(a);
+        locked(() -> {
+            sync();
+            if (view.index.containsKey(key)) {
+                append(key, null, null);
+            }
+        });
+    }
+
+    @Override
+    protected Stream<Result> readByStatus(Status s) {
+        refresh();
+        List<String> keys;
+        synchronized (this) {
+            keys = new ArrayList<>(view.byStatus.get(s));
+        }
+        return keys.stream() //
+                .map(this::read) //
+                .filter(r -> r != null && r.status == s);
+    }
+
+    @Override
+    public Map<Status, Long> countByStatus() {
+        refresh();
+        var counts = new EnumMap<Status, Long>(Status.class);
+        synchronized (this) {
+            view.byStatus.forEach((s, keys) -> {
+                counts.put(s, (long) keys.size());
+            });
+        }
+        return counts;
+    }
+
+    public int size() {
+        refresh();
+        return view.index.size();
+    }
+
+    public synchronized int numSegments() {
+        return view.segments.size();
+    }
+
+    @Override
+    public void close() {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            try {
+                view.active.channel.force(false);
+                view.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    private void assertOpen() {
+        if (isClosed) {
+            throw new IllegalStateException("Results database has been closed");
+        }
+    }
+
+    // sharing between processes
+
+    /**
+     * Picks up the changes of other processes. Appended records are read
+     * without the lock (torn tails of ongoing appends are skipped until they are
+     * complete), only a compaction requires the lock to rebuild the index.
+     */
+    private void refresh() {
+        assertOpen();
+        if (state.getLong(GENERATION) == seenGeneration && state.getLong(SEQUENCE) == seenSequence) {
+            return;
+        }
+        synchronized (this) {
+            assertOpen();
+            if (state.getLong(GENERATION) == seenGeneration) {
+                try {
+                    catchUp();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            } else {
+                locked(this::sync);
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #refresh()}, but requires the monitor and the lock.
+     */
+    private void sync() throws IOException {
+        if (state.getLong(GENERATION) != seenGeneration) {
+            var old = view;
+            view = load();
+            // concurrent reads of the old view fall back to the monitor
+            old.close();
+        } else if (state.getLong(SEQUENCE) != seenSequence) {
+            catchUp();
+        }
+    }
+
+    private void catchUp() throws IOException {
+        // later appends are picked up by the next refresh
+        var seq = state.getLong(SEQUENCE);
+        var v = view;
+        for (var id : segmentIds()) {
+            if (id > v.active.id && !v.segments.containsKey(id)) {
+                // might have been merged by a compaction in the meantime
+                var s = openSegment(id, false);
+                if (s != null) {
+                    v.segments.put(id, s);
+                }
+            }
+        }
+        for (var s : v.segments.tailMap(v.active.id, true).values()) {
+            s.size = readRecords(v, s);
+        }
+        v.active = v.segments.lastEntry().getValue();
+        seenSequence = seq;
+    }
+
+    private void locked(IoOperation op) {
+        lock.run(() -> {
+            try {
+                op.run();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    // appending (requires the monitor and the lock)
+
+    private void append(String key, Status status, byte[] value) throws IOException {
+        var v = view;
+        if (v.active.channel.size() > v.active.size) {
+            LOG.warn("Truncating invalid tail of segment {} ({} -> {} bytes)", v.active.file, v.active.channel.size(), v.active.size);
+            v.active.channel.truncate(v.active.size);
+        }
+        var buf = encode(key, status, value);
+        var len = buf.remaining();
+        if (v.active.size > 0 && v.active.size + len > maxSegmentSize) {
+            roll(v);
+        }
+        var offset = v.active.size;
+        writeFully(v.active.channel, buf, offset);
+        v.active.size += len;
+        v.apply(key, value == null ? null : new Position(v.active.id, offset, len, status));
+        seenSequence++;
+        state.putLong(SEQUENCE, seenSequence);
+    }
+
+    private void roll(View v) throws IOException {
+        v.active.channel.force(false);
+        v.active = openSegment(v.active.id + 1, true);
+        v.segments.put(v.active.id, v.active);
+    }
+
+    // loading & recovery (requires the lock)
+
+    private View load() throws IOException {
+        seenGeneration = state.getLong(GENERATION);
+        seenSequence = state.getLong(SEQUENCE);
+        var v = new View();
+        for (var id : segmentIds()) {
+            var s = openSegment(id, true);
+            v.segments.put(id, s);
+            var end = readRecords(v, s);
+            if (end < s.channel.size()) {
+                LOG.warn("Truncating invalid tail of segment {} ({} -> {} bytes)", s.file, s.channel.size(), end);
+                s.channel.truncate(end);
+            }
+            s.size = end;
+        }
+        if (v.segments.isEmpty()) {
+            v.segments.put(0, openSegment(0, true));
+        }
+        v.active = v.segments.lastEntry().getValue();
+        return v;
+    }
+
+    /**
+     * Applies all valid records after the known size of the segment.
+     *
+     * @return offset after the last valid record
+     */
+    private static long readRecords(View v, Segment s) throws IOException {
+        return forEachRecord(s.channel, s.size, s.channel.size(), (key, isTombstone, offset, record) -> {
+            v.apply(key, isTombstone ? null : new Position(s.id, offset, record.capacity(), decodeStatus(record)));
+        });
+    }
+
+    private void recoverCompaction() throws IOException {
+        var tmp = new File(dir, COMPACTION_FILE);
+        var manifest = new File(dir, COMPACTION_MANIFEST);
+        if (manifest.exists() && !tmp.exists()) {
+            // crashed after the compacted segment was moved in place, finish cleanup
+            for (var line : Files.readAllLines(manifest.toPath())) {
+                Files.deleteIfExists(segmentFile(Integer.parseInt(line.trim())).toPath());
+            }
+        }
+        // otherwise, the merged segments are still untouched
+        Files.deleteIfExists(tmp.toPath());
+        Files.deleteIfExists(manifest.toPath());
+    }
+
+    // compaction
+
+    private void compactIfRequired() {
+        try {
+            compact(false);
+        } catch (RuntimeException e) {
+            LOG.error("Compaction of results segments failed", e);
+        }
+    }
+
+    /**
+     * Merges all sealed segments into a single one, if the share of outdated
+     * records is above the threshold (or when forced). Appends of all processes
+     * wait for the compaction.
+     */
+    public synchronized void compact(boolean force) {
+        assertOpen();
+        locked(() -> {
+            sync();
+            var v = view;
+            var candidates = new ArrayList<>(v.segments.headMap(v.active.id).values());
+            var total = candidates.stream().mapToLong(s -> s.size).sum();
+            var live = candidates.stream().mapToLong(s -> s.liveBytes).sum();
+            var hasEnoughGarbage = total > 0 && (total - live) >= total * compactionThreshold;
+            if (!candidates.isEmpty() && (force || hasEnoughGarbage)) {
+                compact(v, candidates);
+            }
+        });
+    }
+
+    private void compact(View v, List<Segment> candidates) throws IOException {
+        var target = candidates.get(candidates.size() - 1).id;
+        var tmp = new File(dir, COMPACTION_FILE);
+        var moved = new HashMap<String, Position>();
+
+        long outSize = 0;
+        try (var out = FileChannel.open(tmp.toPath(), CREATE, TRUNCATE_EXISTING, WRITE)) {
+            for (var s : candidates) {
+                var outPos = new long[] { outSize };
+                forEachRecord(s.channel, 0, s.size, (key, isTombstone, offset, record) -> {
+                    var cur = v.index.get(key);
+                    var isLive = !isTombstone && cur != null && cur.segment == s.id && cur.offset == offset;
+                    if (isLive) {
+                        var p = new Position(target, outPos[0], record.capacity(), cur.status);
+                        writeFully(out, record, p.offset);
+                        outPos[0] += p.length;
+                        moved.put(key, p);
+                    }
+                });
+                outSize = outPos[0];
+            }
+            out.force(true);
+        }
+
+        var manifest = new File(dir, COMPACTION_MANIFEST);
+        try (var fos = new FileOutputStream(manifest)) {
+            for (var s : candidates) {
+                if (s.id != target) {
+                    fos.write((s.id + "\n").getBytes(UTF_8));
+                }
+            }
+            fos.getFD().sync();
+        }
+
+        Files.move(tmp.toPath(), segmentFile(target).toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        for (var s : candidates) {
+            s.channel.close();
+            v.segments.remove(s.id);
+        }
+        var compacted = openSegment(target, true);
+        compacted.size = outSize;
+        v.segments.put(target, compacted);
+        // appends wait for the lock, so all copied records are still current
+        moved.forEach((key, p) -> {
+            v.index.put(key, p);
+            compacted.liveBytes += p.length;
+        });
+
+        for (var s : candidates) {
+            if (s.id != target) {
+                Files.deleteIfExists(s.file.toPath());
+            }
+        }
+        Files.delete(manifest.toPath());
+
+        // other processes rebuild their index on their next operation
+        seenGeneration++;
+        state.putLong(GENERATION, seenGeneration);
+        LOG.info("Compacted {} segments into {} ({} live records)", candidates.size(), segmentFile(target), moved.size());
+    }
+
+    // record format
+
+    private static ByteBuffer encode(String key, Status status, byte[] value) {
+        var k = key.getBytes(UTF_8);
+        var valLen = value == null ? TOMBSTONE : value.length;
+        var buf = ByteBuffer.allocate(HEADER_SIZE + k.length + Math.max(valLen, 0));
+        var s = status == null ? 0 : status.ordinal() + 1;
+        buf.putInt(0).putInt(k.length).putInt(valLen).put((byte) s).put(k);
+        if (value != null) {
+            buf.put(value);
+        }
+        buf.putInt(0, checksum(buf.array()));
+        return buf.flip();
+    }
+
+    private static Status decodeStatus(ByteBuffer record) {
+        var s = record.get(12);
+        return s == 0 ? null : Status.values()[s - 1];
+    }
+
+    private static int checksum(byte[] record) {
+        var crc = new CRC32();
+        crc.update(record, 4, record.length - 4);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * @return offset after the last valid record
+     */
+    private static long forEachRecord(FileChannel ch, long start, long limit, RecordVisitor v) throws IOException {
+        var header = ByteBuffer.allocate(HEADER_SIZE);
+        long pos = start;
+        while (pos + HEADER_SIZE <= limit) {
+            header.clear();
+            readFully(ch, header, pos);
+            var keyLen = header.getInt(4);
+            var valLen = header.getInt(8);
+            if (keyLen <= 0 || valLen < TOMBSTONE) {
+                break;
+            }
+            long len = HEADER_SIZE + keyLen + Math.max(valLen, 0);
+            if (pos + len > limit) {
+                break;
+            }
+            var record = ByteBuffer.allocate((int) len);
+            readFully(ch, record, pos);
+            if (header.getInt(0) != checksum(record.array())) {
+                break;
+            }
+            var key = new String(record.array(), HEADER_SIZE, keyLen, UTF_8);
+            record.flip();
+            v.visit(key, valLen == TOMBSTONE, pos, record);
+            pos += len;
+        }
+        return pos;
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            var n = ch.read(buf, pos + buf.position());
+            if (n < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        var start = buf.position();
+        while (buf.hasRemaining()) {
+            ch.write(buf, pos + buf.position() - start);
+        }
+    }
+
+    private List<Integer> segmentIds() {
+        var ids = new ArrayList<Integer>();
+        for (var name : dir.list()) {
+            if (name.endsWith(SEGMENT_EXT)) {
+                ids.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_EXT.length())));
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /**
+     * @return the segment or null, if it does not exist and should not be
+     *         created
+     */
+    private Segment openSegment(int id, boolean create) throws IOException {
+        var f = segmentFile(id);
+        try {
+            var ch = create //
+                    ? FileChannel.open(f.toPath(), CREATE, READ, WRITE)
+                    : FileChannel.open(f.toPath(), READ, WRITE);
+            return new Segment(id, f, ch);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private File segmentFile(int id) {
+        return new File(dir, String.format("%010d%s", id, SEGMENT_EXT));
+    }
+
+    private static MappedByteBuffer mapState(File f) throws IOException {
+        try (var ch = FileChannel.open(f.toPath(), CREATE, READ, WRITE)) {
+            // a new file is extended with zeros, mapping remains valid after closing
+            return ch.map(MapMode.READ_WRITE, 0, STATE_SIZE);
+        }
+    }
+
+    private interface IoOperation {
+        void run() throws IOException;
+    }
+
+    private interface RecordVisitor {
+        void visit(String key, boolean isTombstone, long offset, ByteBuffer record) throws IOException;
+    }
+
+    /**
+     * Index and open segments as known to this process, replaced as a whole
+     * after a compaction of another process.
+     */
+    private static class View {
+        private final Map<String, Position> index = new ConcurrentHashMap<>();
+        private final Map<Status, Set<String>> byStatus = new EnumMap<>(Status.class);
+        private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+        private Segment active;
+
+        private View() {
+            for (var s : Status.values()) {
+                byStatus.put(s, new HashSet<>());
+            }
+        }
+
+        private void apply(String key, Position p) {
+            var old = p == null //
+                    ? index.remove(key)
+                    : index.put(key, p);
+            if (old != null) {
+                segments.get(old.segment).liveBytes -= old.length;
+                if (old.status != null) {
+                    byStatus.get(old.status).remove(key);
+                }
+            }
+            if (p != null) {
+                segments.get(p.segment).liveBytes += p.length;
+                if (p.status != null) {
+                    byStatus.get(p.status).add(key);
+                }
+            }
+        }
+
+        private void close() throws IOException {
+            for (var s : segments.values()) {
+                s.channel.close();
+            }
+        }
+    }
+
+    private static class Segment {
+        private final int id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+        private long liveBytes;
+
+        private Segment(int id, File file, FileChannel channel) {
+            this.id = id;
+            this.file = file;
+            this.channel = channel;
+        }
+    }
+
+    private static class Position {
+        private final int segment;
+        private final long offset;
+        private final int length;
+        private final Status status;
+
+        private Position(int segment, long offset, int length, Status status) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.status = status;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Position)) {
+                return false;
+            }
+            var other = (Position) obj;
+            return segment == other.segment && offset == other.offset && length == other.length && status == other.status;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(segment, offset, length, status);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+
+/**
+ * File-based index of all GAVs per {@link Status}. Every status has a snapshot
+ * with one GAV per line and an append-only journal with the "+gav" and "-gav"
+ * lines of all later updates. Once the journal has grown by a fixed share of
+ * the snapshot, it is compacted into a new snapshot, so the rewrites cost a
+ * constant amount per update and a query only holds the journal in memory
+ * while it streams the snapshot from disk. All file access is guarded by file
+ * locks, so the index can be shared between processes.
+ *
+ * The journals stay open and are read in chunks. Counts are kept per journal
+ * and only the lines that have been appended since the last count are
+ * replayed. A compaction starts the journal with a new header that contains
+ * a new generation and the size of the snapshot, so other processes notice it
+ * and count from the snapshot.
+ *
+ * The index is derived data. It is only considered complete after a
+ * {@link #rebuild(Stream)}, which is also required after an interrupted
+ * compaction. Counts can drift when a process crashes between the updates of
+ * a transition, until the next rebuild.
+ */
+public class StatusIndex implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatusIndex.class);
+
+    private static final String EXT = ".idx";
+    private static final String SNAPSHOT_EXT = ".snapshot";
+    // journals of earlier versions contain their snapshot and require a rebuild
+    private static final String COMPLETE_MARKER = "COMPLETE.v2";
+    private static final long MIN_JOURNAL_SIZE = 1024 * 1024; // bytes, about 20k lines
+    private static final double MAX_JOURNAL_RATIO = 0.25; // of the snapshot size
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_SIZE = 64;
+    private static final long NO_GENERATION = 0;
+
+    private final File dir;
+    private final Map<Status, Journal> journals = new EnumMap<>(Status.class);
+
+    public StatusIndex(File dir) {
+        this.dir = dir;
+        dir.mkdirs();
+    }
+
+    public boolean isComplete() {
+        return marker().exists();
+    }
+
+    /**
+     * Marks the index in the given folder as incomplete, e.g., when results are
+     * changed without maintaining it.
+     */
+    public static void invalidate(File dir) {
+        new File(dir, COMPLETE_MARKER).delete();
+    }
+
+    public synchronized void update(String gav, Status before, Status after) {
+        if (before == after) {
+            return;
+        }
+        if (before != null) {
+            append(before, "-" + gav);
+        }
+        if (after != null) {
+            append(after, "+" + gav);
+        }
+    }
+
+    /**
+     * Streams the GAVs of the given status. The snapshot is read lazily, so
+     * the stream must be closed.
+     */
+    public synchronized Stream<String> get(Status s) {
+        var j = journal(s);
+        try (var lock = j.ch.lock()) {
+            var updates = readUpdates(j.ch, readHeader(j.ch).end);
+            // an opened snapshot remains readable, even if a compaction replaces it meanwhile
+            return merge(lines(snapshot(s)), updates);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized Map<Status, Long> count() {
+        var counts = new EnumMap<Status, Long>(Status.class);
+        for (var s : Status.values()) {
+            counts.put(s, count(journal(s)));
+        }
+        return counts;
+    }
+
+    /**
+     * Re-creates the index from all stored results. Concurrent updates that
+     * happen during the (potentially long) walk are applied on top.
+     */
+    public synchronized void rebuild(Stream<Result> all) {
+        LOG.info("Rebuilding status index in {} ...", dir);
+        // also prevents compactions of other processes during the walk
+        marker().delete();
+
+        var offsets = new HashMap<Status, Long>();
+        for (var s : Status.values()) {
+            offsets.put(s, file(s).length());
+        }
+
+        var walked = new EnumMap<Status, File>(Status.class);
+        try {
+            var writers = new EnumMap<Status, Writer>(Status.class);
+            try {
+                for (var s : Status.values()) {
+                    var f = File.createTempFile(s.toString(), ".tmp", dir);
+                    walked.put(s, f);
+                    writers.put(s, Files.newBufferedWriter(f.toPath(), UTF_8));
+                }
+                var it = all.filter(r -> r.status != null).iterator();
+                while (it.hasNext()) {
+                    var r = it.next();
+                    var w = writers.get(r.status);
+                    w.write(MavenRepositoryUtils.toGAV(r.artifact));
+                    w.write('\n');
+                }
+            } finally {
+                for (var w : writers.values()) {
+                    w.close();
+                }
+            }
+
+            for (var s : Status.values()) {
+                var j = journal(s);
+                try (var lock = j.ch.lock()) {
+                    compact(s, j, walked.get(s), offsets.get(s));
+                }
+            }
+            marker().createNewFile();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            for (var f : walked.values()) {
+                f.delete();
+            }
+        }
+        LOG.info("Status index has been rebuilt");
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            for (var j : journals.values()) {
+                j.ch.close();
+            }
+            journals.clear();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void append(Status s, String line) {
+        var j = journal(s);
+        try (var lock = j.ch.lock()) {
+            var buf = ByteBuffer.wrap((line + "\n").getBytes(UTF_8));
+            // the lock keeps other processes from appending at the same position
+            var pos = write(j.ch, buf, j.ch.size());
+            var header = readHeader(j.ch);
+            var journalSize = pos - header.end;
+            // the walk of a rebuild relies on a stable journal
+            if (journalSize > MIN_JOURNAL_SIZE && journalSize > snapshot(s).length() * MAX_JOURNAL_RATIO && isComplete()) {
+                LOG.info("Compacting status index for {} ...", s);
+                compact(s, j, snapshot(s), header.end);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private long count(Journal j) {
+        try (var lock = j.ch.lock()) {
+            var header = readHeader(j.ch);
+            if (header.generation != j.generation || j.ch.size() < j.offset) {
+                // compacted by another process, count from the snapshot
+                j.reset(header.generation, header.end, header.count);
+            }
+            var delta = new long[1];
+            j.offset = forEachLine(j.ch, j.offset, line -> {
+                if (line.length() < 2) {
+                    return;
+                }
+                if (line.charAt(0) == '+') {
+                    delta[0]++;
+                } else if (line.charAt(0) == '-') {
+                    delta[0]--;
+                }
+            });
+            // exact while the journal follows the stored results, the next compaction corrects drift
+            j.count = Math.max(0, j.count + delta[0]);
+            return j.count;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Replays the journal lines after the given offset.
+     *
+     * @return the last update per GAV, i.e., true if added and false if removed
+     */
+    private static Map<String, Boolean> readUpdates(FileChannel ch, long offset) throws IOException {
+        var updates = new LinkedHashMap<String, Boolean>();
+        forEachLine(ch, offset, line -> {
+            if (line.length() < 2) {
+                return;
+            }
+            var gav = line.substring(1);
+            if (line.charAt(0) == '+') {
+                updates.put(gav, true);
+            } else if (line.charAt(0) == '-') {
+                updates.put(gav, false);
+            }
+        });
+        return updates;
+    }
+
+    private static Stream<String> merge(Stream<String> snapshot, Map<String, Boolean> updates) {
+        var added = updates.entrySet().stream() //
+                .filter(e -> e.getValue()) //
+                .map(e -> e.getKey());
+        return Stream.concat(snapshot.filter(gav -> !updates.containsKey(gav)), added);
+    }
+
+    /**
+     * Streams the complete lines after the given offset in chunks.
+     *
+     * @return the offset after the last complete line
+     */
+    private static long forEachLine(FileChannel ch, long offset, Consumer<String> visitor) throws IOException {
+        var size = ch.size();
+        var buf = ByteBuffer.allocate(CHUNK_SIZE);
+        var partial = new ByteArrayOutputStream();
+        var pos = offset;
+        var end = offset;
+        while (pos < size) {
+            buf.clear();
+            var n = ch.read(buf, pos);
+            if (n < 0) {
+                break;
+            }
+            var bytes = buf.array();
+            var start = 0;
+            for (var i = 0; i < n; i++) {
+                if (bytes[i] != '\n') {
+                    continue;
+                }
+                partial.write(bytes, start, i - start);
+                visitor.accept(new String(partial.toByteArray(), UTF_8));
+                partial.reset();
+                start = i + 1;
+                end = pos + start;
+            }
+            partial.write(bytes, start, n - start);
+            pos += n;
+        }
+        return end;
+    }
+
+    /**
+     * Merges the given snapshot with the journal lines after the given offset
+     * into the new snapshot of the status and starts a new, empty journal.
+     */
+    private void compact(Status s, Journal j, File base, long offset) throws IOException {
+        var updates = readUpdates(j.ch, offset);
+        var tmp = File.createTempFile(s.toString(), ".tmp", dir);
+        try {
+            var count = 0L;
+            try (var lines = merge(lines(base), updates); //
+                    var w = Files.newBufferedWriter(tmp.toPath(), UTF_8)) {
+                var it = lines.iterator();
+                while (it.hasNext()) {
+                    w.write(it.next());
+                    w.write('\n');
+                    count++;
+                }
+            }
+            // replaying the old journal on top of the new snapshot does not change it
+            Files.move(tmp.toPath(), snapshot(s).toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+
+            // an interrupted reset of the journal loses the size of the snapshot
+            var wasComplete = marker().delete();
+            var generation = newGeneration();
+            j.ch.truncate(0);
+            var header = String.format("#%s %d\n", Long.toHexString(generation), count);
+            var end = write(j.ch, ByteBuffer.wrap(header.getBytes(UTF_8)), 0);
+            j.ch.force(false);
+            j.reset(generation, end, count);
+            if (wasComplete) {
+                marker().createNewFile();
+            }
+        } finally {
+            Files.deleteIfExists(tmp.toPath());
+        }
+    }
+
+    private static long write(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            pos += ch.write(buf, pos);
+        }
+        return pos;
+    }
+
+    private static Header readHeader(FileChannel ch) throws IOException {
+        var buf = ByteBuffer.allocate(MAX_HEADER_SIZE); // '#', generation, ' ', count, '\n'
+        ch.read(buf, 0);
+        var len = buf.position();
+        if (len < 3 || buf.get(0) != '#') {
+            return new Header(NO_GENERATION, 0, 0);
+        }
+        var s = new String(buf.array(), 1, len - 1, UTF_8);
+        var nl = s.indexOf('\n');
+        if (nl < 0) {
+            return new Header(NO_GENERATION, 0, 0);
+        }
+        var parts = s.substring(0, nl).split(" ");
+        var count = parts.length < 2 ? 0 : Long.parseLong(parts[1]);
+        return new Header(Long.parseUnsignedLong(parts[0], 16), count, nl + 2);
+    }
+
+    private static Stream<String> lines(File f) throws IOException {
+        return f.exists() //
+                ? Files.lines(f.toPath(), UTF_8)
+                : Stream.empty();
+    }
+
+    private static long newGeneration() {
+        var g = ThreadLocalRandom.current().nextLong();
+        return g == NO_GENERATION ? 1 : g;
+    }
+
+    private Journal journal(Status s) {
+        var j = journals.get(s);
+        if (j == null) {
+            try {
+                j = new Journal(FileChannel.open(file(s).toPath(), CREATE, READ, WRITE));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            journals.put(s, j);
+        }
+        return j;
+    }
+
+    private File marker() {
+        return new File(dir, COMPLETE_MARKER);
+    }
+
+    private File file(Status s) {
+        return new File(dir, s + EXT);
+    }
+
+    private File snapshot(Status s) {
+        return new File(dir, s + SNAPSHOT_EXT);
+    }
+
+    private static class Header {
+        private final long generation;
+        private final long count;
+        private final long end;
+
+        private Header(long generation, long count, long end) {
+            this.generation = generation;
+            this.count = count;
+            this.end = end;
+        }
+    }
+
+    private static class Journal {
+        private final FileChannel ch;
+        private long generation = NO_GENERATION;
+        private long offset;
+        private long count;
+
+        private Journal(FileChannel ch) {
+            this.ch = ch;
+        }
+
+        private void reset(long generation, long offset, long count) {
+            this.generation = generation;
+            this.offset = offset;
+            this.count = count;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader;
+
+import static dev.c0ps.franz.Lane.NORMAL;
+import static dev.c0ps.franz.Lane.PRIORITY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.franz.Kafka;
+import dev.c0ps.franz.Lane;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.downloader.utils.ArtifactFinder;
+import dev.c0ps.mx.downloader.utils.CompletionTracker;
+import dev.c0ps.mx.downloader.utils.MavenDownloader;
+import dev.c0ps.mx.downloader.utils.ResultsDatabase;
+import dev.c0ps.mx.infra.exceptions.UnrecoverableError;
+import dev.c0ps.mx.infra.kafka.DefaultTopics;
+import dev.c0ps.mx.infra.kafka.LaneManagement;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.TimedExecutor;
+
+public class MainTest {
+
+    private static final Artifact A = new Artifact("g", "a", "1", "jar");
+    private static final Artifact B = new Artifact("g", "b", "1", "jar");
+
+    private TimedExecutor exec;
+    private Kafka kafka;
+    private ResultsDatabase db;
+    private LaneManagement lm;
+    private ArtifactFinder finder;
+    private MavenRepositoryUtils utils;
+    private MavenDownloader downloader;
+    private CompletionTracker tracker;
+
+    private BiConsumer<Artifact, Lane> consumer;
+    private List<Runnable> polls;
+    private AtomicInteger commits;
+    private List<Thread> publishers;
+    private CountDownLatch findIsBlocked;
+
+    private Main sut;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        exec = mock(TimedExecutor.class);
+        kafka = mock(Kafka.class);
+        db = mock(ResultsDatabase.class);
+        lm = mock(LaneManagement.class);
+        finder = mock(ArtifactFinder.class);
+        utils = mock(MavenRepositoryUtils.class);
+        downloader = mock(MavenDownloader.class);
+        tracker = mock(CompletionTracker.class);
+
+        doAnswer(i -> {
+            ((Runnable) i.getArgument(1)).run();
+            return null;
+        }).when(exec).run(any(), any(Runnable.class));
+        when(lm.shouldProcess(any(Artifact.class), any(Lane.class))).thenReturn(true);
+
+        doAnswer(i -> {
+            consumer = i.getArgument(2);
+            return null;
+        }).when(kafka).subscribe(eq(DefaultTopics.REQUESTED), eq(Artifact.class), any());
+
+        polls = new ArrayList<>();
+        commits = new AtomicInteger();
+        doAnswer(i -> {
+            if (!polls.isEmpty()) {
+                polls.remove(0).run();
+                return null;
+            }
+            // like an idle consumer, until the polled records are committed
+            if (commits.get() > 0) {
+                throw new StopPolling();
+            }
+            Thread.sleep(1);
+            return null;
+        }).when(kafka).poll();
+        doAnswer(i -> commits.incrementAndGet()).when(kafka).commit();
+
+        publishers = new ArrayList<>();
+        doAnswer(i -> publishers.add(Thread.currentThread())).when(kafka).publish(any(String.class), any(), any(String.class), any(Lane.class));
+
+        findIsBlocked = new CountDownLatch(1);
+        when(finder.findArtifact(A)).thenAnswer(i -> {
+            findIsBlocked.await();
+            return A;
+        });
+        when(db.markFound(A)).thenReturn(result(A, Status.FOUND));
+        when(db.markResolved(A)).thenReturn(result(A, Status.RESOLVED));
+        when(finder.findArtifact(B)).thenReturn(B);
+        when(db.markFound(B)).thenReturn(result(B, Status.FOUND));
+        when(db.markResolved(B)).thenReturn(result(B, Status.RESOLVED));
+
+        sut = new Main(exec, kafka, db, lm, finder, utils, downloader, tracker, 2, 2, 10);
+    }
+
+    @Test
+    public void concurrentRecordsOfOneGavArePublishedOnTheirOwnLanes() {
+        polls.add(() -> {
+            consumer.accept(A, NORMAL);
+            consumer.accept(A, PRIORITY);
+            findIsBlocked.countDown();
+        });
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        verify(tracker, times(1)).markStarted(A);
+        verify(finder, times(1)).findArtifact(A);
+        verify(downloader, times(1)).download(A);
+        verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, NORMAL);
+        verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, PRIORITY);
+        verify(kafka).commit();
+    }
+
+    @Test
+    public void skippedRecordsArePublishedWithTheStoredOutcome() {
+        when(tracker.shouldSkip(A)).thenReturn(true);
+        when(db.get(A)).thenReturn(result(A, Status.RESOLVED));
+        polls.add(() -> consumer.accept(A, PRIORITY));
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        verify(tracker, never()).markStarted(A);
+        verify(finder, never()).findArtifact(A);
+        verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, PRIORITY);
+        verify(kafka).commit();
+    }
+
+    @Test
+    public void skippedRecordsWithoutStoredOutcomeAreNotPublished() {
+        when(tracker.shouldSkip(A)).thenReturn(true);
+        when(db.get(A)).thenReturn(result(A, Status.REQUESTED));
+        polls.add(() -> consumer.accept(A, PRIORITY));
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        verify(kafka, never()).publish(any(String.class), any(), any(String.class), any(Lane.class));
+        verify(kafka).commit();
+    }
+
+    @Test
+    public void offsetsAreCommittedAfterAllRecordsOfThePoll() {
+        polls.add(() -> {
+            consumer.accept(A, NORMAL);
+            consumer.accept(B, NORMAL);
+            findIsBlocked.countDown();
+        });
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        var oa = inOrder(kafka);
+        oa.verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, NORMAL);
+        oa.verify(kafka).commit();
+        var ob = inOrder(kafka);
+        ob.verify(kafka).publish("g:b:1", B, DefaultTopics.DOWNLOADED, NORMAL);
+        ob.verify(kafka).commit();
+    }
+
+    @Test
+    public void outcomesArePublishedOnThePollingThread() {
+        polls.add(() -> {
+            consumer.accept(A, NORMAL);
+            consumer.accept(B, NORMAL);
+            findIsBlocked.countDown();
+        });
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        assertEquals(List.of(Thread.currentThread(), Thread.currentThread()), publishers);
+    }
+
+    @Test
+    public void pollingContinuesWhileRecordsAreInFlight() {
+        polls.add(() -> consumer.accept(A, NORMAL));
+        polls.add(() -> {
+            consumer.accept(B, NORMAL);
+            findIsBlocked.countDown();
+        });
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        // A can only finish after the second poll
+        verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, NORMAL);
+        verify(kafka).publish("g:b:1", B, DefaultTopics.DOWNLOADED, NORMAL);
+        assertEquals(1, commits.get());
+    }
+
+    @Test
+    public void pollingPausesAtQueueCapacity() {
+        sut = new Main(exec, kafka, db, lm, finder, utils, downloader, tracker, 2, 2, 1);
+        polls.add(() -> consumer.accept(A, NORMAL));
+        polls.add(() -> consumer.accept(B, NORMAL));
+        var pollsWhileBlocked = new AtomicInteger(-1);
+        doAnswer(i -> {
+            pollsWhileBlocked.compareAndSet(-1, polls.size());
+            findIsBlocked.countDown();
+            return null;
+        }).when(kafka).sendHeartbeat();
+
+        assertThrows(StopPolling.class, () -> {
+            sut.run();
+        });
+
+        assertEquals(1, pollsWhileBlocked.get());
+        verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, NORMAL);
+        verify(kafka).publish("g:b:1", B, DefaultTopics.DOWNLOADED, NORMAL);
+    }
+
+    @Test
+    public void failedRecordCrashesWithoutCommit() {
+        var e = new IllegalStateException();
+        when(finder.findArtifact(B)).thenThrow(e);
+        var crash = result(B, Status.FOUND);
+        crash.numCrashes = 1;
+        when(db.recordCrash(B, e)).thenReturn(crash);
+
+        polls.add(() -> {
+            consumer.accept(A, NORMAL);
+            consumer.accept(B, NORMAL);
+            findIsBlocked.countDown();
+        });
+
+        assertThrows(UnrecoverableError.class, () -> {
+            sut.run();
+        });
+
+        // other records of the poll still finish
+        verify(kafka).publish("g:a:1", A, DefaultTopics.DOWNLOADED, NORMAL);
+        verify(kafka, never()).commit();
+    }
+
+    private static Result result(Artifact a, Status s) {
+        var r = new Result();
+        r.artifact = a;
+        r.status = s;
+        return r;
+    }
+
+    private static class StopPolling extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
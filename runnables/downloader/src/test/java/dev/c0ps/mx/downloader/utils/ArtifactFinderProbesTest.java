@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils.UrlCheck;
+
+public class ArtifactFinderProbesTest {
+
+    private static final String REPO = "https://repo.example.org/maven2/";
+    private static final String REPO_HTTP = "http://repo.example.org/maven2/";
+
+    private ResultsDatabase db;
+    private MavenRepositoryUtils utils;
+
+    private Set<String> existing;
+    private Set<String> pending;
+    private List<CompletableFuture<UrlCheck>> probes;
+
+    private ArtifactFinder sut;
+
+    @BeforeEach
+    public void setup() {
+        db = mock(ResultsDatabase.class);
+        utils = mock(MavenRepositoryUtils.class);
+        existing = new HashSet<>();
+        pending = new HashSet<>();
+        probes = new ArrayList<>();
+
+        when(utils.checkGetRequestAsync(any(Artifact.class))).thenAnswer(inv -> {
+            Artifact a = inv.getArgument(0);
+            var url = url(a);
+            CompletableFuture<UrlCheck> f = pending.contains(url) //
+                    ? new CompletableFuture<>()
+                    : CompletableFuture.completedFuture(new UrlCheck(existing.contains(url) ? url : null, null));
+            probes.add(f);
+            return f;
+        });
+        when(utils.checkGetRequestNonStatic(any(Artifact.class))).thenAnswer(inv -> {
+            return utils.checkGetRequestAsync(inv.<Artifact> getArgument(0)).get();
+        });
+
+        sut = new ArtifactFinder(db, utils, 8, FixStrategyStats.disabled());
+    }
+
+    @Test
+    public void declaredArtifactExists() {
+        var in = a("bundle", REPO);
+        existing.add(url(in));
+        assertSame(in, sut.findArtifact(in));
+        verify(db).markFound(in);
+    }
+
+    @Test
+    public void fixedPackaging() {
+        existing.add(url(a("war", REPO)));
+        var actual = sut.findArtifact(a("bundle", REPO));
+        assertEquals("war", actual.packaging);
+        assertEquals(REPO, actual.repository);
+    }
+
+    @Test
+    public void fixedProtocol() {
+        existing.add(url(a("bundle", REPO_HTTP)));
+        var actual = sut.findArtifact(a("bundle", REPO));
+        assertEquals("bundle", actual.packaging);
+        assertEquals(REPO_HTTP, actual.repository);
+    }
+
+    @Test
+    public void priorityWinsOverCompletionOrder() {
+        existing.add(url(a("ear", REPO)));
+        existing.add(url(a("bundle", REPO_HTTP)));
+        var actual = sut.findArtifact(a("bundle", REPO));
+        assertEquals("ear", actual.packaging);
+        assertEquals(REPO, actual.repository);
+    }
+
+    @Test
+    public void allCandidatesAreProbedAtOnce() {
+        sut.findArtifact(a("bundle", REPO));
+        // declared, jar, war, ear, aar, ejb, http
+        assertEquals(7, probes.size());
+    }
+
+    @Test
+    public void fanOutIsBounded() {
+        sut = new ArtifactFinder(db, utils, 3, FixStrategyStats.disabled());
+        var in = a("bundle", REPO);
+        existing.add(url(in));
+        sut.findArtifact(in);
+        assertEquals(3, probes.size());
+    }
+
+    @Test
+    public void remainingProbesAreCancelled() {
+        var in = a("bundle", REPO);
+        existing.add(url(in));
+        pending.add(url(a("war", REPO)));
+        pending.add(url(a("bundle", REPO_HTTP)));
+
+        sut.findArtifact(in);
+
+        assertFalse(probes.get(0).isCancelled());
+        assertTrue(probes.get(2).isCancelled());
+        assertTrue(probes.get(6).isCancelled());
+    }
+
+    @Test
+    public void learnedStrategyIsTriedFirst() {
+        var stats = new FixStrategyStats(null);
+        sut = new ArtifactFinder(db, utils, 1, stats);
+        existing.add(url(a("aar", REPO)));
+
+        sut.findArtifact(a("bundle", REPO));
+        assertEquals(Map.of("packaging:aar", 1), stats.getCounts("g@repo.example.org"));
+        assertEquals(5, probes.size());
+
+        // the declared artifact is still probed first, the learned fix right after
+        probes.clear();
+        sut.findArtifact(a("bundle", REPO));
+        assertEquals(2, probes.size());
+    }
+
+    @Test
+    public void notFound() {
+        var in = a("bundle", REPO);
+        assertNull(sut.findArtifact(in));
+        verify(db).markNotFound(in);
+    }
+
+    private static Artifact a(String packaging, String repo) {
+        var a = new Artifact("g", "a", "1.2.3", packaging);
+        a.repository = repo;
+        return a;
+    }
+
+    private static String url(Artifact a) {
+        return a.repository + "g/a/1.2.3/a-1.2.3." + a.packaging;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class BlobStoreTest {
+
+    @TempDir
+    private File tempDir;
+
+    private BlobStore sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new BlobStore(tempDir, new ObjectMapper());
+    }
+
+    @Test
+    public void roundtrip() {
+        var hash = sut.put("abc");
+        assertTrue(sut.contains(hash));
+        assertEquals("abc", sut.get(hash, String.class));
+    }
+
+    @Test
+    public void hashIsSha256OfContent() {
+        var hash = sut.put("abc");
+        assertEquals(64, hash.length());
+        assertEquals(hash, sut.put("abc"));
+        assertNotEquals(hash, sut.put("abd"));
+    }
+
+    @Test
+    public void identicalContentIsStoredOnce() throws Exception {
+        sut.put("abc");
+        sut.put("abc");
+        try (var files = Files.walk(tempDir.toPath())) {
+            var blobs = files.filter(Files::isRegularFile).collect(Collectors.toList());
+            assertEquals(1, blobs.size());
+            assertFalse(blobs.get(0).toString().endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void unknownBlob() {
+        assertFalse(sut.contains("0123456789"));
+        assertThrows(IllegalStateException.class, () -> {
+            sut.get("0123456789", String.class);
+        });
+    }
+}
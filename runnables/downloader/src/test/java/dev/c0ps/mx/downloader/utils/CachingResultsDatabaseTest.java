@@ -0,0 +1,277 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static dev.c0ps.mx.downloader.data.Status.CRASHED;
+import static dev.c0ps.mx.downloader.data.Status.FOUND;
+import static dev.c0ps.mx.downloader.data.Status.REQUESTED;
+import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.downloader.utils.CachingResultsDatabase.Mode;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.Version;
+
+public class CachingResultsDatabaseTest {
+
+    private static final Artifact A1 = new Artifact("g", "a1", "1.0.0", "jar");
+    private static final Artifact A2 = new Artifact("g", "a2", "1.0.0", "jar");
+
+    private Version version;
+    private InMemoryResultsDatabase delegate;
+    private CachingResultsDatabase sut;
+
+    @BeforeEach
+    public void setup() {
+        version = mock(Version.class);
+        when(version.get()).thenReturn("1.2.3");
+        delegate = new InMemoryResultsDatabase(version);
+        sut = new CachingResultsDatabase(version, delegate, 10, Mode.WRITE_BACK);
+    }
+
+    @Test
+    public void unknownResultsAreNotCached() {
+        assertNull(sut.get(A1));
+        assertNull(sut.get(A1));
+        assertEquals(2, delegate.numReads);
+    }
+
+    @Test
+    public void readsAreCached() {
+        delegate.markFound(A1);
+        delegate.numReads = 0;
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(1, delegate.numReads);
+    }
+
+    @Test
+    public void writeBackCoalescesWrites() {
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        assertEquals(0, delegate.numWrites);
+        assertEquals(RESOLVED, sut.get(A1).status);
+
+        sut.flush();
+        assertEquals(1, delegate.numWrites);
+        assertEquals(RESOLVED, delegate.get(A1).status);
+    }
+
+    @Test
+    public void writeThroughWritesImmediately() {
+        sut = new CachingResultsDatabase(version, delegate, 10, Mode.WRITE_THROUGH);
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        assertEquals(2, delegate.numWrites);
+        assertEquals(RESOLVED, delegate.get(A1).status);
+    }
+
+    @Test
+    public void flushKeepsCachedResults() {
+        sut.markFound(A1);
+        sut.flush();
+        delegate.numReads = 0;
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(0, delegate.numReads);
+
+        // entries are clean after the flush
+        sut.flush();
+        assertEquals(1, delegate.numWrites);
+        sut.markResolved(A1);
+        sut.flush();
+        assertEquals(FOUND, delegate.lastBefore);
+    }
+
+    @Test
+    public void flushOnlyWritesPendingChanges() {
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.flush();
+        sut.markResolved(A2);
+        sut.recordCrash(A1, new IllegalArgumentException());
+        sut.flush();
+        assertEquals(4, delegate.numWrites);
+        assertEquals(RESOLVED, delegate.get(A2).status);
+    }
+
+    @Test
+    public void failedFlushInvalidatesCache() {
+        sut.markFound(A1);
+        delegate.isConflicting = true;
+        assertThrows(IllegalStateException.class, () -> {
+            sut.flush();
+        });
+        delegate.isConflicting = false;
+        delegate.numReads = 0;
+        assertNull(sut.get(A1));
+        assertEquals(1, delegate.numReads);
+    }
+
+    @Test
+    public void evictionWritesDirtyEntries() {
+        sut = new CachingResultsDatabase(version, delegate, 1, Mode.WRITE_BACK);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        assertEquals(1, delegate.numWrites);
+        assertEquals(FOUND, delegate.get(A1).status);
+        assertNull(delegate.get(A2));
+    }
+
+    @Test
+    public void crashesAreWrittenThrough() {
+        sut.markFound(A1);
+        sut.recordCrash(A1, new IllegalArgumentException());
+        assertEquals(1, delegate.get(A1).numCrashes);
+        sut.markCrashed(A1);
+        assertEquals(CRASHED, delegate.get(A1).status);
+    }
+
+    @Test
+    public void failedTransitionsDoNotAlterCache() {
+        sut.markFound(A1);
+        assertThrows(IllegalStateException.class, () -> {
+            sut.markDone(A1);
+        });
+        assertEquals(FOUND, sut.get(A1).status);
+    }
+
+    @Test
+    public void returnedResultsDoNotAlterCache() {
+        var r = sut.markFound(A1);
+        r.status = RESOLVED;
+        sut.get(A1).status = RESOLVED;
+        assertEquals(FOUND, sut.get(A1).status);
+    }
+
+    @Test
+    public void resetRemovesResults() {
+        sut.markFound(A1);
+        sut.flush();
+        sut.get(A1);
+        sut.reset(A1);
+        assertNull(sut.get(A1));
+        assertNull(delegate.get(A1));
+    }
+
+    @Test
+    public void queriesSeePendingChanges() {
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.markResolved(A2);
+        assertEquals(1, sut.streamByStatus(FOUND).count());
+        assertEquals(1L, sut.countByStatus().get(RESOLVED));
+    }
+
+    @Test
+    public void closeFlushes() {
+        sut.markFound(A1);
+        sut.close();
+        assertEquals(FOUND, delegate.get(A1).status);
+    }
+
+    @Test
+    public void writeBackReplacesStoredStatus() {
+        delegate.markRequested(A1);
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        sut.flush();
+        assertEquals(REQUESTED, delegate.lastBefore);
+        assertEquals(RESOLVED, delegate.get(A1).status);
+    }
+
+    @Test
+    public void writeBackOfNewResultReplacesNothing() {
+        sut.markFound(A1);
+        delegate.lastBefore = CRASHED;
+        sut.flush();
+        assertNull(delegate.lastBefore);
+    }
+
+    private static class InMemoryResultsDatabase extends AbstractResultsDatabase {
+
+        private final Map<String, Result> results = new HashMap<>();
+        private int numReads;
+        private int numWrites;
+        private Status lastBefore;
+        private boolean isConflicting;
+
+        private InMemoryResultsDatabase(Version toolVersion) {
+            super(toolVersion);
+        }
+
+        @Override
+        protected Result read(Artifact a) {
+            numReads++;
+            var r = results.get(MavenRepositoryUtils.toGAV(a));
+            return r == null ? null : copy(r);
+        }
+
+        @Override
+        protected void write(Artifact a, Status before, Result r) {
+            if (isConflicting) {
+                throw new IllegalStateException();
+            }
+            lastBefore = before;
+            super.write(a, before, r);
+        }
+
+        @Override
+        protected void write(Artifact a, Result r) {
+            numWrites++;
+            results.put(MavenRepositoryUtils.toGAV(a), copy(r));
+        }
+
+        @Override
+        protected void remove(Artifact a) {
+            results.remove(MavenRepositoryUtils.toGAV(a));
+        }
+
+        @Override
+        protected Stream<Result> readByStatus(Status s) {
+            return results.values().stream().filter(r -> r.status == s).map(InMemoryResultsDatabase::copy);
+        }
+
+        @Override
+        public Map<Status, Long> countByStatus() {
+            return results.values().stream().collect(Collectors.groupingBy(r -> r.status, Collectors.counting()));
+        }
+
+        private static Result copy(Result r) {
+            var c = new Result();
+            c.createdWith = r.createdWith;
+            c.status = r.status;
+            c.artifact = r.artifact;
+            c.numCrashes = r.numCrashes;
+            c.stacktrace = r.stacktrace;
+            return c;
+        }
+    }
+}
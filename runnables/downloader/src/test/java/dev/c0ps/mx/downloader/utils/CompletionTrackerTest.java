@@ -82,6 +82,20 @@ public class CompletionTrackerTest {
         assertTrue(sut.shouldSkip(A));
     }
 
+    @Test
+    public void variantsOfStartedArtifactsAreSkipped() {
+        sut.markStarted(A);
+        assertTrue(sut.shouldSkip(new Artifact("g", "a", "1.2.3", "pom")));
+    }
+
+    @Test
+    public void startedArtifactsAreNotCompleted() {
+        sut.markStarted(A);
+        assertFalse(sut.isCompleted(A));
+        sut.markCompleted(A);
+        assertTrue(sut.isCompleted(A));
+    }
+
     @Test
     public void startingDoesNotPersistOverRestarts() {
         sut.markStarted(A);
@@ -19,12 +19,16 @@ import static dev.c0ps.mx.downloader.data.Status.DEPS_MISSING;
 import static dev.c0ps.mx.downloader.data.Status.FOUND;
 import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -32,7 +36,10 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -41,14 +48,20 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import dev.c0ps.commons.AssertsException;
 import dev.c0ps.io.IoUtils;
 import dev.c0ps.maven.data.Pom;
 import dev.c0ps.maven.data.PomBuilder;
+import dev.c0ps.maven.json.CommonsMavenDataModule;
 import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.maveneasyindex.ArtifactModule;
 import dev.c0ps.mx.downloader.data.Result;
 import dev.c0ps.mx.downloader.data.Status;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.RecordCodec;
+import dev.c0ps.mx.infra.utils.RecordCodec.Format;
 import dev.c0ps.mx.infra.utils.Version;
 
 public class FileBasedResultsDatabaseTest {
@@ -65,12 +78,14 @@ public class FileBasedResultsDatabaseTest {
     private FileBasedResultsDatabase sut;
 
     private String toolVersion;
+    private Version version;
     private MavenRepositoryUtils mru;
 
     @BeforeEach
     public void setup() {
         io = mock(IoUtils.class);
         var v = mock(Version.class);
+        version = v;
         when(v.get()).thenAnswer(new Answer<String>() {
             @Override
             public String answer(InvocationOnMock invocation) throws Throwable {
@@ -87,6 +102,10 @@ public class FileBasedResultsDatabaseTest {
         sut = new FileBasedResultsDatabase(v, io, mru, tempDir);
     }
 
+    private FileBasedResultsDatabase withStatusIndex() {
+        return new FileBasedResultsDatabase(version, io, mru, null, tempDir, true);
+    }
+
     private void mockResult(Result res) {
         var f = f(res.artifact);
         f.getParentFile().mkdirs();
@@ -526,6 +545,106 @@ public class FileBasedResultsDatabaseTest {
         assertNull(r);
     }
 
+    @Test
+    public void queriesWalkResultsWithoutStatusIndex() {
+        mockStatus(a(1), DEPS_MISSING);
+        assertEquals(1L, sut.countByStatus().get(DEPS_MISSING));
+        assertEquals(0L, sut.countByStatus().get(FOUND));
+        var actual = sut.streamByStatus(DEPS_MISSING).map(r -> r.artifact).collect(Collectors.toList());
+        assertEquals(List.of(a(1)), actual);
+        assertFalse(new File(tempDir, ".status-index").exists());
+    }
+
+    @Test
+    public void statusIndexIsRebuiltFromExistingResults() {
+        sut = withStatusIndex();
+        mockStatus(a(1), DEPS_MISSING);
+        assertEquals(1L, sut.countByStatus().get(DEPS_MISSING));
+        assertEquals(0L, sut.countByStatus().get(FOUND));
+    }
+
+    @Test
+    public void statusIndexIsUpdatedOnTransitions() {
+        sut = withStatusIndex();
+        // completes the (empty) index
+        sut.countByStatus();
+
+        sut.markFound(a(1));
+        assertEquals(1L, sut.countByStatus().get(FOUND));
+
+        mockStatus(a(1), FOUND);
+        sut.markResolved(a(1));
+        assertEquals(0L, sut.countByStatus().get(FOUND));
+        assertEquals(1L, sut.countByStatus().get(RESOLVED));
+    }
+
+    @Test
+    public void streamByStatusReadsResults() {
+        sut = withStatusIndex();
+        when(mru.getMavenFilePathNonStatic(any(File.class), argThat(a -> "1.2.1".equals(a.version)), eq("result"))).thenReturn(f(a(1)));
+        sut.countByStatus();
+        sut.markFound(a(1));
+        mockStatus(a(1), FOUND);
+
+        var actual = sut.streamByStatus(FOUND).map(r -> r.artifact).collect(Collectors.toList());
+        assertEquals(List.of(a(1)), actual);
+    }
+
+    @Test
+    public void streamByStatusSkipsOutdatedEntries() {
+        sut = withStatusIndex();
+        when(mru.getMavenFilePathNonStatic(any(File.class), argThat(a -> "1.2.1".equals(a.version)), eq("result"))).thenReturn(f(a(1)));
+        sut.countByStatus();
+        sut.markFound(a(1));
+        // e.g., index update got lost during a crash
+        mockStatus(a(1), RESOLVED);
+
+        assertEquals(0, sut.streamByStatus(FOUND).count());
+    }
+
+    @Test
+    public void failedWriteKeepsStoredStatusQueryable() {
+        when(mru.getMavenFilePathNonStatic(any(File.class), argThat(a -> "1.2.1".equals(a.version)), eq("result"))).thenReturn(f(a(1)));
+        sut = withStatusIndex();
+        sut.countByStatus();
+        sut.markFound(a(1));
+        mockStatus(a(1), FOUND);
+
+        doThrow(new IllegalStateException()).when(io).writeToFile(any(), any(File.class));
+        assertThrows(IllegalStateException.class, () -> {
+            sut.markResolved(a(1));
+        });
+        // the mocked result instance has been changed in memory, the file has not
+        mockStatus(a(1), FOUND);
+        var actual = sut.streamByStatus(FOUND).map(r -> r.artifact).collect(Collectors.toList());
+        assertEquals(List.of(a(1)), actual);
+    }
+
+    @Test
+    public void disabledStatusIndexIsInvalidated() {
+        sut = withStatusIndex();
+        sut.countByStatus();
+        sut.close();
+
+        new FileBasedResultsDatabase(version, io, mru, null, tempDir, false);
+        assertFalse(new StatusIndex(new File(tempDir, ".status-index")).isComplete());
+    }
+
+    @Test
+    public void resultsAreStoredWithCodec() throws IOException {
+        var om = new ObjectMapper().registerModules(new ArtifactModule(), new CommonsMavenDataModule());
+        sut = new FileBasedResultsDatabase(version, io, mru, new RecordCodec(om), tempDir, false);
+        sut.markFound(a(1));
+        sut = new FileBasedResultsDatabase(version, io, mru, new RecordCodec(om, Format.SMILE, true), tempDir, false);
+
+        // existing JSON results remain readable
+        assertEquals(FOUND, sut.get(a(1)).status);
+        sut.markResolved(a(1));
+        assertEquals(RESOLVED, sut.get(a(1)).status);
+        assertNotEquals('{', Files.readAllBytes(f(a(1)).toPath())[0]);
+        verifyNoMoreInteractions(io);
+    }
+
     private void assertLastWrite(Result expected) {
         var actual = getLastWrite(expected.artifact);
 
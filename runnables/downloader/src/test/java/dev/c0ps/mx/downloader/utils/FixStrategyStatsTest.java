@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FixStrategyStatsTest {
+
+    @TempDir
+    private File tempDir;
+
+    private File file;
+    private FixStrategyStats sut;
+
+    @BeforeEach
+    public void setup() {
+        file = new File(tempDir, "stats");
+        sut = new FixStrategyStats(file);
+    }
+
+    @Test
+    public void unknownKey() {
+        assertTrue(sut.isEnabled());
+        assertEquals(Map.of(), sut.getCounts("g@h"));
+    }
+
+    @Test
+    public void countsSuccesses() {
+        sut.recordSuccess("g@h", "a");
+        sut.recordSuccess("g@h", "b");
+        sut.recordSuccess("g@h", "b");
+        sut.recordSuccess("g2@h", "a");
+        assertEquals(Map.of("a", 1, "b", 2), sut.getCounts("g@h"));
+        assertEquals(Map.of("a", 1), sut.getCounts("g2@h"));
+    }
+
+    @Test
+    public void inMemoryWithoutFile() {
+        sut = new FixStrategyStats(null);
+        sut.recordSuccess("g@h", "a");
+        assertEquals(Map.of("a", 1), sut.getCounts("g@h"));
+    }
+
+    @Test
+    public void disabledDoesNotRecord() {
+        sut = FixStrategyStats.disabled();
+        assertFalse(sut.isEnabled());
+        sut.recordSuccess("g@h", "a");
+        assertEquals(Map.of(), sut.getCounts("g@h"));
+    }
+
+    @Test
+    public void countsSurviveRestarts() {
+        sut.recordSuccess("g@h", "a");
+        sut.recordSuccess("g@h", "a");
+        sut.close();
+
+        sut = new FixStrategyStats(file);
+        sut.recordSuccess("g@h", "a");
+        sut.close();
+
+        sut = new FixStrategyStats(file);
+        assertEquals(Map.of("a", 3), sut.getCounts("g@h"));
+    }
+
+    @Test
+    public void instancesShareTheFile() {
+        try (var other = new FixStrategyStats(file)) {
+            sut.recordSuccess("g@h", "a");
+            other.recordSuccess("g@h", "a");
+            other.recordSuccess("g@h", "b");
+        }
+        sut.close();
+
+        sut = new FixStrategyStats(file);
+        assertEquals(Map.of("a", 2, "b", 1), sut.getCounts("g@h"));
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+
+public class IndexedCompletionTrackerTest {
+
+    private static final Artifact A = new Artifact("g.h", "a", "1.2.3");
+    private static final Artifact B = new Artifact("g.h", "b", "1.2.3");
+
+    @TempDir
+    private File tmpDir;
+
+    private MavenRepositoryUtils utils;
+    private IndexedCompletionTracker sut;
+
+    @BeforeEach
+    public void setup() {
+        utils = new MavenRepositoryUtils(null);
+        init();
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    private void init() {
+        if (sut != null) {
+            sut.close();
+        }
+        sut = new IndexedCompletionTracker(utils, tmpDir);
+    }
+
+    @Test
+    public void instancesShareTheSameFolder() {
+        try (var other = new IndexedCompletionTracker(utils, tmpDir)) {
+            assertFalse(sut.shouldSkip(A));
+            other.markCompleted(A);
+            assertTrue(sut.shouldSkip(A));
+
+            // growing the index replaces its file
+            for (var i = 0; i < 10_000; i++) {
+                other.markCompleted(new Artifact("g", "a", "1." + i));
+            }
+            sut.markCompleted(B);
+            for (var i = 0; i < 10_000; i++) {
+                assertTrue(sut.shouldSkip(new Artifact("g", "a", "1." + i)));
+            }
+            assertTrue(other.shouldSkip(B));
+        }
+        assertFalse(sut.shouldSkip(new Artifact("g", "a", "2.0")));
+    }
+
+    @Test
+    public void instancesRebuildFilterWhenJournalStartsOver() {
+        try (var other = new IndexedCompletionTracker(utils, tmpDir)) {
+            assertFalse(sut.shouldSkip(A));
+            // exceeds the capacity of the journal
+            for (var i = 0; i < 200_000; i++) {
+                other.markCompleted(new Artifact("g", "a", "1." + i));
+            }
+            for (var i = 0; i < 200_000; i++) {
+                assertTrue(sut.shouldSkip(new Artifact("g", "a", "1." + i)));
+            }
+            assertFalse(sut.shouldSkip(B));
+        }
+    }
+
+    @Test
+    public void startedArtifactsAreNotCompleted() {
+        sut.markStarted(A);
+        assertFalse(sut.isCompleted(A));
+        sut.markCompleted(A);
+        assertTrue(sut.isCompleted(A));
+    }
+
+    @Test
+    public void unknownArtifactsShouldBeProcessed() {
+        assertFalse(sut.shouldSkip(A));
+    }
+
+    @Test
+    public void skipStartedArtifacts() {
+        sut.markStarted(A);
+        assertTrue(sut.shouldSkip(A));
+        assertFalse(sut.shouldSkip(B));
+    }
+
+    @Test
+    public void startingDoesNotPersistOverRestarts() {
+        sut.markStarted(A);
+        init();
+        assertFalse(sut.shouldSkip(A));
+    }
+
+    @Test
+    public void clearMemory() {
+        sut.markStarted(A);
+        sut.clearMemory();
+        assertFalse(sut.shouldSkip(A));
+    }
+
+    @Test
+    public void completionPersistsOverRestarts() {
+        sut.markCompleted(A);
+        init();
+        assertTrue(sut.shouldSkip(A));
+        assertFalse(sut.shouldSkip(B));
+    }
+
+    @Test
+    public void completionDoesNotCreateMarkerFiles() {
+        sut.markCompleted(A);
+        assertFalse(utils.getMavenFilePathNonStatic(tmpDir, A, CompletionTracker.EXT).exists());
+    }
+
+    @Test
+    public void canAbortMemory() {
+        sut.markStarted(A);
+        sut.markAborted(A);
+        assertFalse(sut.shouldSkip(A));
+    }
+
+    @Test
+    public void cannotAbortCompletion() {
+        sut.markCompleted(A);
+        init();
+        var e = assertThrows(IllegalStateException.class, () -> {
+            sut.markAborted(A);
+        });
+        assertEquals("Cannot abort a completed artifact (g.h:a:1.2.3:null:0@CENTRAL)", e.getMessage());
+    }
+
+    @Test
+    public void existingMarkersAreImported() {
+        sut.close();
+        new File(tmpDir, IndexedCompletionTracker.INDEX_FILE).delete();
+        var plain = new CompletionTracker(utils, tmpDir);
+        plain.markCompleted(A);
+
+        sut = new IndexedCompletionTracker(utils, tmpDir);
+        assertTrue(sut.shouldSkip(A));
+        assertFalse(sut.shouldSkip(B));
+    }
+
+    @Test
+    public void manyCompletions() {
+        for (var i = 0; i < 200_000; i++) {
+            sut.markCompleted(new Artifact("g", "a", "1." + i));
+        }
+        init();
+        for (var i = 0; i < 200_000; i++) {
+            assertTrue(sut.shouldSkip(new Artifact("g", "a", "1." + i)));
+        }
+        assertFalse(sut.shouldSkip(new Artifact("g", "a", "2.0")));
+    }
+}
@@ -16,6 +16,7 @@
 package dev.c0ps.mx.downloader.utils;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
@@ -69,6 +70,21 @@ public class MavenDownloaderTest {
         sut.download(central("junit", "junit", "4.12"));
     }
 
+    @Test
+    public void nonExistingWithResolver() {
+        var resolver = new MavenDownloader(new MavenRepositoryUtils(dirM2), new ResolverDependencyGetter(dirM2));
+        assertThrows(ResolutionException.class, () -> {
+            resolver.download(central("non.existing", "artifact", "1.2.3"));
+        });
+    }
+
+    @Test
+    public void existingWithResolver() {
+        var resolver = new MavenDownloader(new MavenRepositoryUtils(dirM2), new ResolverDependencyGetter(dirM2));
+        resolver.download(central("junit", "junit", "4.12"));
+        assertTrue(new File(dirM2, "repository/org/hamcrest/hamcrest-core/1.3/hamcrest-core-1.3.jar").exists());
+    }
+
     private static Artifact central(String g, String a, String v) {
         return new Artifact(g, a, v, "jar").setRepository(MavenDownloader.CENTRAL);
     }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class PackagingSnifferTest {
+
+    @Test
+    public void declaredPackaging() {
+        assertSniffed("war", "<project><modelVersion>4.0.0</modelVersion><packaging>war</packaging></project>");
+    }
+
+    @Test
+    public void defaultPackaging() {
+        assertSniffed("jar", "<project><modelVersion>4.0.0</modelVersion></project>");
+    }
+
+    @Test
+    public void namespacesAndWhitespace() {
+        assertSniffed("pom", "<?xml version=\"1.0\"?>\n" //
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n" //
+                + "  <packaging>\n    pom\n  </packaging>\n" //
+                + "</project>");
+    }
+
+    @Test
+    public void nestedPackagingIsIgnored() {
+        assertSniffed("jar", "<project><build><plugins><plugin><configuration>" //
+                + "<packaging>war</packaging>" //
+                + "</configuration></plugin></plugins></build></project>");
+    }
+
+    @Test
+    public void packagingAfterDependencies() {
+        assertSniffed("war", "<project><dependencies><dependency><packaging>ear</packaging></dependency></dependencies>" //
+                + "<packaging>war</packaging></project>");
+    }
+
+    @Test
+    public void stopsReadingAfterPackaging() {
+        assertSniffed("bundle", "<project><packaging>bundle</packaging><<< not xml");
+    }
+
+    @Test
+    public void invalidPackaging() {
+        assertSniffed("jar", "<project><packaging>${p}</packaging></project>");
+    }
+
+    @Test
+    public void malformedPom() {
+        assertSniffed("jar", "<project><<< not xml");
+    }
+
+    private static void assertSniffed(String expected, String pom) {
+        var actual = PackagingSniffer.sniff(new ByteArrayInputStream(pom.getBytes(UTF_8)));
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static dev.c0ps.mx.downloader.data.Status.DEPS_MISSING;
+import static dev.c0ps.mx.downloader.data.Status.FOUND;
+import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maven.json.CommonsMavenDataModule;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.maveneasyindex.ArtifactModule;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+import dev.c0ps.mx.downloader.utils.AbstractResultsDatabase.PendingWrite;
+import dev.c0ps.mx.infra.utils.PostgresConnectionPool;
+import dev.c0ps.mx.infra.utils.PostgresConnectionPool.SqlFunction;
+import dev.c0ps.mx.infra.utils.Version;
+
+/**
+ * Checks the generated statements without a database, see
+ * {@link PostgresResultsDatabaseTest} for the integration tests.
+ */
+public class PostgresResultsDatabaseSqlTest {
+
+    private static final Artifact A1 = new Artifact("g", "a1", "1.0.0", "jar");
+    private static final Artifact A2 = new Artifact("g", "a2", "1.0.0", "jar");
+
+    private PreparedStatement stmt;
+    private List<String> sqls;
+    private PostgresResultsDatabase sut;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setup() throws SQLException {
+        stmt = mock(PreparedStatement.class);
+        sqls = new ArrayList<>();
+
+        var c = mock(Connection.class);
+        when(c.createStatement()).thenReturn(mock(Statement.class));
+        when(c.prepareStatement(anyString())).thenAnswer(i -> {
+            sqls.add(i.getArgument(0));
+            return stmt;
+        });
+
+        var pool = mock(PostgresConnectionPool.class);
+        when(pool.run(any())).thenAnswer(i -> ((SqlFunction<Object>) i.getArgument(0)).apply(c));
+
+        var version = mock(Version.class);
+        when(version.get()).thenReturn("1.2.3");
+        var om = new ObjectMapper().registerModules(new ArtifactModule(), new CommonsMavenDataModule());
+        sut = new PostgresResultsDatabase(version, om, pool);
+    }
+
+    @Test
+    public void batchesCompareTheStoredStatus() throws SQLException {
+        when(stmt.executeBatch()).thenReturn(new int[] { 1 }, new int[] { Statement.SUCCESS_NO_INFO });
+
+        sut.writeAll(List.of(write(A1, FOUND, DEPS_MISSING), write(A2, null, FOUND)));
+
+        assertEquals(2, sqls.size());
+        var insert = sqls.get(0);
+        assertTrue(insert.startsWith("INSERT INTO results"), insert);
+        assertTrue(insert.endsWith("ON CONFLICT (gav) DO NOTHING"), insert);
+        var update = sqls.get(1);
+        assertTrue(update.startsWith("UPDATE results"), update);
+        assertTrue(update.endsWith("WHERE gav = ? AND status IS NOT DISTINCT FROM ?"), update);
+        verify(stmt).setString(6, FOUND.name());
+        verify(stmt, never()).setNull(6, Types.VARCHAR);
+    }
+
+    @Test
+    public void existingRowsWithoutStatusAreUpdated() throws SQLException {
+        when(stmt.executeBatch()).thenReturn(new int[] { 0 }, new int[] { 1 });
+
+        sut.writeAll(List.of(write(A1, null, FOUND)));
+
+        assertEquals(2, sqls.size());
+        assertTrue(sqls.get(1).startsWith("UPDATE results"), sqls.get(1));
+        verify(stmt).setNull(6, Types.VARCHAR);
+    }
+
+    @Test
+    public void batchesReportConflicts() throws SQLException {
+        when(stmt.executeBatch()).thenReturn(new int[] { 1, 0 });
+
+        var e = assertThrows(IllegalStateException.class, () -> {
+            sut.writeAll(List.of(write(A1, FOUND, RESOLVED), write(A2, FOUND, RESOLVED)));
+        });
+        assertTrue(e.getMessage().contains("g:a2:1.0.0"), e.getMessage());
+        assertTrue(!e.getMessage().contains("g:a1:1.0.0"), e.getMessage());
+    }
+
+    @Test
+    public void emptyBatchesAreSkipped() throws SQLException {
+        sut.writeAll(List.of());
+        verify(stmt, never()).executeBatch();
+    }
+
+    @Test
+    public void transitionsOfUnknownArtifactsAreInserted() throws SQLException {
+        when(stmt.executeQuery()).thenReturn(mock(ResultSet.class));
+        when(stmt.executeBatch()).thenReturn(new int[] { 1 });
+
+        sut.markFound(A1);
+
+        var sql = sqls.get(sqls.size() - 1);
+        assertTrue(sql.endsWith("ON CONFLICT (gav) DO NOTHING"), sql);
+    }
+
+    private static PendingWrite write(Artifact a, Status before, Status after) {
+        var r = new Result();
+        r.artifact = a;
+        r.status = after;
+        return new PendingWrite(a, before, r);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static dev.c0ps.mx.downloader.data.Status.DEPS_MISSING;
+import static dev.c0ps.mx.downloader.data.Status.FOUND;
+import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maven.json.CommonsMavenDataModule;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.maveneasyindex.ArtifactModule;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.utils.AbstractResultsDatabase.PendingWrite;
+import dev.c0ps.mx.infra.utils.PostgresConnectionPool;
+import dev.c0ps.mx.infra.utils.PostgresConnector;
+import dev.c0ps.mx.infra.utils.Version;
+
+// Running this suite requires a local Postgres instance, only run it locally
+@Disabled
+public class PostgresResultsDatabaseTest {
+
+    private static final String DB_URL = "jdbc:postgresql://localhost:5432/postgres";
+    private static final String DB_USER = "postgres";
+
+    private static final Artifact A1 = new Artifact("g", "a1", "1.0.0", "jar");
+    private static final Artifact A2 = new Artifact("g", "a2", "1.0.0", "jar");
+
+    private PostgresConnectionPool pool;
+    private PostgresResultsDatabase sut;
+
+    @BeforeEach
+    public void setup() {
+        PostgresConnector connector = () -> {
+            try {
+                return DriverManager.getConnection(DB_URL, DB_USER, System.getenv(PostgresConnector.PASSWORD_ENV_VAR));
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        pool = new PostgresConnectionPool(connector, 2);
+        pool.run(c -> c.createStatement().execute("DROP TABLE IF EXISTS results"));
+
+        var version = mock(Version.class);
+        when(version.get()).thenReturn("1.2.3");
+        var om = new ObjectMapper().registerModules(new ArtifactModule(), new CommonsMavenDataModule());
+        sut = new PostgresResultsDatabase(version, om, pool);
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void reminderToReenableDisabledAnnotationOnClass() {
+        fail("Suite requires a local Postgres instance and should only be run locally. Re-enable @Disabled annotation.");
+    }
+
+    @Test
+    public void unknownArtifact() {
+        assertNull(sut.get(A1));
+    }
+
+    @Test
+    public void transitionsAreStored() {
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        var r = sut.get(A1);
+        assertEquals(RESOLVED, r.status);
+        assertEquals("1.2.3", r.createdWith);
+    }
+
+    @Test
+    public void invalidTransitionsAreRejected() {
+        sut.markFound(A1);
+        assertThrows(IllegalStateException.class, () -> {
+            sut.markDone(A1);
+        });
+        assertEquals(FOUND, sut.get(A1).status);
+    }
+
+    @Test
+    public void crashesAreStored() {
+        sut.markFound(A1);
+        sut.recordCrash(A1, new IllegalArgumentException());
+        var r = sut.get(A1);
+        assertEquals(FOUND, r.status);
+        assertEquals(1, r.numCrashes);
+    }
+
+    @Test
+    public void concurrentModificationIsDetected() {
+        sut.markFound(A1);
+        sut.markResolved(A1);
+
+        var r = new Result();
+        r.status = RESOLVED;
+        r.artifact = A1;
+        assertThrows(IllegalStateException.class, () -> {
+            // stored status is not FOUND anymore
+            sut.write(A1, FOUND, r);
+        });
+        assertEquals(RESOLVED, sut.get(A1).status);
+    }
+
+    @Test
+    public void batchesAreWritten() {
+        var r1 = new Result();
+        r1.status = FOUND;
+        r1.artifact = A1;
+        var r2 = new Result();
+        r2.status = RESOLVED;
+        r2.artifact = A2;
+
+        sut.writeAll(List.of(new PendingWrite(A1, null, r1), new PendingWrite(A2, null, r2)));
+
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(RESOLVED, sut.get(A2).status);
+    }
+
+    @Test
+    public void batchesDetectConcurrentModifications() {
+        sut.markFound(A1);
+        var r = new Result();
+        r.status = DEPS_MISSING;
+        r.artifact = A1;
+
+        // coalesced transitions of the cache are accepted ...
+        sut.writeAll(List.of(new PendingWrite(A1, FOUND, r)));
+        assertEquals(DEPS_MISSING, sut.get(A1).status);
+
+        // ... but not if the stored status has changed in the meantime
+        assertThrows(IllegalStateException.class, () -> {
+            sut.writeAll(List.of(new PendingWrite(A1, FOUND, r)));
+        });
+    }
+
+    @Test
+    public void deletedResultsAreNotInsertedAgain() {
+        sut.markFound(A1);
+        sut.reset(A1);
+        var r = new Result();
+        r.status = RESOLVED;
+        r.artifact = A1;
+
+        assertThrows(IllegalStateException.class, () -> {
+            sut.writeAll(List.of(new PendingWrite(A1, FOUND, r)));
+        });
+        assertNull(sut.get(A1));
+    }
+
+    @Test
+    public void resetRemovesResult() {
+        sut.markFound(A1);
+        sut.reset(A1);
+        assertNull(sut.get(A1));
+        sut.markRequested(A1);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.maveneasyindex.Artifact;
+
+public class ResolverDependencyGetterTest {
+
+    private static final String JDK_PROFILE = "<profiles><profile><id>jdk</id><activation><jdk>[1.8,)</jdk></activation>%s</profile></profiles>";
+
+    @TempDir
+    private File tempDir;
+
+    private File repo;
+    private ResolverDependencyGetter sut;
+
+    @BeforeEach
+    public void setup() {
+        repo = new File(tempDir, "repo");
+        sut = new ResolverDependencyGetter(new File(tempDir, "m2"));
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void resolvesTransitiveDependencies() throws IOException {
+        deploy("a", deps("b"));
+        deploy("b", "");
+
+        var out = new ByteArrayOutputStream();
+        assertEquals(0, get("a", out));
+        assertTrue(out.toString().contains("g:b:jar:1"), out.toString());
+    }
+
+    @Test
+    public void dependenciesOfJdkProfilesAreResolved() throws IOException {
+        deploy("a", String.format(JDK_PROFILE, deps("b")));
+        deploy("b", "");
+
+        var out = new ByteArrayOutputStream();
+        assertEquals(0, get("a", out));
+        assertTrue(out.toString().contains("g:b:jar:1"), out.toString());
+    }
+
+    @Test
+    public void brokenPomOfDependencyFails() throws IOException {
+        deploy("a", deps("b"));
+        deployRaw("b", "<project><broken");
+
+        assertEquals(1, get("a", new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void missingPomOfDependencyFails() throws IOException {
+        deploy("a", deps("b"));
+
+        assertEquals(1, get("a", new ByteArrayOutputStream()));
+    }
+
+    private int get(String artifactId, ByteArrayOutputStream out) {
+        var a = new Artifact("g", artifactId, "1", "jar");
+        return sut.get(a, Set.of(repo.toURI().toString()), true, out);
+    }
+
+    private static String deps(String artifactId) {
+        return String.format("<dependencies><dependency><groupId>g</groupId><artifactId>%s</artifactId><version>1</version></dependency></dependencies>", artifactId);
+    }
+
+    private void deploy(String artifactId, String body) throws IOException {
+        var pom = "<project><modelVersion>4.0.0</modelVersion><groupId>g</groupId><artifactId>%s</artifactId><version>1</version>%s</project>";
+        deployRaw(artifactId, String.format(pom, artifactId, body));
+    }
+
+    private void deployRaw(String artifactId, String pom) throws IOException {
+        var dir = new File(repo, "g/" + artifactId + "/1");
+        dir.mkdirs();
+        Files.writeString(new File(dir, artifactId + "-1.pom").toPath(), pom);
+        Files.writeString(new File(dir, artifactId + "-1.jar").toPath(), "");
+    }
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static dev.c0ps.mx.downloader.data.Status.DONE;
+import static dev.c0ps.mx.downloader.data.Status.FOUND;
+import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maven.data.Pom;
+import dev.c0ps.maven.data.PomBuilder;
+import dev.c0ps.maven.json.CommonsMavenDataModule;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.maveneasyindex.ArtifactModule;
+import dev.c0ps.mx.infra.utils.RecordCodec;
+import dev.c0ps.mx.infra.utils.Version;
+
+public class SegmentedResultsDatabaseTest {
+
+    private static final Artifact A1 = new Artifact("g", "a1", "1.0.0", "jar");
+    private static final Artifact A2 = new Artifact("g", "a2", "1.0.0", "jar");
+
+    @TempDir
+    private File tempDir;
+
+    private Version version;
+    private ObjectMapper om;
+    private SegmentedResultsDatabase sut;
+
+    @BeforeEach
+    public void setup() {
+        version = mock(Version.class);
+        when(version.get()).thenReturn("1.2.3");
+        om = new ObjectMapper().registerModules(new ArtifactModule(), new CommonsMavenDataModule());
+        sut = open(1024 * 1024);
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    private SegmentedResultsDatabase open(long maxSegmentSize) {
+        return new SegmentedResultsDatabase(version, om, tempDir, maxSegmentSize, 0, 0.5);
+    }
+
+    private void reopen() {
+        sut.close();
+        sut = open(1024 * 1024);
+    }
+
+    @Test
+    public void unknownArtifact() {
+        assertNull(sut.get(A1));
+        assertEquals(0, sut.size());
+    }
+
+    @Test
+    public void transitionsAreStored() {
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        var r = sut.get(A1);
+        assertEquals(RESOLVED, r.status);
+        assertEquals(A1, r.artifact);
+        assertEquals("1.2.3", r.createdWith);
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    public void invalidTransitionsAreRejected() {
+        sut.markFound(A1);
+        assertThrows(IllegalStateException.class, () -> {
+            sut.markDone(A1);
+        });
+        assertEquals(FOUND, sut.get(A1).status);
+    }
+
+    @Test
+    public void pomsAreStored() {
+        var p = pom();
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        sut.markDepsMissing(p);
+        reopen();
+        assertEquals(p, sut.get(A1).pom);
+    }
+
+    @Test
+    public void crashesAreStored() {
+        sut.markFound(A1);
+        sut.recordCrash(A1, new IllegalArgumentException());
+        reopen();
+        var r = sut.get(A1);
+        assertEquals(FOUND, r.status);
+        assertEquals(1, r.numCrashes);
+    }
+
+    @Test
+    public void resultsSurviveRestart() {
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.markResolved(A2);
+        reopen();
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(RESOLVED, sut.get(A2).status);
+        assertEquals(2, sut.size());
+    }
+
+    @Test
+    public void resetSurvivesRestart() {
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.reset(A1);
+        assertNull(sut.get(A1));
+        reopen();
+        assertNull(sut.get(A1));
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void resetOfUnknownArtifactIsIgnored() {
+        sut.reset(A1);
+        assertNull(sut.get(A1));
+    }
+
+    @Test
+    public void tornWriteIsTruncated() throws IOException {
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.close();
+
+        var seg = new File(tempDir, "0000000000.seg");
+        try (var raf = new RandomAccessFile(seg, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        sut = open(1024 * 1024);
+        assertEquals(FOUND, sut.get(A1).status);
+        assertNull(sut.get(A2));
+
+        // appending continues after the last valid record
+        sut.markFound(A2);
+        reopen();
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void segmentsAreRolled() {
+        sut.close();
+        sut = open(1);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.markResolved(A1);
+        assertEquals(3, sut.numSegments());
+        assertEquals(RESOLVED, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void compactionKeepsLatestRecords() {
+        sut.close();
+        sut = open(1);
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        sut.markFound(A2);
+        sut.reset(A2);
+        sut.markFound(A2);
+        assertEquals(5, sut.numSegments());
+
+        sut.compact(true);
+        assertEquals(2, sut.numSegments());
+        assertEquals(RESOLVED, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+
+        reopen();
+        assertEquals(RESOLVED, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+        assertEquals(2, sut.size());
+    }
+
+    @Test
+    public void readsDuringCompactionSeeLatestRecords() throws Exception {
+        sut.close();
+        sut = open(1);
+        var artifacts = new ArrayList<Artifact>();
+        for (var i = 0; i < 100; i++) {
+            var a = new Artifact("g", "a", "1." + i, "jar");
+            sut.markFound(a);
+            artifacts.add(a);
+        }
+        var reader = Executors.newSingleThreadExecutor();
+        try {
+            var reads = reader.submit(() -> {
+                for (var round = 0; round < 20; round++) {
+                    for (var a : artifacts) {
+                        assertEquals(FOUND, sut.get(a).status);
+                    }
+                }
+            });
+            // re-compacting replaces the segment file under the same id
+            while (!reads.isDone()) {
+                sut.compact(true);
+            }
+            reads.get();
+        } finally {
+            reader.shutdown();
+        }
+    }
+
+    @Test
+    public void compactionDoesNotResurrectDeletedRecords() {
+        sut.close();
+        sut = open(1);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.reset(A1);
+        sut.markFound(A2);
+
+        sut.compact(true);
+        reopen();
+        assertNull(sut.get(A1));
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void interruptedCompactionIsRolledBack() throws IOException {
+        sut.close();
+        sut = open(1);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.close();
+
+        // crash before the compacted segment was moved in place
+        var tmp = new File(tempDir, "compaction.tmp");
+        var manifest = new File(tempDir, "compaction.manifest");
+        Files.writeString(tmp.toPath(), "garbage");
+        Files.writeString(manifest.toPath(), "0\n");
+
+        sut = open(1);
+        assertFalse(tmp.exists());
+        assertFalse(manifest.exists());
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void interruptedCompactionIsCompleted() throws IOException {
+        sut.close();
+        sut = open(1);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.markResolved(A1);
+        sut.close();
+
+        // crash after the compacted segment was moved in place
+        var manifest = new File(tempDir, "compaction.manifest");
+        Files.writeString(manifest.toPath(), "0\n");
+
+        sut = open(1);
+        assertFalse(manifest.exists());
+        assertFalse(new File(tempDir, "0000000000.seg").exists());
+        assertEquals(RESOLVED, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void markingDoneWorks() {
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        sut.markDepsMissing(pom());
+        sut.markDone(A1);
+        assertEquals(DONE, sut.get(A1).status);
+    }
+
+    @Test
+    public void resultsCanBeQueriedByStatus() {
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.markResolved(A2);
+
+        var found = sut.streamByStatus(FOUND).map(r -> r.artifact).collect(Collectors.toList());
+        assertEquals(List.of(A1), found);
+        assertEquals(1L, sut.countByStatus().get(FOUND));
+        assertEquals(1L, sut.countByStatus().get(RESOLVED));
+        assertEquals(0L, sut.countByStatus().get(DONE));
+    }
+
+    @Test
+    public void statusIndexSurvivesRestartAndCompaction() {
+        sut.close();
+        sut = open(1);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        sut.markResolved(A2);
+        sut.reset(A1);
+        sut.compact(true);
+        reopen();
+
+        assertEquals(0L, sut.countByStatus().get(FOUND));
+        assertEquals(1L, sut.countByStatus().get(RESOLVED));
+        assertEquals(1, sut.streamByStatus(RESOLVED).count());
+    }
+
+    @Test
+    public void directoryCanBeShared() {
+        var other = open(1024 * 1024);
+        try {
+            sut.markFound(A1);
+            assertEquals(FOUND, other.get(A1).status);
+
+            other.markResolved(A1);
+            other.markFound(A2);
+            assertEquals(RESOLVED, sut.get(A1).status);
+            assertEquals(1L, sut.countByStatus().get(FOUND));
+            assertEquals(2, sut.size());
+
+            sut.reset(A2);
+            assertNull(other.get(A2));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void segmentsRolledByOtherInstanceAreRead() {
+        sut.close();
+        sut = open(1);
+        var other = open(1);
+        try {
+            other.markFound(A1);
+            other.markFound(A2);
+            other.markResolved(A1);
+            assertEquals(RESOLVED, sut.get(A1).status);
+            assertEquals(FOUND, sut.get(A2).status);
+
+            // appends continue in the latest segment of the other instance
+            sut.markResolved(A2);
+            assertEquals(4, sut.numSegments());
+            assertEquals(RESOLVED, other.get(A2).status);
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void compactionOfOtherInstanceIsPickedUp() {
+        sut.close();
+        sut = open(1);
+        var other = open(1);
+        try {
+            sut.markFound(A1);
+            sut.markResolved(A1);
+            sut.markFound(A2);
+            sut.reset(A2);
+            assertEquals(RESOLVED, other.get(A1).status);
+
+            other.compact(true);
+            assertEquals(RESOLVED, sut.get(A1).status);
+            assertNull(sut.get(A2));
+            assertEquals(2, sut.numSegments());
+
+            sut.markFound(A2);
+            assertEquals(FOUND, other.get(A2).status);
+            assertEquals(1L, other.countByStatus().get(RESOLVED));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void tornWriteOfOtherProcessIsOverwritten() throws IOException {
+        var other = open(1024 * 1024);
+        try {
+            sut.markFound(A1);
+            var seg = new File(tempDir, "0000000000.seg");
+            try (var raf = new RandomAccessFile(seg, "rw")) {
+                // incomplete record of a crashed writer
+                raf.seek(raf.length());
+                raf.write(new byte[] { 1, 2, 3 });
+            }
+            assertEquals(FOUND, other.get(A1).status);
+
+            other.markFound(A2);
+            assertEquals(FOUND, sut.get(A2).status);
+        } finally {
+            other.close();
+        }
+        reopen();
+        assertEquals(FOUND, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    @Test
+    public void closedDatabaseCannotBeUsed() {
+        sut.close();
+        assertThrows(IllegalStateException.class, () -> {
+            sut.get(A1);
+        });
+    }
+
+    @Test
+    public void payloadsCanBeStoredAsBlobs() {
+        sut.setBlobStore(new BlobStore(new File(tempDir, "blobs"), om));
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        var r = sut.markDepsMissing(pom());
+        assertEquals(pom(), r.pom);
+        assertNotNull(r.pomRef);
+
+        var stored = sut.read(A1);
+        assertNull(stored.pom);
+        assertEquals(r.pomRef, stored.pomRef);
+        assertEquals(pom(), sut.get(A1).pom);
+    }
+
+    @Test
+    public void updatesDoNotReadBlobs() {
+        sut.setBlobStore(new BlobStore(new File(tempDir, "blobs"), om));
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        var r = sut.markDepsMissing(pom());
+
+        var done = sut.markDone(A1);
+        assertNull(done.pom);
+        assertEquals(r.pomRef, done.pomRef);
+        assertEquals(pom(), sut.get(A1).pom);
+    }
+
+    @Test
+    public void identicalStacktracesAreStoredOnce() {
+        var blobs = new BlobStore(new File(tempDir, "blobs"), om);
+        sut.setBlobStore(blobs);
+        sut.markFound(A1);
+        sut.markFound(A2);
+        var e = new IllegalArgumentException();
+        var r1 = sut.recordCrash(A1, e);
+        var r2 = sut.recordCrash(A2, e);
+
+        assertEquals(r1.stacktraceRef, r2.stacktraceRef);
+        assertNull(sut.read(A1).stacktrace);
+        assertEquals(r1.stacktrace, sut.markCrashed(A1).stacktrace);
+    }
+
+    @Test
+    public void inlinedPayloadsAreMigrated() {
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        sut.markDepsMissing(pom());
+        assertEquals(pom(), sut.read(A1).pom);
+
+        sut.setBlobStore(new BlobStore(new File(tempDir, "blobs"), om));
+        assertEquals(pom(), sut.get(A1).pom);
+        sut.markDone(A1);
+        assertNull(sut.read(A1).pom);
+        assertEquals(pom(), sut.get(A1).pom);
+    }
+
+    @Test
+    public void referencedPayloadsRequireBlobStore() {
+        sut.setBlobStore(new BlobStore(new File(tempDir, "blobs"), om));
+        sut.markFound(A1);
+        sut.markResolved(A1);
+        sut.markDepsMissing(pom());
+
+        sut.setBlobStore(null);
+        assertThrows(IllegalStateException.class, () -> {
+            sut.get(A1);
+        });
+    }
+
+    @Test
+    public void formatCanBeChangedForExistingSegments() {
+        sut.markFound(A1);
+        sut.close();
+        var codec = new RecordCodec(om, RecordCodec.Format.SMILE, true);
+        sut = new SegmentedResultsDatabase(version, codec, tempDir, 1024 * 1024, 0, 0.5);
+
+        assertEquals(FOUND, sut.get(A1).status);
+        sut.markResolved(A1);
+        sut.markFound(A2);
+        reopen();
+        assertEquals(RESOLVED, sut.get(A1).status);
+        assertEquals(FOUND, sut.get(A2).status);
+    }
+
+    private static Pom pom() {
+        return new PomBuilder() //
+                .groupId("g") //
+                .artifactId("a1") //
+                .version("1.0.0") //
+                .packagingType("jar") //
+                .pom();
+    }
+}
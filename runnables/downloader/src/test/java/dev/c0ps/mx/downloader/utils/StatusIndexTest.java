@@ -0,0 +1,221 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.downloader.utils;
+
+import static dev.c0ps.mx.downloader.data.Status.DONE;
+import static dev.c0ps.mx.downloader.data.Status.FOUND;
+import static dev.c0ps.mx.downloader.data.Status.RESOLVED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
+
+public class StatusIndexTest {
+
+    @TempDir
+    private File tempDir;
+
+    private StatusIndex sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new StatusIndex(tempDir);
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void emptyByDefault() {
+        assertEquals(Set.of(), get(sut, FOUND));
+        assertEquals(0L, sut.count().get(FOUND));
+        assertFalse(sut.isComplete());
+    }
+
+    @Test
+    public void transitionsAreTracked() {
+        sut.update("g:a:1", null, FOUND);
+        sut.update("g:a:2", null, FOUND);
+        sut.update("g:a:1", FOUND, RESOLVED);
+
+        assertEquals(Set.of("g:a:2"), get(sut, FOUND));
+        assertEquals(Set.of("g:a:1"), get(sut, RESOLVED));
+        assertEquals(1L, sut.count().get(FOUND));
+        assertEquals(1L, sut.count().get(RESOLVED));
+        assertEquals(0L, sut.count().get(DONE));
+    }
+
+    @Test
+    public void removalIsTracked() {
+        sut.update("g:a:1", null, FOUND);
+        sut.update("g:a:1", FOUND, null);
+        assertEquals(Set.of(), get(sut, FOUND));
+    }
+
+    @Test
+    public void indexIsShared() {
+        sut.update("g:a:1", null, FOUND);
+        var other = new StatusIndex(tempDir);
+        assertEquals(Set.of("g:a:1"), get(other, FOUND));
+    }
+
+    @Test
+    public void countsIncludeUpdatesOfOtherInstances() {
+        sut.update("g:a:1", null, FOUND);
+        assertEquals(1L, sut.count().get(FOUND));
+        try (var other = new StatusIndex(tempDir)) {
+            other.update("g:a:2", null, FOUND);
+            other.update("g:a:1", FOUND, RESOLVED);
+        }
+        assertEquals(1L, sut.count().get(FOUND));
+        assertEquals(1L, sut.count().get(RESOLVED));
+    }
+
+    @Test
+    public void journalIsCompacted() {
+        sut.rebuild(Stream.empty());
+        for (var i = 0; i < 3000; i++) {
+            sut.update(longGav(i), null, FOUND);
+            sut.update(longGav(i), FOUND, RESOLVED);
+        }
+        sut.update("g:b:1", null, FOUND);
+
+        assertTrue(new File(tempDir, "FOUND.idx").length() < 2 * 1024 * 1024);
+        assertTrue(sut.isComplete());
+        assertEquals(Set.of("g:b:1"), get(sut, FOUND));
+        assertEquals(3000, get(sut, RESOLVED).size());
+        assertEquals(1L, sut.count().get(FOUND));
+        assertEquals(3000L, sut.count().get(RESOLVED));
+    }
+
+    @Test
+    public void compactionWaitsForShareOfSnapshot() {
+        // ~8MB snapshot, compacted after ~2MB of journal
+        sut.rebuild(IntStream.range(0, 8000).mapToObj(i -> r(longGav(i), RESOLVED)));
+        for (var i = 0; i < 1500; i++) {
+            sut.update(longGav(i), RESOLVED, FOUND);
+        }
+        var journal = new File(tempDir, "RESOLVED.idx");
+        assertTrue(journal.length() > 1024 * 1024);
+
+        for (var i = 1500; i < 2500; i++) {
+            sut.update(longGav(i), RESOLVED, FOUND);
+        }
+        assertTrue(journal.length() < 1024 * 1024);
+        assertEquals(5500L, sut.count().get(RESOLVED));
+        assertEquals(5500, get(sut, RESOLVED).size());
+    }
+
+    @Test
+    public void countsFollowCompactionsOfOtherInstances() {
+        sut.rebuild(Stream.empty());
+        sut.update("g:b:1", null, FOUND);
+        assertEquals(1L, sut.count().get(FOUND));
+
+        try (var other = new StatusIndex(tempDir)) {
+            for (var i = 0; i < 3000; i++) {
+                other.update(longGav(i), null, FOUND);
+                other.update(longGav(i), FOUND, RESOLVED);
+            }
+        }
+
+        sut.update("g:b:2", null, FOUND);
+        assertEquals(2L, sut.count().get(FOUND));
+        assertEquals(3000L, sut.count().get(RESOLVED));
+        assertEquals(Set.of("g:b:1", "g:b:2"), get(sut, FOUND));
+    }
+
+    @Test
+    public void openQueriesAreNotAffectedByCompactions() {
+        sut.rebuild(Stream.of(r("g:b:1", FOUND)));
+        try (var gavs = sut.get(FOUND)) {
+            for (var i = 0; i < 3000; i++) {
+                sut.update(longGav(i), null, FOUND);
+                sut.update(longGav(i), FOUND, RESOLVED);
+            }
+            sut.update("g:b:1", FOUND, RESOLVED);
+            assertEquals(Set.of("g:b:1"), gavs.collect(Collectors.toSet()));
+        }
+        assertEquals(Set.of(), get(sut, FOUND));
+    }
+
+    @Test
+    public void linesCanExceedTheReadChunks() {
+        var gav = "g:" + "a".repeat(100_000) + ":1";
+        sut.update("g:a:1", null, FOUND);
+        sut.update(gav, null, FOUND);
+        sut.update("g:a:2", null, FOUND);
+        assertEquals(Set.of("g:a:1", gav, "g:a:2"), get(sut, FOUND));
+        assertEquals(3L, sut.count().get(FOUND));
+    }
+
+    @Test
+    public void rebuildReplacesContent() {
+        sut.update("g:a:1", null, FOUND);
+        sut.rebuild(Stream.of(r("g:a:2", RESOLVED)));
+
+        assertTrue(sut.isComplete());
+        assertEquals(Set.of(), get(sut, FOUND));
+        assertEquals(Set.of("g:a:2"), get(sut, RESOLVED));
+    }
+
+    @Test
+    public void rebuildKeepsConcurrentUpdates() {
+        var all = Stream.of(r("g:a:1", FOUND)).peek(r -> {
+            // update by another process while walking the results
+            new StatusIndex(tempDir).update("g:a:1", FOUND, RESOLVED);
+        });
+        sut.rebuild(all);
+
+        assertEquals(Set.of(), get(sut, FOUND));
+        assertEquals(Set.of("g:a:1"), get(sut, RESOLVED));
+    }
+
+    private static Set<String> get(StatusIndex idx, Status s) {
+        try (var gavs = idx.get(s)) {
+            return gavs.collect(Collectors.toSet());
+        }
+    }
+
+    private static String longGav(int i) {
+        // fills the journal quickly
+        return "g:" + "a".repeat(1000) + ":" + i;
+    }
+
+    private static Result r(String gav, Status s) {
+        var parts = gav.split(":");
+        var r = new Result();
+        r.artifact = new Artifact(parts[0], parts[1], parts[2]);
+        r.status = s;
+        return r;
+    }
+}
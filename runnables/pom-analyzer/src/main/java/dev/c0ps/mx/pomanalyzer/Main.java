@@ -22,8 +22,10 @@ import static java.lang.String.format;
 import java.time.Duration;
 import java.util.Date;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.jboss.shrinkwrap.resolver.api.InvalidConfigurationFileException;
 import org.slf4j.Logger;
@@ -39,43 +41,46 @@ import dev.c0ps.mx.downloader.data.Status;
 import dev.c0ps.mx.downloader.utils.CompletionTracker;
 import dev.c0ps.mx.downloader.utils.ResultsDatabase;
 import dev.c0ps.mx.infra.exceptions.UnrecoverableError;
+import dev.c0ps.mx.infra.kafka.KafkaOutbox;
 import dev.c0ps.mx.infra.kafka.LaneManagement;
 import dev.c0ps.mx.infra.kafka.SimpleErrorMessage;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
 import dev.c0ps.mx.infra.utils.TimedExecutor;
+import dev.c0ps.mx.pomanalyzer.utils.ClosureExplorer;
+import dev.c0ps.mx.pomanalyzer.utils.DependencyResolver;
 import dev.c0ps.mx.pomanalyzer.utils.EffectiveModelBuilder;
-import dev.c0ps.mx.pomanalyzer.utils.ShrinkwrapResolver;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 
 public class Main implements Runnable {
 
     private static final int MAX_TRIES_PER_COORD = 3;
+    private static final int HEARTBEAT_INTERVAL_MS = 1000;
 
     private static final Logger LOG = LoggerFactory.getLogger(Main.class);
 
     private final EffectiveModelBuilder modelBuilder;
     private final PomExtractor extractor;
-    private final ShrinkwrapResolver resolver;
+    private final DependencyResolver resolver;
     private final Kafka kafka;
     private final TimedExecutor timedExec;
     private final ResultsDatabase db;
     private final LaneManagement lm;
     private final MavenRepositoryUtils m2utils;
     private final CompletionTracker tracker;
+    private final ClosureExplorer<CurrentArtifact> explorer;
+    private final KafkaOutbox outbox;
 
     private final String kafkaTopicIn;
     private final String kafkaTopicOut;
     private final String kafkaTopicRequested;
 
     private final Date startOfMainAt = new Date();
-    private Date startOfOrigAt;
-    private LinkedList<CurrentArtifact> queue = new LinkedList<>();
-    private Set<Artifact> requeued = new HashSet<>();
+    private volatile Date startOfOrigAt;
 
     @Inject
-    public Main(EffectiveModelBuilder modelBuilder, PomExtractor extractor, ShrinkwrapResolver resolver, Kafka kafka, TimedExecutor timedExec, ResultsDatabase db, LaneManagement lm,
-            MavenRepositoryUtils m2utils, CompletionTracker tracker, //
+    public Main(EffectiveModelBuilder modelBuilder, PomExtractor extractor, DependencyResolver resolver, Kafka kafka, TimedExecutor timedExec, ResultsDatabase db, LaneManagement lm,
+            MavenRepositoryUtils m2utils, CompletionTracker tracker, @Named("explorer.threads") int explorerThreads, //
             @Named("kafka.topic.downloaded") String kafkaTopicIn, //
             @Named("kafka.topic.analyzed") String kafkaTopicOut, //
             @Named("kafka.topic.requested") String kafkaTopicRequested) {
@@ -83,11 +88,16 @@ public class Main implements Runnable {
         this.extractor = extractor;
         this.resolver = resolver;
         this.kafka = kafka;
+        this.outbox = new KafkaOutbox(kafka, HEARTBEAT_INTERVAL_MS);
         this.timedExec = timedExec;
         this.db = db;
         this.lm = lm;
         this.m2utils = m2utils;
         this.tracker = tracker;
+        // key is taken on discovery, the artifact of a node can be fixed later. Results
+        // are stored per GAV, so variants (e.g., other packaging) must not be visited
+        // concurrently.
+        this.explorer = new ClosureExplorer<>("explorer", explorerThreads, cur -> toGAV(cur.a));
         this.kafkaTopicIn = kafkaTopicIn;
         this.kafkaTopicOut = kafkaTopicOut;
         this.kafkaTopicRequested = kafkaTopicRequested;
@@ -111,6 +121,7 @@ public class Main implements Runnable {
                 kafka.poll();
             }
         } finally {
+            explorer.close();
             kafka.stop();
         }
     }
@@ -120,35 +131,64 @@ public class Main implements Runnable {
         startOfOrigAt = new Date();
 
         tracker.clearMemory();
-        if (!queue.isEmpty()) {
-            LOG.error("Tried to start {} with non-empty queue: {}", orig, queue);
-            queue.clear();
-        }
-        queue.add(new CurrentArtifact(orig, null, orig, lane));
-
-        while (!queue.isEmpty()) {
+        var root = new CurrentArtifact(orig, null, orig, lane);
+        awaitExploration(explorer.explore(root, this::visit, this::finish));
+    }
 
-            // make sure the outer poll does not timeout
-            kafka.sendHeartbeat();
+    /**
+     * The Kafka client is not thread-safe, so the exploration is awaited here,
+     * the messages of the workers are published from this thread, and
+     * heartbeats keep the outer poll from timing out.
+     */
+    private void awaitExploration(CompletableFuture<Void> f) {
+        outbox.publishUntilDone(f);
+        try {
+            f.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw e;
+        }
+    }
 
-            var cur = queue.poll();
+    /**
+     * @return the dependencies that have to be finished before the artifact can
+     *         be published, or null if nothing will be published
+     */
+    private Set<CurrentArtifact> visit(CurrentArtifact cur) {
+        if (shouldSkipOrStart(cur.a)) {
+            return null;
+        }
+        var deps = new AtomicReference<Set<CurrentArtifact>>();
+        runGuarded(cur, () -> {
+            deps.set(processOne(cur));
+        });
+        return deps.get();
+    }
 
-            if (shouldSkipOrStart(cur.a)) {
-                continue;
-            }
+    private void finish(CurrentArtifact cur) {
+        runGuarded(cur, () -> {
+            LOG.info("Finishing {}, all dependencies have been processed ...", cur.a);
+            publishResult(cur);
+            tracker.markCompleted(cur.a);
+        });
+    }
 
-            try {
-                timedExec.run(cur.id(), () -> {
-                    processOne(cur);
-                });
-            } catch (InvalidConfigurationFileException e) {
-                LOG.error("Cannot process {}: pom.xml cannot be parsed", cur.a);
-                db.recordCrash(cur.a, e);
-                var s2 = db.markCrashed(cur.a);
-                publishError(cur, s2, "invalid pom.xml");
-            } catch (Exception e) {
-                handleCrash(cur, e);
-            }
+    private void runGuarded(CurrentArtifact cur, Runnable r) {
+        try {
+            timedExec.run(cur.id(), r);
+        } catch (InvalidConfigurationFileException e) {
+            LOG.error("Cannot process {}: pom.xml cannot be parsed", cur.a);
+            db.recordCrash(cur.a, e);
+            var s2 = db.markCrashed(cur.a);
+            publishError(cur, s2, "invalid pom.xml");
+        } catch (Exception e) {
+            handleCrash(cur, e);
         }
     }
 
@@ -165,15 +205,18 @@ public class Main implements Runnable {
     }
 
     private boolean shouldSkipOrStart(Artifact a) {
-        if (tracker.shouldSkip(a)) {
-            LOG.info("Skipping {} (has already been processed)", a);
-            return true;
+        // check and start atomically, fixed artifacts can be reached from different nodes
+        synchronized (tracker) {
+            if (tracker.shouldSkip(a)) {
+                LOG.info("Skipping {} (has already been processed)", a);
+                return true;
+            }
+            tracker.markStarted(a);
+            return false;
         }
-        tracker.markStarted(a);
-        return false;
     }
 
-    private void processOne(CurrentArtifact cur) {
+    private Set<CurrentArtifact> processOne(CurrentArtifact cur) {
         logRuntime(cur);
 
         var s = db.get(cur.a);
@@ -183,11 +226,11 @@ public class Main implements Runnable {
             s = db.markRequested(cur.a);
             // directly resolving transitive deps can also discover new dependencies
             publishRequest(cur);
-            return;
+            return null;
         }
         // "fixed" information might exist for previous results
         if (shouldSkipAfterFixingInformation(cur, s)) {
-            return;
+            return null;
         }
 
         switch (s.status) {
@@ -203,19 +246,17 @@ public class Main implements Runnable {
             publishError(cur, s, "cached");
             break;
         case RESOLVED:
-            continueResolved(cur);
-            break;
+            return continueResolved(cur);
         case DEPS_MISSING:
-            continueDepsMissing(cur);
-            break;
+            return continueDepsMissing(cur);
         case DONE:
             // handle like DEP_MISSING to ensure processing of all deps
-            continueDepsMissing(cur);
-            break;
+            return continueDepsMissing(cur);
         default:
             var msg = String.format("Unhandled status %s for %s", s.status, s.artifact);
             throw new IllegalStateException(msg);
         }
+        return null;
     }
 
     private boolean shouldSkipAfterFixingInformation(CurrentArtifact cur, Result r) {
@@ -223,9 +264,6 @@ public class Main implements Runnable {
         if (resultContainsFix) {
             LOG.info("Updating current artifact with cached data: {} -> {} ...", cur.a, r.artifact);
             tracker.markAborted(cur.a);
-            if (requeued.remove(cur.a)) {
-                requeued.add(r.artifact);
-            }
             cur.a = r.artifact;
             if (shouldSkipOrStart(cur.a)) {
                 return true;
@@ -240,6 +278,7 @@ public class Main implements Runnable {
         var origDuration = Duration.between(startOfOrigAt.toInstant(), now);
 
         LOG.info("########## (Run started at: {} / {})", startOfMainAt, mainDuration);
+        LOG.info("########## (Model cache: {})", modelBuilder.getCache());
 
         var msg = cur.isOriginalArtifact() //
                 ? ">> Processing original {} ..."
@@ -247,7 +286,7 @@ public class Main implements Runnable {
         LOG.info(msg, cur.a, startOfOrigAt, origDuration);
     }
 
-    private void continueResolved(CurrentArtifact cur) {
+    private Set<CurrentArtifact> continueResolved(CurrentArtifact cur) {
 
         logContinueState(cur, Status.RESOLVED);
 
@@ -255,7 +294,7 @@ public class Main implements Runnable {
         if (!pomFile.exists()) {
             LOG.error("The pom file of RESOLVED artifact {} does not exist. Requesting again.", cur.a);
             publishRequest(cur);
-            return;
+            return null;
         }
 
         var m = modelBuilder.buildEffectiveModel(pomFile);
@@ -269,49 +308,29 @@ public class Main implements Runnable {
         LOG.info("Successful pom extraction for {} ...", cur.a);
         db.markDepsMissing(pom.pom());
 
-        continueDepsMissing(cur);
+        return continueDepsMissing(cur);
     }
 
-    private void continueDepsMissing(CurrentArtifact cur) {
+    private Set<CurrentArtifact> continueDepsMissing(CurrentArtifact cur) {
         logContinueState(cur, Status.DEPS_MISSING);
 
-        if (requeued.contains(cur.a)) {
-            var shouldClose = !cur.isOriginalArtifact() || queue.isEmpty();
-            if (shouldClose) {
-                requeued.remove(cur.a);
-                LOG.info("Finishing re-queued artifact {} ...", cur.a);
-                publishResult(cur);
-                tracker.markCompleted(cur.a);
+        LOG.info("Resolving dependencies of {} ...", cur.a);
+        var deps = resolver.resolveDependencies(cur.a);
+        var children = new HashSet<CurrentArtifact>();
+        var numSkips = 0;
+        for (var dep : deps) {
+            // started deps are still returned, the explorer makes this node wait for them
+            if (tracker.isCompleted(dep)) {
+                numSkips++;
             } else {
-                LOG.info("Found original again ({}), but queue is not empty. Re-queueing again ...", cur.a);
-                requeue(cur);
+                children.add(cur.child(dep));
             }
-        } else {
-            LOG.info("Resolving dependencies of {} ...", cur.a);
-            var deps = resolver.resolveDependencies(cur.a);
-            LOG.info("Queueing the {} dependencies of {} ...", deps.size(), cur.a);
-            var numSkips = new int[1];
-            deps.forEach(dep -> {
-                if (tracker.shouldSkip(dep)) {
-                    numSkips[0]++;
-                } else {
-                    queue.add(cur.child(dep));
-                }
-            });
-            if (numSkips[0] > 0) {
-                LOG.info("Skipped {} dependencies (have already been processed)", numSkips[0]);
-            }
-            requeue(cur);
         }
-    }
-
-    private void requeue(CurrentArtifact cur) {
-        if (!queue.contains(cur)) {
-            queue.add(cur);
+        if (numSkips > 0) {
+            LOG.info("Skipped {} dependencies (have already been completed)", numSkips);
         }
-        requeued.add(cur.a);
-        tracker.markAborted(cur.a);
-        LOG.info("Requeued {}.", cur.a);
+        LOG.info("Exploring the {} dependencies of {} ...", children.size(), cur.a);
+        return children;
     }
 
     private void logContinueState(CurrentArtifact cur, Status state) {
@@ -327,16 +346,18 @@ public class Main implements Runnable {
                 : "Publishing result for artifact {} on {} ... (dep of: {}, orig: {})";
         LOG.info(msg, cur.a, cur.lane, cur.parent, cur.origin);
         db.markDone(cur.a);
+        db.flush();
         var gav = MavenRepositoryUtils.toGAV(cur.a);
         // use GAV as key to eliminate parallel/duplicate processing in multiple workers
-        kafka.publish(gav, cur.a, kafkaTopicOut, cur.lane);
+        outbox.publish(gav, cur.a, kafkaTopicOut, cur.lane);
     }
 
     private void publishRequest(CurrentArtifact cur) {
         LOG.info("Dependency {} will be ingested separately ...", cur.a);
+        db.flush();
         var gav = MavenRepositoryUtils.toGAV(cur.a);
         // use GAV as key to eliminate parallel/duplicate processing in multiple workers
-        kafka.publish(gav, cur.a, kafkaTopicRequested, Lane.PRIORITY);
+        outbox.publish(gav, cur.a, kafkaTopicRequested, Lane.PRIORITY);
     }
 
     private void publishError(CurrentArtifact c, Result s, String reason) {
@@ -346,7 +367,8 @@ public class Main implements Runnable {
                 ? "Pom extraction of {} has crashed for {} times ({}), not attempting again. (original)"
                 : "Pom extraction of {} has crashed for {} times ({}), not attempting again. (dep of: {}, orig: {})";
         LOG.error(msg, s.artifact, s.numCrashes, reason, c.parent, c.origin);
-        kafka.publish(new SimpleErrorMessage<Artifact>(s.artifact, s.stacktrace), kafkaTopicOut, Lane.ERROR);
+        db.flush();
+        outbox.publish(new SimpleErrorMessage<Artifact>(s.artifact, s.stacktrace), kafkaTopicOut, Lane.ERROR);
     }
 
     private void assertShallowEquals(Artifact a, Artifact b) {
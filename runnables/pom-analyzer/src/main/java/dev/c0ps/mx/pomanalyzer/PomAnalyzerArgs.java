@@ -0,0 +1,36 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer;
+
+import java.io.File;
+
+import com.beust.jcommander.Parameter;
+
+public class PomAnalyzerArgs {
+
+    @Parameter(names = "--resolver.mode", arity = 1, description = "Resolve dependencies through Shrinkwrap and drop scopes one by one on failure (SHRINKWRAP) or resolve all scopes at once and only drop the failed ones (SINGLE_PASS)")
+    public ResolverMode resolverMode = ResolverMode.SHRINKWRAP;
+
+    @Parameter(names = "--resolver.cacheDir", arity = 1, description = "Directory in which complete resolutions of fixed versions are kept per effective pom and tool version, re-visits then skip the resolution (disabled if unset)")
+    public File resolverCacheDir;
+
+    @Parameter(names = "--explorer.threads", arity = 1, description = "Number of workers that explore the dependency closure of an artifact concurrently (defaults to --exec.parallelism and must not exceed it, timeouts of timed executions would otherwise expire while queued)")
+    public int explorerThreads = 0;
+
+    public enum ResolverMode {
+        SHRINKWRAP, SINGLE_PASS
+    }
+}
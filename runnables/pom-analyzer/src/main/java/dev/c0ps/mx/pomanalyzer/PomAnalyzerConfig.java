@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Binder;
+import com.google.inject.Provider;
+import com.google.inject.Provides;
+import com.google.inject.Singleton;
+
+import dev.c0ps.diapper.AssertArgs;
+import dev.c0ps.diapper.IInjectorConfig;
+import dev.c0ps.diapper.InjectorConfig;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.Version;
+import dev.c0ps.mx.pomanalyzer.utils.CachingDependencyResolver;
+import dev.c0ps.mx.pomanalyzer.utils.DependencyResolver;
+import dev.c0ps.mx.pomanalyzer.utils.EffectiveModelBuilder;
+import dev.c0ps.mx.pomanalyzer.utils.ShrinkwrapResolver;
+import dev.c0ps.mx.pomanalyzer.utils.SinglePassResolver;
+import jakarta.inject.Named;
+
+@InjectorConfig
+public class PomAnalyzerConfig implements IInjectorConfig {
+
+    private PomAnalyzerArgs args;
+
+    public PomAnalyzerConfig(PomAnalyzerArgs args) {
+        this.args = args;
+    }
+
+    @Override
+    public void configure(Binder binder) {
+        binder.bind(PomAnalyzerArgs.class).toInstance(args);
+        // share the model cache between all users
+        binder.bind(EffectiveModelBuilder.class).in(Singleton.class);
+    }
+
+    @Provides
+    @Named("explorer.threads")
+    public int provideExplorerThreads(@Named("TimedExecutor.parallelism") int execParallelism) {
+        // the timeout of a timed execution already runs while it is queued
+        AssertArgs.that(args, a -> a.explorerThreads <= execParallelism, "explorer threads must not exceed the exec parallelism");
+        return args.explorerThreads > 0 //
+                ? args.explorerThreads
+                : execParallelism;
+    }
+
+    @Provides
+    @Singleton
+    public DependencyResolver provideDependencyResolver(Provider<ShrinkwrapResolver> shrinkwrap, Provider<SinglePassResolver> singlePass, MavenRepositoryUtils utils,
+            EffectiveModelBuilder modelBuilder, Version v, ObjectMapper om) {
+        var resolver = createResolver(shrinkwrap, singlePass);
+        if (args.resolverCacheDir == null) {
+            return resolver;
+        }
+        return new CachingDependencyResolver(resolver, utils, modelBuilder, v, om, args.resolverCacheDir);
+    }
+
+    private DependencyResolver createResolver(Provider<ShrinkwrapResolver> shrinkwrap, Provider<SinglePassResolver> singlePass) {
+        if (args.resolverMode != PomAnalyzerArgs.ResolverMode.SINGLE_PASS) {
+            return shrinkwrap.get();
+        }
+        var resolver = singlePass.get();
+        Runtime.getRuntime().addShutdownHook(new Thread(resolver::close));
+        return resolver;
+    }
+}
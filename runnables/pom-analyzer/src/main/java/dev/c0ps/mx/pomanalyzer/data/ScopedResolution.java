@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.data;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import dev.c0ps.maveneasyindex.Artifact;
+
+/**
+ * Outcome of resolving all scopes of a pom at once. Scopes in which at least
+ * one artifact could not be resolved are considered failed, all other scopes
+ * are usable.
+ */
+public class ScopedResolution {
+
+    public final Map<String, Set<Artifact>> resolved = new LinkedHashMap<>();
+    public final Map<String, List<String>> failures = new LinkedHashMap<>();
+
+    public void addResolved(String scope, Artifact a) {
+        resolved.computeIfAbsent(scope, s -> new HashSet<>()).add(a);
+    }
+
+    public void addFailure(String scope, String msg) {
+        failures.computeIfAbsent(scope, s -> new ArrayList<>()).add(msg);
+    }
+
+    public boolean hasFailed(String scope) {
+        return failures.containsKey(scope);
+    }
+
+    /**
+     * @return the artifacts of all scopes that have not failed
+     */
+    public Set<Artifact> getResolvedArtifacts() {
+        var res = new HashSet<Artifact>();
+        resolved.forEach((scope, deps) -> {
+            if (!hasFailed(scope)) {
+                res.addAll(deps);
+            }
+        });
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        var sb = new StringBuilder();
+        resolved.forEach((scope, deps) -> sb.append(String.format("%s: %d resolved%n", scope, deps.size())));
+        failures.forEach((scope, msgs) -> sb.append(String.format("%s: %d failed (%s)%n", scope, msgs.size(), msgs.get(0))));
+        return sb.toString().trim();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.pomanalyzer.exceptions.MissingPomFileException;
+import dev.c0ps.mx.pomanalyzer.exceptions.NoArtifactRepositoryException;
+
+/**
+ * Contains the handling that is shared by all {@link DependencyResolver}s.
+ * Subclasses only need to resolve the dependencies of a local pom file.
+ */
+public abstract class AbstractDependencyResolver implements DependencyResolver {
+
+    protected static final String CENTRAL = "https://repo.maven.apache.org/maven2/";
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractDependencyResolver.class);
+
+    protected final MavenRepositoryUtils utils;
+
+    protected AbstractDependencyResolver(MavenRepositoryUtils utils) {
+        this.utils = utils;
+    }
+
+    /**
+     * @return resolved dependencies, the repository is not necessarily a url
+     */
+    protected abstract Set<Artifact> resolve(Artifact a, File localPomFile, Set<String> droppedScopes);
+
+    @Override
+    public Set<Artifact> resolveDependencies(Artifact a, Set<String> droppedScopes) {
+        var deps = new HashSet<Artifact>();
+
+        resolve(a, getLocalPomFile(a), droppedScopes).forEach(dep -> {
+            // remember when repository could be identified
+            if (dep.repository.startsWith("http")) {
+                deps.add(dep);
+                return;
+            }
+
+            dep.repository = CENTRAL;
+            var check = utils.checkGetRequestNonStatic(dep);
+            if (check.url != null) {
+                deps.add(dep);
+                return;
+            }
+
+            throw new NoArtifactRepositoryException(dep.toString());
+        });
+
+        return deps;
+    }
+
+    private File getLocalPomFile(Artifact a) {
+        var localPomFile = utils.getLocalPomFile(a);
+        if (!localPomFile.exists()) {
+            var msg = String.format("Local .m2 folder does not contain a pom file for %s", a);
+            LOG.error(msg);
+            throw new MissingPomFileException(msg);
+        }
+        return localPomFile;
+    }
+}
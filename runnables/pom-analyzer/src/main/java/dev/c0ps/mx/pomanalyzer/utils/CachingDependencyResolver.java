@@ -0,0 +1,191 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.Version;
+import dev.c0ps.mx.infra.utils.WriteOnceFiles;
+import dev.c0ps.mx.pomanalyzer.exceptions.InvalidPomFileException;
+
+/**
+ * Persists the resolved dependencies of every pom on disk. Entries are keyed
+ * by the hash of the effective model of the pom, which includes the content
+ * of its parents and imported BOMs, the tool version, and the configuration of
+ * the delegate, so a changed pom or parent, a new release of the analyzer, or a
+ * switch to another resolver leads to a new resolution. Entries are written
+ * once and never modified.
+ *
+ * Only complete resolutions of fixed versions are cached. Failed resolutions,
+ * resolutions with dropped scopes, poms that declare version ranges or
+ * SNAPSHOTs, and results that contain SNAPSHOTs are resolved on every request.
+ * Ranges in transitive poms cannot be detected before resolving.
+ */
+public class CachingDependencyResolver implements DependencyResolver {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CachingDependencyResolver.class);
+
+    private static final String EXT = ".deps";
+    private static final TypeReference<Set<Artifact>> DEPS = new TypeReference<Set<Artifact>>() {};
+
+    private final DependencyResolver delegate;
+    private final MavenRepositoryUtils utils;
+    private final EffectiveModelBuilder modelBuilder;
+    private final Version toolVersion;
+    private final ObjectMapper om;
+    private final File dir;
+
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+    private final AtomicLong numUncacheable = new AtomicLong();
+
+    public CachingDependencyResolver(DependencyResolver delegate, MavenRepositoryUtils utils, EffectiveModelBuilder modelBuilder, Version toolVersion, ObjectMapper om,
+            File dir) {
+        this.delegate = delegate;
+        this.utils = utils;
+        this.modelBuilder = modelBuilder;
+        this.toolVersion = toolVersion;
+        this.om = om;
+        this.dir = dir;
+        dir.mkdirs();
+    }
+
+    @Override
+    public Set<Artifact> resolveDependencies(Artifact a, Set<String> droppedScopes) {
+        var pom = utils.getLocalPomFile(a);
+        if (!pom.exists()) {
+            // reported by the delegate
+            return delegate.resolveDependencies(a, droppedScopes);
+        }
+
+        Model model;
+        try {
+            model = modelBuilder.buildEffectiveModel(pom);
+        } catch (InvalidPomFileException e) {
+            // reported by the delegate
+            return delegate.resolveDependencies(a, droppedScopes);
+        }
+
+        if (!hasFixedVersions(model)) {
+            numUncacheable.incrementAndGet();
+            LOG.info("Not caching dependencies of {}, the pom declares version ranges or SNAPSHOTs ...", a);
+            return delegate.resolveDependencies(a, droppedScopes);
+        }
+
+        var f = WriteOnceFiles.fanOut(dir, key(model), EXT);
+        if (f.exists()) {
+            try {
+                var deps = om.readValue(f, DEPS);
+                numHits.incrementAndGet();
+                LOG.info("Reusing {} cached dependencies of {} ...", deps.size(), a);
+                return deps;
+            } catch (IOException e) {
+                LOG.warn("Cannot read cached dependencies of {} ({}), resolving again ...", a, f);
+            }
+        }
+
+        numMisses.incrementAndGet();
+        var dropped = new HashSet<String>();
+        var deps = delegate.resolveDependencies(a, dropped);
+        droppedScopes.addAll(dropped);
+        if (!dropped.isEmpty()) {
+            LOG.info("Not caching incomplete dependencies of {} (dropped scopes {}) ...", a, dropped);
+        } else if (deps.stream().anyMatch(dep -> isSnapshot(dep.version))) {
+            LOG.info("Not caching dependencies of {}, SNAPSHOTs have been resolved ...", a);
+        } else {
+            WriteOnceFiles.write(f, tmp -> om.writeValue(tmp, deps));
+        }
+        return deps;
+    }
+
+    @Override
+    public String getConfiguration() {
+        return delegate.getConfiguration();
+    }
+
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    public long getNumMisses() {
+        return numMisses.get();
+    }
+
+    public long getNumUncacheable() {
+        return numUncacheable.get();
+    }
+
+    private static boolean hasFixedVersions(Model m) {
+        if (!isFixed(m.getVersion())) {
+            return false;
+        }
+        var deps = new ArrayList<>(m.getDependencies());
+        if (m.getDependencyManagement() != null) {
+            deps.addAll(m.getDependencyManagement().getDependencies());
+        }
+        return deps.stream().allMatch(d -> isFixed(d.getVersion()));
+    }
+
+    private static boolean isFixed(String version) {
+        // missing versions fail the resolution
+        if (version == null) {
+            return true;
+        }
+        var isRange = version.startsWith("[") || version.startsWith("(");
+        var isMeta = "LATEST".equals(version) || "RELEASE".equals(version);
+        return !isRange && !isMeta && !isSnapshot(version);
+    }
+
+    private static boolean isSnapshot(String version) {
+        return version != null && version.endsWith("-SNAPSHOT");
+    }
+
+    private String key(Model model) {
+        try {
+            var md = MessageDigest.getInstance("SHA-256");
+            md.update(toolVersion.get().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+            md.update(delegate.getConfiguration().getBytes(StandardCharsets.UTF_8));
+            md.update((byte) '\n');
+            var effective = new ByteArrayOutputStream();
+            new MavenXpp3Writer().write(effective, model);
+            md.update(effective.toByteArray());
+            return String.format("%064x", new BigInteger(1, md.digest()));
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
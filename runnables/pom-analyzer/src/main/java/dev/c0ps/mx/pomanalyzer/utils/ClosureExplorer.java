@@ -0,0 +1,309 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Explores the dependency closure of a root node on a fixed number of workers.
+ * Every node is visited once and the dependencies that a visit returns are
+ * explored concurrently. A node is finished once all of its dependencies are
+ * finished, no matter which node has discovered them first, so the root is
+ * always finished last.
+ * <p>
+ * Dependency cycles cannot be finished in order. Once no worker has anything
+ * left to do but nodes are still waiting, a cycle is searched among them and
+ * the wait for the node that has been discovered first is dropped, so nodes
+ * closer to the root are finished later.
+ */
+public class ClosureExplorer<T> implements Closeable {
+
+    private final ThreadPoolExecutor pool;
+    private final Function<T, ?> keyOf;
+
+    /**
+     * @param keyOf identifies nodes in the visited set, the key is taken when a
+     *              node is discovered
+     */
+    public ClosureExplorer(String name, int parallelism, Function<T, ?> keyOf) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        this.keyOf = keyOf;
+        var counter = new AtomicInteger();
+        // unbounded queue, workers must never block when queueing dependencies
+        this.pool = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            var t = new Thread(r, name + "-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * @param visit  processes a node and returns the dependencies that have to
+     *               be finished before it, or null if the node does not need to
+     *               be finished
+     * @param finish is called once all dependencies of a node are finished
+     * @return completes once the root has been finished or fails with the first
+     *         exception that was thrown by a visit or finish, remaining nodes
+     *         are dropped in that case
+     */
+    public CompletableFuture<Void> explore(T root, Function<T, Collection<T>> visit, Consumer<T> finish) {
+        var e = new Exploration(visit, finish);
+        e.start(root);
+        return e.done;
+    }
+
+    public int getNumActive() {
+        return pool.getActiveCount();
+    }
+
+    public int getNumQueued() {
+        return pool.getQueue().size();
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * All bookkeeping is guarded by the exploration, visits and finishes are
+     * run without holding the lock.
+     */
+    private class Exploration {
+
+        private final Function<T, Collection<T>> visit;
+        private final Consumer<T> finish;
+        // insertion order is the order of discovery
+        private final Map<Object, Node> nodes = new LinkedHashMap<>();
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        private int numTasks = 0;
+
+        private Exploration(Function<T, Collection<T>> visit, Consumer<T> finish) {
+            this.visit = visit;
+            this.finish = finish;
+        }
+
+        private void start(T root) {
+            Node n;
+            synchronized (this) {
+                n = discover(root);
+            }
+            submit(n, this::visit);
+        }
+
+        private Node discover(T value) {
+            var n = new Node(value, nodes.size());
+            nodes.put(keyOf.apply(value), n);
+            return n;
+        }
+
+        private void submit(Node n, Consumer<Node> step) {
+            synchronized (this) {
+                numTasks++;
+            }
+            try {
+                pool.execute(() -> run(n, step));
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        }
+
+        private void run(Node n, Consumer<Node> step) {
+            try {
+                if (!done.isDone()) {
+                    step.accept(n);
+                }
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            } finally {
+                List<Node> ready;
+                synchronized (this) {
+                    numTasks--;
+                    ready = numTasks == 0 && !done.isDone() //
+                            ? breakCycle()
+                            : List.of();
+                }
+                for (var r : ready) {
+                    submit(r, this::finish);
+                }
+            }
+        }
+
+        private void visit(Node n) {
+            var deps = visit.apply(n.value);
+            var newNodes = new ArrayList<Node>();
+            List<Node> ready;
+            synchronized (this) {
+                if (deps == null) {
+                    ready = complete(n);
+                } else {
+                    for (var dep : deps) {
+                        var d = nodes.get(keyOf.apply(dep));
+                        if (d == null) {
+                            d = discover(dep);
+                            newNodes.add(d);
+                        }
+                        if (d != n && !d.isFinished) {
+                            n.waitingOn.add(d);
+                            d.waiters.add(n);
+                        }
+                    }
+                    n.isVisited = true;
+                    ready = n.waitingOn.isEmpty() ? List.of(n) : List.of();
+                }
+            }
+            for (var d : newNodes) {
+                submit(d, this::visit);
+            }
+            for (var r : ready) {
+                submit(r, this::finish);
+            }
+        }
+
+        private void finish(Node n) {
+            finish.accept(n.value);
+            List<Node> ready;
+            synchronized (this) {
+                ready = complete(n);
+            }
+            for (var r : ready) {
+                submit(r, this::finish);
+            }
+        }
+
+        /**
+         * @return the waiting nodes that can be finished now
+         */
+        private List<Node> complete(Node n) {
+            n.isFinished = true;
+            if (n.id == 0) {
+                done.complete(null);
+                return List.of();
+            }
+            var ready = new ArrayList<Node>();
+            for (var w : n.waiters) {
+                w.waitingOn.remove(n);
+                if (w.isVisited && w.waitingOn.isEmpty()) {
+                    ready.add(w);
+                }
+            }
+            n.waiters.clear();
+            return ready;
+        }
+
+        /**
+         * Called when no task is left, so all remaining nodes are visited and
+         * wait for each other. Drops waits until a node can be finished.
+         *
+         * @return the nodes that can be finished now
+         */
+        private List<Node> breakCycle() {
+            while (true) {
+                var cycle = findCycle();
+                if (cycle == null) {
+                    var msg = String.format("Exploration is stuck without a cycle (%d nodes)", nodes.size());
+                    done.completeExceptionally(new IllegalStateException(msg));
+                    return List.of();
+                }
+                // drop the wait for the node that has been discovered first
+                var first = 0;
+                for (var i = 1; i < cycle.size(); i++) {
+                    if (cycle.get(i).id < cycle.get(first).id) {
+                        first = i;
+                    }
+                }
+                var target = cycle.get(first);
+                var waiter = cycle.get((first + cycle.size() - 1) % cycle.size());
+                waiter.waitingOn.remove(target);
+                target.waiters.remove(waiter);
+                if (waiter.waitingOn.isEmpty()) {
+                    return List.of(waiter);
+                }
+            }
+        }
+
+        /**
+         * @return nodes that form a cycle, every node waits for the next one
+         *         and the last one for the first one
+         */
+        private List<Node> findCycle() {
+            var visited = new HashSet<Node>();
+            for (var n : nodes.values()) {
+                if (!n.isFinished && !visited.contains(n)) {
+                    var path = new ArrayList<Node>();
+                    var cycle = findCycle(n, path, new HashSet<>(), visited);
+                    if (cycle != null) {
+                        return cycle;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private List<Node> findCycle(Node n, List<Node> path, Set<Node> onPath, Set<Node> visited) {
+            if (onPath.contains(n)) {
+                return new ArrayList<>(path.subList(path.indexOf(n), path.size()));
+            }
+            if (!visited.add(n)) {
+                return null;
+            }
+            path.add(n);
+            onPath.add(n);
+            for (var d : n.waitingOn) {
+                var cycle = findCycle(d, path, onPath, visited);
+                if (cycle != null) {
+                    return cycle;
+                }
+            }
+            path.remove(path.size() - 1);
+            onPath.remove(n);
+            return null;
+        }
+    }
+
+    private class Node {
+
+        private final T value;
+        // order of discovery, the root is 0
+        private final int id;
+        private final Set<Node> waitingOn = new LinkedHashSet<>();
+        private final Set<Node> waiters = new LinkedHashSet<>();
+        private boolean isVisited;
+        private boolean isFinished;
+
+        private Node(T value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+    }
+}
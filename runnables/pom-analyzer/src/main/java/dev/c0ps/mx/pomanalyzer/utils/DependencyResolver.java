@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import dev.c0ps.maveneasyindex.Artifact;
+
+public interface DependencyResolver {
+
+    /**
+     * @return all (transitive) dependencies of the artifact, with the
+     *         repository they have been found in
+     */
+    default Set<Artifact> resolveDependencies(Artifact a) {
+        return resolveDependencies(a, new HashSet<>());
+    }
+
+    /**
+     * @param droppedScopes collects the scopes that have been left out after a
+     *        failed resolution, the result is only complete if none is added
+     * @return all (transitive) dependencies of the artifact, with the
+     *         repository they have been found in
+     */
+    Set<Artifact> resolveDependencies(Artifact a, Set<String> droppedScopes);
+
+    /**
+     * @return identity and configuration of the resolver (e.g., the resolved
+     *         scopes), results of differently configured resolvers can differ
+     */
+    String getConfiguration();
+}
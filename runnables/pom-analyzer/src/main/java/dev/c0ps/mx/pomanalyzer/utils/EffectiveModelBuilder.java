@@ -20,26 +20,46 @@ import java.io.File;
 import org.apache.maven.model.Model;
 import org.apache.maven.model.building.DefaultModelBuilderFactory;
 import org.apache.maven.model.building.DefaultModelBuildingRequest;
+import org.apache.maven.model.building.ModelBuilder;
 import org.apache.maven.model.building.ModelBuildingException;
 import org.apache.maven.model.building.ModelBuildingRequest;
 
 import dev.c0ps.mx.pomanalyzer.exceptions.InvalidPomFileException;
 import fr.inria.spirals.repairnator.process.maven.RepositoryModelResolver;
 
+/**
+ * Builds effective models with one long-lived {@link ModelBuilder}. Parents
+ * and imported BOMs are kept in a {@link SharedModelCache} across builds.
+ */
 public class EffectiveModelBuilder {
 
     public static final File LOCAL_M2 = MavenSettingsUtils.getPathOfLocalRepository();
 
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
+
+    private final ModelBuilder builder = new DefaultModelBuilderFactory().newInstance();
+    private final SharedModelCache cache;
+
+    public EffectiveModelBuilder() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public EffectiveModelBuilder(int cacheSize) {
+        this.cache = new SharedModelCache(cacheSize);
+    }
+
+    public SharedModelCache getCache() {
+        return cache;
+    }
+
     public Model buildEffectiveModel(File pomFile) {
 
         try {
-            var factory = new DefaultModelBuilderFactory();
-            var builder = factory.newInstance();
-
             var req = new DefaultModelBuildingRequest();
             req.setProcessPlugins(false);
             req.setSystemProperties(System.getProperties());
             req.setModelResolver(new RepositoryModelResolver(LOCAL_M2));
+            req.setModelCache(cache);
             req.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
             req.setPomFile(pomFile);
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.maven.model.building.ModelCache;
+
+/**
+ * Bounded, thread-safe {@link ModelCache} that can be shared across model
+ * builds. Common parents and imported BOMs are then only read and parsed once.
+ * The least recently used entries are evicted once the size limit is reached.
+ * The model builder copies entries when storing and retrieving them, so
+ * cached data is never modified by a build.
+ */
+public class SharedModelCache implements ModelCache {
+
+    private final int maxSize;
+    private final Map<String, Object> cache;
+
+    private final AtomicLong numHits = new AtomicLong();
+    private final AtomicLong numMisses = new AtomicLong();
+
+    public SharedModelCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > SharedModelCache.this.maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized void put(String groupId, String artifactId, String version, String tag, Object data) {
+        cache.put(key(groupId, artifactId, version, tag), data);
+    }
+
+    @Override
+    public synchronized Object get(String groupId, String artifactId, String version, String tag) {
+        var data = cache.get(key(groupId, artifactId, version, tag));
+        if (data == null) {
+            numMisses.incrementAndGet();
+        } else {
+            numHits.incrementAndGet();
+        }
+        return data;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    public long getNumMisses() {
+        return numMisses.get();
+    }
+
+    private static String key(String groupId, String artifactId, String version, String tag) {
+        return new StringBuilder().append(groupId).append(':').append(artifactId).append(':').append(version).append('#').append(tag).toString();
+    }
+
+    @Override
+    public String toString() {
+        var hits = getNumHits();
+        var total = hits + getNumMisses();
+        var rate = total == 0 ? 0 : 100.0 * hits / total;
+        return String.format("%d entries, %d hits, %d misses (%.1f%% hit rate)", size(), hits, getNumMisses(), rate);
+    }
+}
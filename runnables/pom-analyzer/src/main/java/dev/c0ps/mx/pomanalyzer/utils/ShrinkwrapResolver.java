@@ -37,13 +37,9 @@ import org.slf4j.LoggerFactory;
 
 import dev.c0ps.maveneasyindex.Artifact;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
-import dev.c0ps.mx.pomanalyzer.exceptions.MissingPomFileException;
-import dev.c0ps.mx.pomanalyzer.exceptions.NoArtifactRepositoryException;
 import jakarta.inject.Inject;
 
-public class ShrinkwrapResolver {
-
-    private static final String CENTRAL = "https://repo.maven.apache.org/maven2/";
+public class ShrinkwrapResolver extends AbstractDependencyResolver {
 
     // Attention: Be aware that the test suite for this class is disabled by default
     // to avoid unnecessary downloads on every build. Make sure to re-enable the
@@ -51,42 +47,25 @@ public class ShrinkwrapResolver {
 
     private static final Logger LOG = LoggerFactory.getLogger(ShrinkwrapResolver.class);
 
-    private final MavenRepositoryUtils utils;
+    // scopes are dropped from the end on failure
+    private static final ScopeType[] SCOPES = { COMPILE, RUNTIME, TEST, PROVIDED, SYSTEM };
 
     @Inject
     public ShrinkwrapResolver(MavenRepositoryUtils utils) {
-        this.utils = utils;
+        super(utils);
     }
 
-    public Set<Artifact> resolveDependencies(Artifact a) {
-        var deps = new HashSet<Artifact>();
-
-        resolve(a).forEach(dep -> {
-            // remember when repository could be identified
-            if (dep.repository.startsWith("http")) {
-                deps.add(dep);
-                return;
-            }
-
-            dep.repository = CENTRAL;
-            var check = utils.checkGetRequestNonStatic(dep);
-            if (check.url != null) {
-                deps.add(dep);
-                return;
-            }
-
-            throw new NoArtifactRepositoryException(dep.toString());
-        });
-
-        return deps;
+    @Override
+    protected Set<Artifact> resolve(Artifact a, File localPomFile, Set<String> droppedScopes) {
+        return resolveScopesRecursively(a, localPomFile, droppedScopes, SCOPES);
     }
 
-    private Set<Artifact> resolve(Artifact a) {
-        var localPomFile = getLocalPomFile(a);
-        return resolveScopesRecursively(a, localPomFile, COMPILE, RUNTIME, TEST, PROVIDED, SYSTEM);
+    @Override
+    public String getConfiguration() {
+        return "shrinkwrap, scopes " + Arrays.toString(SCOPES);
     }
 
-    private Set<Artifact> resolveScopesRecursively(Artifact a, File localPomFile, ScopeType... scopes) {
+    private Set<Artifact> resolveScopesRecursively(Artifact a, File localPomFile, Set<String> droppedScopes, ScopeType... scopes) {
         assertTrue(scopes.length > 0, "Resolution requires at least one scope");
         try {
             LOG.info("Resolving {} in scopes {} ...", a, Arrays.toString(scopes));
@@ -94,8 +73,9 @@ public class ShrinkwrapResolver {
         } catch (NoResolvedResultException e) {
             LOG.error("Resolving {} failed for scopes {}", a, Arrays.toString(scopes));
             if (scopes.length > 1) {
+                droppedScopes.add(scopes[scopes.length - 1].toString());
                 var scopes2 = Arrays.copyOfRange(scopes, 0, scopes.length - 1);
-                return resolveScopesRecursively(a, localPomFile, scopes2);
+                return resolveScopesRecursively(a, localPomFile, droppedScopes, scopes2);
             }
             LOG.error("No scopes left, giving up.");
             throw new ResolutionException(e);
@@ -103,8 +83,8 @@ public class ShrinkwrapResolver {
     }
 
     private Set<Artifact> resolveScopes(File localPomFile, ScopeType... scopes) {
-        var deps = new HashSet<Artifact>();
-        MavenResolvedArtifactImpl.deps = deps;
+        // capture is thread-confined, concurrent resolutions do not interfere
+        var deps = MavenResolvedArtifactImpl.startCapture();
         try {
             Maven.configureResolver() //
                     .withClassPathResolution(false) //
@@ -118,18 +98,8 @@ public class ShrinkwrapResolver {
             // no dependencies are declared in pom
             return new HashSet<>();
         } finally {
-            MavenResolvedArtifactImpl.deps = null;
+            MavenResolvedArtifactImpl.stopCapture();
         }
         return deps;
     }
-
-    private File getLocalPomFile(Artifact a) {
-        var localPomFile = utils.getLocalPomFile(a);
-        if (!localPomFile.exists()) {
-            var msg = String.format("Local .m2 folder does not contain a pom file for %s", a);
-            LOG.error(msg);
-            throw new MissingPomFileException(msg);
-        }
-        return localPomFile;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.module.ResolutionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.repository.internal.MavenRepositorySystemUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.ArtifactProperties;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.artifact.DefaultArtifactType;
+import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.CollectResult;
+import org.eclipse.aether.collection.DependencyCollectionException;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.graph.Exclusion;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.LocalRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorPolicy;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.supplier.RepositorySystemSupplier;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.eclipse.aether.util.graph.visitor.PreorderNodeListGenerator;
+import org.eclipse.aether.util.repository.SimpleArtifactDescriptorPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.pomanalyzer.data.ScopedResolution;
+import jakarta.inject.Inject;
+
+/**
+ * Resolves the dependency tree of all scopes in a single pass through an
+ * in-process Maven Resolver. Failures are attributed to the scope of the
+ * affected dependency, so a broken test or provided dependency only drops its
+ * own scope instead of triggering another resolution of all remaining scopes.
+ * A failure in the compile scope fails the whole resolution.
+ */
+public class SinglePassResolver extends AbstractDependencyResolver implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SinglePassResolver.class);
+
+    private final EffectiveModelBuilder modelBuilder;
+    private final RepositorySystem system;
+    private final RepositorySystemSession session;
+
+    @Inject
+    public SinglePassResolver(MavenRepositoryUtils utils, EffectiveModelBuilder modelBuilder) {
+        super(utils);
+        this.modelBuilder = modelBuilder;
+        system = new RepositorySystemSupplier().get();
+
+        var s = MavenRepositorySystemUtils.newSession();
+        var localRepo = new LocalRepository(EffectiveModelBuilder.LOCAL_M2);
+        s.setLocalRepositoryManager(system.newLocalRepositoryManager(s, localRepo));
+        // broken poms of dependencies are reported as collection failures of their scope
+        s.setArtifactDescriptorPolicy(new SimpleArtifactDescriptorPolicy(ArtifactDescriptorPolicy.STRICT));
+        s.setSystemProperties(System.getProperties());
+        s.setReadOnly();
+        session = s;
+    }
+
+    @Override
+    protected Set<Artifact> resolve(Artifact a, File localPomFile, Set<String> droppedScopes) {
+        LOG.info("Resolving {} in all scopes ...", a);
+        var res = resolveScopes(localPomFile);
+        if (!res.failures.isEmpty()) {
+            LOG.error("Resolving {} failed for some scopes:\n{}", a, res);
+            droppedScopes.addAll(res.failures.keySet());
+        }
+        if (res.hasFailed(JavaScopes.COMPILE)) {
+            var msg = String.format("Resolution of compile scope of %s failed: %s", a, res.failures.get(JavaScopes.COMPILE));
+            throw new ResolutionException(msg);
+        }
+        return res.getResolvedArtifacts();
+    }
+
+    @Override
+    public String getConfiguration() {
+        return "single-pass, all scopes, required " + JavaScopes.COMPILE;
+    }
+
+    public ScopedResolution resolveScopes(File localPomFile) {
+        var model = modelBuilder.buildEffectiveModel(localPomFile);
+        var res = new ScopedResolution();
+
+        var directDeps = toDependencies(model.getDependencies());
+        if (directDeps.isEmpty()) {
+            return res;
+        }
+
+        var collect = new CollectRequest();
+        collect.setRootArtifact(new DefaultArtifact(model.getGroupId(), model.getArtifactId(), "pom", model.getVersion()));
+        collect.setDependencies(directDeps);
+        if (model.getDependencyManagement() != null) {
+            collect.setManagedDependencies(toDependencies(model.getDependencyManagement().getDependencies()));
+        }
+        collect.setRepositories(toRemoteRepositories(model));
+
+        var root = collect(collect, directDeps, res);
+        resolveAll(root, res);
+        return res;
+    }
+
+    private DependencyNode collect(CollectRequest req, List<Dependency> directDeps, ScopedResolution res) {
+        CollectResult result;
+        try {
+            result = system.collectDependencies(session, req);
+        } catch (DependencyCollectionException e) {
+            result = e.getResult();
+        }
+        for (var e : result.getExceptions()) {
+            for (var scope : scopesOfCollectionFailure(e, result.getRoot(), directDeps)) {
+                res.addFailure(scope, e.getMessage());
+            }
+        }
+        return result.getRoot();
+    }
+
+    /**
+     * Attributes a failure of the collection (a broken or missing pom, an
+     * unresolvable version range) to the scopes of all direct dependencies
+     * whose subtree contains the failed artifact. Direct dependencies without a
+     * node in the graph (e.g., a failed range) are matched by their request.
+     * Failures that cannot be attributed fail the compile scope.
+     */
+    static Set<String> scopesOfCollectionFailure(Exception e, DependencyNode root, List<Dependency> directDeps) {
+        var failed = getFailedArtifact(e);
+        var scopes = new HashSet<String>();
+        if (failed != null && root != null) {
+            for (var direct : root.getChildren()) {
+                if (contains(direct, failed, new HashSet<>())) {
+                    scopes.add(scopeOf(direct));
+                }
+            }
+        }
+        if (failed != null && scopes.isEmpty()) {
+            for (var d : directDeps) {
+                if (isSameGA(d.getArtifact(), failed)) {
+                    scopes.add(d.getScope());
+                }
+            }
+        }
+        if (scopes.isEmpty()) {
+            scopes.add(JavaScopes.COMPILE);
+        }
+        return scopes;
+    }
+
+    private static org.eclipse.aether.artifact.Artifact getFailedArtifact(Exception e) {
+        if (e instanceof ArtifactDescriptorException) {
+            return ((ArtifactDescriptorException) e).getResult().getRequest().getArtifact();
+        }
+        if (e instanceof VersionRangeResolutionException) {
+            return ((VersionRangeResolutionException) e).getResult().getRequest().getArtifact();
+        }
+        return null;
+    }
+
+    private static boolean contains(DependencyNode n, org.eclipse.aether.artifact.Artifact a, Set<DependencyNode> visited) {
+        if (!visited.add(n)) {
+            return false;
+        }
+        if (n.getArtifact() != null && isSameGA(n.getArtifact(), a)) {
+            return true;
+        }
+        for (var c : n.getChildren()) {
+            if (contains(c, a, visited)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // compare without version, a failed range has not been resolved to a version
+    private static boolean isSameGA(org.eclipse.aether.artifact.Artifact a, org.eclipse.aether.artifact.Artifact b) {
+        return a.getGroupId().equals(b.getGroupId()) && a.getArtifactId().equals(b.getArtifactId());
+    }
+
+    private void resolveAll(DependencyNode root, ScopedResolution res) {
+        var nodes = new PreorderNodeListGenerator();
+        root.accept(nodes);
+
+        var reqs = new ArrayList<ArtifactRequest>();
+        for (var n : nodes.getNodes()) {
+            // the root is the analyzed pom itself
+            if (n.getDependency() != null) {
+                reqs.add(new ArtifactRequest(n));
+            }
+        }
+
+        List<ArtifactResult> results;
+        try {
+            results = system.resolveArtifacts(session, reqs);
+        } catch (ArtifactResolutionException e) {
+            results = e.getResults();
+        }
+
+        for (var r : results) {
+            var scope = scopeOf(r.getRequest().getDependencyNode());
+            if (r.isResolved()) {
+                res.addResolved(scope, toCopsArtifact(r.getArtifact(), r.getRepository()));
+            } else {
+                var msg = r.getExceptions().isEmpty() //
+                        ? "Cannot resolve " + r.getRequest().getArtifact()
+                        : r.getExceptions().get(0).getMessage();
+                res.addFailure(scope, msg);
+            }
+        }
+    }
+
+    private static String scopeOf(DependencyNode n) {
+        var scope = n.getDependency().getScope();
+        return scope == null || scope.isEmpty() ? JavaScopes.COMPILE : scope;
+    }
+
+    private List<Dependency> toDependencies(List<org.apache.maven.model.Dependency> deps) {
+        return deps.stream().map(this::toDependency).collect(Collectors.toList());
+    }
+
+    private Dependency toDependency(org.apache.maven.model.Dependency d) {
+        var type = session.getArtifactTypeRegistry().get(d.getType());
+        if (type == null) {
+            type = new DefaultArtifactType(d.getType());
+        }
+        Map<String, String> props = new HashMap<>();
+        if (d.getSystemPath() != null) {
+            props.put(ArtifactProperties.LOCAL_PATH, d.getSystemPath());
+        }
+        var artifact = new DefaultArtifact(d.getGroupId(), d.getArtifactId(), d.getClassifier(), null, d.getVersion(), props, type);
+        var exclusions = d.getExclusions().stream() //
+                .map(e -> new Exclusion(e.getGroupId(), e.getArtifactId(), "*", "*")) //
+                .collect(Collectors.toList());
+        var scope = d.getScope() == null ? JavaScopes.COMPILE : d.getScope();
+        return new Dependency(artifact, scope, d.isOptional(), exclusions);
+    }
+
+    private List<RemoteRepository> toRemoteRepositories(Model model) {
+        var repos = new ArrayList<RemoteRepository>();
+        repos.add(new RemoteRepository.Builder("central", "default", CENTRAL).build());
+        for (var r : model.getRepositories()) {
+            // central of the super pom is already included
+            if (!"central".equals(r.getId())) {
+                repos.add(new RemoteRepository.Builder(r.getId(), "default", r.getUrl()).build());
+            }
+        }
+        return system.newResolutionRepositories(session, repos);
+    }
+
+    private static Artifact toCopsArtifact(org.eclipse.aether.artifact.Artifact artifact, ArtifactRepository repository) {
+        var url = getUrl(repository);
+        if (!url.endsWith("/")) {
+            url += "/";
+        }
+        return new Artifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion(), artifact.getExtension()) //
+                .setRepository(url);
+    }
+
+    private static String getUrl(ArtifactRepository repository) {
+        if (repository instanceof RemoteRepository) {
+            return ((RemoteRepository) repository).getUrl();
+        }
+        var type = repository == null ? "none" : repository.getClass().getSimpleName();
+        return String.format("n/a (%s)", type);
+    }
+
+    @Override
+    public void close() {
+        system.shutdown();
+    }
+}
@@ -58,6 +58,8 @@ public class RepositoryModelResolver implements ModelResolver {
     private static final String MAVEN_CENTRAL_URL_MIRROR_2 = "http://uk.maven.org/maven2";
 
     private static final Logger logger = LoggerFactory.getLogger(RepositoryModelResolver.class);
+    // shared, every client would otherwise create its own connection and thread pools
+    private static final OkHttpClient CLIENT = new OkHttpClient();
     private File localRepository;
 
     private List<Repository> repositories = new ArrayList<Repository>();
@@ -108,12 +110,11 @@ public class RepositoryModelResolver implements ModelResolver {
 
             logger.debug("Downloading " + url);
 
-            var client = new OkHttpClient();
             var request = new Request.Builder()
                     .url(url)
                     .build();
 
-            try(var response = client.newCall(request).execute()) {
+            try(var response = CLIENT.newCall(request).execute()) {
                 if (response.code() == 200) {
                     localRepoFile.getParentFile().mkdirs();
                     FileWriter out = new FileWriter(localRepoFile);
@@ -4,6 +4,8 @@
  * This is a very ugly hack that uses class shadowing!
  * 
  * Changes: three minor changes, look out for "<new>" comments
+ * The captured dependencies are confined to the resolving thread, so several
+ * resolutions can run concurrently in the same JVM.
  */
 /*
  * JBoss, Home of Professional Open Source
@@ -31,6 +33,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
@@ -77,7 +80,22 @@ public class MavenResolvedArtifactImpl extends MavenArtifactInfoImpl implements
     }
 
     // <new> (1/3)
-    public static Set<dev.c0ps.maveneasyindex.Artifact> deps = null;
+    private static final ThreadLocal<Set<dev.c0ps.maveneasyindex.Artifact>> CAPTURED_DEPS = new ThreadLocal<>();
+
+    /**
+     * Starts to capture all artifacts that are resolved by the current thread.
+     *
+     * @return the (live) set of captured artifacts
+     */
+    public static Set<dev.c0ps.maveneasyindex.Artifact> startCapture() {
+        var deps = new HashSet<dev.c0ps.maveneasyindex.Artifact>();
+        CAPTURED_DEPS.set(deps);
+        return deps;
+    }
+
+    public static void stopCapture() {
+        CAPTURED_DEPS.remove();
+    }
     // </new>
 
     /**
@@ -91,6 +109,7 @@ public class MavenResolvedArtifactImpl extends MavenArtifactInfoImpl implements
         final DependencyNode root = artifactResult.getRequest().getDependencyNode();
 
         // <new> (2/3)
+        var deps = CAPTURED_DEPS.get();
         if (deps != null) {
             deps.add(toCopsArtifact(artifact, getUrl(artifactResult.getRepository())));
         }
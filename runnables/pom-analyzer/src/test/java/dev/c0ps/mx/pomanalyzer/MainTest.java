@@ -15,26 +15,57 @@
  */
 package dev.c0ps.mx.pomanalyzer;
 
+import static dev.c0ps.franz.Lane.NORMAL;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import dev.c0ps.franz.Kafka;
+import dev.c0ps.franz.Lane;
 import dev.c0ps.maven.PomExtractor;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.downloader.data.Result;
+import dev.c0ps.mx.downloader.data.Status;
 import dev.c0ps.mx.downloader.utils.CompletionTracker;
 import dev.c0ps.mx.downloader.utils.ResultsDatabase;
+import dev.c0ps.mx.infra.exceptions.UnrecoverableError;
 import dev.c0ps.mx.infra.kafka.LaneManagement;
 import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
 import dev.c0ps.mx.infra.utils.TimedExecutor;
+import dev.c0ps.mx.pomanalyzer.utils.DependencyResolver;
 import dev.c0ps.mx.pomanalyzer.utils.EffectiveModelBuilder;
-import dev.c0ps.mx.pomanalyzer.utils.ShrinkwrapResolver;
 
 public class MainTest {
 
+    private static final Artifact A = new Artifact("g", "a", "1", "jar");
+    private static final Artifact B = new Artifact("g", "b", "1", "jar");
+    private static final Artifact C = new Artifact("g", "c", "1", "jar");
+    private static final Artifact D = new Artifact("g", "d", "1", "jar");
+
+    @TempDir
+    private File tempDir;
+
     private EffectiveModelBuilder modelBuilder;
     private PomExtractor extractor;
-    private ShrinkwrapResolver resolver;
+    private DependencyResolver resolver;
     private Kafka kafka;
     private TimedExecutor exec;
     private ResultsDatabase db;
@@ -48,7 +79,7 @@ public class MainTest {
     public void setup() {
         modelBuilder = mock(EffectiveModelBuilder.class);
         extractor = mock(PomExtractor.class);
-        resolver = mock(ShrinkwrapResolver.class);
+        resolver = mock(DependencyResolver.class);
         kafka = mock(Kafka.class);
         exec = mock(TimedExecutor.class);
         db = mock(ResultsDatabase.class);
@@ -56,7 +87,12 @@ public class MainTest {
         mru = mock(MavenRepositoryUtils.class);
         tracker = mock(CompletionTracker.class);
 
-        sut = new Main(modelBuilder, extractor, resolver, kafka, exec, db, lm, mru, tracker, "in", "out", "requests");
+        doAnswer(i -> {
+            ((Runnable) i.getArgument(1)).run();
+            return null;
+        }).when(exec).run(any(), any(Runnable.class));
+
+        sut = new Main(modelBuilder, extractor, resolver, kafka, exec, db, lm, mru, tracker, 2, "in", "out", "requests");
 
 //        when(extractor.process(eq(null))).thenReturn(new Pom());
 //        when(extractor.process(any(Model.class))).thenReturn(new Pom());
@@ -70,5 +106,135 @@ public class MainTest {
         // NORMAL);
     }
 
+    @Test
+    public void originalIsPublishedAfterItsDependencies() {
+        result(A, Status.DEPS_MISSING);
+        result(B, Status.DONE);
+        result(C, Status.DONE);
+        when(resolver.resolveDependencies(A)).thenReturn(Set.of(B));
+        when(resolver.resolveDependencies(B)).thenReturn(Set.of(C));
+        when(resolver.resolveDependencies(C)).thenReturn(Set.of());
+
+        sut.processAll(A, NORMAL);
+
+        var o = inOrder(kafka);
+        o.verify(kafka).publish(eq("g:c:1"), eq(C), eq("out"), eq(NORMAL));
+        o.verify(kafka).publish(eq("g:b:1"), eq(B), eq("out"), eq(NORMAL));
+        o.verify(kafka).publish(eq("g:a:1"), eq(A), eq("out"), eq(NORMAL));
+        verify(tracker).markCompleted(A);
+    }
+
+    @Test
+    public void resultsArePublishedOnTheCallingThread() {
+        result(A, Status.DEPS_MISSING);
+        result(B, Status.DONE);
+        when(resolver.resolveDependencies(A)).thenReturn(Set.of(B));
+        when(resolver.resolveDependencies(B)).thenReturn(Set.of());
+        var publishers = new HashSet<Thread>();
+        doAnswer(i -> publishers.add(Thread.currentThread())).when(kafka).publish(anyString(), any(), anyString(), any(Lane.class));
+
+        sut.processAll(A, NORMAL);
+
+        verify(kafka).publish(eq("g:b:1"), eq(B), eq("out"), eq(NORMAL));
+        verify(kafka).publish(eq("g:a:1"), eq(A), eq("out"), eq(NORMAL));
+        assertEquals(Set.of(Thread.currentThread()), publishers);
+    }
+
+    @Test
+    public void variantsOfAnArtifactAreVisitedOnce() {
+        var bPom = new Artifact("g", "b", "1", "pom");
+        result(A, Status.DEPS_MISSING);
+        result(B, Status.DONE);
+        result(bPom, Status.DONE);
+        when(resolver.resolveDependencies(A)).thenReturn(Set.of(B, bPom));
+        when(resolver.resolveDependencies(B)).thenReturn(Set.of());
+        when(resolver.resolveDependencies(bPom)).thenReturn(Set.of());
+
+        sut.processAll(A, NORMAL);
+
+        verify(kafka, times(1)).publish(eq("g:b:1"), any(), eq("out"), eq(NORMAL));
+        verify(kafka).publish(eq("g:a:1"), eq(A), eq("out"), eq(NORMAL));
+    }
+
+    @Test
+    public void sharedDependencyInProgressIsAwaitedByAllDependents() {
+        // A -> {B, D}, B -> C, D -> C, C is still being visited when D is resolved
+        useRealTracker();
+
+        result(A, Status.DEPS_MISSING);
+        result(B, Status.DONE);
+        result(C, Status.DONE);
+        result(D, Status.DONE);
+        var cIsStarted = new CountDownLatch(1);
+        when(resolver.resolveDependencies(A)).thenReturn(Set.of(B, D));
+        when(resolver.resolveDependencies(B)).thenReturn(Set.of(C));
+        when(resolver.resolveDependencies(D)).thenAnswer(i -> {
+            cIsStarted.await();
+            return Set.of(C);
+        });
+        when(resolver.resolveDependencies(C)).thenAnswer(i -> {
+            cIsStarted.countDown();
+            // D is resolved in the meantime
+            Thread.sleep(200);
+            return Set.of();
+        });
+
+        sut.processAll(A, NORMAL);
+
+        var ob = inOrder(kafka);
+        ob.verify(kafka).publish(eq("g:c:1"), eq(C), eq("out"), eq(NORMAL));
+        ob.verify(kafka).publish(eq("g:b:1"), eq(B), eq("out"), eq(NORMAL));
+        var od = inOrder(kafka);
+        od.verify(kafka).publish(eq("g:c:1"), eq(C), eq("out"), eq(NORMAL));
+        od.verify(kafka).publish(eq("g:d:1"), eq(D), eq("out"), eq(NORMAL));
+        od.verify(kafka).publish(eq("g:a:1"), eq(A), eq("out"), eq(NORMAL));
+    }
+
+    @Test
+    public void completedDependenciesAreNotExploredAgain() {
+        useRealTracker();
+        tracker.markCompleted(B);
+
+        result(A, Status.DEPS_MISSING);
+        when(resolver.resolveDependencies(A)).thenReturn(Set.of(B));
+
+        sut.processAll(A, NORMAL);
+
+        verify(db, never()).get(B);
+        verify(kafka, never()).publish(eq("g:b:1"), any(), eq("out"), any(Lane.class));
+        verify(kafka).publish(eq("g:a:1"), eq(A), eq("out"), eq(NORMAL));
+    }
+
+    @Test
+    public void unrecoverableErrorsAreRethrown() {
+        result(A, Status.DEPS_MISSING);
+        when(resolver.resolveDependencies(A)).thenReturn(Set.of(B));
+        when(db.get(B)).thenThrow(new IllegalStateException());
+        var crash = new Result();
+        crash.numCrashes = 1;
+        when(db.recordCrash(eq(B), any(Throwable.class))).thenReturn(crash);
+
+        assertThrows(UnrecoverableError.class, () -> {
+            sut.processAll(A, NORMAL);
+        });
+        verify(kafka, never()).publish(eq("g:a:1"), eq(A), eq("out"), eq(NORMAL));
+    }
+
+    private void useRealTracker() {
+        when(mru.getMavenFilePathNonStatic(any(File.class), any(Artifact.class), eq(CompletionTracker.EXT))).thenAnswer(i -> {
+            Artifact a = i.getArgument(1);
+            return new File(tempDir, a.artifactId + ".done");
+        });
+        tracker = new CompletionTracker(mru, tempDir);
+        sut = new Main(modelBuilder, extractor, resolver, kafka, exec, db, lm, mru, tracker, 2, "in", "out", "requests");
+    }
+
+    private void result(Artifact a, Status s) {
+        var r = new Result();
+        r.artifact = a;
+        r.status = s;
+        when(db.get(a)).thenReturn(r);
+    }
+
     // TODO extend test suite, right now this is only a stub for easy debugging
 }
\ No newline at end of file
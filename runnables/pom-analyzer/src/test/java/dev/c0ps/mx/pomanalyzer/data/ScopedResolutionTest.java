@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.data;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.Artifact;
+
+public class ScopedResolutionTest {
+
+    private static final Artifact A = new Artifact("g", "a", "1", "jar");
+    private static final Artifact B = new Artifact("g", "b", "1", "jar");
+    private static final Artifact C = new Artifact("g", "c", "1", "jar");
+
+    private ScopedResolution sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new ScopedResolution();
+    }
+
+    @Test
+    public void emptyByDefault() {
+        assertEquals(Set.of(), sut.getResolvedArtifacts());
+        assertFalse(sut.hasFailed("compile"));
+    }
+
+    @Test
+    public void resolvedArtifactsOfAllScopes() {
+        sut.addResolved("compile", A);
+        sut.addResolved("test", B);
+        assertEquals(Set.of(A, B), sut.getResolvedArtifacts());
+    }
+
+    @Test
+    public void failedScopesAreDropped() {
+        sut.addResolved("compile", A);
+        sut.addResolved("test", B);
+        sut.addResolved("test", C);
+        sut.addFailure("test", "cannot find x");
+
+        assertTrue(sut.hasFailed("test"));
+        assertFalse(sut.hasFailed("compile"));
+        assertEquals(Set.of(A), sut.getResolvedArtifacts());
+    }
+
+    @Test
+    public void toStringSummarizesScopes() {
+        sut.addResolved("compile", A);
+        sut.addFailure("test", "cannot find x");
+        sut.addFailure("test", "cannot find y");
+        var expected = String.format("compile: 1 resolved%ntest: 2 failed (cannot find x)");
+        assertEquals(expected, sut.toString());
+    }
+}
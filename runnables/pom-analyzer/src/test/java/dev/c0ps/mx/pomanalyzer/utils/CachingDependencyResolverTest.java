@@ -0,0 +1,232 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.DependencyManagement;
+import org.apache.maven.model.Model;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.maveneasyindex.ArtifactModule;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.Version;
+import dev.c0ps.mx.pomanalyzer.exceptions.InvalidPomFileException;
+
+public class CachingDependencyResolverTest {
+
+    private static final Artifact A = new Artifact("g", "a", "1", "jar");
+    private static final Set<Artifact> DEPS = Set.of(new Artifact("g", "b", "2", "jar"));
+
+    @TempDir
+    private File tempDir;
+
+    private File pom;
+    private Model model;
+    private DependencyResolver delegate;
+    private MavenRepositoryUtils utils;
+    private EffectiveModelBuilder modelBuilder;
+    private Version version;
+    private ObjectMapper om;
+    private CachingDependencyResolver sut;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        pom = new File(tempDir, "a.pom");
+        Files.writeString(pom.toPath(), "<project/>");
+        model = new Model();
+        model.setVersion("1");
+        model.addDependency(dep("1"));
+
+        delegate = mock(DependencyResolver.class);
+        when(delegate.resolveDependencies(any(Artifact.class), anySet())).thenReturn(DEPS);
+        when(delegate.getConfiguration()).thenReturn("resolver, scopes [compile]");
+        utils = mock(MavenRepositoryUtils.class);
+        when(utils.getLocalPomFile(A)).thenReturn(pom);
+        modelBuilder = mock(EffectiveModelBuilder.class);
+        when(modelBuilder.buildEffectiveModel(pom)).thenAnswer(i -> model.clone());
+        version = mock(Version.class);
+        when(version.get()).thenReturn("0.0.1");
+        om = new ObjectMapper().registerModules(new ArtifactModule());
+
+        sut = createSut();
+    }
+
+    @Test
+    public void firstVisitResolves() {
+        assertEquals(DEPS, sut.resolveDependencies(A));
+        verify(delegate).resolveDependencies(eq(A), anySet());
+        assertEquals(0, sut.getNumHits());
+        assertEquals(1, sut.getNumMisses());
+    }
+
+    @Test
+    public void revisitReadsCachedSet() {
+        sut.resolveDependencies(A);
+        assertEquals(DEPS, sut.resolveDependencies(A));
+        verify(delegate, times(1)).resolveDependencies(eq(A), anySet());
+        assertEquals(1, sut.getNumHits());
+    }
+
+    @Test
+    public void cacheSurvivesRestart() {
+        sut.resolveDependencies(A);
+        assertEquals(DEPS, createSut().resolveDependencies(A));
+        verify(delegate, times(1)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void changedPomResolvesAgain() {
+        sut.resolveDependencies(A);
+        model.getDependencies().get(0).setVersion("2");
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void newToolVersionResolvesAgain() {
+        sut.resolveDependencies(A);
+        when(version.get()).thenReturn("0.0.2");
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void otherResolverConfigurationResolvesAgain() {
+        sut.resolveDependencies(A);
+        when(delegate.getConfiguration()).thenReturn("resolver, scopes [compile, test]");
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void failuresAreNotCached() {
+        when(delegate.resolveDependencies(eq(A), anySet())).thenThrow(new IllegalStateException());
+        assertThrows(IllegalStateException.class, () -> {
+            sut.resolveDependencies(A);
+        });
+        assertThrows(IllegalStateException.class, () -> {
+            sut.resolveDependencies(A);
+        });
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void changedParentOrBomResolvesAgain() {
+        sut.resolveDependencies(A);
+        var dm = new DependencyManagement();
+        dm.addDependency(dep("3"));
+        model.setDependencyManagement(dm);
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void droppedScopesAreNotCached() {
+        doAnswer(i -> {
+            Set<String> dropped = i.getArgument(1);
+            dropped.add("test");
+            return DEPS;
+        }).when(delegate).resolveDependencies(eq(A), anySet());
+
+        var dropped = new HashSet<String>();
+        sut.resolveDependencies(A, dropped);
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+        assertEquals(Set.of("test"), dropped);
+    }
+
+    @Test
+    public void versionRangesAreNotCached() {
+        model.getDependencies().get(0).setVersion("[1,2)");
+        sut.resolveDependencies(A);
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+        assertEquals(0, sut.getNumMisses());
+        assertEquals(2, sut.getNumUncacheable());
+    }
+
+    @Test
+    public void declaredSnapshotsAreNotCached() {
+        var dm = new DependencyManagement();
+        dm.addDependency(dep("1-SNAPSHOT"));
+        model.setDependencyManagement(dm);
+        sut.resolveDependencies(A);
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void resolvedSnapshotsAreNotCached() {
+        var snapshots = Set.of(new Artifact("g", "b", "2-SNAPSHOT", "jar"));
+        when(delegate.resolveDependencies(eq(A), anySet())).thenReturn(snapshots);
+        sut.resolveDependencies(A);
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+    }
+
+    @Test
+    public void invalidPomIsDelegated() {
+        var e = new InvalidPomFileException(new IllegalStateException());
+        when(modelBuilder.buildEffectiveModel(pom)).thenThrow(e);
+        sut.resolveDependencies(A);
+        verify(delegate).resolveDependencies(eq(A), anySet());
+        assertEquals(0, sut.getNumMisses());
+    }
+
+    @Test
+    public void missingPomIsDelegated() {
+        pom.delete();
+        sut.resolveDependencies(A);
+        sut.resolveDependencies(A);
+        verify(delegate, times(2)).resolveDependencies(eq(A), anySet());
+        assertEquals(0, sut.getNumMisses());
+    }
+
+    private CachingDependencyResolver createSut() {
+        return new CachingDependencyResolver(delegate, utils, modelBuilder, version, om, new File(tempDir, "cache"));
+    }
+
+    private static Dependency dep(String version) {
+        var d = new Dependency();
+        d.setGroupId("g");
+        d.setArtifactId("b");
+        d.setVersion(version);
+        return d;
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ClosureExplorerTest {
+
+    private ClosureExplorer<String> sut;
+
+    private Map<String, List<String>> deps;
+    private Set<String> visited;
+    private List<String> finished;
+
+    @BeforeEach
+    public void setup() {
+        sut = new ClosureExplorer<>("test", 4, Function.identity());
+        deps = new HashMap<>();
+        visited = ConcurrentHashMap.newKeySet();
+        finished = new CopyOnWriteArrayList<>();
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void invalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new ClosureExplorer<String>("x", 0, Function.identity());
+        });
+    }
+
+    @Test
+    public void singleNode() {
+        deps.put("a", List.of());
+        explore("a");
+        assertEquals(List.of("a"), finished);
+    }
+
+    @Test
+    public void leavesAreNotFinished() {
+        deps.put("a", List.of("b"));
+        // b has no entry and is a leaf
+        explore("a");
+        assertEquals(Set.of("a", "b"), visited);
+        assertEquals(List.of("a"), finished);
+    }
+
+    @Test
+    public void dependenciesAreFinishedFirst() {
+        deps.put("a", List.of("b", "c"));
+        deps.put("b", List.of("d"));
+        deps.put("c", List.of("e", "f"));
+        deps.put("d", List.of());
+        deps.put("e", List.of());
+        deps.put("f", List.of());
+        explore("a");
+
+        assertEquals(6, finished.size());
+        assertEquals("a", finished.get(5));
+        assertBefore("d", "b");
+        assertBefore("e", "c");
+        assertBefore("f", "c");
+    }
+
+    @Test
+    public void nodesAreVisitedOnce() {
+        deps.put("a", List.of("b", "c"));
+        deps.put("b", List.of("d"));
+        deps.put("c", List.of("d"));
+        deps.put("d", List.of());
+        var numVisits = new ConcurrentHashMap<String, Integer>();
+        sut.explore("a", n -> {
+            numVisits.merge(n, 1, Integer::sum);
+            return deps.get(n);
+        }, finished::add).join();
+
+        assertEquals(Map.of("a", 1, "b", 1, "c", 1, "d", 1), numVisits);
+        assertEquals(4, finished.size());
+    }
+
+    @Test
+    public void sharedDependenciesAreAwaitedByAllDependents() {
+        // a discovers c before b does
+        deps.put("a", List.of("c", "b"));
+        deps.put("b", List.of("c"));
+        deps.put("c", List.of());
+        explore("a");
+        assertEquals(List.of("c", "b", "a"), finished);
+    }
+
+    @Test
+    public void dependenciesThatAreDiscoveredLaterAreAwaited() {
+        deps.put("a", List.of("b", "c"));
+        deps.put("b", List.of());
+        deps.put("c", List.of("d"));
+        deps.put("d", List.of("b"));
+        explore("a");
+        assertBefore("b", "d");
+        assertBefore("d", "c");
+        assertEquals("a", finished.get(3));
+    }
+
+    @Test
+    public void cyclesBetweenSiblingsTerminate() {
+        deps.put("a", List.of("b", "c"));
+        deps.put("b", List.of("c"));
+        deps.put("c", List.of("b"));
+        explore("a");
+        // the wait for b is dropped, it has been discovered first
+        assertEquals(List.of("c", "b", "a"), finished);
+    }
+
+    @Test
+    public void cyclesTerminate() {
+        deps.put("a", List.of("b"));
+        deps.put("b", List.of("c"));
+        deps.put("c", List.of("a", "b"));
+        explore("a");
+        assertEquals(List.of("c", "b", "a"), finished);
+    }
+
+    @Test
+    public void dependenciesAreExploredConcurrently() throws InterruptedException {
+        var latch = new CountDownLatch(3);
+        deps.put("a", List.of("b", "c", "d"));
+        var f = sut.explore("a", n -> {
+            if (!"a".equals(n)) {
+                // only passes if all dependencies are visited at the same time
+                latch.countDown();
+                await(latch);
+                return null;
+            }
+            return deps.get(n);
+        }, finished::add);
+        f.join();
+        assertEquals(List.of("a"), finished);
+    }
+
+    @Test
+    public void errorsAreReported() {
+        var e = new Error();
+        deps.put("a", List.of("b"));
+        var f = sut.explore("a", n -> {
+            if ("b".equals(n)) {
+                throw e;
+            }
+            return deps.get(n);
+        }, finished::add);
+
+        var actual = assertThrows(CompletionException.class, () -> {
+            f.join();
+        });
+        assertSame(e, actual.getCause());
+        assertTrue(finished.isEmpty());
+    }
+
+    @Test
+    public void errorsInFinishAreReported() {
+        var e = new IllegalStateException();
+        deps.put("a", List.of());
+        var f = sut.explore("a", deps::get, n -> {
+            throw e;
+        });
+        var actual = assertThrows(CompletionException.class, () -> {
+            f.join();
+        });
+        assertSame(e, actual.getCause());
+    }
+
+    @Test
+    public void explorerCanBeReused() {
+        deps.put("a", List.of("b"));
+        deps.put("b", List.of());
+        explore("a");
+        finished.clear();
+        explore("a");
+        assertEquals(List.of("b", "a"), finished);
+    }
+
+    @Test
+    public void closedExplorerFails() {
+        sut.close();
+        var f = sut.explore("a", deps::get, finished::add);
+        assertTrue(f.isCompletedExceptionally());
+        assertFalse(visited.contains("a"));
+    }
+
+    private void explore(String root) {
+        sut.explore(root, n -> {
+            visited.add(n);
+            return deps.get(n);
+        }, finished::add).join();
+    }
+
+    private void assertBefore(String first, String second) {
+        assertTrue(finished.indexOf(first) < finished.indexOf(second), String.format("%s should be finished before %s: %s", first, second, finished));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Dependencies have not been visited concurrently");
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -112,10 +112,24 @@ public class EffectiveModelBuilderTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void parentIsCachedAcrossBuilds() {
+        var sut = new EffectiveModelBuilder();
+        buildEffectiveModel(sut, "inherited-version.pom");
+        var numHitsBefore = sut.getCache().getNumHits();
+
+        var model = buildEffectiveModel(sut, "inherited-version.pom");
+        assertEquals("9", model.getVersion());
+        assertTrue(sut.getCache().getNumHits() > numHitsBefore);
+    }
+
     private static Model buildEffectiveModel(String relPathToPom) {
+        return buildEffectiveModel(new EffectiveModelBuilder(), relPathToPom);
+    }
+
+    private static Model buildEffectiveModel(EffectiveModelBuilder sut, String relPathToPom) {
         var pathToPom = EffectiveModelBuilderTest.class.getSimpleName() + "/" + relPathToPom;
         var pom = ResourceUtils.getTestResource(pathToPom);
-        var sut = new EffectiveModelBuilder();
         return sut.buildEffectiveModel(pom);
     }
 
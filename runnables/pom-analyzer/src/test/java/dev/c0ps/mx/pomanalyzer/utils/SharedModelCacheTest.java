@@ -0,0 +1,78 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SharedModelCacheTest {
+
+    private SharedModelCache sut;
+
+    @BeforeEach
+    public void setup() {
+        sut = new SharedModelCache(2);
+    }
+
+    @Test
+    public void invalidSize() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            new SharedModelCache(0);
+        });
+    }
+
+    @Test
+    public void storesEntries() {
+        var o = new Object();
+        sut.put("g", "a", "1", "raw", o);
+        assertSame(o, sut.get("g", "a", "1", "raw"));
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    public void tagIsPartOfTheKey() {
+        sut.put("g", "a", "1", "raw", new Object());
+        assertNull(sut.get("g", "a", "1", "import"));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+        sut.put("g", "a", "1", "raw", new Object());
+        sut.get("g", "a", "1", "raw");
+        sut.get("g", "a", "1", "raw");
+        sut.get("g", "a", "2", "raw");
+        assertEquals(2, sut.getNumHits());
+        assertEquals(1, sut.getNumMisses());
+        assertEquals("1 entries, 2 hits, 1 misses (66.7% hit rate)", sut.toString());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        sut.put("g", "a", "1", "raw", new Object());
+        sut.put("g", "a", "2", "raw", new Object());
+        // access makes 1 the most recently used
+        sut.get("g", "a", "1", "raw");
+        sut.put("g", "a", "3", "raw", new Object());
+
+        assertEquals(2, sut.size());
+        assertNull(sut.get("g", "a", "2", "raw"));
+    }
+}
@@ -25,8 +25,11 @@ import static org.mockito.Mockito.when;
 import java.io.File;
 import java.lang.module.ResolutionException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -137,6 +140,31 @@ public class ShrinkwrapResolverTest {
         });
     }
 
+    @Test
+    public void concurrentResolutionsDoNotCrossOver() throws Exception {
+        var basic = testArtifact("basic");
+        var transitive = testArtifact("transitive");
+        mockPom(basic, "basic.pom");
+        mockPom(transitive, "transitive.pom");
+
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var futures = new ArrayList<Future<Set<Artifact>>>();
+            for (var i = 0; i < 4; i++) {
+                var a = i % 2 == 0 ? basic : transitive;
+                futures.add(pool.submit(() -> sut.resolveDependencies(a)));
+            }
+            for (var i = 0; i < 4; i++) {
+                var expected = i % 2 == 0 //
+                        ? Set.of(JSR305, COMMONS_LANG3, REMLA)
+                        : Set.of(COMMONS_TEXT, COMMONS_LANG3);
+                assertEquals(expected, futures.get(i).get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     private static final Artifact JSR305 = central("com.google.code.findbugs:jsr305:3.0.2:jar");
     private static final Artifact SLF4J = central("org.slf4j:slf4j-api:1.7.32:jar");
     private static final Artifact COMMONS_LANG3 = central("org.apache.commons:commons-lang3:3.9:jar");
@@ -152,10 +180,18 @@ public class ShrinkwrapResolverTest {
     }
 
     private Set<Artifact> resolveTestPom(String pathToPom) {
+        var someArtifact = testArtifact("...");
+        mockPom(someArtifact, pathToPom);
+        return sut.resolveDependencies(someArtifact);
+    }
+
+    private static Artifact testArtifact(String name) {
+        return new Artifact(name, name, name, name);
+    }
+
+    private void mockPom(Artifact a, String pathToPom) {
         var fullPath = Path.of(ShrinkwrapResolverTest.class.getSimpleName(), pathToPom);
         var pom = ResourceUtils.getTestResource(fullPath.toString());
-        var someArtifact = new Artifact("...", "...", "...", "...");
-        when(mru.getLocalPomFile(someArtifact)).thenReturn(pom);
-        return sut.resolveDependencies(someArtifact);
+        when(mru.getLocalPomFile(a)).thenReturn(pom);
     }
 }
\ No newline at end of file
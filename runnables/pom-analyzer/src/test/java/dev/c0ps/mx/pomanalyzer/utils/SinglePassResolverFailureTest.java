@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.resolution.ArtifactDescriptorException;
+import org.eclipse.aether.resolution.ArtifactDescriptorRequest;
+import org.eclipse.aether.resolution.ArtifactDescriptorResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRangeResolutionException;
+import org.eclipse.aether.resolution.VersionRangeResult;
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SinglePassResolverFailureTest {
+
+    private DefaultDependencyNode root;
+    private DefaultDependencyNode compileDep;
+    private DefaultDependencyNode testDep;
+
+    @BeforeEach
+    public void setup() {
+        root = new DefaultDependencyNode(new DefaultArtifact("g:root:pom:1"));
+        compileDep = node("a", JavaScopes.COMPILE);
+        testDep = node("b", JavaScopes.TEST);
+        root.setChildren(List.of(compileDep, testDep));
+    }
+
+    @Test
+    public void brokenDirectDependency() {
+        assertEquals(Set.of(JavaScopes.TEST), scopesOf(descriptorFailure("b")));
+    }
+
+    @Test
+    public void brokenTransitiveDependency() {
+        var transitive = node("c", JavaScopes.TEST);
+        transitive.setChildren(List.of(node("d", JavaScopes.TEST)));
+        testDep.setChildren(List.of(transitive));
+
+        assertEquals(Set.of(JavaScopes.TEST), scopesOf(descriptorFailure("d")));
+    }
+
+    @Test
+    public void sharedBrokenDependencyFailsAllScopes() {
+        compileDep.setChildren(List.of(node("c", JavaScopes.COMPILE)));
+        testDep.setChildren(List.of(node("c", JavaScopes.TEST)));
+
+        assertEquals(Set.of(JavaScopes.COMPILE, JavaScopes.TEST), scopesOf(descriptorFailure("c")));
+    }
+
+    @Test
+    public void failedRangeOfDirectDependency() {
+        var req = new VersionRangeRequest(new DefaultArtifact("g:x:[1,2)"), null, null);
+        var e = new VersionRangeResolutionException(new VersionRangeResult(req));
+        var directDeps = List.of(new Dependency(new DefaultArtifact("g:x:[1,2)"), JavaScopes.PROVIDED));
+
+        assertEquals(Set.of(JavaScopes.PROVIDED), SinglePassResolver.scopesOfCollectionFailure(e, root, directDeps));
+    }
+
+    @Test
+    public void unknownFailureFailsCompileScope() {
+        assertEquals(Set.of(JavaScopes.COMPILE), scopesOf(descriptorFailure("unknown")));
+        assertEquals(Set.of(JavaScopes.COMPILE), scopesOf(new IllegalStateException()));
+    }
+
+    private Set<String> scopesOf(Exception e) {
+        return SinglePassResolver.scopesOfCollectionFailure(e, root, List.of());
+    }
+
+    private static DefaultDependencyNode node(String artifactId, String scope) {
+        return new DefaultDependencyNode(new Dependency(new DefaultArtifact("g:" + artifactId + ":1"), scope));
+    }
+
+    private static ArtifactDescriptorException descriptorFailure(String artifactId) {
+        var req = new ArtifactDescriptorRequest(new DefaultArtifact("g:" + artifactId + ":1"), null, null);
+        return new ArtifactDescriptorException(new ArtifactDescriptorResult(req));
+    }
+}
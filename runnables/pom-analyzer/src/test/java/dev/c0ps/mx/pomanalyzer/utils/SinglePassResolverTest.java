@@ -0,0 +1,123 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.pomanalyzer.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.lang.module.ResolutionException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.eclipse.aether.util.artifact.JavaScopes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.commons.ResourceUtils;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+
+// Resolves against Maven Central, enable this test only for local tests.
+@Disabled
+public class SinglePassResolverTest {
+
+    private static final String CENTRAL = "https://repo.maven.apache.org/maven2/";
+
+    private static final Artifact JSR305 = central("com.google.code.findbugs:jsr305:3.0.2:jar");
+    private static final Artifact COMMONS_LANG3 = central("org.apache.commons:commons-lang3:3.9:jar");
+    private static final Artifact COMMONS_TEXT = central("org.apache.commons:commons-text:1.8:jar");
+    private static final Artifact REMLA = central("remla:mylib:0.0.5:jar") //
+            .setRepository("https://gitlab.com/api/v4/projects/26117144/packages/maven/");
+
+    @Test
+    public void reminderToReenableDisabledAnnotationOnClass() {
+        fail("Suite is expensive and should only be run locally. Re-enable @Disabled annotation.");
+    }
+
+    private MavenRepositoryUtils mru;
+    private SinglePassResolver sut;
+
+    @BeforeEach
+    public void setup() {
+        mru = mock(MavenRepositoryUtils.class);
+        sut = new SinglePassResolver(mru, new EffectiveModelBuilder());
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    @Test
+    public void resolveDirectDependencies() {
+        var actual = resolve(ShrinkwrapResolverTest.class, "basic.pom");
+        assertEquals(Set.of(JSR305, COMMONS_LANG3, REMLA), actual);
+    }
+
+    @Test
+    public void resolveTransitiveDependencies() {
+        var actual = resolve(ShrinkwrapResolverTest.class, "transitive.pom");
+        assertEquals(Set.of(COMMONS_TEXT, COMMONS_LANG3), actual);
+    }
+
+    @Test
+    public void noDependencies() {
+        var actual = resolve(ShrinkwrapResolverTest.class, "no-dependencies.pom");
+        assertEquals(Set.of(), actual);
+    }
+
+    @Test
+    public void failNonExistingCompileDep() {
+        assertThrows(ResolutionException.class, () -> {
+            resolve(ShrinkwrapResolverTest.class, "non-existing-dep.pom");
+        });
+    }
+
+    @Test
+    public void brokenTestDepOnlyDropsTestScope() {
+        var res = sut.resolveScopes(pom(SinglePassResolverTest.class, "broken-test-dep.pom"));
+        assertTrue(res.hasFailed(JavaScopes.TEST));
+        assertFalse(res.hasFailed(JavaScopes.COMPILE));
+        assertEquals(Set.of(COMMONS_LANG3), res.getResolvedArtifacts());
+
+        var actual = resolve(SinglePassResolverTest.class, "broken-test-dep.pom");
+        assertEquals(Set.of(COMMONS_LANG3), actual);
+    }
+
+    private Set<Artifact> resolve(Class<?> testClass, String pathToPom) {
+        var someArtifact = new Artifact("...", "...", "...", "...");
+        when(mru.getLocalPomFile(someArtifact)).thenReturn(pom(testClass, pathToPom));
+        return sut.resolveDependencies(someArtifact);
+    }
+
+    private static File pom(Class<?> testClass, String pathToPom) {
+        var fullPath = Path.of(testClass.getSimpleName(), pathToPom);
+        return ResourceUtils.getTestResource(fullPath.toString());
+    }
+
+    private static Artifact central(String coord) {
+        var parts = coord.split(":");
+        return new Artifact(parts[0], parts[1], parts[2], parts[3]).setRepository(CENTRAL);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.shrinkwrap.resolver.impl.maven;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DefaultDependencyNode;
+import org.eclipse.aether.graph.Dependency;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import dev.c0ps.maveneasyindex.Artifact;
+
+public class MavenResolvedArtifactImplTest {
+
+    private static final String REPO = "https://repo.example.com/maven2/";
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_ARTIFACTS = 200;
+
+    @AfterEach
+    public void teardown() {
+        MavenResolvedArtifactImpl.stopCapture();
+    }
+
+    @Test
+    public void resolvedArtifactsAreCaptured() {
+        var deps = MavenResolvedArtifactImpl.startCapture();
+        MavenResolvedArtifactImpl.fromArtifactResult(result("g", "a", "1"));
+
+        var expected = Set.of(new Artifact("g", "a", "1", "jar").setRepository(REPO));
+        assertEquals(expected, deps);
+    }
+
+    @Test
+    public void nothingIsCapturedAfterStop() {
+        var deps = MavenResolvedArtifactImpl.startCapture();
+        MavenResolvedArtifactImpl.stopCapture();
+        MavenResolvedArtifactImpl.fromArtifactResult(result("g", "a", "1"));
+        assertTrue(deps.isEmpty());
+    }
+
+    @Test
+    public void concurrentCapturesDoNotCrossOver() throws Exception {
+        var barrier = new CyclicBarrier(NUM_THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            var futures = new ArrayList<Future<Set<Artifact>>>();
+            for (var i = 0; i < NUM_THREADS; i++) {
+                var groupId = "g" + i;
+                futures.add(pool.submit(() -> {
+                    var deps = MavenResolvedArtifactImpl.startCapture();
+                    try {
+                        barrier.await(10, TimeUnit.SECONDS);
+                        for (var j = 0; j < NUM_ARTIFACTS; j++) {
+                            MavenResolvedArtifactImpl.fromArtifactResult(result(groupId, "a", Integer.toString(j)));
+                        }
+                        return new HashSet<>(deps);
+                    } finally {
+                        MavenResolvedArtifactImpl.stopCapture();
+                    }
+                }));
+            }
+            for (var i = 0; i < NUM_THREADS; i++) {
+                var deps = futures.get(i).get(30, TimeUnit.SECONDS);
+                assertEquals(NUM_ARTIFACTS, deps.size());
+                for (var dep : deps) {
+                    assertEquals("g" + i, dep.groupId);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static ArtifactResult result(String groupId, String artifactId, String version) {
+        var artifact = new DefaultArtifact(groupId, artifactId, "jar", version).setFile(new File(artifactId + "-" + version + ".jar"));
+        var node = new DefaultDependencyNode(new Dependency(artifact, "compile"));
+        var result = new ArtifactResult(new ArtifactRequest(node));
+        result.setArtifact(artifact);
+        result.setRepository(new RemoteRepository.Builder("test", "default", REPO).build());
+        return result;
+    }
+}
@@ -66,6 +66,28 @@ public class InfraArgs {
     @Parameter(names = "--exec.delayMS", arity = 1, description = "execution delay in a timed execution")
     public int execDelayMS = 0;
 
+    @Parameter(names = "--exec.parallelism", arity = 1, description = "number of workers for timed executions")
+    public int execParallelism = 1;
+
+    // repository probes
+
+    @Parameter(names = "--urlChecks.file", arity = 1, description = "File that persists the outcome of repository probes (no caching if unset)")
+    public File urlChecksFile;
+
+    @Parameter(names = "--urlChecks.positiveTtlMS", arity = 1, description = "how long a found url is remembered")
+    public long urlChecksPositiveTtlMS = 1000L * 60 * 60 * 24 * 7; // 7d
+
+    @Parameter(names = "--urlChecks.negativeTtlMS", arity = 1, description = "how long a missing url is remembered")
+    public long urlChecksNegativeTtlMS = 1000L * 60 * 60 * 24; // 1d
+
+    // postgres
+
+    @Parameter(names = "--db.url", arity = 1, description = "JDBC url of the Postgres database")
+    public String dbUrl;
+
+    @Parameter(names = "--db.user", arity = 1, description = "user of the Postgres database (password is read from ENV variable PG_PWD)")
+    public String dbUser;
+
     // directories
 
     @Parameter(names = "--dir.base", arity = 1, description = "Working dir, base directory for all file-based operations")
@@ -77,6 +99,9 @@ public class InfraArgs {
     @Parameter(names = "--dir.lanes", arity = 1, description = "Folder for all marker files of lane-management")
     public File dirLanes;
 
+    @Parameter(names = "--lanes.mapped", arity = 1, description = "Keep lanes in a single memory-mapped table in the lane folder instead of one marker file per artifact (the folder can be shared by several processes)")
+    public boolean lanesMapped = false;
+
     @Parameter(names = "--dir.completion", arity = 1, description = "Folder for all marker files of the completion progress")
     public File dirCompletion;
 
@@ -19,6 +19,7 @@ import static dev.c0ps.diapper.AssertArgs.assertFor;
 import static dev.c0ps.diapper.AssertArgs.notNullAndNotEmpty;
 
 import java.io.File;
+import java.net.http.HttpClient;
 import java.util.Set;
 
 import jakarta.inject.Named;
@@ -53,9 +54,14 @@ import dev.c0ps.maven.json.CommonsMavenDataModule;
 import dev.c0ps.maveneasyindex.ArtifactModule;
 import dev.c0ps.mx.infra.kafka.LaneManagement;
 import dev.c0ps.mx.infra.utils.HostName;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+import dev.c0ps.mx.infra.utils.PostgresConnector;
+import dev.c0ps.mx.infra.utils.UrlCheckCache;
 import dev.c0ps.mx.infra.utils.Version;
 import dev.c0ps.mx.runner.impl.kafka.FileBasedLaneManagement;
+import dev.c0ps.mx.runner.impl.kafka.MappedLaneManagement;
 import dev.c0ps.mx.runner.impl.utils.HostNameImpl;
+import dev.c0ps.mx.runner.impl.utils.PostgresConnectorImpl;
 import dev.c0ps.mx.runner.impl.utils.VersionImpl;
 
 @InjectorConfig
@@ -157,12 +163,24 @@ public class InfraConfig implements IInjectorConfig {
         return args.execDelayMS;
     }
 
+    @Provides
+    @Named("TimedExecutor.parallelism")
+    public int bindExecParallelism() {
+        return args.execParallelism;
+    }
+
     @Provides
     @Named("kafka.url")
     public String provideKafkaUrl() {
         return args.kafkaUrl;
     }
 
+    @Provides
+    @Named("kafka.autoCommit")
+    public boolean provideKafkaAutoCommit() {
+        return args.kafkaShouldAutoCommit;
+    }
+
     @Provides
     @Named("kafka.topic.requested")
     public String provideKafkaTopicRequested() {
@@ -185,9 +203,41 @@ public class InfraConfig implements IInjectorConfig {
     }
 
     @Provides
+    @Singleton
+    public HttpClient provideHttpClient() {
+        return MavenRepositoryUtils.createHttpClient();
+    }
+
+    @Provides
+    @Singleton
+    public UrlCheckCache provideUrlCheckCache() {
+        if (args.urlChecksFile == null) {
+            return UrlCheckCache.disabled();
+        }
+        var cache = new UrlCheckCache(args.urlChecksFile, args.urlChecksPositiveTtlMS, args.urlChecksNegativeTtlMS);
+        Runtime.getRuntime().addShutdownHook(new Thread(cache::close));
+        return cache;
+    }
+
+    @Provides
+    @Singleton
+    public PostgresConnector providePostgresConnector() {
+        assertFor(args) //
+                .notNull(a -> a.dbUrl, "db url") //
+                .notNull(a -> a.dbUser, "db user");
+        return new PostgresConnectorImpl(args.dbUrl, args.dbUser, true);
+    }
+
+    @Provides
+    @Singleton
     public LaneManagement provideLaneManagement() {
         AssertArgs.directoryExists(args, a -> a.dirLanes, "lane folder");
-        return new FileBasedLaneManagement(args.dirLanes);
+        if (!args.lanesMapped) {
+            return new FileBasedLaneManagement(args.dirLanes);
+        }
+        var lm = new MappedLaneManagement(args.dirLanes);
+        Runtime.getRuntime().addShutdownHook(new Thread(lm::close));
+        return lm;
     }
 
     @Provides
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.runner.impl.kafka;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import dev.c0ps.franz.Lane;
+import dev.c0ps.maveneasyindex.Artifact;
+import dev.c0ps.mx.infra.kafka.LaneManagement;
+import dev.c0ps.mx.infra.utils.InterProcessLock;
+import dev.c0ps.mx.infra.utils.LongHashTable;
+import dev.c0ps.mx.infra.utils.MavenRepositoryUtils;
+
+/**
+ * {@link LaneManagement} that keeps the lane of all artifacts in a single
+ * memory-mapped {@link LongHashTable}, instead of one marker file per artifact.
+ *
+ * Every change is appended (and synced) to a small write-ahead log before the
+ * table is updated. The log is replayed on startup and truncated after the
+ * table has been written to disk, so changes survive a crash of the machine.
+ * Existing marker files of {@link FileBasedLaneManagement} are imported once,
+ * when the table is created.
+ *
+ * Table and log can be shared by all processes that use the same lane folder.
+ * Every operation holds an {@link InterProcessLock} in the folder and starts
+ * with a refresh of the table, which picks up the changes of the others.
+ */
+public class MappedLaneManagement implements LaneManagement, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedLaneManagement.class);
+
+    public static final String TABLE_FILE = ".lanes";
+    public static final String WAL_FILE = ".lanes.wal";
+    public static final String LOCK_FILE = ".lanes.lock";
+
+    private static final int RECORD_SIZE = 13; // key, lane, crc32
+    private static final long MAX_WAL_SIZE = 1024 * 1024;
+
+    private final File baseDir;
+    private final InterProcessLock lock;
+    private final LongHashTable table;
+    private final FileChannel wal;
+
+    public MappedLaneManagement(File baseDir) {
+        this.baseDir = baseDir;
+        lock = new InterProcessLock(new File(baseDir, LOCK_FILE));
+        try {
+            wal = FileChannel.open(new File(baseDir, WAL_FILE).toPath(), CREATE, READ, WRITE);
+            // before anything is read, an import could otherwise run twice
+            table = lock.call(() -> {
+                var f = new File(baseDir, TABLE_FILE);
+                if (!f.exists()) {
+                    importMarkers(f);
+                }
+                var t = new LongHashTable(f);
+                try {
+                    replay(t);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return t;
+            });
+        } catch (IOException e) {
+            lock.close();
+            throw new RuntimeException(e);
+        } catch (RuntimeException e) {
+            lock.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean shouldProcess(Artifact a, Lane l) {
+        if (l == Lane.PRIORITY) {
+            return true;
+        }
+        if (l == Lane.ERROR) {
+            throw new IllegalArgumentException();
+        }
+        var key = key(a);
+        return lock.call(() -> {
+            table.refresh();
+            return read(key) == Lane.NORMAL;
+        });
+    }
+
+    @Override
+    public synchronized void reportProgress(Artifact a, Lane lNew) {
+        if (lNew == Lane.ERROR) {
+            throw new IllegalArgumentException();
+        }
+        var key = key(a);
+        lock.run(() -> {
+            table.refresh();
+            var lOld = read(key);
+            if (lOld == Lane.PRIORITY || lOld == lNew) {
+                return;
+            }
+            try {
+                log(key, lNew);
+                table.put(key, lNew.ordinal());
+                if (wal.size() > MAX_WAL_SIZE) {
+                    checkpoint(table);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            lock.run(() -> {
+                try {
+                    table.refresh();
+                    checkpoint(table);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            wal.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private Lane read(long key) {
+        var l = table.get(key);
+        return l < 0 //
+                ? Lane.NORMAL
+                : Lane.values()[l];
+    }
+
+    private void log(long key, Lane l) throws IOException {
+        var buf = ByteBuffer.allocate(RECORD_SIZE);
+        buf.putLong(key).put((byte) l.ordinal());
+        buf.putInt(checksum(buf.array()));
+        buf.flip();
+        var pos = wal.size();
+        while (buf.hasRemaining()) {
+            wal.write(buf, pos + buf.position());
+        }
+        wal.force(false);
+    }
+
+    private void checkpoint(LongHashTable t) throws IOException {
+        // the pages of the other processes are shared and forced as well
+        t.force();
+        wal.truncate(0);
+        wal.force(false);
+    }
+
+    private void replay(LongHashTable t) throws IOException {
+        var size = wal.size();
+        var buf = ByteBuffer.allocate(RECORD_SIZE);
+        long pos = 0;
+        var numReplayed = 0;
+        while (pos + RECORD_SIZE <= size) {
+            buf.clear();
+            while (buf.hasRemaining()) {
+                wal.read(buf, pos + buf.position());
+            }
+            if (buf.getInt(RECORD_SIZE - 4) != checksum(buf.array())) {
+                break;
+            }
+            t.put(buf.getLong(0), buf.get(8));
+            pos += RECORD_SIZE;
+            numReplayed++;
+        }
+        if (numReplayed > 0 || pos < size) {
+            LOG.info("Replayed {} lane changes from write-ahead log ({} bytes ignored)", numReplayed, size - pos);
+            checkpoint(t);
+        }
+    }
+
+    private void importMarkers(File f) {
+        LOG.info("Importing lane markers from {} ...", baseDir);
+        // import into a temporary file, an interrupted import is restarted
+        var tmp = new File(f.getPath() + ".import");
+        try {
+            Files.deleteIfExists(tmp.toPath());
+            var numImported = 0;
+            try (var t = new LongHashTable(tmp); var files = Files.walk(baseDir.toPath())) {
+                var it = files.filter(p -> p.getFileName().toString().endsWith(".prio")).iterator();
+                while (it.hasNext()) {
+                    var marker = it.next().toFile();
+                    var gav = MavenRepositoryUtils.getGAVFromMavenFilePath(baseDir, marker);
+                    if (gav != null) {
+                        var l = Lane.valueOf(Files.readString(marker.toPath(), StandardCharsets.UTF_8));
+                        t.put(LongHashTable.hash(gav), l.ordinal());
+                        numImported++;
+                    }
+                }
+            }
+            Files.move(tmp.toPath(), f.toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+            LOG.info("Imported {} lane markers", numImported);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static long key(Artifact a) {
+        return LongHashTable.hash(MavenRepositoryUtils.toGAV(a));
+    }
+
+    private static int checksum(byte[] record) {
+        var crc = new CRC32();
+        crc.update(record, 0, RECORD_SIZE - 4);
+        return (int) crc.getValue();
+    }
+}
@@ -133,6 +133,22 @@ public class InfraConfigTest {
         });
     }
 
+    @Test
+    public void postgresConnector_failNullUrl() {
+        args.dbUser = "u";
+        assertThrows(AssertArgsError.class, () -> {
+            sut.providePostgresConnector();
+        });
+    }
+
+    @Test
+    public void postgresConnector_failNullUser() {
+        args.dbUrl = "jdbc:postgresql://localhost/db";
+        assertThrows(AssertArgsError.class, () -> {
+            sut.providePostgresConnector();
+        });
+    }
+
     private void bindKafkaConnector() throws Exception {
         var args = new RunnerArgs();
         args.run = "someplugin";
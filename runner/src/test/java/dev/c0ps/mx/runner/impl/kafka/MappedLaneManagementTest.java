@@ -0,0 +1,193 @@
+/*
+ * Copyright 2022 Delft University of Technology
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package dev.c0ps.mx.runner.impl.kafka;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import dev.c0ps.franz.Lane;
+import dev.c0ps.maveneasyindex.Artifact;
+
+public class MappedLaneManagementTest {
+
+    @TempDir
+    private File tempDir;
+
+    private MappedLaneManagement sut;
+
+    private static final Artifact SOME_ARTIFACT = a(1);
+
+    @BeforeEach
+    public void setup() {
+        sut = new MappedLaneManagement(tempDir);
+    }
+
+    @AfterEach
+    public void teardown() {
+        sut.close();
+    }
+
+    private void reopen() {
+        sut.close();
+        sut = new MappedLaneManagement(tempDir);
+    }
+
+    @Test
+    public void noMarkerFilesAreCreated() {
+        sut.reportProgress(a(1), Lane.PRIORITY);
+        assertFalse(f(1).exists());
+    }
+
+    @Test
+    public void reportsAreErrors() {
+        assertThrows(IllegalArgumentException.class, () -> {
+            sut.reportProgress(SOME_ARTIFACT, Lane.ERROR);
+        });
+        assertThrows(IllegalArgumentException.class, () -> {
+            sut.shouldProcess(SOME_ARTIFACT, Lane.ERROR);
+        });
+    }
+
+    @Test
+    public void unknownArtifactsAreProcessed() {
+        assertTrue(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+        assertTrue(sut.shouldProcess(SOME_ARTIFACT, Lane.PRIORITY));
+    }
+
+    @Test
+    public void shouldProcessNN() {
+        sut.reportProgress(SOME_ARTIFACT, Lane.NORMAL);
+        assertTrue(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+    }
+
+    @Test
+    public void shouldNotProcessPN() {
+        sut.reportProgress(SOME_ARTIFACT, Lane.PRIORITY);
+        assertFalse(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+        assertTrue(sut.shouldProcess(SOME_ARTIFACT, Lane.PRIORITY));
+        assertTrue(sut.shouldProcess(a(2), Lane.NORMAL));
+    }
+
+    @Test
+    public void priorityIsNotDowngraded() {
+        sut.reportProgress(SOME_ARTIFACT, Lane.PRIORITY);
+        sut.reportProgress(SOME_ARTIFACT, Lane.NORMAL);
+        assertFalse(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+    }
+
+    @Test
+    public void lanesSurviveRestarts() {
+        sut.reportProgress(SOME_ARTIFACT, Lane.PRIORITY);
+        reopen();
+        assertFalse(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+    }
+
+    @Test
+    public void instancesShareTheSameFolder() {
+        try (var other = new MappedLaneManagement(tempDir)) {
+            other.reportProgress(SOME_ARTIFACT, Lane.PRIORITY);
+            assertFalse(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+
+            // growing the table replaces its file
+            for (var i = 2; i < 5_000; i++) {
+                other.reportProgress(a(i), Lane.PRIORITY);
+            }
+            sut.reportProgress(a(5_000), Lane.PRIORITY);
+            for (var i = 2; i < 5_000; i++) {
+                assertFalse(sut.shouldProcess(a(i), Lane.NORMAL));
+            }
+            assertFalse(other.shouldProcess(a(5_000), Lane.NORMAL));
+        }
+        assertTrue(sut.shouldProcess(a(5_001), Lane.NORMAL));
+    }
+
+    @Test
+    public void writeAheadLogIsReplayed() throws IOException {
+        sut.reportProgress(SOME_ARTIFACT, Lane.PRIORITY);
+        var wal = new File(tempDir, MappedLaneManagement.WAL_FILE);
+        assertEquals(13, wal.length());
+
+        // simulate a crash before the table has been written
+        sut.close();
+        new File(tempDir, MappedLaneManagement.TABLE_FILE).delete();
+        try (var raf = new RandomAccessFile(wal, "rw")) {
+            raf.write(logOf(SOME_ARTIFACT));
+        }
+        sut = new MappedLaneManagement(tempDir);
+        assertFalse(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+        assertEquals(0, wal.length());
+    }
+
+    @Test
+    public void tornLogEntriesAreIgnored() throws IOException {
+        sut.close();
+        try (var raf = new RandomAccessFile(new File(tempDir, MappedLaneManagement.WAL_FILE), "rw")) {
+            raf.write(new byte[] { 1, 2, 3, 4, 5 });
+        }
+        sut = new MappedLaneManagement(tempDir);
+        assertTrue(sut.shouldProcess(SOME_ARTIFACT, Lane.NORMAL));
+    }
+
+    @Test
+    public void existingMarkersAreImported() throws IOException {
+        sut.close();
+        new File(tempDir, MappedLaneManagement.TABLE_FILE).delete();
+        FileUtils.write(f(1), "PRIORITY", StandardCharsets.UTF_8);
+        FileUtils.write(f(2), "NORMAL", StandardCharsets.UTF_8);
+
+        sut = new MappedLaneManagement(tempDir);
+        assertFalse(sut.shouldProcess(a(1), Lane.NORMAL));
+        assertTrue(sut.shouldProcess(a(2), Lane.NORMAL));
+    }
+
+    private byte[] logOf(Artifact a) throws IOException {
+        // re-create the record through a second instance in another folder
+        var other = new File(tempDir, "other");
+        other.mkdirs();
+        var lm = new MappedLaneManagement(other);
+        var wal = new File(other, MappedLaneManagement.WAL_FILE);
+        lm.reportProgress(a, Lane.PRIORITY);
+        var bytes = FileUtils.readFileToByteArray(wal);
+        lm.close();
+        return bytes;
+    }
+
+    private File f(int i) {
+        return Paths.get(tempDir.getAbsolutePath(), "g", "g2", "a", "1.2." + i, "a-1.2." + i + ".prio").toFile();
+    }
+
+    private static Artifact a(int i) {
+        var a = new Artifact();
+        a.groupId = "g.g2";
+        a.artifactId = "a";
+        a.version = "1.2." + i;
+        return a;
+    }
+}